@@ -0,0 +1,78 @@
+package org.opentripplanner.ext.siri;
+
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SiriTripPatternCacheTest {
+
+    private static final String FEED_ID = "F";
+    private static final ServiceDate D1 = new ServiceDate(2020, 1, 1);
+    private static final ServiceDate D2 = new ServiceDate(2020, 1, 2);
+
+    private static final Stop STOP_1 = new Stop(new FeedScopedId(FEED_ID, "S1"));
+    private static final Stop STOP_2 = new Stop(new FeedScopedId(FEED_ID, "S2"));
+
+    private final Graph graph = new Graph();
+    private final SiriTripPatternCache subject = new SiriTripPatternCache();
+
+    @Test
+    public void patternsOfExpiredServiceDatesAreRemoved() {
+        Trip trip = trip("T1");
+        StopPattern stopPattern = stopPattern(trip);
+        TripPattern patternD1 = subject.getOrCreateTripPattern(stopPattern, trip, graph, D1);
+        TripPattern patternD2 = subject.getOrCreateTripPattern(stopPattern, trip, graph, D2);
+        assertTrue(subject.getAddedTripPatternsForStop(STOP_1).contains(patternD1));
+
+        assertEquals(1, subject.removeExpiredData(D1));
+        assertEquals(0, subject.removeExpiredData(D1));
+
+        // Only the expired pattern is removed from the stops
+        assertFalse(subject.getAddedTripPatternsForStop(STOP_1).contains(patternD1));
+        assertFalse(subject.getAddedTripPatternsForStop(STOP_2).contains(patternD1));
+        assertTrue(subject.getAddedTripPatternsForStop(STOP_1).contains(patternD2));
+        assertSame(patternD2, subject.getOrCreateTripPattern(stopPattern, trip, graph, D2));
+
+        // An update for the removed date creates a new pattern
+        assertNotSame(patternD1, subject.getOrCreateTripPattern(stopPattern, trip, graph, D1));
+        assertEquals(2, subject.removeExpiredData(D2));
+        assertTrue(subject.getAddedTripPatternsForStop(STOP_1).isEmpty());
+    }
+
+    /* private methods */
+
+    private static Trip trip(String id) {
+        Route route = new Route();
+        route.setId(new FeedScopedId(FEED_ID, "R1"));
+        Trip trip = new Trip();
+        trip.setId(new FeedScopedId(FEED_ID, id));
+        trip.setRoute(route);
+        return trip;
+    }
+
+    private static StopPattern stopPattern(Trip trip) {
+        return new StopPattern(List.of(stopTime(trip, STOP_1), stopTime(trip, STOP_2)));
+    }
+
+    private static StopTime stopTime(Trip trip, Stop stop) {
+        StopTime stopTime = new StopTime();
+        stopTime.setTrip(trip);
+        stopTime.setStop(stop);
+        return stopTime;
+    }
+}
@@ -10,7 +10,9 @@ import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.RoutingService;
+import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.updater.TripMatchingIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.siri.siri20.EstimatedCall;
@@ -26,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is used for matching TripDescriptors without trip_ids to scheduled GTFS data and to
@@ -36,29 +39,40 @@ import java.util.Set;
  * and arrival times of the scheduled trip. The matching process will always be applied even in places where you have
  * good quality IDs in SIRI data and don't need it - we'd have to add a way to disable it.
  *
- * Several instances of this SiriFuzzyTripMatcher may appear in different SIRI updaters, but they all share a common
- * set of static Map fields. We generally don't advocate using static fields in this way, but as part of a sandbox
- * contribution we are maintaining this implementation.
+ * The trip and route id maps are built when the matcher is created and never modified after that. The trips are
+ * matched on last stop and arrival time using the {@link org.opentripplanner.updater.TripMatchingIndex} of the graph,
+ * which also includes the trips added by realtime updates. The matcher is safe to use from several updaters at the
+ * same time, and one instance is shared by the updaters of a graph, see {@link #of(Graph)}.
  */
 public class SiriFuzzyTripMatcher {
     private static final Logger LOG = LoggerFactory.getLogger(SiriFuzzyTripMatcher.class);
 
-    private RoutingService routingService;
+    private final RoutingService routingService;
 
-    private static Map<String, Set<Trip>> mappedTripsCache = new HashMap<>();
-    private static Map<String, Set<Trip>> mappedVehicleRefCache = new HashMap<>();
-    private static Map<String, Set<Route>> mappedRoutesCache = new HashMap<>();
-    private static Map<String, Set<Trip>> start_stop_tripCache = new HashMap<>();
+    private final Map<String, Set<Trip>> mappedTripsCache = new HashMap<>();
+    private final Map<String, Set<Trip>> mappedVehicleRefCache = new HashMap<>();
+    private final Map<String, Set<Route>> mappedRoutesCache = new HashMap<>();
 
-    private static Map<String, Trip> vehicleJourneyTripCache = new HashMap<>();
+    private final Map<String, Trip> vehicleJourneyTripCache = new ConcurrentHashMap<>();
 
-    private static Set<String> nonExistingStops = new HashSet<>();
+    private final Set<String> nonExistingStops = ConcurrentHashMap.newKeySet();
 
     public SiriFuzzyTripMatcher(RoutingService routingService) {
         this.routingService = routingService;
         initCache(this.routingService);
     }
 
+    /**
+     * Return the matcher shared by all SIRI updaters of the graph. The id maps are built once,
+     * when the first updater is set up.
+     */
+    public static SiriFuzzyTripMatcher of(Graph graph) {
+        return graph.getOrSetupRealtimeService(
+                SiriFuzzyTripMatcher.class,
+                g -> new SiriFuzzyTripMatcher(new RoutingService(g))
+        );
+    }
+
     /**
      * Matches VehicleActivity to a set of possible Trips based on tripId
      */
@@ -145,31 +159,28 @@ public class SiriFuzzyTripMatcher {
     }
 
     private Set<Trip> getMatchingTripsOnStopOrSiblings(String lastStopPoint, ZonedDateTime arrivalTime) {
+        TripMatchingIndex tripMatchingIndex = routingService.getTripMatchingIndex();
 
-        Set<Trip> trips = start_stop_tripCache.get(createStartStopKey(lastStopPoint, arrivalTime.toLocalTime().toSecondOfDay()));
-        if (trips == null) {
+        Set<Trip> trips = tripMatchingIndex.getTripsByLastStopArrival(lastStopPoint, arrivalTime.toLocalTime().toSecondOfDay());
+        if (trips.isEmpty()) {
             //Attempt to fetch trips that started yesterday - i.e. add 24 hours to arrival-time
             int lastStopArrivalTime = arrivalTime.toLocalTime().toSecondOfDay() + (24 * 60 * 60);
-            trips = start_stop_tripCache.get(createStartStopKey(lastStopPoint, lastStopArrivalTime));
+            trips = tripMatchingIndex.getTripsByLastStopArrival(lastStopPoint, lastStopArrivalTime);
         }
 
-        if (trips == null || trips.isEmpty()) {
+        if (trips.isEmpty()) {
             //SIRI-data may report other platform, but still on the same Parent-stop
             String agencyId = routingService.getAgenciesForFeedId().keySet().iterator().next();
             Stop stop = routingService.getStopForId().get(new FeedScopedId(agencyId, lastStopPoint));
             if (stop != null && stop.getParentStation() != null) {
                 // TODO OTP2 resolve stop-station split
                 Collection<Stop> allQuays = stop.getParentStation().getChildStops();
+                // The sets in the index are immutable, collect the trips in a new set
+                Set<Trip> siblingTrips = new HashSet<>();
                 for (Stop quay : allQuays) {
-                    Set<Trip> tripSet = start_stop_tripCache.get(createStartStopKey(quay.getId().getId(), arrivalTime.toLocalTime().toSecondOfDay()));
-                    if (tripSet != null) {
-                        if (trips == null) {
-                            trips = tripSet;
-                        } else {
-                            trips.addAll(tripSet);
-                        }
-                    }
+                    siblingTrips.addAll(tripMatchingIndex.getTripsByLastStopArrival(quay.getId().getId(), arrivalTime.toLocalTime().toSecondOfDay()));
                 }
+                trips = siblingTrips;
             }
         }
         return trips;
@@ -185,83 +196,59 @@ public class SiriFuzzyTripMatcher {
         return mappedTripsCache.getOrDefault(tripId, new HashSet<>());
     }
 
-    private static void initCache(RoutingService index) {
-        if (mappedTripsCache.isEmpty()) {
+    private void initCache(RoutingService index) {
+        Set<Trip> trips = index.getPatternForTrip().keySet();
+        for (Trip trip : trips) {
 
-            Set<Trip> trips = index.getPatternForTrip().keySet();
-            for (Trip trip : trips) {
+            TripPattern tripPattern = index.getPatternForTrip().get(trip);
 
-                TripPattern tripPattern = index.getPatternForTrip().get(trip);
-
-                    String currentTripId = getUnpaddedTripId(trip.getId().getId());
-
-                    if (mappedTripsCache.containsKey(currentTripId)) {
-                        mappedTripsCache.get(currentTripId).add(trip);
-                    } else {
-                        Set<Trip> initialSet = new HashSet<>();
-                        initialSet.add(trip);
-                        mappedTripsCache.put(currentTripId, initialSet);
-                    }
+                String currentTripId = getUnpaddedTripId(trip.getId().getId());
 
-                if (tripPattern != null && (tripPattern.mode.equals(TraverseMode.RAIL) /*||
-                                                    (trip.getTransportSubmode() != null &&
-                                                            trip.getTransportSubmode().equals(TransmodelTransportSubmode.RAIL_REPLACEMENT_BUS))*/)) {
-                    // TODO - SIRI: Add support for submode
-                    if (trip.getTripShortName() != null) {
-                        String tripShortName = trip.getTripShortName();
-                        if (mappedVehicleRefCache.containsKey(tripShortName)) {
-                            mappedVehicleRefCache.get(tripShortName).add(trip);
-                        } else {
-                            Set<Trip> initialSet = new HashSet<>();
-                            initialSet.add(trip);
-                            mappedVehicleRefCache.put(tripShortName, initialSet);
-                        }
-                    }
+                if (mappedTripsCache.containsKey(currentTripId)) {
+                    mappedTripsCache.get(currentTripId).add(trip);
+                } else {
+                    Set<Trip> initialSet = new HashSet<>();
+                    initialSet.add(trip);
+                    mappedTripsCache.put(currentTripId, initialSet);
                 }
-                String lastStopId = tripPattern.getStops().get(tripPattern.getStops().size()-1).getId().getId();
-
-                TripTimes tripTimes = tripPattern.scheduledTimetable.getTripTimes(trip);
-                if (tripTimes != null) {
-                    int arrivalTime = tripTimes.getArrivalTime(tripTimes.getNumStops() - 1);
 
-                    String key = createStartStopKey(lastStopId, arrivalTime);
-                    if (start_stop_tripCache.containsKey(key)) {
-                        start_stop_tripCache.get(key).add(trip);
+            if (tripPattern != null && (tripPattern.mode.equals(TraverseMode.RAIL) /*||
+                                                (trip.getTransportSubmode() != null &&
+                                                        trip.getTransportSubmode().equals(TransmodelTransportSubmode.RAIL_REPLACEMENT_BUS))*/)) {
+                // TODO - SIRI: Add support for submode
+                if (trip.getTripShortName() != null) {
+                    String tripShortName = trip.getTripShortName();
+                    if (mappedVehicleRefCache.containsKey(tripShortName)) {
+                        mappedVehicleRefCache.get(tripShortName).add(trip);
                     } else {
                         Set<Trip> initialSet = new HashSet<>();
                         initialSet.add(trip);
-                        start_stop_tripCache.put(key, initialSet);
+                        mappedVehicleRefCache.put(tripShortName, initialSet);
                     }
                 }
             }
-            Set<Route> routes = index.getPatternsForRoute().keySet();
-            for (Route route : routes) {
-
-                String currentRouteId = getUnpaddedTripId(route.getId().getId());
-                if (mappedRoutesCache.containsKey(currentRouteId)) {
-                    mappedRoutesCache.get(currentRouteId).add(route);
-                } else {
-                    Set<Route> initialSet = new HashSet<>();
-                    initialSet.add(route);
-                    mappedRoutesCache.put(currentRouteId, initialSet);
-                }
+        }
+        Set<Route> routes = index.getPatternsForRoute().keySet();
+        for (Route route : routes) {
+
+            String currentRouteId = getUnpaddedTripId(route.getId().getId());
+            if (mappedRoutesCache.containsKey(currentRouteId)) {
+                mappedRoutesCache.get(currentRouteId).add(route);
+            } else {
+                Set<Route> initialSet = new HashSet<>();
+                initialSet.add(route);
+                mappedRoutesCache.put(currentRouteId, initialSet);
             }
-
-            LOG.info("Built route-cache [{}].", mappedRoutesCache.size());
-            LOG.info("Built vehicleRef-cache [{}].", mappedVehicleRefCache.size());
-            LOG.info("Built trips-cache [{}].", mappedTripsCache.size());
-            LOG.info("Built start-stop-cache [{}].", start_stop_tripCache.size());
         }
 
-        if (vehicleJourneyTripCache.isEmpty()) {
-            index
-                .getTripForId()
-                .values().forEach(trip -> vehicleJourneyTripCache.put(trip.getId().getId(), trip));
-        }
-    }
+        LOG.info("Built route-cache [{}].", mappedRoutesCache.size());
+        LOG.info("Built vehicleRef-cache [{}].", mappedVehicleRefCache.size());
+        LOG.info("Built trips-cache [{}].", mappedTripsCache.size());
+        LOG.info("Trip matching index contains [{}] trips.", index.getTripMatchingIndex().size());
 
-    private static String createStartStopKey(String lastStopId, int lastStopArrivalTime) {
-        return lastStopId + ":" + lastStopArrivalTime;
+        index
+            .getTripForId()
+            .values().forEach(trip -> vehicleJourneyTripCache.put(trip.getId().getId(), trip));
     }
 
     private static String getUnpaddedTripId(String id) {
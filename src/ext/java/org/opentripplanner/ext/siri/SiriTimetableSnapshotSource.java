@@ -17,8 +17,10 @@ import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.RoutingService;
+import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.trippattern.RealTimeState;
 import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.updater.TimetableSnapshotPublishMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.siri.siri20.ArrivalBoardingActivityEnumeration;
@@ -74,8 +76,9 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
     private int appliedBlockCount = 0;
 
     /**
-     * If a timetable snapshot is requested less than this number of milliseconds after the previous
-     * snapshot, just return the same one. Throttles the potentially resource-consuming task of
+     * If a batch of updates is applied less than this number of milliseconds after the previous
+     * snapshot was published, the changes are not published until the next periodic
+     * {@link #publishTimetableSnapshot()}. Throttles the potentially resource-consuming task of
      * duplicating a TripPattern -> Timetable map and indexing the new Timetables.
      */
     public int maxSnapshotFrequency = 1000; // msec
@@ -98,6 +101,9 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
      */
     private final ReentrantLock bufferLock = new ReentrantLock(true);
 
+    /** Commit duration and publish lag of the snapshots published by this source. */
+    private final TimetableSnapshotPublishMetrics publishMetrics = new TimetableSnapshotPublishMetrics();
+
     /**
      * A synchronized cache of trip patterns that are added to the graph due to GTFS-realtime messages.
      */
@@ -134,41 +140,107 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
         dummy.setName("");
         dummyAgency = dummy;
 
-        siriFuzzyTripMatcher = new SiriFuzzyTripMatcher(routingService);
+        siriFuzzyTripMatcher = SiriFuzzyTripMatcher.of(graph);
     }
 
     /**
-     * @return an up-to-date snapshot mapping TripPatterns to Timetables. This snapshot and the
-     *         timetable objects it references are guaranteed to never change, so the requesting
+     * @return the latest published snapshot mapping TripPatterns to Timetables. This snapshot and
+     *         the timetable objects it references are guaranteed to never change, so the requesting
      *         thread is provided a consistent view of all TripTimes. The routing thread need only
      *         release its reference to the snapshot to release resources.
+     *         <p>
+     *         This never commits the buffer, so routing threads do not pay for creating a new
+     *         snapshot. Snapshots are published after each applied batch of updates and by
+     *         {@link #publishTimetableSnapshot()}.
      */
+    @Override
     public TimetableSnapshot getTimetableSnapshot() {
-        TimetableSnapshot snapshotToReturn;
-
-        // Try to get a lock on the buffer
-        if (bufferLock.tryLock()) {
-            // Make a new snapshot if necessary
-            try {
-                snapshotToReturn = getTimetableSnapshot(false);
-            } finally {
-                bufferLock.unlock();
+        return snapshot;
+    }
+
+    /**
+     * Commit the buffer and publish a new snapshot if the buffer is dirty and the last snapshot
+     * is older than {@link #maxSnapshotFrequency}. This publishes changes held back by the
+     * snapshot throttling, and is called periodically from the graph updater thread.
+     */
+    @Override
+    public void publishTimetableSnapshot() {
+        bufferLock.lock();
+        try {
+            commitTimetableSnapshot(false);
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the realtime data of expired service dates without waiting for the next update, and
+     * share the arrays of equal realtime times. See
+     * {@link org.opentripplanner.updater.stoptime.TimetableSnapshotSource#compactRealtimeData(Graph)}.
+     */
+    @Override
+    public void compactRealtimeData(final Graph graph) {
+        bufferLock.lock();
+        try {
+            final long startTime = System.currentTimeMillis();
+            final long[] purgedBytes = { 0 };
+            boolean modified = false;
+            int removedPatterns = 0;
+            ServiceDate firstDateToKeep = null;
+
+            if (purgeExpiredData) {
+                final ServiceDate previously = new ServiceDate().previous().previous();
+                modified = buffer.purgeExpiredData(previously, timetable -> {
+                    for (TripTimes tripTimes : timetable.tripTimes) {
+                        purgedBytes[0] += tripTimes.getRealtimeTimesSizeEstimate();
+                    }
+                });
+                removedPatterns = tripPatternCache.removeExpiredData(previously);
+                lastPurgeDate = previously;
+                firstDateToKeep = previously.next();
             }
-        } else {
-            // No lock could be obtained because there is either a snapshot commit busy or updates
-            // are applied at this moment, just return the current snapshot
-            snapshotToReturn = snapshot;
+
+            final int removedTrips = graph.retainRealtimeTripsInTripMatchingIndex(
+                    buffer.getAllRealtimeTrips()
+            );
+
+            final long deduplicatedBytes = buffer.deduplicateTripTimes(new Deduplicator());
+
+            commitTimetableSnapshot(modified || deduplicatedBytes > 0);
+
+            if (firstDateToKeep != null && transitLayerUpdater != null) {
+                transitLayerUpdater.revertExpiredDates(firstDateToKeep);
+            }
+
+            LOG.info(
+                    "Compacted realtime data in {} ms: {} trip patterns and {} matching index "
+                            + "trips removed, about {} KB reclaimed.",
+                    System.currentTimeMillis() - startTime,
+                    removedPatterns,
+                    removedTrips,
+                    (purgedBytes[0] + deduplicatedBytes) / 1024
+            );
+        } finally {
+            bufferLock.unlock();
         }
+    }
 
-        return snapshotToReturn;
+    public TimetableSnapshotPublishMetrics getPublishMetrics() {
+        return publishMetrics;
     }
 
-    private TimetableSnapshot getTimetableSnapshot(final boolean force) {
+    private void commitTimetableSnapshot(final boolean force) {
         final long now = System.currentTimeMillis();
         if (force || now - lastSnapshotTime > maxSnapshotFrequency) {
             if (force || buffer.isDirty()) {
                 LOG.debug("Committing {}", buffer.toString());
                 snapshot = buffer.commit(transitLayerUpdater, force);
+                publishMetrics.snapshotPublished(now);
+                LOG.debug(
+                        "Snapshot published in {} ms, publish lag {} ms.",
+                        publishMetrics.getLastCommitDuration(),
+                        publishMetrics.getLastPublishLag()
+                );
             } else {
                 LOG.debug("Buffer was unchanged, keeping old snapshot.");
             }
@@ -176,7 +248,6 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
         } else {
             LOG.debug("Snapshot frequency exceeded. Reusing snapshot {}", snapshot);
         }
-        return snapshot;
     }
 
 
@@ -240,12 +311,12 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
 
             // Make a snapshot after each message in anticipation of incoming requests
             // Purge data if necessary (and force new snapshot if anything was purged)
-            // Make sure that the public (locking) getTimetableSnapshot function is not called.
+            publishMetrics.bufferUpdated(buffer.isDirty());
             if (purgeExpiredData) {
                 final boolean modified = purgeExpiredData();
-                getTimetableSnapshot(modified);
+                commitTimetableSnapshot(modified);
             } else {
-                getTimetableSnapshot(false);
+                commitTimetableSnapshot(false);
             }
         } finally {
             // Always release lock
@@ -330,12 +401,12 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
 
             // Make a snapshot after each message in anticipation of incoming requests
             // Purge data if necessary (and force new snapshot if anything was purged)
-            // Make sure that the public (locking) getTimetableSnapshot function is not called.
+            publishMetrics.bufferUpdated(buffer.isDirty());
             if (purgeExpiredData) {
                 final boolean modified = purgeExpiredData();
-                getTimetableSnapshot(modified);
+                commitTimetableSnapshot(modified);
             } else {
-                getTimetableSnapshot(false);
+                commitTimetableSnapshot(false);
             }
         } finally {
             // Always release lock
@@ -637,6 +708,12 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
             }
         }
 
+        ServiceDate serviceDate = getServiceDateForEstimatedVehicleJourney(estimatedVehicleJourney);
+        if (serviceDate == null) {
+            LOG.warn("Unable to resolve the service date of added trip {}", tripId);
+            return false;
+        }
+
         // Adding trip to index necessary to include values in graphql-queries
         // TODO - SIRI: should more data be added to index?
         graph.index.getTripForId().put(tripId, trip);
@@ -658,8 +735,6 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
 
         Preconditions.checkState(tripTimes.timesIncreasing(), "Non-increasing triptimes for added trip");
 
-        ServiceDate serviceDate = getServiceDateForEstimatedVehicleJourney(estimatedVehicleJourney);
-
         if (graph.getCalendarService().getServiceDatesForServiceId(serviceId) == null ||
                 graph.getCalendarService().getServiceDatesForServiceId(serviceId).isEmpty()) {
             LOG.info("Adding serviceId {} to CalendarService", serviceId);
@@ -668,7 +743,13 @@ public class SiriTimetableSnapshotSource implements TimetableSnapshotProvider {
         }
 
 
-        return addTripToGraphAndBuffer(feedId, graph, trip, aimedStopTimes, addedStops, tripTimes, serviceDate);
+        boolean success = addTripToGraphAndBuffer(feedId, graph, trip, aimedStopTimes, addedStops, tripTimes, serviceDate);
+
+        // Make the added trip visible to the fuzzy trip matchers once it is accepted
+        if (success && !tripTimes.isCanceled()) {
+            graph.addToTripMatchingIndex(pattern, tripTimes);
+        }
+        return success;
     }
 
     /*
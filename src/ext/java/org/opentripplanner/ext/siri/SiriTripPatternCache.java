@@ -15,8 +15,10 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A synchronized cache of trip patterns that are added to the graph due to GTFS-realtime messages.
@@ -171,6 +173,29 @@ public class SiriTripPatternCache {
         return patternsForStop.get(stop);
     }
 
+    /**
+     * Remove the trip patterns added for service dates on-or-before the given date.
+     *
+     * @return the number of trip patterns removed.
+     */
+    public synchronized int removeExpiredData(ServiceDate serviceDate) {
+        Set<TripPattern> removed = new HashSet<>();
+        cache.entrySet().removeIf(e -> {
+            if (serviceDate.compareTo(e.getKey().serviceDate) >= 0) {
+                removed.add(e.getValue());
+                return true;
+            }
+            return false;
+        });
+        updatedTripPatternsForTripCache.keySet().removeIf(
+                key -> serviceDate.compareTo(key.serviceDate) >= 0
+        );
+        if (!removed.isEmpty()) {
+            patternsForStop.values().removeAll(removed);
+        }
+        return removed.size();
+    }
+
 
 }
 class StopPatternServiceDateKey {
@@ -4,15 +4,22 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.lang3.BooleanUtils;
 import org.opentripplanner.ext.siri.SiriTimetableSnapshotSource;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.updater.CoalescingUpdateQueue;
 import org.opentripplanner.updater.GraphUpdaterManager;
 import org.opentripplanner.updater.PollingGraphUpdater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.siri.siri20.EstimatedTimetableDeliveryStructure;
+import uk.org.siri.siri20.EstimatedVehicleJourney;
+import uk.org.siri.siri20.EstimatedVersionFrameStructure;
+import uk.org.siri.siri20.FramedVehicleJourneyRefStructure;
 import uk.org.siri.siri20.ServiceDelivery;
 import uk.org.siri.siri20.Siri;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -68,6 +75,28 @@ public class SiriETUpdater extends PollingGraphUpdater {
      */
     private SiriTimetableSnapshotSource snapshotSource;
 
+    /**
+     * The maximum number of vehicle journeys with pending updates
+     */
+    private int queueCapacity;
+
+    /**
+     * The minimum time between two batches of updates applied to the graph
+     */
+    private long batchIntervalMs;
+
+    /**
+     * The vehicle journeys received and not yet applied. When the queue is full, polling waits
+     * until the pending journeys are applied.
+     */
+    private CoalescingUpdateQueue<Object, EstimatedVehicleJourney> queue;
+
+    /**
+     * True when the last page of a poll is applied to the graph. The journeys are applied later
+     * than they are polled, so this replaces the primed flag set after polling.
+     */
+    private volatile boolean firstPollApplied = false;
+
     @Override
     public void setGraphUpdaterManager(GraphUpdaterManager updaterManager) {
         this.updaterManager = updaterManager;
@@ -96,6 +125,8 @@ public class SiriETUpdater extends PollingGraphUpdater {
         this.purgeExpiredData = config.path("purgeExpiredData").asBoolean(true);
 
         blockReadinessUntilInitialized = config.path("blockReadinessUntilInitialized").asBoolean(false);
+        queueCapacity = config.path("queueCapacity").asInt(CoalescingUpdateQueue.DEFAULT_CAPACITY);
+        batchIntervalMs = config.path("batchIntervalMs").asLong(CoalescingUpdateQueue.DEFAULT_BATCH_INTERVAL_MS);
 
         LOG.info("Creating stop time updater (SIRI ET) running every {} seconds : {}", pollingPeriodSeconds, updateSource);
     }
@@ -120,11 +151,20 @@ public class SiriETUpdater extends PollingGraphUpdater {
             snapshotSource.purgeExpiredData = purgeExpiredData;
         }
 
+        queue = new CoalescingUpdateQueue<>(
+                feedId,
+                queueCapacity,
+                batchIntervalMs,
+                updaterManager,
+                (g, fullDataset, journeys) -> snapshotSource.applyEstimatedTimetable(
+                        g, feedId, fullDataset, toDeliveries(journeys)
+                )
+        );
     }
 
     /**
      * Repeatedly makes blocking calls to an UpdateStreamer to retrieve new stop time updates, and
-     * applies those updates to the graph.
+     * queues the updated vehicle journeys to be applied to the graph.
      */
     @Override
     public void runPolling() throws Exception {
@@ -135,20 +175,76 @@ public class SiriETUpdater extends PollingGraphUpdater {
                 boolean fullDataset = updateSource.getFullDatasetValueOfLastUpdates();
                 ServiceDelivery serviceDelivery = updates.getServiceDelivery();
                 // Use isTrue in case isMoreData returns null. Mark this updater as primed after last page of updates.
-                // Copy moreData into a final primitive, because the object moreData persists across iterations.
                 moreData = BooleanUtils.isTrue(serviceDelivery.isMoreData());
-                final boolean markPrimed = !moreData;
                 List<EstimatedTimetableDeliveryStructure> etds = serviceDelivery.getEstimatedTimetableDeliveries();
                 if (etds != null) {
-                    updaterManager.execute(graph -> {
-                        snapshotSource.applyEstimatedTimetable(graph, feedId, fullDataset, etds);
-                        if (markPrimed) primed = true;
-                    });
+                    queueJourneys(fullDataset, etds);
+                }
+                if (!moreData && !firstPollApplied) {
+                    queue.whenPendingApplied(() -> firstPollApplied = true);
                 }
             }
         } while (moreData);
     }
 
+    private void queueJourneys(
+            boolean fullDataset,
+            List<EstimatedTimetableDeliveryStructure> etds
+    ) throws InterruptedException {
+        Map<Object, EstimatedVehicleJourney> journeys = new LinkedHashMap<>();
+        for (EstimatedTimetableDeliveryStructure etd : etds) {
+            for (EstimatedVersionFrameStructure frame : etd.getEstimatedJourneyVersionFrames()) {
+                for (EstimatedVehicleJourney journey : frame.getEstimatedVehicleJourneies()) {
+                    journeys.put(journeyKey(journey), journey);
+                }
+            }
+        }
+        if (fullDataset) {
+            queue.offerFullDataset(journeys);
+        } else {
+            for (Map.Entry<Object, EstimatedVehicleJourney> it : journeys.entrySet()) {
+                queue.put(it.getKey(), it.getValue());
+            }
+        }
+    }
+
+    /**
+     * A newer update of the same vehicle journey replaces a pending update. Journeys without a
+     * reference are never replaced.
+     */
+    private static Object journeyKey(EstimatedVehicleJourney journey) {
+        if (journey.getFramedVehicleJourneyRef() != null) {
+            FramedVehicleJourneyRefStructure ref = journey.getFramedVehicleJourneyRef();
+            String dataFrame = ref.getDataFrameRef() == null ? "" : ref.getDataFrameRef().getValue();
+            return dataFrame + "/" + ref.getDatedVehicleJourneyRef();
+        }
+        if (journey.getDatedVehicleJourneyRef() != null) {
+            return journey.getDatedVehicleJourneyRef().getValue();
+        }
+        if (journey.getEstimatedVehicleJourneyCode() != null) {
+            return journey.getEstimatedVehicleJourneyCode();
+        }
+        return journey;
+    }
+
+    /** Wrap the journeys of a batch in a single delivery. */
+    private static List<EstimatedTimetableDeliveryStructure> toDeliveries(List<EstimatedVehicleJourney> journeys) {
+        EstimatedVersionFrameStructure frame = new EstimatedVersionFrameStructure();
+        frame.getEstimatedVehicleJourneies().addAll(journeys);
+        EstimatedTimetableDeliveryStructure delivery = new EstimatedTimetableDeliveryStructure();
+        delivery.getEstimatedJourneyVersionFrames().add(frame);
+        return Collections.singletonList(delivery);
+    }
+
+    /**
+     * Primed when the journeys of the first complete poll are applied to the graph, not when they
+     * are queued.
+     */
+    @Override
+    public boolean isPrimed() {
+        return firstPollApplied;
+    }
+
     @Override
     public void teardown() {
     }
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.lang3.BooleanUtils;
 import org.opentripplanner.ext.siri.SiriFuzzyTripMatcher;
 import org.opentripplanner.ext.siri.SiriTimetableSnapshotSource;
-import org.opentripplanner.routing.RoutingService;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.updater.GraphUpdaterManager;
 import org.opentripplanner.updater.GraphWriterRunnable;
@@ -108,7 +107,7 @@ public class SiriVMUpdater extends PollingGraphUpdater {
         }
         this.purgeExpiredData = config.path("purgeExpiredData").asBoolean(true);
         if (config.path("fuzzyTripMatching").asBoolean(true)) {
-            this.siriFuzzyTripMatcher = new SiriFuzzyTripMatcher(new RoutingService(graph));
+            this.siriFuzzyTripMatcher = SiriFuzzyTripMatcher.of(graph);
         }
 
         blockReadinessUntilInitialized = config.path("blockReadinessUntilInitialized").asBoolean(false);
@@ -135,9 +134,6 @@ public class SiriVMUpdater extends PollingGraphUpdater {
         if (purgeExpiredData != null) {
             snapshotSource.purgeExpiredData = purgeExpiredData;
         }
-        if (siriFuzzyTripMatcher != null) {
-            siriFuzzyTripMatcher = new SiriFuzzyTripMatcher(new RoutingService(graph));
-        }
     }
 
     /**
@@ -2,6 +2,7 @@ package org.opentripplanner.ext.transmodelapi;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.opentripplanner.standalone.server.OTPServer;
+import org.opentripplanner.standalone.server.AdmissionControlled;
 import org.opentripplanner.standalone.server.Router;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +57,7 @@ public class TransmodelIndexAPI {
     @POST
     @Path("/graphql")
     @Consumes(MediaType.APPLICATION_JSON)
+    @AdmissionControlled
     public Response getGraphQL(HashMap<String, Object> queryParameters, @HeaderParam("OTPTimeout") @DefaultValue("10000") int timeout, @HeaderParam("OTPMaxResolves") @DefaultValue("1000000") int maxResolves) {
         int finalTimeout = checkTimeout(timeout);
         if (queryParameters==null || !queryParameters.containsKey("query")) {
@@ -84,6 +86,7 @@ public class TransmodelIndexAPI {
     @POST
     @Path("/graphql")
     @Consumes("application/graphql")
+    @AdmissionControlled
     public Response getGraphQL(String query, @HeaderParam("OTPTimeout") @DefaultValue("10000") int timeout, @HeaderParam("OTPMaxResolves") @DefaultValue("1000000") int maxResolves) {
         int finalTimeout = checkTimeout(timeout);
         return index.getGraphQLResponse(query, router, null, null, finalTimeout, maxResolves);
@@ -92,6 +95,7 @@ public class TransmodelIndexAPI {
     @POST
     @Path("/graphql/batch")
     @Consumes(MediaType.APPLICATION_JSON)
+    @AdmissionControlled
     public Response getGraphQLBatch(List<HashMap<String, Object>> queries, @HeaderParam("OTPTimeout") @DefaultValue("10000") int timeout, @HeaderParam("OTPMaxResolves") @DefaultValue("1000000") int maxResolves) {
         int finalTimeout = checkTimeout(timeout);
         List<Map<String, Object>> responses = new ArrayList<>();
@@ -1,11 +1,14 @@
 package org.opentripplanner.api.configuration;
 
 import org.opentripplanner.api.resource.AlertPatcher;
+import org.opentripplanner.api.resource.BatchPlannerResource;
 import org.opentripplanner.api.resource.BikeRental;
 import org.opentripplanner.api.resource.ExternalGeocoderResource;
 import org.opentripplanner.api.resource.GraphInspectorTileResource;
+import org.opentripplanner.api.resource.IsochroneResource;
 import org.opentripplanner.api.resource.PlannerResource;
 import org.opentripplanner.api.resource.ServerInfo;
+import org.opentripplanner.api.resource.TravelTimesResource;
 import org.opentripplanner.api.resource.UpdaterStatusResource;
 import org.opentripplanner.ext.examples.statistics.api.resource.GraphStatisticsResource;
 import org.opentripplanner.ext.readiness_endpoint.ActuatorAPI;
@@ -38,6 +41,9 @@ public class APIEndpoints {
     private APIEndpoints() {
         // Add mandatory APIs
         add(PlannerResource.class);
+        add(BatchPlannerResource.class);
+        add(TravelTimesResource.class);
+        add(IsochroneResource.class);
         add(IndexAPI.class);
 
         // Add feature enabled APIs, these can be enabled by default, some is not.
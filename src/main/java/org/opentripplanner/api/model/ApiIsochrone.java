@@ -0,0 +1,26 @@
+package org.opentripplanner.api.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.geometry.GeometrySerializer;
+
+import java.util.Map;
+
+/**
+ * An isochrone as a GeoJSON feature, the area reachable within the cutoff travel time. The cutoff
+ * is in the {@code cutoffSec} property.
+ */
+public class ApiIsochrone {
+
+    public final String type = "Feature";
+
+    public Map<String, Object> properties;
+
+    @JsonSerialize(using = GeometrySerializer.class)
+    public Geometry geometry;
+
+    public ApiIsochrone(int cutoffSec, Geometry geometry) {
+        this.properties = Map.of("cutoffSec", cutoffSec);
+        this.geometry = geometry;
+    }
+}
@@ -0,0 +1,18 @@
+package org.opentripplanner.api.model;
+
+import java.util.List;
+
+/**
+ * The isochrones of one request as a GeoJSON feature collection, one {@link ApiIsochrone} per
+ * cutoff in the order of the request.
+ */
+public class ApiIsochrones {
+
+    public final String type = "FeatureCollection";
+
+    public List<ApiIsochrone> features;
+
+    public ApiIsochrones(List<ApiIsochrone> features) {
+        this.features = features;
+    }
+}
@@ -0,0 +1,177 @@
+package org.opentripplanner.api.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opentripplanner.api.common.LocationStringParser;
+import org.opentripplanner.api.common.ParameterException;
+import org.opentripplanner.api.common.RoutingResource;
+import org.opentripplanner.api.mapping.TripPlanMapper;
+import org.opentripplanner.api.mapping.TripSearchMetadataMapper;
+import org.opentripplanner.api.model.error.PlannerError;
+import org.opentripplanner.model.routing.RoutingResponse;
+import org.opentripplanner.routing.algorithm.BatchRoutingContext;
+import org.opentripplanner.routing.algorithm.RoutingWorker;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.standalone.server.AdmissionControlled;
+import org.opentripplanner.standalone.server.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Plan trips for many origin-destination pairs in one call, for analytics and precomputation jobs.
+ * The shared parameters, including the departure time, are passed in the query string like for the
+ * {@link PlannerResource}, and the origin-destination pairs are posted as a JSON array:
+ * <pre>
+ * [ { "id": "1", "fromPlace": "59.91,10.75", "toPlace": "59.95,10.76" }, ... ]
+ * </pre>
+ * The Raptor transit data is created once for the batch, and the access and egress searches are
+ * done once for each place, see {@link BatchRoutingContext}. The searches run on the batch routing
+ * threads, with a bounded number of searches in progress, and each result is written as soon as it
+ * is ready as one line of newline delimited JSON (NDJSON), in the order the searches complete.
+ * Each line is a plan response, with the id and places of the pair in the request parameters.
+ * A request without origin-destination pairs is rejected with 400 Bad Request.
+ */
+@Path("routers/{routerId}/plan/batch")
+public class BatchPlannerResource extends RoutingResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchPlannerResource.class);
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    /** The number of searches in progress for each routing thread. */
+    private static final int SEARCHES_IN_PROGRESS_PER_THREAD = 2;
+
+    /** An origin-destination pair, the places override the fromPlace and toPlace parameters. */
+    public static class ODPair {
+        public String id;
+        public String fromPlace;
+        public String toPlace;
+    }
+
+    @POST
+    @AdmissionControlled
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(APPLICATION_NDJSON)
+    public javax.ws.rs.core.Response plan(
+            @Context UriInfo uriInfo,
+            @Context Providers providers,
+            List<ODPair> pairs
+    ) throws ParameterException {
+        if (pairs == null) {
+            return javax.ws.rs.core.Response.status(javax.ws.rs.core.Response.Status.BAD_REQUEST)
+                    .entity("The body must be a JSON array of origin-destination pairs.")
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+        RoutingRequest template = super.buildRequest();
+        Router router = otpServer.getRouter(null);
+        BatchRoutingContext batchContext = new BatchRoutingContext(router, template);
+        Map<String, String> requestParameters = new Response(uriInfo).requestParameters;
+
+        ObjectMapper mapper = providers
+                .getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE)
+                .getContext(Response.class);
+        PlanResponseJsonWriter writer = new PlanResponseJsonWriter(mapper);
+
+        int maxSearchesInProgress =
+                SEARCHES_IN_PROGRESS_PER_THREAD * otpServer.routingExecutor.getNumberOfBatchThreads();
+
+        StreamingOutput output = out -> {
+            CompletionService<Response> results =
+                    otpServer.routingExecutor.newBatchCompletionService();
+            Iterator<ODPair> it = pairs.iterator();
+            int searchesInProgress = 0;
+
+            while (it.hasNext() || searchesInProgress > 0) {
+                while (it.hasNext() && searchesInProgress < maxSearchesInProgress) {
+                    ODPair pair = it.next();
+                    results.submit(
+                            () -> plan(router, template, batchContext, requestParameters, pair)
+                    );
+                    ++searchesInProgress;
+                }
+                writeLine(writer, take(results), out);
+                --searchesInProgress;
+            }
+        };
+        return javax.ws.rs.core.Response.ok(output).build();
+    }
+
+    /* private methods */
+
+    private static Response plan(
+            Router router,
+            RoutingRequest template,
+            BatchRoutingContext batchContext,
+            Map<String, String> requestParameters,
+            ODPair pair
+    ) {
+        Response response = new Response(null);
+        response.requestParameters.putAll(requestParameters);
+        if (pair.id != null) { response.requestParameters.put("id", pair.id); }
+        if (pair.fromPlace != null) { response.requestParameters.put("fromPlace", pair.fromPlace); }
+        if (pair.toPlace != null) { response.requestParameters.put("toPlace", pair.toPlace); }
+
+        RoutingRequest request = template.clone();
+        try {
+            if (pair.fromPlace != null) {
+                request.from = LocationStringParser.fromOldStyleString(pair.fromPlace);
+            }
+            if (pair.toPlace != null) {
+                request.to = LocationStringParser.fromOldStyleString(pair.toPlace);
+            }
+            request.setRoutingContext(router.graph);
+
+            RoutingResponse res = new RoutingWorker(request, batchContext).route(router);
+
+            // Map to API
+            TripPlanMapper tripPlanMapper = new TripPlanMapper(request.locale);
+            response.setPlan(tripPlanMapper.mapTripPlan(res.getTripPlan()));
+            response.setMetadata(TripSearchMetadataMapper.mapTripSearchMetadata(res.getMetadata()));
+        }
+        catch (Exception e) {
+            PlannerError error = new PlannerError(e);
+            if(!PlannerError.isPlanningError(e.getClass())) {
+                LOG.warn("Error while planning path: ", e);
+            }
+            response.setError(error);
+        }
+        return response;
+    }
+
+    private static Response take(CompletionService<Response> results) throws IOException {
+        try {
+            return results.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch planning interrupted.");
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void writeLine(PlanResponseJsonWriter writer, Response response, OutputStream out)
+            throws IOException {
+        writer.write(response, out);
+        out.write('\n');
+    }
+}
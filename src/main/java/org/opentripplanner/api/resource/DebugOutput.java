@@ -37,6 +37,12 @@ public class DebugOutput {
     public long totalTime;
     public boolean timedOut;
 
+    /** Time spent creating the transit itinerary summaries passed to the itinerary filters. */
+    public long transitItinerarySummaryTime;
+
+    /** Time spent mapping the transit itineraries kept by the itinerary filters. */
+    public long transitItineraryMappingTime;
+
     /**
      * Record the time when we first began calculating a path for this request
      * (before any heuristic pre-calculation). Note that timings will not
@@ -0,0 +1,157 @@
+package org.opentripplanner.api.resource;
+
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.api.common.ParameterException;
+import org.opentripplanner.api.common.RoutingResource;
+import org.opentripplanner.api.model.ApiIsochrone;
+import org.opentripplanner.api.model.ApiIsochrones;
+import org.opentripplanner.routing.algorithm.IsochroneWorker;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.error.VertexNotFoundException;
+import org.opentripplanner.standalone.server.AdmissionControlled;
+import org.opentripplanner.standalone.server.Router;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Isochrones from one origin, the areas reachable within each of the given cutoff travel times.
+ * The parameters are the same as for the {@link PlannerResource}, except that there is no
+ * destination and arrive-by searches are not supported. If transit is used, the travel times are
+ * the given percentile of the travel times over the departures in the search window.
+ * <p>
+ * The response is a GeoJSON feature collection with one (multi)polygon feature per cutoff. See
+ * {@link IsochroneWorker} for how the isochrones are computed.
+ */
+@Path("routers/{routerId}/isochrone")
+public class IsochroneResource extends RoutingResource {
+
+    private static final double MIN_RESOLUTION_METERS = 20;
+
+    private static final int MAX_CUTOFF_SECONDS = 4 * 3600;
+
+    /** The cutoff travel times in seconds. The parameter can be given multiple times. */
+    @QueryParam("cutoffSec")
+    private List<Integer> cutoffSec;
+
+    /** The distance in meters between the grid points the travel times are sampled at. */
+    @QueryParam("resolution")
+    private Double resolution;
+
+    /** The maximum distance in meters walked from a street to a grid point. */
+    @QueryParam("offRoadDistance")
+    private Double offRoadDistance;
+
+    /** The percentile of the transit travel times over the search window, in the range [1, 100]. */
+    @QueryParam("percentile")
+    private Integer percentile;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @AdmissionControlled
+    public void isochrone(
+            @HeaderParam("OTPTimeout") Long timeoutMillis,
+            @Suspended AsyncResponse asyncResponse
+    ) {
+        long deadline = timeoutMillis == null
+                ? Long.MAX_VALUE
+                : System.currentTimeMillis() + timeoutMillis;
+
+        otpServer.routingExecutor.execute(asyncResponse, deadline, this::computeIsochrones);
+    }
+
+    /** Return the {@link ApiIsochrones}, or a bad request response. */
+    private Object computeIsochrones() {
+        double resolutionMeters = resolution == null ? 200 : resolution;
+        double offRoadDistanceMeters = offRoadDistance == null ? 150 : offRoadDistance;
+        int percentileValue = percentile == null ? 50 : percentile;
+        RoutingRequest request;
+        try {
+            validate(resolutionMeters, offRoadDistanceMeters, percentileValue);
+            request = super.buildRequest();
+            if (request.arriveBy) {
+                throw new IllegalArgumentException("Arrive-by isochrones are not supported.");
+            }
+        }
+        catch (ParameterException | IllegalArgumentException e) {
+            return badRequest(e);
+        }
+        Router router = otpServer.getRouter(null);
+
+        List<Geometry> isochrones;
+        try {
+            // The cache creates the routing context if the isochrones are not cached
+            if (router.isochroneCache == null) {
+                request.setOriginRoutingContext(router.graph);
+                isochrones = new IsochroneWorker(
+                        request,
+                        cutoffSec,
+                        resolutionMeters,
+                        offRoadDistanceMeters,
+                        percentileValue
+                ).route(router);
+            }
+            else {
+                isochrones = router.isochroneCache.route(
+                        request,
+                        router,
+                        cutoffSec,
+                        resolutionMeters,
+                        offRoadDistanceMeters,
+                        percentileValue
+                );
+            }
+        }
+        catch (VertexNotFoundException e) {
+            return badRequest(e);
+        }
+
+        List<ApiIsochrone> features = new ArrayList<>(isochrones.size());
+        for (int i = 0; i < isochrones.size(); ++i) {
+            features.add(new ApiIsochrone(cutoffSec.get(i), isochrones.get(i)));
+        }
+        return new ApiIsochrones(features);
+    }
+
+    /* private methods */
+
+    private static Response badRequest(Exception e) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity(e.getMessage())
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+
+    private void validate(double resolutionMeters, double offRoadDistanceMeters, int percentile) {
+        if (cutoffSec == null || cutoffSec.isEmpty()) {
+            throw new IllegalArgumentException("At least one cutoffSec is required.");
+        }
+        for (Integer cutoff : cutoffSec) {
+            if (cutoff == null || cutoff <= 0 || cutoff > MAX_CUTOFF_SECONDS) {
+                throw new IllegalArgumentException(
+                        "cutoffSec out of range [1, " + MAX_CUTOFF_SECONDS + "]: " + cutoff
+                );
+            }
+        }
+        if (resolutionMeters < MIN_RESOLUTION_METERS) {
+            throw new IllegalArgumentException(
+                    "resolution must be at least " + MIN_RESOLUTION_METERS + " meters."
+            );
+        }
+        if (offRoadDistanceMeters < 0) {
+            throw new IllegalArgumentException("offRoadDistance must not be negative.");
+        }
+        if (percentile < 1 || percentile > 100) {
+            throw new IllegalArgumentException("percentile out of range [1, 100]: " + percentile);
+        }
+    }
+}
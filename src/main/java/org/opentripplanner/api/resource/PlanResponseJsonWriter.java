@@ -0,0 +1,490 @@
+package org.opentripplanner.api.resource;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.opentripplanner.api.model.ApiItinerary;
+import org.opentripplanner.api.model.ApiLeg;
+import org.opentripplanner.api.model.ApiPlace;
+import org.opentripplanner.api.model.ApiTripPlan;
+import org.opentripplanner.api.model.ApiWalkStep;
+import org.opentripplanner.api.model.FeedScopedIdSerializer;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.util.model.EncodedPolylineBean;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes the JSON plan response directly to the response stream, instead of the reflection based
+ * serialization of the JAX-RS Jackson provider. The output is the same as serializing the
+ * {@link Response} with the {@link org.opentripplanner.api.model.JSONObjectMapperProvider} object
+ * mapper, byte for byte.
+ * <p>
+ * The trip plan, itineraries, legs, places, walk steps and leg geometries are written field by
+ * field, with the field names encoded once. Everything else, like fares, alerts and the debug
+ * output, is written by the object mapper. The generator buffers are recycled by the Jackson
+ * {@link JsonFactory} between responses.
+ * <p>
+ * When a field is added to one of the API model classes written here, it must be added here too,
+ * in the same position. {@code PlanResponseJsonWriterTest} checks this.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class PlanResponseJsonWriter implements MessageBodyWriter<Response> {
+
+    /* Response */
+    private static final SerializableString REQUEST_PARAMETERS = name("requestParameters");
+    private static final SerializableString PLAN = name("plan");
+    private static final SerializableString METADATA = name("metadata");
+    private static final SerializableString ERROR = name("error");
+    private static final SerializableString DEBUG_OUTPUT = name("debugOutput");
+    private static final SerializableString ELEVATION_METADATA = name("elevationMetadata");
+
+    /* ApiTripPlan */
+    private static final SerializableString DATE = name("date");
+    private static final SerializableString FROM = name("from");
+    private static final SerializableString TO = name("to");
+    private static final SerializableString ITINERARIES = name("itineraries");
+
+    /* ApiItinerary */
+    private static final SerializableString DEBUG_MARKED_AS_DELETED = name("debugMarkedAsDeleted");
+    private static final SerializableString DURATION = name("duration");
+    private static final SerializableString START_TIME = name("startTime");
+    private static final SerializableString END_TIME = name("endTime");
+    private static final SerializableString WALK_TIME = name("walkTime");
+    private static final SerializableString TRANSIT_TIME = name("transitTime");
+    private static final SerializableString WAITING_TIME = name("waitingTime");
+    private static final SerializableString WALK_DISTANCE = name("walkDistance");
+    private static final SerializableString WALK_LIMIT_EXCEEDED = name("walkLimitExceeded");
+    private static final SerializableString ELEVATION_LOST = name("elevationLost");
+    private static final SerializableString ELEVATION_GAINED = name("elevationGained");
+    private static final SerializableString TRANSFERS = name("transfers");
+    private static final SerializableString FARE = name("fare");
+    private static final SerializableString LEGS = name("legs");
+    private static final SerializableString TOO_SLOPED = name("tooSloped");
+
+    /* ApiLeg */
+    private static final SerializableString DEPARTURE_DELAY = name("departureDelay");
+    private static final SerializableString ARRIVAL_DELAY = name("arrivalDelay");
+    private static final SerializableString REAL_TIME = name("realTime");
+    private static final SerializableString IS_NON_EXACT_FREQUENCY = name("isNonExactFrequency");
+    private static final SerializableString HEADWAY = name("headway");
+    private static final SerializableString DISTANCE = name("distance");
+    private static final SerializableString PATHWAY = name("pathway");
+    private static final SerializableString MODE = name("mode");
+    private static final SerializableString ROUTE = name("route");
+    private static final SerializableString AGENCY_NAME = name("agencyName");
+    private static final SerializableString AGENCY_URL = name("agencyUrl");
+    private static final SerializableString AGENCY_BRANDING_URL = name("agencyBrandingUrl");
+    private static final SerializableString AGENCY_TIME_ZONE_OFFSET = name("agencyTimeZoneOffset");
+    private static final SerializableString ROUTE_COLOR = name("routeColor");
+    private static final SerializableString ROUTE_TYPE = name("routeType");
+    private static final SerializableString ROUTE_ID = name("routeId");
+    private static final SerializableString ROUTE_TEXT_COLOR = name("routeTextColor");
+    private static final SerializableString INTERLINE_WITH_PREVIOUS_LEG = name("interlineWithPreviousLeg");
+    private static final SerializableString TRIP_SHORT_NAME = name("tripShortName");
+    private static final SerializableString TRIP_BLOCK_ID = name("tripBlockId");
+    private static final SerializableString HEADSIGN = name("headsign");
+    private static final SerializableString AGENCY_ID = name("agencyId");
+    private static final SerializableString TRIP_ID = name("tripId");
+    private static final SerializableString SERVICE_DATE = name("serviceDate");
+    private static final SerializableString ROUTE_BRANDING_URL = name("routeBrandingUrl");
+    private static final SerializableString INTERMEDIATE_STOPS = name("intermediateStops");
+    private static final SerializableString LEG_GEOMETRY = name("legGeometry");
+    private static final SerializableString ALERTS = name("alerts");
+    private static final SerializableString ROUTE_SHORT_NAME = name("routeShortName");
+    private static final SerializableString ROUTE_LONG_NAME = name("routeLongName");
+    private static final SerializableString BOARD_RULE = name("boardRule");
+    private static final SerializableString ALIGHT_RULE = name("alightRule");
+    private static final SerializableString RENTED_BIKE = name("rentedBike");
+    private static final SerializableString TRANSIT_LEG = name("transitLeg");
+    private static final SerializableString STEPS = name("steps");
+
+    /* ApiPlace */
+    private static final SerializableString NAME = name("name");
+    private static final SerializableString STOP_ID = name("stopId");
+    private static final SerializableString STOP_CODE = name("stopCode");
+    private static final SerializableString PLATFORM_CODE = name("platformCode");
+    private static final SerializableString LON = name("lon");
+    private static final SerializableString LAT = name("lat");
+    private static final SerializableString ARRIVAL = name("arrival");
+    private static final SerializableString DEPARTURE = name("departure");
+    private static final SerializableString ORIG = name("orig");
+    private static final SerializableString ZONE_ID = name("zoneId");
+    private static final SerializableString STOP_INDEX = name("stopIndex");
+    private static final SerializableString STOP_SEQUENCE = name("stopSequence");
+    private static final SerializableString VERTEX_TYPE = name("vertexType");
+    private static final SerializableString BIKE_SHARE_ID = name("bikeShareId");
+
+    /* ApiWalkStep */
+    private static final SerializableString RELATIVE_DIRECTION = name("relativeDirection");
+    private static final SerializableString STREET_NAME = name("streetName");
+    private static final SerializableString ABSOLUTE_DIRECTION = name("absoluteDirection");
+    private static final SerializableString EXIT = name("exit");
+    private static final SerializableString STAY_ON = name("stayOn");
+    private static final SerializableString AREA = name("area");
+    private static final SerializableString BOGUS_NAME = name("bogusName");
+    private static final SerializableString ELEVATION = name("elevation");
+
+    /* EncodedPolylineBean */
+    private static final SerializableString POINTS = name("points");
+    private static final SerializableString LEVELS = name("levels");
+    private static final SerializableString LENGTH = name("length");
+
+    private final JsonFactory jsonFactory;
+
+    /** Writes the rest of the response, never flushing the generator. */
+    private final ObjectWriter objectWriter;
+
+    /**
+     * @param mapper the object mapper used by the JAX-RS Jackson provider, see
+     * {@link org.opentripplanner.api.model.JSONObjectMapperProvider}.
+     */
+    public PlanResponseJsonWriter(ObjectMapper mapper) {
+        this.jsonFactory = mapper.getFactory();
+        this.objectWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public boolean isWriteable(
+            Class<?> type,
+            Type genericType,
+            Annotation[] annotations,
+            MediaType mediaType
+    ) {
+        return type == Response.class && MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(
+            Response response,
+            Class<?> type,
+            Type genericType,
+            Annotation[] annotations,
+            MediaType mediaType
+    ) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(
+            Response response,
+            Class<?> type,
+            Type genericType,
+            Annotation[] annotations,
+            MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders,
+            OutputStream entityStream
+    ) throws IOException, WebApplicationException {
+        write(response, entityStream);
+    }
+
+    /** Write the response as UTF-8 JSON. The stream is flushed, but not closed. */
+    public void write(Response response, OutputStream out) throws IOException {
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeResponse(gen, response);
+        }
+    }
+
+    /* private methods */
+
+    private void writeResponse(JsonGenerator gen, Response response) throws IOException {
+        gen.writeStartObject();
+        writeObject(gen, REQUEST_PARAMETERS, response.requestParameters);
+        if (response.getPlan() != null) {
+            gen.writeFieldName(PLAN);
+            writeTripPlan(gen, response.getPlan());
+        }
+        writeObject(gen, METADATA, response.getMetadata());
+        writeObject(gen, ERROR, response.getError());
+        writeObject(gen, DEBUG_OUTPUT, response.debugOutput);
+        writeObject(gen, ELEVATION_METADATA, response.elevationMetadata);
+        gen.writeEndObject();
+    }
+
+    private void writeTripPlan(JsonGenerator gen, ApiTripPlan plan) throws IOException {
+        gen.writeStartObject();
+        if (plan.date != null) {
+            gen.writeFieldName(DATE);
+            gen.writeNumber(plan.date.getTime());
+        }
+        writePlace(gen, FROM, plan.from);
+        writePlace(gen, TO, plan.to);
+        if (plan.itinerary != null) {
+            gen.writeFieldName(ITINERARIES);
+            gen.writeStartArray();
+            for (ApiItinerary it : plan.itinerary) {
+                writeItinerary(gen, it);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeItinerary(JsonGenerator gen, ApiItinerary it) throws IOException {
+        if (it == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        write(gen, DEBUG_MARKED_AS_DELETED, it.debugMarkedAsDeleted);
+        write(gen, DURATION, it.duration);
+        write(gen, START_TIME, it.startTime);
+        write(gen, END_TIME, it.endTime);
+        write(gen, WALK_TIME, it.walkTime);
+        write(gen, TRANSIT_TIME, it.transitTime);
+        write(gen, WAITING_TIME, it.waitingTime);
+        write(gen, WALK_DISTANCE, it.walkDistance);
+        write(gen, WALK_LIMIT_EXCEEDED, it.walkLimitExceeded);
+        write(gen, ELEVATION_LOST, it.elevationLost);
+        write(gen, ELEVATION_GAINED, it.elevationGained);
+        write(gen, TRANSFERS, it.transfers);
+        writeObject(gen, FARE, it.fare);
+        if (it.legs != null) {
+            gen.writeFieldName(LEGS);
+            gen.writeStartArray();
+            for (ApiLeg leg : it.legs) {
+                writeLeg(gen, leg);
+            }
+            gen.writeEndArray();
+        }
+        write(gen, TOO_SLOPED, it.tooSloped);
+        gen.writeEndObject();
+    }
+
+    private void writeLeg(JsonGenerator gen, ApiLeg leg) throws IOException {
+        if (leg == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        write(gen, START_TIME, leg.startTime);
+        write(gen, END_TIME, leg.endTime);
+        write(gen, DEPARTURE_DELAY, leg.departureDelay);
+        write(gen, ARRIVAL_DELAY, leg.arrivalDelay);
+        write(gen, REAL_TIME, leg.realTime);
+        write(gen, IS_NON_EXACT_FREQUENCY, leg.isNonExactFrequency);
+        write(gen, HEADWAY, leg.headway);
+        write(gen, DISTANCE, leg.distance);
+        write(gen, PATHWAY, leg.pathway);
+        write(gen, MODE, leg.mode);
+        write(gen, ROUTE, leg.route);
+        write(gen, AGENCY_NAME, leg.agencyName);
+        write(gen, AGENCY_URL, leg.agencyUrl);
+        write(gen, AGENCY_BRANDING_URL, leg.agencyBrandingUrl);
+        write(gen, AGENCY_TIME_ZONE_OFFSET, leg.agencyTimeZoneOffset);
+        write(gen, ROUTE_COLOR, leg.routeColor);
+        write(gen, ROUTE_TYPE, leg.routeType);
+        write(gen, ROUTE_ID, leg.routeId);
+        write(gen, ROUTE_TEXT_COLOR, leg.routeTextColor);
+        write(gen, INTERLINE_WITH_PREVIOUS_LEG, leg.interlineWithPreviousLeg);
+        write(gen, TRIP_SHORT_NAME, leg.tripShortName);
+        write(gen, TRIP_BLOCK_ID, leg.tripBlockId);
+        write(gen, HEADSIGN, leg.headsign);
+        write(gen, AGENCY_ID, leg.agencyId);
+        write(gen, TRIP_ID, leg.tripId);
+        write(gen, SERVICE_DATE, leg.serviceDate);
+        write(gen, ROUTE_BRANDING_URL, leg.routeBrandingUrl);
+        writePlace(gen, FROM, leg.from);
+        writePlace(gen, TO, leg.to);
+        if (leg.intermediateStops != null) {
+            gen.writeFieldName(INTERMEDIATE_STOPS);
+            gen.writeStartArray();
+            for (ApiPlace place : leg.intermediateStops) {
+                writePlace(gen, place);
+            }
+            gen.writeEndArray();
+        }
+        writeLegGeometry(gen, leg.legGeometry);
+        writeObject(gen, ALERTS, leg.alerts);
+        write(gen, ROUTE_SHORT_NAME, leg.routeShortName);
+        write(gen, ROUTE_LONG_NAME, leg.routeLongName);
+        write(gen, BOARD_RULE, leg.boardRule);
+        write(gen, ALIGHT_RULE, leg.alightRule);
+        write(gen, RENTED_BIKE, leg.rentedBike);
+        write(gen, DURATION, leg.getDuration());
+        write(gen, TRANSIT_LEG, leg.isTransitLeg());
+        if (leg.walkSteps != null) {
+            gen.writeFieldName(STEPS);
+            gen.writeStartArray();
+            for (ApiWalkStep step : leg.walkSteps) {
+                writeWalkStep(gen, step);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+
+    private void writePlace(JsonGenerator gen, SerializableString name, ApiPlace place)
+            throws IOException {
+        if (place == null) { return; }
+        gen.writeFieldName(name);
+        writePlace(gen, place);
+    }
+
+    private void writePlace(JsonGenerator gen, ApiPlace place) throws IOException {
+        if (place == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        write(gen, NAME, place.name);
+        write(gen, STOP_ID, place.stopId);
+        write(gen, STOP_CODE, place.stopCode);
+        write(gen, PLATFORM_CODE, place.platformCode);
+        write(gen, LON, place.lon);
+        write(gen, LAT, place.lat);
+        write(gen, ARRIVAL, place.arrival);
+        write(gen, DEPARTURE, place.departure);
+        write(gen, ORIG, place.orig);
+        write(gen, ZONE_ID, place.zoneId);
+        write(gen, STOP_INDEX, place.stopIndex);
+        write(gen, STOP_SEQUENCE, place.stopSequence);
+        write(gen, VERTEX_TYPE, place.vertexType);
+        write(gen, BIKE_SHARE_ID, place.bikeShareId);
+        gen.writeEndObject();
+    }
+
+    private void writeWalkStep(JsonGenerator gen, ApiWalkStep step) throws IOException {
+        if (step == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        write(gen, DISTANCE, step.distance);
+        write(gen, RELATIVE_DIRECTION, step.relativeDirection);
+        write(gen, STREET_NAME, step.streetName);
+        write(gen, ABSOLUTE_DIRECTION, step.absoluteDirection);
+        write(gen, EXIT, step.exit);
+        write(gen, STAY_ON, step.stayOn);
+        write(gen, AREA, step.area);
+        write(gen, BOGUS_NAME, step.bogusName);
+        write(gen, LON, step.lon);
+        write(gen, LAT, step.lat);
+        write(gen, ELEVATION, step.elevation);
+        writeObject(gen, ALERTS, step.alerts);
+        gen.writeEndObject();
+    }
+
+    private void writeLegGeometry(JsonGenerator gen, EncodedPolylineBean geometry)
+            throws IOException {
+        if (geometry == null) { return; }
+        gen.writeFieldName(LEG_GEOMETRY);
+        gen.writeStartObject();
+        write(gen, POINTS, geometry.getPoints());
+        write(gen, LEVELS, geometry.getLevels());
+        write(gen, LENGTH, geometry.getLength());
+        gen.writeEndObject();
+    }
+
+    /** Write any value with the object mapper, null values are skipped. */
+    private void writeObject(JsonGenerator gen, SerializableString name, Object value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        objectWriter.writeValue(gen, value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, String value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeString(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, Boolean value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeBoolean(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, Integer value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeNumber(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, Long value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeNumber(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, Double value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeNumber(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, boolean value)
+            throws IOException {
+        gen.writeFieldName(name);
+        gen.writeBoolean(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, int value)
+            throws IOException {
+        gen.writeFieldName(name);
+        gen.writeNumber(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, long value)
+            throws IOException {
+        gen.writeFieldName(name);
+        gen.writeNumber(value);
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, double value)
+            throws IOException {
+        gen.writeFieldName(name);
+        gen.writeNumber(value);
+    }
+
+    /** Calendars and dates are written as milliseconds since the epoch, like the object mapper. */
+    private static void write(JsonGenerator gen, SerializableString name, Calendar value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeNumber(value.getTimeInMillis());
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, FeedScopedId value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeString(value.getFeedId() + FeedScopedIdSerializer.SEPARATOR + value.getId());
+    }
+
+    private static void write(JsonGenerator gen, SerializableString name, Enum<?> value)
+            throws IOException {
+        if (value == null) { return; }
+        gen.writeFieldName(name);
+        gen.writeString(value.name());
+    }
+
+    private static SerializableString name(String name) {
+        return new SerializedString(name);
+    }
+}
@@ -10,13 +10,17 @@ import org.opentripplanner.model.routing.RoutingResponse;
 import org.opentripplanner.routing.RoutingService;
 import org.opentripplanner.routing.algorithm.RoutingWorker;
 import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.standalone.server.AdmissionControlled;
 import org.opentripplanner.standalone.server.Router;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
@@ -42,9 +46,30 @@ public class PlannerResource extends RoutingResource {
     // We inject info about the incoming request so we can include the incoming query
     // parameters in the outgoing response. This is a TriMet requirement.
     // Jersey uses @Context to inject internal types and @InjectParam or @Resource for DI objects.
+    // The routing is done on the routing executor, not on the HTTP handler thread. The optional
+    // OTPTimeout header gives the time in milliseconds the client is willing to wait.
     @GET
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML + Q, MediaType.TEXT_XML + Q })
-    public Response plan(@Context UriInfo uriInfo, @Context Request grizzlyRequest) {
+    @AdmissionControlled
+    public void plan(
+            @Context UriInfo uriInfo,
+            @Context Request grizzlyRequest,
+            @HeaderParam("OTPTimeout") Long timeoutMillis,
+            @Suspended AsyncResponse asyncResponse
+    ) {
+        String clientIpAddress = grizzlyRequest.getRemoteAddr();
+        long deadline = timeoutMillis == null
+                ? Long.MAX_VALUE
+                : System.currentTimeMillis() + timeoutMillis;
+
+        otpServer.routingExecutor.execute(
+                asyncResponse,
+                deadline,
+                () -> plan(uriInfo, clientIpAddress, deadline)
+        );
+    }
+
+    private Response plan(UriInfo uriInfo, String clientIpAddress, long deadline) {
 
         /*
          * TODO: add Lang / Locale parameter, and thus get localized content (Messages & more...)
@@ -63,10 +88,10 @@ public class PlannerResource extends RoutingResource {
 
             /* Fill in request fields from query parameters via shared superclass method, catching any errors. */
             request = super.buildRequest();
+            request.setSearchDeadline(deadline);
             router = otpServer.getRouter(null);
-            request.setRoutingContext(router.graph);
 
-            // Route
+            // Route, the routing context is created unless the response is cached
             RoutingService routingService = new RoutingService(router.graph);
 
             res = routingService.route(request, router);
@@ -98,7 +123,6 @@ public class PlannerResource extends RoutingResource {
         /* Log this request if such logging is enabled. */
         if (request != null && router != null && router.requestLogger != null) {
             StringBuilder sb = new StringBuilder();
-            String clientIpAddress = grizzlyRequest.getRemoteAddr();
             //sb.append(LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
             sb.append(clientIpAddress);
             sb.append(' ');
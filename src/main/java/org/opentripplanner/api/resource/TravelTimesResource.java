@@ -0,0 +1,184 @@
+package org.opentripplanner.api.resource;
+
+import org.opentripplanner.api.common.ParameterException;
+import org.opentripplanner.api.common.RoutingResource;
+import org.opentripplanner.routing.algorithm.TravelTimeWorker;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.error.VertexNotFoundException;
+import org.opentripplanner.standalone.server.AdmissionControlled;
+import org.opentripplanner.standalone.server.Router;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+/**
+ * Travel times from one origin to all transit stops, for accessibility analysis. The parameters
+ * are the same as for the {@link PlannerResource}, except that there is no destination. The
+ * travel times are found for each departure minute in the search window, and returned as is or
+ * aggregated to the given percentiles. Travel durations longer than the {@code maxTravelTime}
+ * parameter are not reached.
+ * <p>
+ * The response is a compact binary format, all numbers are big-endian:
+ * <pre>
+ * int      format version, currently 1
+ * byte     row type, 0 for one row per departure time, 1 for one row per percentile
+ * long     start of time, in epoch seconds
+ * int      number of stops (N)
+ * N x UTF  the stop ids, in the modified UTF-8 format of {@link java.io.DataOutput#writeUTF}
+ * int      number of rows (R)
+ * R x int  the departure time in seconds since the start of time, or the percentile
+ * R x N x int   the travel duration in seconds to each stop, -1 if not reached
+ * R x N x byte  the number of transfers to each stop, -1 if not reached, row type 0 only
+ * </pre>
+ */
+@Path("routers/{routerId}/traveltimes")
+public class TravelTimesResource extends RoutingResource {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte ROW_TYPE_DEPARTURE_TIME = 0;
+    private static final byte ROW_TYPE_PERCENTILE = 1;
+
+    /** Comma separated percentiles in the range [1, 100], like {@code 10,50,90}. */
+    @QueryParam("percentiles")
+    protected String percentiles;
+
+    /**
+     * The maximum travel time in seconds, longer travel durations are not reached. This is also
+     * the time limit of the search.
+     */
+    @QueryParam("maxTravelTime")
+    protected Integer maxTravelTime;
+
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @AdmissionControlled
+    public void travelTimes(
+            @HeaderParam("OTPTimeout") Long timeoutMillis,
+            @Suspended AsyncResponse asyncResponse
+    ) {
+        long deadline = timeoutMillis == null
+                ? Long.MAX_VALUE
+                : System.currentTimeMillis() + timeoutMillis;
+
+        otpServer.routingExecutor.execute(asyncResponse, deadline, this::computeTravelTimes);
+    }
+
+    /** Return the travel times as a {@link StreamingOutput}, or a bad request response. */
+    Object computeTravelTimes() {
+        int[] percentileValues;
+        RoutingRequest request;
+        Router router;
+        try {
+            percentileValues = parsePercentiles(percentiles);
+            if (maxTravelTime != null && maxTravelTime <= 0) {
+                throw new IllegalArgumentException("The maxTravelTime must be positive.");
+            }
+            request = super.buildRequest();
+            router = otpServer.getRouter(null);
+            request.setOriginRoutingContext(router.graph);
+        }
+        catch (ParameterException | IllegalArgumentException | VertexNotFoundException e) {
+            return javax.ws.rs.core.Response.status(javax.ws.rs.core.Response.Status.BAD_REQUEST)
+                    .entity(e.getMessage())
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+
+        TravelTimeWorker worker = new TravelTimeWorker(
+                request,
+                maxTravelTime == null ? null : Duration.ofSeconds(maxTravelTime)
+        );
+        StopTravelTimes travelTimes = worker.route(router);
+
+        return (StreamingOutput) out -> write(
+                travelTimes,
+                percentileValues,
+                worker.getTransitLayer(),
+                worker.getStartOfTime(),
+                out
+        );
+    }
+
+    /** Write the travel times in the binary format described in the class documentation. */
+    static void write(
+            StopTravelTimes travelTimes,
+            int[] percentiles,
+            TransitLayer transitLayer,
+            ZonedDateTime startOfTime,
+            OutputStream output
+    ) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        int nStops = travelTimes.numberOfStops();
+
+        out.writeInt(FORMAT_VERSION);
+        out.writeByte(percentiles == null ? ROW_TYPE_DEPARTURE_TIME : ROW_TYPE_PERCENTILE);
+        out.writeLong(startOfTime.toEpochSecond());
+        out.writeInt(nStops);
+        for (int stop = 0; stop < nStops; ++stop) {
+            out.writeUTF(transitLayer.getStopByIndex(stop).getId().toString());
+        }
+
+        if (percentiles == null) {
+            int nRows = travelTimes.numberOfIterations();
+            out.writeInt(nRows);
+            for (int i = 0; i < nRows; ++i) {
+                out.writeInt(travelTimes.departureTime(i));
+            }
+            for (int i = 0; i < nRows; ++i) {
+                writeInts(out, travelTimes.travelDurations(i));
+            }
+            for (int i = 0; i < nRows; ++i) {
+                for (int nTransfers : travelTimes.numberOfTransfers(i)) {
+                    out.writeByte(nTransfers);
+                }
+            }
+        }
+        else {
+            out.writeInt(percentiles.length);
+            for (int p : percentiles) {
+                out.writeInt(p);
+            }
+            for (int[] durations : travelTimes.travelDurationPercentiles(percentiles)) {
+                writeInts(out, durations);
+            }
+        }
+        out.flush();
+    }
+
+    /* private methods */
+
+    private static int[] parsePercentiles(String percentiles) {
+        if (percentiles == null || percentiles.isBlank()) { return null; }
+        String[] values = percentiles.split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            result[i] = Integer.parseInt(values[i].trim());
+            if (result[i] < 1 || result[i] > 100) {
+                throw new IllegalArgumentException("Percentile out of range [1, 100]: " + result[i]);
+            }
+        }
+        return result;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import static org.opentripplanner.datastore.FileType.UNKNOWN;
  */
 public class OtpDataStore {
     public static final String BUILD_REPORT_DIR = "report";
+    public static final String BUILD_PROFILE_FILENAME = "build-profile.json";
     private static final String STREET_GRAPH_FILENAME = "streetGraph.obj";
     private static final String GRAPH_FILENAME = "graph.obj";
 
@@ -56,6 +57,7 @@ public class OtpDataStore {
     private DataSource streetGraph;
     private DataSource graph;
     private CompositeDataSource buildReportDir;
+    private DataSource buildProfile;
 
     /**
      * Use the {@link DataStoreFactory} to
@@ -86,8 +88,9 @@ public class OtpDataStore {
         streetGraph = findSingleSource(config.streetGraph(), STREET_GRAPH_FILENAME, GRAPH);
         graph = findSingleSource(config.graph(), GRAPH_FILENAME, GRAPH);
         buildReportDir = findCompositeSource(config.reportDirectory(), BUILD_REPORT_DIR, REPORT);
+        buildProfile = localRepository.findSource(BUILD_PROFILE_FILENAME, REPORT);
 
-        addAll(Arrays.asList(streetGraph, graph, buildReportDir));
+        addAll(Arrays.asList(streetGraph, graph, buildReportDir, buildProfile));
 
         // Also read in unknown sources in case the data input source is miss-spelled,
         // We look for files on the local-file-system, other repositories ignore this call.
@@ -146,6 +149,15 @@ public class OtpDataStore {
         return buildReportDir;
     }
 
+    /**
+     * The graph build profile report, a JSON file with time and memory used by each graph
+     * builder module. The file is written to the local base directory.
+     */
+    @NotNull
+    public DataSource getBuildProfile() {
+        return buildProfile;
+    }
+
 
     /* private methods */
 
@@ -23,6 +23,7 @@ import static org.opentripplanner.datastore.FileType.OSM;
 import static org.opentripplanner.datastore.FileType.OTP_STATUS;
 import static org.opentripplanner.datastore.FileType.REPORT;
 import static org.opentripplanner.datastore.FileType.UNKNOWN;
+import static org.opentripplanner.datastore.OtpDataStore.BUILD_PROFILE_FILENAME;
 import static org.opentripplanner.datastore.OtpDataStore.BUILD_REPORT_DIR;
 import static org.opentripplanner.datastore.base.LocalDataSourceRepository.isCurrentDir;
 import static org.opentripplanner.standalone.config.ConfigLoader.isConfigFile;
@@ -144,6 +145,7 @@ public class FileDataSourceRepository implements LocalDataSourceRepository {
         if (name.matches("(streetG|g)raph.obj")) { return GRAPH; }
         if (name.matches("otp-status.(inProgress|ok|failed)")) { return OTP_STATUS; }
         if (name.equals(BUILD_REPORT_DIR)) { return REPORT; }
+        if (name.equals(BUILD_PROFILE_FILENAME)) { return REPORT; }
         if (isConfigFile(name)) { return CONFIG;}
         return UNKNOWN;
     }
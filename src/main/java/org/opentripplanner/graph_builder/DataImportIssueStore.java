@@ -20,7 +20,8 @@ public class DataImportIssueStore {
     this.storeIssues = storeIssues;
   }
 
-  public void add(DataImportIssue issue) {
+  /** This method is thread-safe, issues may be added from parallel graph build tasks. */
+  public synchronized void add(DataImportIssue issue) {
     ISSUE_LOG.debug("{} - {}", issue.getClass().getSimpleName(), issue.getMessage());
     if (storeIssues) {
       this.issues.add(issue);
@@ -0,0 +1,315 @@
+package org.opentripplanner.graph_builder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.opentripplanner.datastore.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Record wall time, CPU time, allocated bytes, heap high-water mark and GC activity for each
+ * phase(graph builder module) of the graph build. A summary table is logged at the end of the
+ * build and the result can be written as a JSON document, so builds can be compared.
+ * <p>
+ * The CPU time is the process CPU time and the allocated bytes are summed over all live threads.
+ * This include work done by other threads, like the fork-join pool used by some modules.
+ * Allocations done by threads terminating during a phase are not counted. The metrics rely on the
+ * HotSpot {@code com.sun.management} extensions, if these are not available the metric is
+ * reported as {@code -1}.
+ * <p>
+ * This class is not thread-safe, phases are expected to run in sequence.
+ */
+class GraphBuildProfiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphBuildProfiler.class);
+
+    private static final long NOT_AVAILABLE = -1;
+
+    private final Instant buildStart = Instant.now();
+
+    private final List<PhaseProfile> phases = new ArrayList<>();
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final OperatingSystemMXBean osMXBean = ManagementFactory.getOperatingSystemMXBean();
+
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory
+            .getMemoryPoolMXBeans()
+            .stream()
+            .filter(it -> it.getType() == MemoryType.HEAP && it.isValid())
+            .collect(Collectors.toList());
+
+    /** Collect GC events for the phase currently running */
+    private final GcListener gcListener = new GcListener();
+
+    /**
+     * Run the given task and record the resources used. Exceptions thrown by the task are
+     * propagated to the caller, nothing is recorded for the failing phase.
+     */
+    void run(String phase, Runnable task) {
+        resetHeapPeakUsage();
+        gcListener.reset();
+        registerGcListener();
+        try {
+            long cpuStart = processCpuTime();
+            long allocatedStart = allocatedBytes();
+            long wallStart = System.nanoTime();
+
+            task.run();
+
+            long wallTime = System.nanoTime() - wallStart;
+
+            phases.add(gcListener.createProfile(
+                    phase,
+                    nanosToMillis(wallTime),
+                    nanosToMillis(diff(cpuStart, processCpuTime())),
+                    diff(allocatedStart, allocatedBytes()),
+                    heapPeakUsage()
+            ));
+        }
+        finally {
+            unregisterGcListener();
+        }
+    }
+
+    /** Log a table with one row for each phase. */
+    void logSummary() {
+        int maxLength = phases.stream().mapToInt(it -> it.phase.length()).max().orElse(10);
+        final String FMT = "  %-" + maxLength + "s  %10s  %10s  %12s  %10s  %10s  %6s  %9s";
+
+        LOG.info("Graph build profile:");
+        LOG.info(String.format(
+                FMT, "Phase", "Wall", "CPU", "Allocated", "Heap peak", "Heap live", "GCs", "GC time"
+        ));
+        for (PhaseProfile it : phases) {
+            LOG.info(String.format(
+                    FMT,
+                    it.phase,
+                    msToString(it.wallTimeMs),
+                    msToString(it.cpuTimeMs),
+                    bytesToString(it.allocatedBytes),
+                    bytesToString(it.heapPeakBytes),
+                    bytesToString(it.heapUsedAfterGcMaxBytes),
+                    it.gcCount,
+                    msToString(it.gcTimeMs)
+            ));
+        }
+    }
+
+    /**
+     * Write the profile as JSON to the given target. Failing to write the report is logged, but
+     * do not fail the build.
+     */
+    void writeJson(DataSource target) {
+        try (OutputStream out = target.asOutputStream()) {
+            writeJson(out);
+            LOG.info("Graph build profile written to {}", target.path());
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.error("Failed to write graph build profile to " + target.path(), e);
+        }
+    }
+
+    void writeJson(OutputStream out) throws IOException {
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(out, new BuildProfile(buildStart.toString(), phases));
+    }
+
+    List<PhaseProfile> phases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+
+    /* private methods */
+
+    private long processCpuTime() {
+        if (osMXBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osMXBean).getProcessCpuTime();
+        }
+        return NOT_AVAILABLE;
+    }
+
+    private long allocatedBytes() {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                long sum = 0;
+                for (long it : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+                    // Threads terminated after the ids are listed are reported as -1
+                    if (it > 0) { sum += it; }
+                }
+                return sum;
+            }
+        }
+        return NOT_AVAILABLE;
+    }
+
+    private void resetHeapPeakUsage() {
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /** The sum of peaks is an upper bound, the pools might not peak at the same time. */
+    private long heapPeakUsage() {
+        return heapPools.stream().mapToLong(it -> it.getPeakUsage().getUsed()).sum();
+    }
+
+    private void registerGcListener() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(gcListener, null, null);
+            }
+        }
+    }
+
+    private void unregisterGcListener() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) gc).removeNotificationListener(gcListener);
+                }
+                catch (Exception e) {
+                    LOG.debug("Failed to remove GC listener: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static long diff(long start, long end) {
+        return start == NOT_AVAILABLE || end == NOT_AVAILABLE ? NOT_AVAILABLE : end - start;
+    }
+
+    private static long nanosToMillis(long nanos) {
+        return nanos == NOT_AVAILABLE ? NOT_AVAILABLE : nanos / 1_000_000;
+    }
+
+    private static String msToString(long ms) {
+        if (ms == NOT_AVAILABLE) { return "-"; }
+        return ms < 10_000 ? ms + "ms" : String.format("%.1fs", ms / 1000.0);
+    }
+
+    private static String bytesToString(long bytes) {
+        if (bytes == NOT_AVAILABLE) { return "-"; }
+        return String.format("%,dM", bytes / (1024 * 1024));
+    }
+
+    /**
+     * Keep track of the GC events. The GC notifications are delivered on a JMX thread, so access
+     * is synchronized.
+     */
+    private static class GcListener implements NotificationListener {
+        private int count;
+        private long timeMs;
+        private long maxHeapUsedAfterGc;
+
+        synchronized void reset() {
+            count = 0;
+            timeMs = 0;
+            maxHeapUsedAfterGc = 0;
+        }
+
+        synchronized PhaseProfile createProfile(
+                String phase,
+                long wallTimeMs,
+                long cpuTimeMs,
+                long allocatedBytes,
+                long heapPeakBytes
+        ) {
+            return new PhaseProfile(
+                    phase,
+                    wallTimeMs,
+                    cpuTimeMs,
+                    allocatedBytes,
+                    heapPeakBytes,
+                    maxHeapUsedAfterGc,
+                    count,
+                    timeMs
+            );
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                    .equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                    (CompositeData) notification.getUserData()
+            );
+            long heapUsed = info
+                    .getGcInfo()
+                    .getMemoryUsageAfterGc()
+                    .values()
+                    .stream()
+                    .mapToLong(MemoryUsage::getUsed)
+                    .sum();
+
+            ++count;
+            timeMs += info.getGcInfo().getDuration();
+            maxHeapUsedAfterGc = Math.max(maxHeapUsedAfterGc, heapUsed);
+        }
+    }
+
+    /** The JSON report document. */
+    static class BuildProfile {
+        public final String buildStart;
+        public final List<PhaseProfile> phases;
+
+        BuildProfile(String buildStart, List<PhaseProfile> phases) {
+            this.buildStart = buildStart;
+            this.phases = phases;
+        }
+    }
+
+    /** The resources used by one phase, times are in milliseconds and memory in bytes. */
+    static class PhaseProfile {
+        public final String phase;
+        public final long wallTimeMs;
+        public final long cpuTimeMs;
+        public final long allocatedBytes;
+        public final long heapPeakBytes;
+        public final long heapUsedAfterGcMaxBytes;
+        public final int gcCount;
+        public final long gcTimeMs;
+
+        PhaseProfile(
+                String phase,
+                long wallTimeMs,
+                long cpuTimeMs,
+                long allocatedBytes,
+                long heapPeakBytes,
+                long heapUsedAfterGcMaxBytes,
+                int gcCount,
+                long gcTimeMs
+        ) {
+            this.phase = phase;
+            this.wallTimeMs = wallTimeMs;
+            this.cpuTimeMs = cpuTimeMs;
+            this.allocatedBytes = allocatedBytes;
+            this.heapPeakBytes = heapPeakBytes;
+            this.heapUsedAfterGcMaxBytes = heapUsedAfterGcMaxBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+        }
+    }
+}
@@ -51,10 +51,13 @@ public class GraphBuilder implements Runnable {
 
     private final DataSource graphOut;
 
+    private final DataSource buildProfileOut;
+
     private final Graph graph;
 
-    private GraphBuilder(Graph graph, DataSource graphOut) {
+    private GraphBuilder(Graph graph, DataSource graphOut, DataSource buildProfileOut) {
         this.graphOut = graphOut;
+        this.buildProfileOut = buildProfileOut;
         this.graph = graph == null ? new Graph() : graph;
     }
 
@@ -93,17 +96,26 @@ public class GraphBuilder implements Runnable {
 
         DataImportIssueStore issueStore = new DataImportIssueStore(true);
         HashMap<Class<?>, Object> extra = new HashMap<Class<?>, Object>();
+        GraphBuildProfiler profiler = new GraphBuildProfiler();
 
         for (GraphBuilderModule load : graphBuilderModules) {
-            load.buildGraph(graph, extra, issueStore);
+            profiler.run(
+                    load.getClass().getSimpleName(),
+                    () -> load.buildGraph(graph, extra, issueStore)
+            );
         }
         issueStore.summarize();
 
         if (graphOut != null) {
-            graph.save(graphOut);
+            profiler.run("SaveGraph", () -> graph.save(graphOut));
         } else {
             LOG.info("Not saving graph to disk, as requested.");
         }
+        profiler.logSummary();
+
+        if (graphOut != null && buildProfileOut != null) {
+            profiler.writeJson(buildProfileOut);
+        }
         long endTime = System.currentTimeMillis();
         LOG.info(String.format("Graph building took %.1f minutes.", (endTime - startTime) / 1000 / 60.0));
     }
@@ -128,7 +140,11 @@ public class GraphBuilder implements Runnable {
         boolean hasNetex = dataSources.has(NETEX);
         boolean hasTransitData = hasGtfs || hasNetex;
 
-        GraphBuilder graphBuilder = new GraphBuilder(baseGraph, dataSources.getOutputGraph());
+        GraphBuilder graphBuilder = new GraphBuilder(
+                baseGraph,
+                dataSources.getOutputGraph(),
+                dataSources.getBuildProfile()
+        );
 
 
         if ( hasOsm ) {
@@ -180,6 +196,7 @@ public class GraphBuilder implements Runnable {
             }
             GtfsModule gtfsModule = new GtfsModule(gtfsBundles, config.getTransitServicePeriod());
             gtfsModule.setFareServiceFactory(config.fareServiceFactory);
+            gtfsModule.setThreadPoolSize(config.gtfsImportThreads);
             graphBuilder.addModule(gtfsModule);
         }
 
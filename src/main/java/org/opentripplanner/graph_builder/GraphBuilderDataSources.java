@@ -108,6 +108,10 @@ public class GraphBuilderDataSources {
         return outputGraph;
     }
 
+    DataSource getBuildProfile() {
+        return store.getBuildProfile();
+    }
+
 
     /* private methods */
 
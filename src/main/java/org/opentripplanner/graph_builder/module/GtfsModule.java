@@ -1,6 +1,7 @@
 package org.opentripplanner.graph_builder.module;
 
 import com.google.common.collect.Sets;
+import org.onebusaway.csv_entities.CsvInputSource;
 import org.onebusaway.csv_entities.EntityHandler;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
 import org.onebusaway.gtfs.model.Agency;
@@ -12,6 +13,7 @@ import org.onebusaway.gtfs.model.ServiceCalendar;
 import org.onebusaway.gtfs.model.ServiceCalendarDate;
 import org.onebusaway.gtfs.model.ShapePoint;
 import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 import org.onebusaway.gtfs.services.GenericMutableDao;
@@ -22,6 +24,7 @@ import org.opentripplanner.graph_builder.module.geometry.GeometryAndBlockProcess
 import org.opentripplanner.graph_builder.services.GraphBuilderModule;
 import org.opentripplanner.gtfs.GenerateTripPatternsOperation;
 import org.opentripplanner.gtfs.RepairStopTimesForEachTripOperation;
+import org.opentripplanner.gtfs.StopTimeColumnsReader;
 import org.opentripplanner.model.BikeAccess;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.OtpTransitService;
@@ -37,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -45,6 +49,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.opentripplanner.gtfs.mapping.GTFSToOtpTransitServiceMapper.mapGtfsDaoToInternalTransitServiceBuilder;
 
@@ -54,8 +63,6 @@ public class GtfsModule implements GraphBuilderModule {
 
     private DataImportIssueStore issueStore;
 
-    private EntityHandler counter = new EntityCounter();
-
     private FareServiceFactory fareServiceFactory;
 
     /** will be applied to all bundles which do not have the cacheDirectory property set */
@@ -76,6 +83,12 @@ public class GtfsModule implements GraphBuilderModule {
 
     private List<GtfsBundle> gtfsBundles;
 
+    /**
+     * The maximum number of bundles read and mapped at the same time. Each bundle read holds the
+     * whole feed in memory, so this bounds the memory used as well as the threads.
+     */
+    private int threadPoolSize = 1;
+
     public GtfsModule(List<GtfsBundle> bundles, ServiceDateInterval transitPeriodLimit) {
         this.gtfsBundles = bundles;
         this.transitPeriodLimit = transitPeriodLimit;
@@ -95,6 +108,17 @@ public class GtfsModule implements GraphBuilderModule {
         fareServiceFactory = factory;
     }
 
+    /**
+     * Set the maximum number of bundles read and mapped in parallel, the default is 1 - the
+     * bundles are read one at the time.
+     */
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException("The thread pool size must be at least 1: " + threadPoolSize);
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
     @Override
     public void buildGraph(
             Graph graph,
@@ -113,6 +137,9 @@ public class GtfsModule implements GraphBuilderModule {
         CalendarServiceData calendarServiceData = new CalendarServiceData();
 
         try {
+            // Agency ids and feed ids are generated in the order the bundles are listed, so this
+            // part is done sequentially to make the result independent of the thread scheduling.
+            List<GtfsBundleReader> readers = new ArrayList<>();
             for (GtfsBundle gtfsBundle : gtfsBundles) {
                 // apply global defaults to individual GTFSBundles (if globals have been set)
                 if (cacheDirectory != null && gtfsBundle.cacheDirectory == null) {
@@ -122,20 +149,17 @@ public class GtfsModule implements GraphBuilderModule {
                 if (useCached != null && gtfsBundle.useCached == null) {
                     gtfsBundle.useCached = useCached;
                 }
+                readers.add(readAgencies(gtfsBundle));
+            }
 
-                OtpTransitServiceBuilder builder =  mapGtfsDaoToInternalTransitServiceBuilder(
-                        loadBundle(gtfsBundle),
-                        issueStore
-                );
+            List<OtpTransitServiceBuilder> builders = readAndMapBundles(readers);
 
-                builder.limitServiceDays(transitPeriodLimit);
+            for (int i = 0; i < gtfsBundles.size(); ++i) {
+                GtfsBundle gtfsBundle = gtfsBundles.get(i);
+                OtpTransitServiceBuilder builder = builders.get(i);
 
                 calendarServiceData.add(builder.buildCalendarServiceData());
 
-                // NB! The calls below have side effects - the builder state is updated!
-
-                repairStopTimesForEachTrip(builder.getStopTimesSortedByTrip());
-
                 // NB! The calls below have side effects - the builder state is updated!
                 createTripPatterns(graph, builder, calendarServiceData.getServiceIds());
 
@@ -169,6 +193,74 @@ public class GtfsModule implements GraphBuilderModule {
 
     /* Private Methods */
 
+    /**
+     * Read and map each feed, the bundles are independent of each other until they are added to
+     * the graph. At most {@link #threadPoolSize} bundles are read at the same time.
+     *
+     * @return the builders in the same order as the readers.
+     */
+    private List<OtpTransitServiceBuilder> readAndMapBundles(List<GtfsBundleReader> readers) {
+        int nThreads = Math.min(threadPoolSize, readers.size());
+        if (nThreads <= 1) {
+            return readers.stream().map(this::readAndMapBundle).collect(Collectors.toList());
+        }
+
+        LOG.info("Reading {} GTFS bundles using {} threads.", readers.size(), nThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            // THIS CODE RUNS IN PARALLEL
+            List<Future<OtpTransitServiceBuilder>> futures = new ArrayList<>();
+            for (GtfsBundleReader reader : readers) {
+                futures.add(executor.submit(() -> readAndMapBundle(reader)));
+            }
+            List<OtpTransitServiceBuilder> builders = new ArrayList<>();
+            for (Future<OtpTransitServiceBuilder> future : futures) {
+                builders.add(future.get());
+            }
+            // END PARALLEL CODE
+            return builders;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the remaining GTFS entities of the bundle and map the feed into a OTP transit model
+     * builder. This method is thread-safe, and may be called in parallel for several bundles.
+     * <p>
+     * The stop times are not read by OBA, but into columns after the trips and stops are mapped,
+     * see {@link StopTimeColumnsReader}.
+     */
+    private OtpTransitServiceBuilder readAndMapBundle(GtfsBundleReader bundleReader) {
+        try {
+            OtpTransitServiceBuilder builder = mapGtfsDaoToInternalTransitServiceBuilder(
+                    bundleReader.readRemainingEntities(),
+                    issueStore
+            );
+            bundleReader.readStopTimes(builder);
+
+            builder.limitServiceDays(transitPeriodLimit);
+
+            // NB! The call below have side effects - the builder state is updated!
+            repairStopTimesForEachTrip(builder.getStopTimesSortedByTrip());
+
+            return builder;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * This method have side-effects, the {@code stopTimesByTrip} is updated.
      */
@@ -206,8 +298,11 @@ public class GtfsModule implements GraphBuilderModule {
         );
     }
 
-    private GtfsMutableRelationalDao loadBundle(GtfsBundle gtfsBundle)
-            throws IOException {
+    /**
+     * Read the agencies of the given bundle and resolve agency id conflicts with the bundles
+     * read before this one. The rest of the bundle is read by the returned reader.
+     */
+    private GtfsBundleReader readAgencies(GtfsBundle gtfsBundle) throws IOException {
 
         StoreImpl store = new StoreImpl(new GtfsRelationalDaoImpl());
         store.open();
@@ -222,69 +317,38 @@ public class GtfsModule implements GraphBuilderModule {
         reader.setDefaultAgencyId(gtfsFeedId.getId());
 
         if (LOG.isDebugEnabled())
-            reader.addEntityHandler(counter);
+            reader.addEntityHandler(new EntityCounter());
 
         if (gtfsBundle.getDefaultBikesAllowed())
             reader.addEntityHandler(new EntityBikeability(true));
 
-        for (Class<?> entityClass : reader.getEntityClasses()) {
-            LOG.info("reading entities: " + entityClass.getName());
-            reader.readEntities(entityClass);
-            store.flush();
-            // NOTE that agencies are first in the list and read before all other entity types, so it is effective to
-            // set the agencyId here. Each feed ("bundle") is loaded by a separate reader, so there is no risk of
-            // agency mappings accumulating.
-            if (entityClass == Agency.class) {
-                for (Agency agency : reader.getAgencies()) {
-                    String agencyId = agency.getId();
-                    LOG.info("This Agency has the ID {}", agencyId);
-                    // Somehow, when the agency's id field is missing, OBA replaces it with the agency's name.
-                    // TODO Figure out how and why this is happening.
-                    if (agencyId == null || agencyIdsSeen.contains(gtfsFeedId.getId() + agencyId)) {
-                        // Loop in case generated name is already in use.
-                        String generatedAgencyId = null;
-                        while (generatedAgencyId == null || agencyIdsSeen.contains(generatedAgencyId)) {
-                            generatedAgencyId = "F" + nextAgencyId;
-                            nextAgencyId++;
-                        }
-                        LOG.warn("The agency ID '{}' was already seen, or I think it's bad. Replacing with '{}'.", agencyId, generatedAgencyId);
-                        reader.addAgencyIdMapping(agencyId, generatedAgencyId); // NULL key should work
-                        agency.setId(generatedAgencyId);
-                        agencyId = generatedAgencyId;
-                    }
-                    if (agencyId != null) agencyIdsSeen.add(gtfsFeedId.getId() + agencyId);
+        LOG.info("reading entities: " + Agency.class.getName());
+        reader.readEntities(Agency.class);
+        store.flush();
+
+        // NOTE that agencies are read before all other entity types, so it is effective to
+        // set the agencyId here. Each feed ("bundle") is loaded by a separate reader, so there is no risk of
+        // agency mappings accumulating.
+        for (Agency agency : reader.getAgencies()) {
+            String agencyId = agency.getId();
+            LOG.info("This Agency has the ID {}", agencyId);
+            // Somehow, when the agency's id field is missing, OBA replaces it with the agency's name.
+            // TODO Figure out how and why this is happening.
+            if (agencyId == null || agencyIdsSeen.contains(gtfsFeedId.getId() + agencyId)) {
+                // Loop in case generated name is already in use.
+                String generatedAgencyId = null;
+                while (generatedAgencyId == null || agencyIdsSeen.contains(generatedAgencyId)) {
+                    generatedAgencyId = "F" + nextAgencyId;
+                    nextAgencyId++;
                 }
+                LOG.warn("The agency ID '{}' was already seen, or I think it's bad. Replacing with '{}'.", agencyId, generatedAgencyId);
+                reader.addAgencyIdMapping(agencyId, generatedAgencyId); // NULL key should work
+                agency.setId(generatedAgencyId);
+                agencyId = generatedAgencyId;
             }
+            if (agencyId != null) agencyIdsSeen.add(gtfsFeedId.getId() + agencyId);
         }
-
-        for (ShapePoint shapePoint : store.getAllEntitiesForType(ShapePoint.class)) {
-            shapePoint.getShapeId().setAgencyId(reader.getDefaultAgencyId());
-        }
-        for (Route route : store.getAllEntitiesForType(Route.class)) {
-            route.getId().setAgencyId(reader.getDefaultAgencyId());
-            generateRouteColor(route);
-        }
-        for (Stop stop : store.getAllEntitiesForType(Stop.class)) {
-            stop.getId().setAgencyId(reader.getDefaultAgencyId());
-        }
-        for (Trip trip : store.getAllEntitiesForType(Trip.class)) {
-            trip.getId().setAgencyId(reader.getDefaultAgencyId());
-        }
-        for (ServiceCalendar serviceCalendar : store.getAllEntitiesForType(ServiceCalendar.class)) {
-            serviceCalendar.getServiceId().setAgencyId(reader.getDefaultAgencyId());
-        }
-        for (ServiceCalendarDate serviceCalendarDate : store.getAllEntitiesForType(ServiceCalendarDate.class)) {
-            serviceCalendarDate.getServiceId().setAgencyId(reader.getDefaultAgencyId());
-        }
-        for (FareAttribute fareAttribute : store.getAllEntitiesForType(FareAttribute.class)) {
-            fareAttribute.getId().setAgencyId(reader.getDefaultAgencyId());
-        }
-        for (Pathway pathway : store.getAllEntitiesForType(Pathway.class)) {
-            pathway.getId().setAgencyId(reader.getDefaultAgencyId());
-        }
-
-        store.close();
-        return store.dao;
+        return new GtfsBundleReader(gtfsBundle.getCsvInputSource(), reader, store);
     }
 
     /**
@@ -328,6 +392,83 @@ public class GtfsModule implements GraphBuilderModule {
         route.setTextColor(textColor);
     }
 
+    /**
+     * Reads all entities except the agencies of a single GTFS bundle. Each bundle has its own
+     * reader and store, so bundles can be read in parallel.
+     * <p>
+     * The reader can only be used once. The reader and store is released when the entities are
+     * read, so the GTFS entities can be garbage collected as soon as the feed is mapped.
+     */
+    private class GtfsBundleReader {
+
+        private final CsvInputSource source;
+
+        private GtfsReader reader;
+
+        private StoreImpl store;
+
+        private GtfsBundleReader(CsvInputSource source, GtfsReader reader, StoreImpl store) {
+            this.source = source;
+            this.reader = reader;
+            this.store = store;
+        }
+
+        private GtfsMutableRelationalDao readRemainingEntities() throws IOException {
+            for (Class<?> entityClass : reader.getEntityClasses()) {
+                // The agencies are already read, and the stop times are read into columns
+                if (entityClass == Agency.class || entityClass == StopTime.class) {
+                    continue;
+                }
+                LOG.info("reading entities: " + entityClass.getName());
+                reader.readEntities(entityClass);
+                store.flush();
+            }
+
+            for (ShapePoint shapePoint : store.getAllEntitiesForType(ShapePoint.class)) {
+                shapePoint.getShapeId().setAgencyId(reader.getDefaultAgencyId());
+            }
+            for (Route route : store.getAllEntitiesForType(Route.class)) {
+                route.getId().setAgencyId(reader.getDefaultAgencyId());
+                generateRouteColor(route);
+            }
+            for (Stop stop : store.getAllEntitiesForType(Stop.class)) {
+                stop.getId().setAgencyId(reader.getDefaultAgencyId());
+            }
+            for (Trip trip : store.getAllEntitiesForType(Trip.class)) {
+                trip.getId().setAgencyId(reader.getDefaultAgencyId());
+            }
+            for (ServiceCalendar serviceCalendar : store.getAllEntitiesForType(ServiceCalendar.class)) {
+                serviceCalendar.getServiceId().setAgencyId(reader.getDefaultAgencyId());
+            }
+            for (ServiceCalendarDate serviceCalendarDate : store.getAllEntitiesForType(ServiceCalendarDate.class)) {
+                serviceCalendarDate.getServiceId().setAgencyId(reader.getDefaultAgencyId());
+            }
+            for (FareAttribute fareAttribute : store.getAllEntitiesForType(FareAttribute.class)) {
+                fareAttribute.getId().setAgencyId(reader.getDefaultAgencyId());
+            }
+            for (Pathway pathway : store.getAllEntitiesForType(Pathway.class)) {
+                pathway.getId().setAgencyId(reader.getDefaultAgencyId());
+            }
+
+            store.close();
+            GtfsMutableRelationalDao dao = store.dao;
+            reader = null;
+            store = null;
+            return dao;
+        }
+
+        /** Read the stop times into columns, the trips and stops must be in the builder. */
+        private void readStopTimes(OtpTransitServiceBuilder builder) throws IOException {
+            if (!source.hasResource("stop_times.txt")) {
+                return;
+            }
+            LOG.info("reading stop times into columns");
+            try (InputStream in = source.getResource("stop_times.txt")) {
+                new StopTimeColumnsReader(builder).read(in);
+            }
+        }
+    }
+
     private class StoreImpl implements GenericMutableDao {
 
         private GtfsMutableRelationalDao dao;
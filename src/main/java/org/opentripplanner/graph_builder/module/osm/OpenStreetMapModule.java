@@ -97,6 +97,9 @@ public class OpenStreetMapModule implements GraphBuilderModule {
 
     public boolean platformEntriesLinking = false;
 
+    /** @see WalkableAreaBuilder#parallelVisibility */
+    boolean parallelAreaVisibility = true;
+
     // Members that can be set by clients.
 
     /**
@@ -437,6 +440,7 @@ public class OpenStreetMapModule implements GraphBuilderModule {
             WalkableAreaBuilder walkableAreaBuilder = new WalkableAreaBuilder(graph, osmdb,
                     wayPropertySet, edgeFactory, this, issueStore
             );
+            walkableAreaBuilder.parallelVisibility = parallelAreaVisibility;
             if (skipVisibility) {
                 for (AreaGroup group : areaGroups) {
                     walkableAreaBuilder.buildWithoutVisibility(group);
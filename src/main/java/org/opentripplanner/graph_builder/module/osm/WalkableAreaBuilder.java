@@ -52,6 +52,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Theoretically, it is not correct to build the visibility graph on the joined polygon of areas
@@ -91,6 +92,9 @@ public class WalkableAreaBuilder {
 
     private HashMap<Coordinate, IntersectionVertex> areaBoundaryVertexForCoordinate = new HashMap<Coordinate, IntersectionVertex>();
 
+    /** Compute the visibility polygons of an area in parallel. Tests turn this off to compare. */
+    boolean parallelVisibility = true;
+
     public WalkableAreaBuilder(Graph graph, OSMDatabase osmdb, WayPropertySet wayPropertySet,
             StreetEdgeFactory edgeFactory, Handler handler, DataImportIssueStore issueStore
     ) {
@@ -246,11 +250,24 @@ public class WalkableAreaBuilder {
 
             OSMWithTags areaEntity = group.getSomeOSMObject();
 
+            // THIS CODE RUNS IN PARALLEL
+            // The visibility polygons only depend on the area environment, so they are computed
+            // in parallel. The edges are created below, in visibility node order, to keep the
+            // result independent of the thread scheduling.
+            IntStream indexes = IntStream.range(0, visibilityNodes.size());
+            if (parallelVisibility) {
+                indexes = indexes.parallel();
+            }
+            Polygon[] visibilityPolygons = indexes
+                    .mapToObj(i -> toJTSPolygon(
+                            new VisibilityPolygon(visibilityPoints.get(i), areaEnv, VISIBILITY_EPSILON)
+                    ))
+                    .toArray(Polygon[]::new);
+            // END PARALLEL CODE
+
             for (int i = 0; i < visibilityNodes.size(); ++i) {
                 OSMNode nodeI = visibilityNodes.get(i);
-                VisibilityPolygon visibilityPolygon = new VisibilityPolygon(
-                        visibilityPoints.get(i), areaEnv, VISIBILITY_EPSILON);
-                Polygon poly = toJTSPolygon(visibilityPolygon);
+                Polygon poly = visibilityPolygons[i];
                 for (int j = 0; j < visibilityNodes.size(); ++j) {
                     OSMNode nodeJ = visibilityNodes.get(j);
                     P2<OSMNode> nodePair = new P2<OSMNode>(nodeI, nodeJ);
@@ -12,6 +12,7 @@ import org.opentripplanner.model.Frequency;
 import org.opentripplanner.model.Route;
 import org.opentripplanner.model.StopPattern;
 import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.StopTimeColumns;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.model.impl.OtpTransitServiceBuilder;
@@ -112,22 +113,32 @@ public class GenerateTripPatternsOperation {
         }
 
         int directionId = getDirectionId(trip);
-        Collection<StopTime> stopTimes = transitDaoBuilder.getStopTimesSortedByTrip().get(trip);
+
+        // Trips imported in columns are used as they are, without creating StopTime objects
+        StopTimeColumns columns = transitDaoBuilder.getStopTimesSortedByTrip().getColumns(trip);
+        Collection<StopTime> stopTimes = columns == null
+                ? transitDaoBuilder.getStopTimesSortedByTrip().get(trip)
+                : null;
+        int size = columns == null ? stopTimes.size() : columns.size();
 
         // If after filtering this trip does not contain at least 2 stoptimes, it does not serve any purpose.
-        if (stopTimes.size() < 2) {
+        if (size < 2) {
             issueStore.add(new TripDegenerate(trip));
             return;
         }
 
         // Get the existing TripPattern for this filtered StopPattern, or create one.
-        StopPattern stopPattern = new StopPattern(stopTimes);
+        StopPattern stopPattern = columns == null
+                ? new StopPattern(stopTimes)
+                : new StopPattern(columns);
 
         TripPattern tripPattern = findOrCreateTripPattern(stopPattern, trip.getRoute(),
                 directionId);
 
         // Create a TripTimes object for this list of stoptimes, which form one trip.
-        TripTimes tripTimes = new TripTimes(trip, stopTimes, deduplicator);
+        TripTimes tripTimes = columns == null
+                ? new TripTimes(trip, stopTimes, deduplicator)
+                : new TripTimes(trip, columns, deduplicator);
 
         // If this trip is referenced by one or more lines in frequencies.txt, wrap it in a FrequencyEntry.
         List<Frequency> frequencies = frequenciesForTrip.get(trip);
@@ -11,7 +11,9 @@ import org.opentripplanner.graph_builder.issues.HopZeroTime;
 import org.opentripplanner.graph_builder.issues.NegativeDwellTime;
 import org.opentripplanner.graph_builder.issues.NegativeHopTime;
 import org.opentripplanner.graph_builder.issues.RepeatedStops;
+import org.opentripplanner.model.Stop;
 import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.StopTimeColumns;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.model.TripStopTimes;
 import org.slf4j.Logger;
@@ -48,6 +50,15 @@ public class RepairStopTimesForEachTripOperation {
                 LOG.debug("Repair StopTimes for trips {}/{}", tripCount, tripSize);
             }
 
+            /*
+             * Trips imported in columns are checked in place, and only turned into StopTime
+             * objects if they need repair. This is the case for few trips in most feeds.
+             */
+            StopTimeColumns columns = stopTimesByTrip.getColumns(trip);
+            if (columns != null && checkColumns(trip, columns)) {
+                continue;
+            }
+
             /* Fetch the stop times for this trip. Copy the list since it's immutable. */
             List<StopTime> stopTimes = new ArrayList<>(stopTimesByTrip.get(trip));
 
@@ -229,6 +240,75 @@ public class RepairStopTimesForEachTripOperation {
         } // END for loop over stop times
     }
 
+    /**
+     * The same as {@link #removeRepeatedStops(List)}, {@link #filterStopTimes(List)} and
+     * {@link #interpolateStopTimes(List)} for a trip with stop times in columns, if the trip does
+     * not need any repair: all times are set, no stop is repeated and there are no negative dwell
+     * or hop times. The issues are reported and the timepoints are marked as the filter would.
+     *
+     * @return {@code false} without changing anything if the trip needs repair.
+     */
+    private boolean checkColumns(Trip trip, StopTimeColumns stopTimes) {
+        final int size = stopTimes.size();
+        if (size < 2) {
+            return true;
+        }
+        boolean hasTimepoints = false;
+        for (int i = 0; i < size; ++i) {
+            if (stopTimes.getArrivalTime(i) == StopTime.MISSING_VALUE
+                    || stopTimes.getDepartureTime(i) == StopTime.MISSING_VALUE) {
+                return false;
+            }
+            if (i > 0 && stopTimes.getStopIndex(i - 1) == stopTimes.getStopIndex(i)) {
+                return false;
+            }
+            if (stopTimes.getTimepoint(i) == 1) {
+                hasTimepoints = true;
+            }
+        }
+
+        // Collect the issues first, they are reported by the filter if the trip needs repair
+        List<DataImportIssue> issues = new ArrayList<>();
+        int st0 = 0;
+        for (int st1 = 1; st1 < size; ++st1) {
+            if (stopTimes.getDepartureTime(st0) < stopTimes.getArrivalTime(st0)) {
+                return false;
+            }
+            int runningTime = stopTimes.getArrivalTime(st1) - stopTimes.getDepartureTime(st0);
+            if (runningTime < 0) {
+                return false;
+            }
+            Stop s0 = stopTimes.getStop(st0);
+            Stop s1 = stopTimes.getStop(st1);
+            double hopDistance = SphericalDistanceLibrary
+                    .fastDistance(s0.getLat(), s0.getLon(), s1.getLat(), s1.getLon());
+            double hopSpeed = hopDistance / runningTime;
+
+            if (stopTimes.getArrivalTime(st0) == stopTimes.getArrivalTime(st1)
+                    || stopTimes.getDepartureTime(st0) == stopTimes.getDepartureTime(st1)) {
+                issues.add(new HopZeroTime((float) hopDistance, trip, stopTimes.getStopSequence(st1)));
+                // st0 is the last stop time that was not clearly incorrect
+                continue;
+            } else if (hopSpeed > 45) {
+                issues.add(new HopSpeedFast((float) hopSpeed, (float) hopDistance,
+                        trip, stopTimes.getStopSequence(st0)));
+            } else if (hopSpeed < 0.1) {
+                issues.add(new HopSpeedSlow((float) hopSpeed, (float) hopDistance,
+                        trip, stopTimes.getStopSequence(st0)));
+            }
+            st0 = st1;
+        }
+
+        issues.forEach(issueStore::add);
+        /* If the feed does not specify any timepoints, all times are present and are timepoints. */
+        if (!hasTimepoints) {
+            for (int i = 0; i < size; ++i) {
+                stopTimes.setTimepoint(i, 1);
+            }
+        }
+        return true;
+    }
+
     /**
      * Scan through the given list of stoptimes, interpolating the missing (unset) ones.
      * This is currently done by assuming equidistant stops and constant speed.
@@ -0,0 +1,169 @@
+package org.opentripplanner.gtfs;
+
+import com.csvreader.CsvReader;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.StopTimeColumns;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripStopTimes;
+import org.opentripplanner.model.impl.OtpTransitServiceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read the GTFS {@code stop_times.txt} of a feed directly into {@link StopTimeColumns}, one per
+ * trip, without creating a GTFS or OTP StopTime object for each row. The stop times are the bulk
+ * of most feeds, so this is what keeps the memory peak of the GTFS import down.
+ * <p>
+ * The trips and stops must be mapped into the builder before the stop times are read. Stop times
+ * referring to an unknown trip or stop are skipped and logged. The route short name and fare
+ * period id columns are not used by OTP, and are not read.
+ */
+public class StopTimeColumnsReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StopTimeColumnsReader.class);
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Map<String, Trip> tripsById = new HashMap<>();
+
+    private final List<Stop> stopTable;
+
+    private final Map<String, Integer> stopIndexById = new HashMap<>();
+
+    /** Headsigns repeat on every row of a trip, keep one instance of each. */
+    private final Map<String, String> headsigns = new HashMap<>();
+
+    private final TripStopTimes stopTimesByTrip;
+
+    private int nSkipped = 0;
+
+    public StopTimeColumnsReader(OtpTransitServiceBuilder builder) {
+        for (Trip trip : builder.getTripsById().values()) {
+            tripsById.put(trip.getId().getId(), trip);
+        }
+        this.stopTable = new ArrayList<>(builder.getStops().values());
+        for (int i = 0; i < stopTable.size(); ++i) {
+            stopIndexById.put(stopTable.get(i).getId().getId(), i);
+        }
+        this.stopTimesByTrip = builder.getStopTimesSortedByTrip();
+    }
+
+    /**
+     * Read all stop times in the given {@code stop_times.txt} stream, and add them to the builder.
+     * The stream is not closed.
+     */
+    public void read(InputStream stopTimesTxt) throws IOException {
+        CsvReader csv = new CsvReader(stopTimesTxt, StandardCharsets.UTF_8);
+        csv.setTrimWhitespace(true);
+        csv.readHeaders();
+        stripByteOrderMark(csv);
+
+        Map<Trip, StopTimeColumns.Builder> builders = new HashMap<>();
+        // Stop times are usually grouped by trip, avoid a lookup for each row
+        String currentTripId = null;
+        StopTimeColumns.Builder current = null;
+        int nRows = 0;
+
+        while (csv.readRecord()) {
+            ++nRows;
+            String tripId = csv.get("trip_id");
+            if (!tripId.equals(currentTripId)) {
+                Trip trip = tripsById.get(tripId);
+                currentTripId = tripId;
+                current = trip == null
+                        ? null
+                        : builders.computeIfAbsent(trip, t -> new StopTimeColumns.Builder(stopTable));
+            }
+            Integer stopIndex = stopIndexById.get(csv.get("stop_id"));
+            if (current == null || stopIndex == null) {
+                ++nSkipped;
+                continue;
+            }
+            try {
+                current.add(
+                        stopIndex,
+                        parseTime(csv.get("arrival_time")),
+                        parseTime(csv.get("departure_time")),
+                        Integer.parseInt(csv.get("stop_sequence")),
+                        parseInt(csv.get("pickup_type"), 0),
+                        parseInt(csv.get("drop_off_type"), 0),
+                        parseInt(csv.get("timepoint"), StopTime.MISSING_VALUE),
+                        headsign(csv.get("stop_headsign")),
+                        parseDouble(csv.get("shape_dist_traveled"))
+                );
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid stop time in stop_times.txt, line " + (nRows + 1) + ": " + e.getMessage(),
+                        e
+                );
+            }
+        }
+        csv.close();
+
+        builders.forEach((trip, b) -> stopTimesByTrip.putColumns(trip, b.build()));
+
+        if (nSkipped > 0) {
+            LOG.warn("{} stop times referring to an unknown trip or stop are skipped.", nSkipped);
+        }
+        LOG.info("Read {} stop times for {} trips into columns.", nRows - nSkipped, builders.size());
+    }
+
+    /** The number of stop times skipped, because the trip or stop is unknown. */
+    int getNumberOfSkippedStopTimes() {
+        return nSkipped;
+    }
+
+
+    /* private methods */
+
+    private String headsign(String value) {
+        return value.isEmpty() ? null : headsigns.computeIfAbsent(value, v -> v);
+    }
+
+    /** Some feeds start with a byte order mark, which is not part of the first header. */
+    private static void stripByteOrderMark(CsvReader csv) throws IOException {
+        String[] headers = csv.getHeaders();
+        if (headers.length > 0 && !headers[0].isEmpty() && headers[0].charAt(0) == BYTE_ORDER_MARK) {
+            headers[0] = headers[0].substring(1);
+            csv.setHeaders(headers);
+        }
+    }
+
+    /**
+     * Parse a GTFS time {@code H:MM:SS}, the hours may be more than 24.
+     *
+     * @return the seconds after midnight, or {@link StopTime#MISSING_VALUE} if the time is empty.
+     */
+    static int parseTime(String value) {
+        if (value.isEmpty()) {
+            return StopTime.MISSING_VALUE;
+        }
+        int first = value.indexOf(':');
+        int second = value.indexOf(':', first + 1);
+        if (first < 0 || second < 0) {
+            throw new NumberFormatException("Invalid time: " + value);
+        }
+        int hours = Integer.parseInt(value.substring(0, first));
+        int minutes = Integer.parseInt(value.substring(first + 1, second));
+        int seconds = Integer.parseInt(value.substring(second + 1));
+        return (hours * 60 + minutes) * 60 + seconds;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double parseDouble(String value) {
+        return value.isEmpty() ? StopTime.MISSING_VALUE : Double.parseDouble(value);
+    }
+}
@@ -1,11 +1,10 @@
 package org.opentripplanner.gtfs.mapping;
 
 import org.opentripplanner.model.StopTime;
-import org.opentripplanner.util.MapUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * Responsible for mapping GTFS StopTime into the OTP Transit model.
@@ -15,20 +14,26 @@ class StopTimeMapper {
 
     private final TripMapper tripMapper;
 
-    private Map<org.onebusaway.gtfs.model.StopTime, StopTime> mappedStopTimes = new HashMap<>();
-
     StopTimeMapper(StopMapper stopMapper, TripMapper tripMapper) {
         this.stopMapper = stopMapper;
         this.tripMapper = tripMapper;
     }
 
+    /**
+     * Map all stop times in a feed, {@code null} safe. Each GTFS stop time is mapped exactly once,
+     * so the mapped stop times are not cached. With 10s of millions of stop times in a feed, a
+     * cache would add a map entry for every stop time and increase the import memory peak
+     * considerably.
+     */
     Collection<StopTime> map(Collection<org.onebusaway.gtfs.model.StopTime> times) {
-        return MapUtils.mapToList(times, this::map);
-    }
-
-    /** Map from GTFS to OTP model, {@code null} safe.  */
-    StopTime map(org.onebusaway.gtfs.model.StopTime orginal) {
-        return orginal == null ? null : mappedStopTimes.computeIfAbsent(orginal, this::doMap);
+        if (times == null) {
+            return null;
+        }
+        List<StopTime> result = new ArrayList<>(times.size());
+        for (org.onebusaway.gtfs.model.StopTime it : times) {
+            result.add(it == null ? null : doMap(it));
+        }
+        return result;
     }
 
     private StopTime doMap(org.onebusaway.gtfs.model.StopTime rhs) {
@@ -82,6 +82,20 @@ public class StopPattern implements Serializable {
         pickups[size - 1] = 0;
     }
 
+    /** The same as {@link #StopPattern(Collection)}, for stop times in columns. */
+    public StopPattern (StopTimeColumns stopTimes) {
+        this (stopTimes.size());
+        if (size == 0) return;
+        for (int i = 0; i < size; ++i) {
+            stops[i] = stopTimes.getStop(i);
+            pickups[i] = stopTimes.getPickupType(i);
+            dropoffs[i] = stopTimes.getDropOffType(i);
+        }
+        // Merge patterns differing only in the first dropoff and last pickup, see the constructor above
+        dropoffs[0] = 0;
+        pickups[size - 1] = 0;
+    }
+
     /**
      * @param stopId in agency_id format
      */
@@ -0,0 +1,272 @@
+package org.opentripplanner.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.opentripplanner.model.StopTime.MISSING_VALUE;
+
+/**
+ * The stop times of a single trip, stored column by column in primitive arrays and sorted by stop
+ * sequence. This is used instead of a list of {@link StopTime}s when importing GTFS feeds with
+ * millions of stop times: a trip costs a few arrays instead of an object per stop time.
+ * <p>
+ * The stops are stored as indexes into a stop table shared by all trips of a feed. The route short
+ * name and fare period id of the GTFS stop times are not used by OTP and are not stored.
+ * <p>
+ * The times and timepoints can be changed in place, while the stop times are repaired.
+ */
+public final class StopTimeColumns {
+
+    private final List<Stop> stopTable;
+
+    private final int[] stopIndexes;
+
+    private final int[] arrivalTimes;
+
+    private final int[] departureTimes;
+
+    private final int[] stopSequences;
+
+    private final int[] pickupTypes;
+
+    private final int[] dropOffTypes;
+
+    private final int[] timepoints;
+
+    /** {@code null} if no stop time has a stop headsign. */
+    private final String[] stopHeadsigns;
+
+    /** {@code null} if no stop time has a shape distance. */
+    private final double[] shapeDistTraveled;
+
+    private StopTimeColumns(Builder builder) {
+        int n = builder.size;
+        this.stopTable = builder.stopTable;
+        this.stopIndexes = Arrays.copyOf(builder.stopIndexes, n);
+        this.arrivalTimes = Arrays.copyOf(builder.arrivalTimes, n);
+        this.departureTimes = Arrays.copyOf(builder.departureTimes, n);
+        this.stopSequences = Arrays.copyOf(builder.stopSequences, n);
+        this.pickupTypes = Arrays.copyOf(builder.pickupTypes, n);
+        this.dropOffTypes = Arrays.copyOf(builder.dropOffTypes, n);
+        this.timepoints = Arrays.copyOf(builder.timepoints, n);
+        this.stopHeadsigns = builder.stopHeadsigns == null
+                ? null : Arrays.copyOf(builder.stopHeadsigns, n);
+        this.shapeDistTraveled = builder.shapeDistTraveled == null
+                ? null : Arrays.copyOf(builder.shapeDistTraveled, n);
+        sortByStopSequence();
+    }
+
+    public int size() {
+        return stopIndexes.length;
+    }
+
+    public Stop getStop(int i) {
+        return stopTable.get(stopIndexes[i]);
+    }
+
+    /** The index of the stop in the stop table of the feed, the same stop has the same index. */
+    public int getStopIndex(int i) {
+        return stopIndexes[i];
+    }
+
+    public int getArrivalTime(int i) {
+        return arrivalTimes[i];
+    }
+
+    public int getDepartureTime(int i) {
+        return departureTimes[i];
+    }
+
+    public int getStopSequence(int i) {
+        return stopSequences[i];
+    }
+
+    public int getPickupType(int i) {
+        return pickupTypes[i];
+    }
+
+    public int getDropOffType(int i) {
+        return dropOffTypes[i];
+    }
+
+    public int getTimepoint(int i) {
+        return timepoints[i];
+    }
+
+    public void setTimepoint(int i, int timepoint) {
+        timepoints[i] = timepoint;
+    }
+
+    public String getStopHeadsign(int i) {
+        return stopHeadsigns == null ? null : stopHeadsigns[i];
+    }
+
+    public double getShapeDistTraveled(int i) {
+        return shapeDistTraveled == null ? MISSING_VALUE : shapeDistTraveled[i];
+    }
+
+    /**
+     * Create the stop time objects for the given trip. Use this only where a few trips are needed
+     * at the same time, like when a trip must be repaired.
+     */
+    public List<StopTime> toStopTimes(Trip trip) {
+        List<StopTime> stopTimes = new ArrayList<>(size());
+        for (int i = 0; i < size(); ++i) {
+            StopTime it = new StopTime();
+            it.setTrip(trip);
+            it.setStop(getStop(i));
+            it.setArrivalTime(arrivalTimes[i]);
+            it.setDepartureTime(departureTimes[i]);
+            it.setTimepoint(timepoints[i]);
+            it.setStopSequence(stopSequences[i]);
+            it.setStopHeadsign(getStopHeadsign(i));
+            it.setPickupType(pickupTypes[i]);
+            it.setDropOffType(dropOffTypes[i]);
+            it.setShapeDistTraveled(getShapeDistTraveled(i));
+            stopTimes.add(it);
+        }
+        return stopTimes;
+    }
+
+
+    /* private methods */
+
+    /**
+     * Insertion sort of all columns. The stop times of a trip are few, and usually listed in order
+     * in the feed, so this is close to linear.
+     */
+    private void sortByStopSequence() {
+        for (int i = 1; i < size(); ++i) {
+            for (int j = i; j > 0 && stopSequences[j - 1] > stopSequences[j]; --j) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        swap(stopIndexes, a, b);
+        swap(arrivalTimes, a, b);
+        swap(departureTimes, a, b);
+        swap(stopSequences, a, b);
+        swap(pickupTypes, a, b);
+        swap(dropOffTypes, a, b);
+        swap(timepoints, a, b);
+        if (stopHeadsigns != null) {
+            String tmp = stopHeadsigns[a];
+            stopHeadsigns[a] = stopHeadsigns[b];
+            stopHeadsigns[b] = tmp;
+        }
+        if (shapeDistTraveled != null) {
+            double tmp = shapeDistTraveled[a];
+            shapeDistTraveled[a] = shapeDistTraveled[b];
+            shapeDistTraveled[b] = tmp;
+        }
+    }
+
+    private static void swap(int[] values, int a, int b) {
+        int tmp = values[a];
+        values[a] = values[b];
+        values[b] = tmp;
+    }
+
+    /**
+     * Collects the stop times of a trip in any order. The columns grow as stop times are added,
+     * and are trimmed and sorted when built.
+     */
+    public static class Builder {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final List<Stop> stopTable;
+
+        private int size = 0;
+
+        private int[] stopIndexes = new int[INITIAL_CAPACITY];
+        private int[] arrivalTimes = new int[INITIAL_CAPACITY];
+        private int[] departureTimes = new int[INITIAL_CAPACITY];
+        private int[] stopSequences = new int[INITIAL_CAPACITY];
+        private int[] pickupTypes = new int[INITIAL_CAPACITY];
+        private int[] dropOffTypes = new int[INITIAL_CAPACITY];
+        private int[] timepoints = new int[INITIAL_CAPACITY];
+        private String[] stopHeadsigns = null;
+        private double[] shapeDistTraveled = null;
+
+        /**
+         * @param stopTable the stops of the feed, the stop times refer to a stop by its index.
+         */
+        public Builder(List<Stop> stopTable) {
+            this.stopTable = stopTable;
+        }
+
+        /**
+         * @param stopHeadsign {@code null} if not set.
+         * @param shapeDistTraveled {@link StopTime#MISSING_VALUE} if not set.
+         */
+        public Builder add(
+                int stopIndex,
+                int arrivalTime,
+                int departureTime,
+                int stopSequence,
+                int pickupType,
+                int dropOffType,
+                int timepoint,
+                String stopHeadsign,
+                double shapeDistTraveled
+        ) {
+            if (size == stopIndexes.length) {
+                grow();
+            }
+            stopIndexes[size] = stopIndex;
+            arrivalTimes[size] = arrivalTime;
+            departureTimes[size] = departureTime;
+            stopSequences[size] = stopSequence;
+            pickupTypes[size] = pickupType;
+            dropOffTypes[size] = dropOffType;
+            timepoints[size] = timepoint;
+
+            if (stopHeadsign != null) {
+                if (stopHeadsigns == null) {
+                    stopHeadsigns = new String[stopIndexes.length];
+                }
+                stopHeadsigns[size] = stopHeadsign;
+            }
+            if (shapeDistTraveled != MISSING_VALUE) {
+                if (this.shapeDistTraveled == null) {
+                    this.shapeDistTraveled = new double[stopIndexes.length];
+                    Arrays.fill(this.shapeDistTraveled, MISSING_VALUE);
+                }
+                this.shapeDistTraveled[size] = shapeDistTraveled;
+            }
+            ++size;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public StopTimeColumns build() {
+            return new StopTimeColumns(this);
+        }
+
+        private void grow() {
+            int capacity = stopIndexes.length * 2;
+            stopIndexes = Arrays.copyOf(stopIndexes, capacity);
+            arrivalTimes = Arrays.copyOf(arrivalTimes, capacity);
+            departureTimes = Arrays.copyOf(departureTimes, capacity);
+            stopSequences = Arrays.copyOf(stopSequences, capacity);
+            pickupTypes = Arrays.copyOf(pickupTypes, capacity);
+            dropOffTypes = Arrays.copyOf(dropOffTypes, capacity);
+            timepoints = Arrays.copyOf(timepoints, capacity);
+            if (stopHeadsigns != null) {
+                stopHeadsigns = Arrays.copyOf(stopHeadsigns, capacity);
+            }
+            if (shapeDistTraveled != null) {
+                int oldCapacity = shapeDistTraveled.length;
+                shapeDistTraveled = Arrays.copyOf(shapeDistTraveled, capacity);
+                Arrays.fill(shapeDistTraveled, oldCapacity, capacity, MISSING_VALUE);
+            }
+        }
+    }
+}
@@ -1,26 +1,24 @@
 package org.opentripplanner.model;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
+import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.util.CopyOnWriteChunkedMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.function.Consumer;
 
 // this is only currently in edgetype because that's where Trippattern is.
 // move these classes elsewhere.
@@ -90,18 +88,44 @@ public class TimetableSnapshot {
         }
     }
 
+    /**
+     * Key of the updated timetables, a TripPattern and the service date the timetable is valid for.
+     */
+    private static final class TripPatternAndServiceDate {
+        private final TripPattern pattern;
+        private final ServiceDate serviceDate;
+
+        private TripPatternAndServiceDate(TripPattern pattern, ServiceDate serviceDate) {
+            this.pattern = pattern;
+            this.serviceDate = serviceDate;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pattern.hashCode() + serviceDate.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) { return true; }
+            if (!(obj instanceof TripPatternAndServiceDate)) { return false; }
+            TripPatternAndServiceDate other = (TripPatternAndServiceDate) obj;
+            return pattern.equals(other.pattern) && serviceDate.equals(other.serviceDate);
+        }
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(TimetableSnapshot.class);
     
     /**
-     * The timetables for different days, for each TripPattern (each sequence of stops on a particular Route) for which
-     * we have an updated Timetable. The keys include both TripPatterns from the scheduled GTFS, and TripPatterns added
-     * by realtime messages and tracked by the TripPatternCache. Note that the keys will not include all scheduled
-     * TripPatterns, only those for which we've got an update.
-     * We use a HashMap rather than a Map so we can clone it. If this turns out to be slow/spacious we can use an array
-     * with integer pattern indexes. The SortedSet members are copy-on-write.
-     * FIXME: this could be made into a flat hashtable with compound keys.
+     * The updated Timetable for each TripPattern (each sequence of stops on a particular Route) and
+     * service date. The keys include both TripPatterns from the scheduled GTFS, and TripPatterns
+     * added by realtime messages and tracked by the TripPatternCache. Note that the keys will not
+     * include all scheduled TripPatterns, only those for which we've got an update.
+     * The map is copy-on-write in chunks, so the commit only copies the chunks updated since the
+     * last commit. Updating the timetable of one date never copies the timetables of the other
+     * dates of the same pattern.
      */
-    private HashMap<TripPattern, SortedSet<Timetable>> timetables = new HashMap();
+    private CopyOnWriteChunkedMap<TripPatternAndServiceDate, Timetable> timetables = new CopyOnWriteChunkedMap<>();
 
     /**
      * <p>
@@ -109,20 +133,18 @@ public class TimetableSnapshot {
      * service date as a result of a call to {@link #update(TripPattern, TripTimes, ServiceDate)}
      * with trip times of a trip that didn't exist yet in the trip pattern.
      * </p>
-     * <p>
-     * This is a HashMap and not a Map so the clone function is available.
-     * </p>
      * TODO clarify what it means to say "last" added trip pattern. There can be more than one? What happens to the older ones?
      */
-    private HashMap<TripIdAndServiceDate, TripPattern> lastAddedTripPattern = new HashMap<>();
+    private CopyOnWriteChunkedMap<TripIdAndServiceDate, TripPattern> lastAddedTripPattern = new CopyOnWriteChunkedMap<>();
 
     /**
      * This maps contains all of the new TripPatterns added by realtime data indexed on stop. This
      * has to be kept in order for them to be included in the stop times api call on a specific stop.
+     * The sets are never modified, a new set is created when a pattern is added to a stop.
      *
      * TODO Find a generic way to keep all realtime indexes.
      */
-    private Multimap<Stop, TripPattern> patternsForStop = ArrayListMultimap.create();
+    private CopyOnWriteChunkedMap<Stop, Set<TripPattern>> patternsForStop = new CopyOnWriteChunkedMap<>();
     
     /**
      * Boolean value indicating that timetable snapshot is read only if true. Once it is true, it shouldn't
@@ -147,16 +169,12 @@ public class TimetableSnapshot {
      * or the originally scheduled timetable if there are no updates in this snapshot.
      */
     public Timetable resolve(TripPattern pattern, ServiceDate serviceDate) {
-        SortedSet<Timetable> sortedTimetables = timetables.get(pattern);
-
-        if(sortedTimetables != null && serviceDate != null) {
-            for(Timetable timetable : sortedTimetables) {
-                if (timetable != null && timetable.isValidFor(serviceDate)) {
-                    return timetable;
-                }
+        if (serviceDate != null) {
+            Timetable timetable = timetables.get(new TripPatternAndServiceDate(pattern, serviceDate));
+            if (timetable != null) {
+                return timetable;
             }
         }
-
         return pattern.scheduledTimetable;
     }
     
@@ -198,21 +216,8 @@ public class TimetableSnapshot {
         // we need to perform the copy of Timetable here rather than in Timetable.update()
         // to avoid repeatedly copying in case several updates are applied to the same timetable
         if ( ! dirtyTimetables.contains(tt)) {
-            Timetable old = tt;
             tt = new Timetable(tt, serviceDate);
-            SortedSet<Timetable> sortedTimetables = timetables.get(pattern);
-            if(sortedTimetables == null) {
-                sortedTimetables = new TreeSet<>(new SortedTimetableComparator());
-            } else {
-                SortedSet<Timetable> temp =
-                    new TreeSet<>(new SortedTimetableComparator());
-                temp.addAll(sortedTimetables);
-                sortedTimetables = temp;
-            }
-            if(old.serviceDate != null)
-                sortedTimetables.remove(old);
-            sortedTimetables.add(tt);
-            timetables.put(pattern, sortedTimetables);
+            timetables.put(new TripPatternAndServiceDate(pattern, serviceDate), tt);
             dirtyTimetables.add(tt);
             dirty = true;
         }
@@ -242,7 +247,8 @@ public class TimetableSnapshot {
 
     /**
      * This produces a small delay of typically around 50ms, which is almost entirely due to
-     * the indexing step. Cloning the map is much faster (2ms).
+     * the indexing step. Copying the maps only copies the map chunks changed since the last
+     * commit, so it is cheap compared with the indexing.
      * It is perhaps better to index timetables as they are changed to avoid experiencing all
      * this lag at once, but we want to avoid re-indexing when receiving multiple updates for
      * the same timetable in rapid succession. This compromise is expressed by the
@@ -254,7 +260,6 @@ public class TimetableSnapshot {
         return commit(null, false);
     }
 
-    @SuppressWarnings("unchecked")
     public TimetableSnapshot commit(TransitLayerUpdater transitLayerUpdater, boolean force) {
         if (readOnly) {
             throw new ConcurrentModificationException("This TimetableSnapshot is read-only.");
@@ -265,9 +270,8 @@ public class TimetableSnapshot {
         for (Timetable tt : dirtyTimetables) {
             tt.finish(); // summarize, index, etc. the new timetables
         }
-        ret.timetables = (HashMap<TripPattern, SortedSet<Timetable>>) this.timetables.clone();
-        ret.lastAddedTripPattern = (HashMap<TripIdAndServiceDate, TripPattern>)
-                this.lastAddedTripPattern.clone();
+        ret.timetables = this.timetables.readOnlyCopy();
+        ret.lastAddedTripPattern = this.lastAddedTripPattern.readOnlyCopy();
 
         if (transitLayerUpdater != null) {
             transitLayerUpdater.update(dirtyTimetables);
@@ -276,7 +280,7 @@ public class TimetableSnapshot {
         this.dirtyTimetables.clear();
         this.dirty = false;
 
-        ret.setPatternsForStop(HashMultimap.create(this.patternsForStop));
+        ret.patternsForStop = this.patternsForStop.readOnlyCopy();
 
         ret.readOnly = true; // mark the snapshot as henceforth immutable
         return ret;
@@ -308,7 +312,7 @@ public class TimetableSnapshot {
      * @return true if the timetable changed as a result of the call
      */
     protected boolean clearTimetable(String feedId) {
-        return timetables.keySet().removeIf(tripPattern -> feedId.equals(tripPattern.getFeedId()));
+        return timetables.removeIf((key, tt) -> feedId.equals(key.pattern.getFeedId()));
     }
 
     /**
@@ -318,9 +322,9 @@ public class TimetableSnapshot {
      * @return true if the lastAddedTripPattern changed as a result of the call
      */
     protected boolean clearLastAddedTripPattern(String feedId) {
-        return lastAddedTripPattern.keySet().removeIf(
-            lastAddedTripPattern ->
-                feedId.equals(lastAddedTripPattern.getTripId().getFeedId())
+        return lastAddedTripPattern.removeIf(
+            (tripIdAndServiceDate, pattern) ->
+                feedId.equals(tripIdAndServiceDate.getTripId().getFeedId())
         );
     }
 
@@ -328,44 +332,86 @@ public class TimetableSnapshot {
      * Removes all Timetables which are valid for a ServiceDate on-or-before the one supplied.
      */
     public boolean purgeExpiredData(ServiceDate serviceDate) {
+        return purgeExpiredData(serviceDate, timetable -> {});
+    }
+
+    /**
+     * Removes all Timetables which are valid for a ServiceDate on-or-before the one supplied. The
+     * patterns left without any timetables are removed from the stop index.
+     *
+     * @param purgedTimetables is called with each removed timetable.
+     */
+    public boolean purgeExpiredData(ServiceDate serviceDate, Consumer<Timetable> purgedTimetables) {
         if (readOnly) {
             throw new ConcurrentModificationException("This TimetableSnapshot is read-only.");
         }
 
-        boolean modified = false;
-        for (Iterator<TripPattern> it = timetables.keySet().iterator(); it.hasNext();){
-            TripPattern pattern = it.next();
-            SortedSet<Timetable> sortedTimetables = timetables.get(pattern);
-            SortedSet<Timetable> toKeepTimetables =
-                    new TreeSet<Timetable>(new SortedTimetableComparator());
-            for(Timetable timetable : sortedTimetables) {
-                if(serviceDate.compareTo(timetable.serviceDate) < 0) {
-                    toKeepTimetables.add(timetable);
-                } else {
-                    modified = true;
-                }
+        // Find the expired timetables first, the map can not be modified while iterating over it
+        Set<TripPattern> purgedPatterns = new HashSet<>();
+        timetables.forEach((key, timetable) -> {
+            if (serviceDate.compareTo(key.serviceDate) >= 0) {
+                dirtyTimetables.remove(timetable);
+                purgedTimetables.accept(timetable);
+                purgedPatterns.add(key.pattern);
             }
+        });
+
+        // Only the map chunks holding expired timetables are copied
+        boolean modified = timetables.removeIf(
+            (key, timetable) -> serviceDate.compareTo(key.serviceDate) >= 0
+        );
 
-            if(toKeepTimetables.isEmpty()) {
-                it.remove();
-            } else {
-                timetables.put(pattern, toKeepTimetables);
+        if (modified) {
+            // Patterns with timetables for later dates are still realtime patterns
+            timetables.forEach((key, timetable) -> purgedPatterns.remove(key.pattern));
+            for (TripPattern pattern : purgedPatterns) {
+                removePatternFromIndex(pattern);
             }
         }
         
         // Also remove last added trip pattern for days that are purged
-        for (Iterator<Entry<TripIdAndServiceDate, TripPattern>> iterator = lastAddedTripPattern
-                .entrySet().iterator(); iterator.hasNext();) {
-            TripIdAndServiceDate tripIdAndServiceDate = iterator.next().getKey();
-            if (serviceDate.compareTo(tripIdAndServiceDate.getServiceDate()) >= 0) {
-                iterator.remove();
-                modified = true;
-            }
-        }
+        modified |= lastAddedTripPattern.removeIf(
+            (tripIdAndServiceDate, pattern) ->
+                serviceDate.compareTo(tripIdAndServiceDate.getServiceDate()) >= 0
+        );
 
         return modified;
     }
 
+    /**
+     * Replace the trip times of all timetables in this buffer with trip times sharing their
+     * realtime arrays, see {@link TripTimes#deduplicateRealtimeTimes(Deduplicator)}. The
+     * timetables changed are copied, like any other update, and published with the next commit.
+     *
+     * @return the estimated number of bytes no longer referenced by the buffer.
+     */
+    public long deduplicateTripTimes(Deduplicator deduplicator) {
+        if (readOnly) {
+            throw new ConcurrentModificationException("This TimetableSnapshot is read-only.");
+        }
+
+        // Collect the replacements first, the map can not be modified while iterating over it
+        Map<TripTimes, Timetable> timetableForOriginal = new HashMap<>();
+        Map<TripTimes, TripTimes> deduplicatedForOriginal = new HashMap<>();
+        timetables.forEach((key, timetable) -> {
+            for (TripTimes tripTimes : timetable.tripTimes) {
+                TripTimes deduplicated = tripTimes.deduplicateRealtimeTimes(deduplicator);
+                if (deduplicated != tripTimes) {
+                    timetableForOriginal.put(tripTimes, timetable);
+                    deduplicatedForOriginal.put(tripTimes, deduplicated);
+                }
+            }
+        });
+
+        long reclaimedBytes = 0;
+        for (Map.Entry<TripTimes, TripTimes> e : deduplicatedForOriginal.entrySet()) {
+            Timetable timetable = timetableForOriginal.get(e.getKey());
+            update(timetable.pattern, e.getValue(), timetable.serviceDate);
+            reclaimedBytes += e.getKey().getRealtimeTimesSizeEstimateReleasedBy(e.getValue());
+        }
+        return reclaimedBytes;
+    }
+
     public boolean isDirty() {
         if (readOnly) return false;
         return dirty;
@@ -382,20 +428,53 @@ public class TimetableSnapshot {
      *         rerouted or added trips.
      */
     public Collection<TripPattern> getAllRealtimeTripPatterns () {
-        return timetables.keySet();
+        Set<TripPattern> patterns = new HashSet<>();
+        timetables.forEach((key, timetable) -> patterns.add(key.pattern));
+        return patterns;
+    }
+
+    /**
+     * @return the trips of all timetables in this snapshot, both updated scheduled trips and trips
+     *         added by realtime messages.
+     */
+    public Set<Trip> getAllRealtimeTrips() {
+        Set<Trip> trips = new HashSet<>();
+        timetables.forEach((key, timetable) -> {
+            for (TripTimes tripTimes : timetable.tripTimes) {
+                trips.add(tripTimes.trip);
+            }
+        });
+        return trips;
     }
 
     private void addPatternToIndex(TripPattern tripPattern) {
         for (Stop stop: tripPattern.getStops()) {
-            patternsForStop.put(stop, tripPattern);
+            Set<TripPattern> patterns = patternsForStop.get(stop);
+            if (patterns == null || !patterns.contains(tripPattern)) {
+                Set<TripPattern> newPatterns = patterns == null ? new HashSet<>() : new HashSet<>(patterns);
+                newPatterns.add(tripPattern);
+                patternsForStop.put(stop, Collections.unmodifiableSet(newPatterns));
+            }
         }
     }
 
-    public Collection<TripPattern> getPatternsForStop(Stop stop) {
-        return patternsForStop.get(stop);
+    private void removePatternFromIndex(TripPattern tripPattern) {
+        for (Stop stop: tripPattern.getStops()) {
+            Set<TripPattern> patterns = patternsForStop.get(stop);
+            if (patterns != null && patterns.contains(tripPattern)) {
+                Set<TripPattern> newPatterns = new HashSet<>(patterns);
+                newPatterns.remove(tripPattern);
+                if (newPatterns.isEmpty()) {
+                    patternsForStop.remove(stop);
+                } else {
+                    patternsForStop.put(stop, Collections.unmodifiableSet(newPatterns));
+                }
+            }
+        }
     }
 
-    public void setPatternsForStop(Multimap<Stop, TripPattern> patternsForStop) {
-        this.patternsForStop = patternsForStop;
+    public Collection<TripPattern> getPatternsForStop(Stop stop) {
+        Set<TripPattern> patterns = patternsForStop.get(stop);
+        return patterns == null ? Collections.emptySet() : patterns;
     }
 }
@@ -1,5 +1,7 @@
 package org.opentripplanner.model;
 
+import org.opentripplanner.routing.graph.Graph;
+
 /**
  * This interface is used to retrieve the current instance of the TimetableSnapshot. Any provider
  * implementing this interface is responsible for thread-safe access to the latest valid
@@ -10,5 +12,25 @@ package org.opentripplanner.model;
  * handling both GTFS-RT and SIRI has led to two different providers.
  */
 public interface TimetableSnapshotProvider {
+
+    /**
+     * Return the latest published snapshot. This is called by the routing threads and must be
+     * cheap; it should not commit any pending changes.
+     */
     TimetableSnapshot getTimetableSnapshot();
+
+    /**
+     * Commit any pending changes and publish a new snapshot, if needed. This is called
+     * periodically by the {@code GraphUpdaterManager} so changes not published after an update
+     * (because of snapshot throttling) become visible without any help from the routing threads.
+     */
+    void publishTimetableSnapshot();
+
+    /**
+     * Remove expired realtime data and compact the remaining data. This is called periodically
+     * by the {@code GraphUpdaterManager}, on the graph updater thread.
+     *
+     * @param graph the graph the realtime data is applied to, its realtime indexes are pruned too.
+     */
+    void compactRealtimeData(Graph graph);
 }
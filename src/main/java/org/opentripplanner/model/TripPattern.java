@@ -18,6 +18,7 @@ import org.opentripplanner.gtfs.GtfsLibrary;
 import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.trippattern.FrequencyEntry;
 import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.util.SegmentedPolyline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -112,6 +113,12 @@ public class TripPattern extends TransitEntity<FeedScopedId> implements Cloneabl
      */
     private byte[][] hopGeometries = null;
 
+    /**
+     * The hop geometries encoded for itineraries, created on first use and reset when the hop
+     * geometries change.
+     */
+    private transient volatile SegmentedPolyline hopPolylines = null;
+
     @Override
     public FeedScopedId getId() { return id; }
 
@@ -153,6 +160,24 @@ public class TripPattern extends TransitEntity<FeedScopedId> implements Cloneabl
 
     public void setHopGeometry(int i, LineString hopGeometry) {
         this.hopGeometries[i] = CompactLineString.compactLineString(hopGeometry,false);
+        this.hopPolylines = null;
+    }
+
+    /**
+     * The encoded polyline and cumulative distance of each hop, used to create the geometry and
+     * distance of the transit legs without decoding the hop geometries.
+     */
+    public SegmentedPolyline getHopPolylines() {
+        SegmentedPolyline polylines = hopPolylines;
+        if (polylines == null) {
+            Coordinate[][] hops = new Coordinate[stopPattern.size - 1][];
+            for (int i = 0; i < hops.length; i++) {
+                hops[i] = getHopGeometry(i).getCoordinates();
+            }
+            polylines = new SegmentedPolyline(hops);
+            hopPolylines = polylines;
+        }
+        return polylines;
     }
 
     public LineString getGeometry() {
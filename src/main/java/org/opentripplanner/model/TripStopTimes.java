@@ -15,19 +15,45 @@ import java.util.stream.Collectors;
  * A multimap from Trip to a sorted list of StopTimes.
  * <p>
  * The list of stop times  for a given trip is guarantied to be sorted.
+ * <p>
+ * The stop times of a trip are kept either as a list of StopTime objects or, when imported by
+ * the columnar GTFS reader, as {@link StopTimeColumns}. A trip is only in one of the two maps.
+ * Replacing the stop times of a columnar trip moves it to the StopTime list map.
  */
 public class TripStopTimes {
     private static final List<StopTime> EMPTY_LIST = Collections.emptyList();
 
     private Map<Trip, List<StopTime>> map = new HashMap<>();
 
+    private Map<Trip, StopTimeColumns> columns = new HashMap<>();
+
     /**
      * Return a unmodifiable, nullsafe list of stop times for the given trip.
      * An <em>empty</em>empty list is returned if no values exist for a given key.
+     * <p>
+     * The stop times of a columnar trip are created on each call, and not kept.
      */
     public List<StopTime> get(Trip key) {
         List<StopTime> list = map.get(key);
-        return list == null ? EMPTY_LIST : Collections.unmodifiableList(list);
+        if (list == null) {
+            StopTimeColumns c = columns.get(key);
+            return c == null ? EMPTY_LIST : Collections.unmodifiableList(c.toStopTimes(key));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Return the stop times of the given trip, if they are stored in columns. Return
+     * {@code null} if the trip has no stop times, or if they are StopTime objects.
+     */
+    public StopTimeColumns getColumns(Trip key) {
+        return columns.get(key);
+    }
+
+    /** Set the stop times of the given trip, replacing any existing stop times. */
+    public void putColumns(Trip key, StopTimeColumns value) {
+        map.remove(key);
+        columns.put(key, value);
     }
 
     public void addAll(Collection<StopTime> values) {
@@ -44,10 +70,16 @@ public class TripStopTimes {
     }
 
     public void replace(Trip key, Collection<StopTime> list) {
-        map.replace(key, sort(list));
+        if (columns.remove(key) != null) {
+            map.put(key, sort(list));
+        }
+        else {
+            map.replace(key, sort(list));
+        }
     }
 
     public void put(Trip key, Collection<StopTime> list) {
+        columns.remove(key);
         map.put(key, sort(list));
     }
 
@@ -56,27 +88,40 @@ public class TripStopTimes {
         for (Trip removeKey : removeKeys) {
             map.remove(removeKey);
         }
+        removeKeys = columns.keySet().stream().filter(test).collect(Collectors.toList());
+        for (Trip removeKey : removeKeys) {
+            columns.remove(removeKey);
+        }
     }
 
     /**
      * Return a copy of the internal map. Changes in the source are not reflected
      * in the destination (returned Map), and visa versa.
      * <p>
-     * The returned map is immutable.
+     * The returned map is immutable. The stop times of columnar trips are created, so avoid this
+     * for large feeds.
      */
     public Map<Trip, List<StopTime>> asImmutableMap() {
-        return Map.copyOf(map);
+        if (columns.isEmpty()) {
+            return Map.copyOf(map);
+        }
+        Map<Trip, List<StopTime>> copy = new HashMap<>(map);
+        columns.forEach((trip, c) -> copy.put(trip, c.toStopTimes(trip)));
+        return Map.copyOf(copy);
     }
 
     public int size() {
-        return map.size();
+        return map.size() + columns.size();
     }
 
     /**
-     * Return a iterable set of keys. Please do not remove keys the effect is undefined.
+     * Return a copy of the keys. Replacing the stop times of a trip while iterating is safe.
      */
     public Iterable<Trip> keys() {
-        return map.keySet();
+        List<Trip> keys = new ArrayList<>(map.size() + columns.size());
+        keys.addAll(map.keySet());
+        keys.addAll(columns.keySet());
+        return keys;
     }
 
     /**
@@ -85,6 +130,7 @@ public class TripStopTimes {
      */
     public void reindex() {
         map = new HashMap<>(map);
+        columns = new HashMap<>(columns);
     }
 
 
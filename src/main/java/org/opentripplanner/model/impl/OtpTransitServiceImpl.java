@@ -22,6 +22,7 @@ import org.opentripplanner.model.Transfer;
 import org.opentripplanner.model.TransitEntity;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.TripStopTimes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,7 +78,11 @@ class OtpTransitServiceImpl implements OtpTransitService {
 
     private final Map<FeedScopedId, Stop> stopsById;
 
-    private final Map<Trip, List<StopTime>> stopTimesByTrip;
+    /**
+     * The stop times of trips imported in columns are only created when asked for, so the stop
+     * times of the whole feed are never in memory as objects.
+     */
+    private final TripStopTimes stopTimesByTrip;
 
     private final Collection<Transfer> transfers;
 
@@ -102,7 +107,7 @@ class OtpTransitServiceImpl implements OtpTransitService {
         this.shapePointsByShapeId = mapShapePoints(builder.getShapePoints());
         this.stationsById = builder.getStations().asImmutableMap();
         this.stopsById = builder.getStops().asImmutableMap();
-        this.stopTimesByTrip = builder.getStopTimesSortedByTrip().asImmutableMap();
+        this.stopTimesByTrip = builder.getStopTimesSortedByTrip();
         this.transfers = immutableList(builder.getTransfers());
         this.tripPatterns = immutableList(builder.getTripPatterns().values());
         this.trips = immutableList(builder.getTripsById().values());
@@ -189,7 +194,7 @@ class OtpTransitServiceImpl implements OtpTransitService {
 
     @Override
     public List<StopTime> getStopTimesForTrip(Trip trip) {
-        return immutableList(stopTimesByTrip.get(trip));
+        return stopTimesByTrip.get(trip);
     }
 
     @Override
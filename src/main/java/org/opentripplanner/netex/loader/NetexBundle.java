@@ -9,13 +9,14 @@ import org.opentripplanner.netex.loader.mapping.NetexMapper;
 import org.opentripplanner.netex.loader.parser.NetexDocumentParser;
 import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.standalone.config.NetexParameters;
-import org.rutebanken.netex.model.PublicationDeliveryStructure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Deque;
 import java.util.LinkedList;
 
@@ -150,13 +151,11 @@ public class NetexBundle implements Closeable {
 
     /** Load a single entry and store it in the index for later */
     private void loadSingeFileEntry(String fileDescription, DataSource entry) {
-        try {
-            LOG.info("reading entity {}: {}", fileDescription, entry.name());
+        LOG.info("reading entity {}: {}", fileDescription, entry.name());
 
-            PublicationDeliveryStructure doc = xmlParser.parseXmlDoc(entry.asBytes());
-            NetexDocumentParser.parseAndPopulateIndex(index(), doc);
-
-        } catch (JAXBException e) {
+        try (InputStream stream = entry.asInputStream()) {
+            xmlParser.parseXmlDoc(stream, NetexDocumentParser.create(index()));
+        } catch (JAXBException | XMLStreamException | IOException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
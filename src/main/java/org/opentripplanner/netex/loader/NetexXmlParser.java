@@ -1,32 +1,131 @@
 package org.opentripplanner.netex.loader;
 
+import org.opentripplanner.netex.loader.parser.NetexDocumentParser;
+import org.rutebanken.netex.model.Common_VersionFrameStructure;
 import org.rutebanken.netex.model.PublicationDeliveryStructure;
+import org.rutebanken.netex.model.VersionFrameDefaultsStructure;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
-/** Simple wrapper to perform typesafe xml parsing and simple error handling. */
+/**
+ * Simple wrapper to perform typesafe xml parsing and simple error handling.
+ * <p>
+ * The document is read as a stream using StAX. Only one frame at the time is unmarshalled
+ * with JAXB and passed on to the {@link NetexDocumentParser}. The document root and the raw
+ * document bytes are never kept in memory; hence the frame can be garbage collected as soon
+ * as the frame parser is done with it.
+ */
 class NetexXmlParser {
+    private static final String PUBLICATION_DELIVERY = "PublicationDelivery";
+    private static final String DATA_OBJECTS = "dataObjects";
+    private static final String COMPOSITE_FRAME = "CompositeFrame";
+    private static final String FRAME_DEFAULTS = "FrameDefaults";
+    private static final String FRAMES = "frames";
+
     /** used to parse the XML. */
     private final Unmarshaller unmarshaller;
 
+    private final XMLInputFactory xmlInputFactory;
+
     NetexXmlParser() {
         this.unmarshaller = createUnmarshaller();
+        this.xmlInputFactory = createXmlInputFactory();
+    }
+
+    /**
+     * Stream the given xml document and pass each frame to the given document parser. Composite
+     * frames are not unmarshalled as a whole, instead the reader step into the composite frame and
+     * each nested frame is unmarshalled and parsed one by one.
+     */
+    void parseXmlDoc(InputStream stream, NetexDocumentParser documentParser)
+            throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(stream);
+        try {
+            // Path of the elements the reader has stepped into, the closest parent is first
+            Deque<String> path = new ArrayDeque<>();
+
+            while (reader.hasNext()) {
+                int event = reader.getEventType();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    String parent = path.peekFirst();
+
+                    if (isFrameContainer(name, parent)) {
+                        path.addFirst(name);
+                        reader.next();
+                    } else if (DATA_OBJECTS.equals(parent) || FRAMES.equals(parent)) {
+                        if (COMPOSITE_FRAME.equals(name)) {
+                            documentParser.startCompositeFrame();
+                            path.addFirst(name);
+                            reader.next();
+                        } else {
+                            // The unmarshaller leaves the reader on the event after the frame
+                            documentParser.parseFrame(unmarshalFrame(reader));
+                        }
+                    } else if (COMPOSITE_FRAME.equals(parent) && FRAME_DEFAULTS.equals(name)) {
+                        documentParser.parseFrameDefaults(
+                                unmarshaller
+                                        .unmarshal(reader, VersionFrameDefaultsStructure.class)
+                                        .getValue()
+                        );
+                    } else {
+                        skipElement(reader);
+                    }
+                } else {
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        path.removeFirst();
+                    }
+                    reader.next();
+                }
+            }
+        } finally {
+            reader.close();
+        }
     }
 
     /**
-     * Parse a byte array and return the root document type for the given xml file(bytes).
+     * Return {@code true} if the element is one of the elements containing frames, these are
+     * not unmarshalled, but the reader step into them.
      */
-    PublicationDeliveryStructure parseXmlDoc(byte[] bytesArray) throws JAXBException {
-        JAXBElement<PublicationDeliveryStructure> root;
-        ByteArrayInputStream stream = new ByteArrayInputStream(bytesArray);
-        //noinspection unchecked
-        root = (JAXBElement<PublicationDeliveryStructure>) unmarshaller.unmarshal(stream);
+    private static boolean isFrameContainer(String name, String parent) {
+        if (parent == null) {
+            return PUBLICATION_DELIVERY.equals(name);
+        }
+        return (DATA_OBJECTS.equals(name) && PUBLICATION_DELIVERY.equals(parent))
+                || (FRAMES.equals(name) && COMPOSITE_FRAME.equals(parent));
+    }
+
+    private Common_VersionFrameStructure unmarshalFrame(XMLStreamReader reader) throws JAXBException {
+        Object frame = unmarshaller.unmarshal(reader);
+        return (Common_VersionFrameStructure) JAXBElement.class.cast(frame).getValue();
+    }
 
-        return root.getValue();
+    /**
+     * Skip the current element including all children. The reader is positioned at the event
+     * following the end element.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            }
+        }
+        reader.next();
     }
 
     /** factory method for unmarshaller */
@@ -42,4 +141,11 @@ class NetexXmlParser {
             throw new RuntimeException(e);
         }
     }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
 }
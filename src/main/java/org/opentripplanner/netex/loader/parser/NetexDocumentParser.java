@@ -5,7 +5,6 @@ import org.rutebanken.netex.model.Common_VersionFrameStructure;
 import org.rutebanken.netex.model.CompositeFrame;
 import org.rutebanken.netex.model.GeneralFrame;
 import org.rutebanken.netex.model.InfrastructureFrame;
-import org.rutebanken.netex.model.PublicationDeliveryStructure;
 import org.rutebanken.netex.model.ResourceFrame;
 import org.rutebanken.netex.model.ServiceCalendarFrame;
 import org.rutebanken.netex.model.ServiceFrame;
@@ -17,7 +16,6 @@ import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.JAXBElement;
 import java.util.Collection;
-import java.util.List;
 
 /**
  * This is the root parser for a Netex XML Document. The parser ONLY read the document and
@@ -35,22 +33,33 @@ public class NetexDocumentParser {
     }
 
     /**
-     * This static method create a new parser and parse the document. The result is added
-     * to given index for further processing.
+     * Create a new parser witch can be fed one frame at the time. This is used when the
+     * document is streamed, and the document root is never created.
      */
-    public static void parseAndPopulateIndex(NetexImportDataIndex index, PublicationDeliveryStructure doc) {
-        new NetexDocumentParser(index).parse(doc);
+    public static NetexDocumentParser create(NetexImportDataIndex index) {
+        return new NetexDocumentParser(index);
     }
 
-    /** Top level parse method - parses the document. */
-    private void parse(PublicationDeliveryStructure doc) {
-        parseFrameList(doc.getDataObjects().getCompositeFrameOrCommonFrame());
+    /**
+     * Parse a single frame. The frame is added to the index; Composite frames are parsed
+     * recursively.
+     */
+    public void parseFrame(Common_VersionFrameStructure frame) {
+        parseCommonFrame(frame);
     }
 
-    private void parseFrameList(List<JAXBElement<? extends Common_VersionFrameStructure>> frames) {
-        for (JAXBElement<? extends Common_VersionFrameStructure> frame : frames) {
-            parseCommonFrame(frame.getValue());
-        }
+    /**
+     * Notify the parser that a new composite frame is started. This must be called before the
+     * {@link #parseFrameDefaults(VersionFrameDefaultsStructure)} and before the nested frames
+     * are parsed, when the composite frame is streamed.
+     */
+    public void startCompositeFrame() {
+        parseFrameDefaultsLikeTimeZone(null);
+    }
+
+    /** Parse the frame defaults of the current composite frame. */
+    public void parseFrameDefaults(VersionFrameDefaultsStructure frameDefaults) {
+        parseFrameDefaultsLikeTimeZone(frameDefaults);
     }
 
     private void parseCommonFrame(Common_VersionFrameStructure value) {
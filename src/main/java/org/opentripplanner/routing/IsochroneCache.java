@@ -0,0 +1,188 @@
+package org.opentripplanner.routing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.routing.RoutingResponseCache.CachedValue;
+import org.opentripplanner.routing.RoutingResponseCache.DataVersion;
+import org.opentripplanner.routing.algorithm.IsochroneWorker;
+import org.opentripplanner.routing.algorithm.RoutingWorker;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.standalone.server.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A router scoped cache of isochrones. Computing isochrones is expensive, and the same isochrones
+ * are often requested by several users of a map.
+ * <p>
+ * Isochrones are cached per origin grid cell and time bucket: origins in the same cell of the
+ * isochrone grid, and departure times in the same {@link #TIME_BUCKET_SECONDS} bucket, get the same
+ * isochrones. All other parameters of the request must be the same, they are compared like in the
+ * {@link RoutingResponseCache}.
+ * <p>
+ * The cache is looked up before the routing context is created, so cached isochrones are
+ * returned without linking the origin to the street graph. When a new realtime transit layer is
+ * published, the isochrones computed from the changed service dates are invalidated, like in the
+ * {@link RoutingResponseCache}.
+ * <p>
+ * This class is thread safe.
+ */
+public class IsochroneCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IsochroneCache.class);
+
+    /** The departure times are rounded down to this step. */
+    static final int TIME_BUCKET_SECONDS = 300;
+
+    private final Cache<String, CachedValue<List<Geometry>>> cache;
+
+    /** The data the cached isochrones are computed from, updated on invalidation. */
+    private DataVersion version = null;
+
+    /** Incremented each time the data changes, see {@link RoutingResponseCache}. */
+    private long generation = 0;
+
+    /**
+     * @param maxSize the maximum number of cached requests.
+     */
+    public IsochroneCache(int maxSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    }
+
+    /**
+     * Return the cached isochrones for the request, or compute and cache them if they are not
+     * found. The request should not have a routing context: it is only created, and cleaned up,
+     * if the isochrones are computed.
+     *
+     * @see IsochroneWorker
+     */
+    public List<Geometry> route(
+            RoutingRequest request,
+            Router router,
+            List<Integer> cutoffSeconds,
+            double gridResolutionMeters,
+            double offRoadDistanceMeters,
+            int percentile
+    ) {
+        String key = cacheKey(
+                request,
+                cutoffSeconds,
+                gridResolutionMeters,
+                offRoadDistanceMeters,
+                percentile
+        );
+        List<LocalDate> serviceDates = RoutingWorker.realtimeSearchDates(
+                router.graph.getRealtimeTransitLayer(),
+                request
+        );
+        return route(key, serviceDates, router.graph, () -> {
+            request.setOriginRoutingContext(router.graph);
+            return new IsochroneWorker(
+                    request,
+                    cutoffSeconds,
+                    gridResolutionMeters,
+                    offRoadDistanceMeters,
+                    percentile
+            ).route(router);
+        });
+    }
+
+    /**
+     * Return the cached isochrones for the key, or the isochrones of the given worker if they are
+     * not found.
+     *
+     * @param key the cache key, or {@code null} if the request should not be cached.
+     * @param serviceDates the realtime service dates the isochrones are computed from.
+     */
+    List<Geometry> route(
+            String key,
+            Collection<LocalDate> serviceDates,
+            Graph graph,
+            Supplier<List<Geometry>> worker
+    ) {
+        if (key == null) {
+            return worker.get();
+        }
+
+        long startGeneration = transitDataUpdated(graph);
+
+        CachedValue<List<Geometry>> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.value;
+        }
+
+        List<Geometry> isochrones = worker.get();
+
+        // Do not cache isochrones computed from data that was replaced during the search
+        synchronized (this) {
+            if (transitDataUpdated(graph) == startGeneration) {
+                cache.put(key, new CachedValue<>(isochrones, serviceDates));
+            }
+        }
+        return isochrones;
+    }
+
+    /**
+     * Invalidate the isochrones computed from data changed since the last call, see
+     * {@link RoutingResponseCache#transitDataUpdated(Graph)}.
+     *
+     * @return the generation of the data, incremented on each change.
+     */
+    public synchronized long transitDataUpdated(Graph graph) {
+        DataVersion current = new DataVersion(graph);
+        if (current.equals(version)) { return generation; }
+
+        Set<LocalDate> changedDates = version == null ? null : current.changedDatesSince(version);
+        if (changedDates == null) {
+            if (version != null) {
+                LOG.info("Isochrone cache invalidated by new transit data. {}", cache.stats());
+            }
+            cache.invalidateAll();
+        }
+        else {
+            cache.asMap().values().removeIf(it -> it.isComputedFrom(changedDates));
+        }
+        version = current;
+        return ++generation;
+    }
+
+    /**
+     * Create the key for the given request and isochrone parameters, or return {@code null} if the
+     * request should not be cached. Only requests from a coordinate are cached.
+     */
+    static String cacheKey(
+            RoutingRequest request,
+            List<Integer> cutoffSeconds,
+            double gridResolutionMeters,
+            double offRoadDistanceMeters,
+            int percentile
+    ) {
+        if (request.from == null || request.from.lat == null || request.from.lng == null) {
+            return null;
+        }
+        double dY = SphericalDistanceLibrary.metersToDegrees(gridResolutionMeters);
+        long row = (long) Math.floor(request.from.lat / dY);
+        // The cell width depends on the latitude, use the same for the whole row
+        double dX = SphericalDistanceLibrary.metersToLonDegrees(gridResolutionMeters, row * dY);
+        long column = (long) Math.floor(request.from.lng / dX);
+
+        StringBuilder key = new StringBuilder();
+        key.append("cell=").append(row).append('|').append(column);
+        key.append(";time=").append(Math.floorDiv(request.dateTime, TIME_BUCKET_SECONDS));
+        key.append(";cutoffs=").append(cutoffSeconds);
+        key.append(";resolution=").append(gridResolutionMeters);
+        key.append(";offRoadDistance=").append(offRoadDistanceMeters);
+        key.append(";percentile=").append(percentile);
+
+        return RoutingResponseCache.appendRequestFields(key, request) ? key.toString() : null;
+    }
+}
@@ -0,0 +1,510 @@
+package org.opentripplanner.routing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.plan.Itinerary;
+import org.opentripplanner.model.plan.TripPlan;
+import org.opentripplanner.model.routing.RoutingResponse;
+import org.opentripplanner.model.routing.TripSearchMetadata;
+import org.opentripplanner.routing.algorithm.RoutingWorker;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayerChangeLog;
+import org.opentripplanner.routing.core.RouteMatcher;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.standalone.server.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A router scoped cache of routing responses, used when many identical trip planning requests are
+ * sent, like repeated refreshes from kiosk screens and widgets.
+ * <p>
+ * The cache key is a canonical form of the {@link RoutingRequest}: every public field of the
+ * request is included, except the origin and destination coordinates which are rounded to about a
+ * meter, and the date-time which is rounded down to the Raptor iteration departure step. A cached
+ * response is only used for requests departing at or after the time it is computed for, or
+ * arriving at or before it for arrive-by requests, so no trip in between is missed. The
+ * itineraries departing before the requested time, or arriving after it, are removed, and the
+ * search metadata is moved to the requested time. Requests with field values that can not be
+ * compared, like banned trips, are not cached.
+ * <p>
+ * The cache is looked up before the routing context is created, so a cached response is returned
+ * without linking the origin and destination to the street graph.
+ * <p>
+ * Each response is computed from the scheduled and the realtime transit layer. When a new realtime
+ * transit layer is published, only the responses searching the service dates in its
+ * {@link TransitLayerChangeLog} are invalidated. The whole cache is invalidated if the changes are
+ * not known.
+ * <p>
+ * The number of hits and misses are logged once a minute.
+ * <p>
+ * This class is thread safe.
+ */
+public class RoutingResponseCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoutingResponseCache.class);
+
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Round coordinates to 5 decimals, about a meter. */
+    private static final double COORDINATE_PRECISION = 1e5;
+
+    /**
+     * Fields that are not part of the key, or that are added to the key in a canonical form, see
+     * {@link #cacheKey(RoutingRequest)}.
+     */
+    private static final Set<String> EXCLUDED_FIELDS = new TreeSet<>(Arrays.asList(
+            "rctx", "from", "to", "intermediatePlaces", "dateTime", "bikeWalkingOptions"
+    ));
+
+    /** Fields holding strategy objects, these are compared by type. */
+    private static final Set<String> STRATEGY_FIELDS = new TreeSet<>(Arrays.asList(
+            "traversalCostModel", "dominanceFunction"
+    ));
+
+    private static final List<Field> KEY_FIELDS = keyFields();
+
+    private final Cache<String, CachedValue<RoutingResponse>> cache;
+
+    private final int timeStepSeconds;
+
+    /** The data the cached responses are computed from, updated on invalidation. */
+    private DataVersion version = null;
+
+    /**
+     * Incremented each time the data changes, a response is only cached if the data did not change
+     * during the search.
+     */
+    private long generation = 0;
+
+    private volatile int invalidations = 0;
+
+    private volatile int partialInvalidations = 0;
+
+    private final LongAdder hits = new LongAdder();
+
+    /** Requests with a cache key that are routed. */
+    private final LongAdder misses = new LongAdder();
+
+    private final AtomicLong lastLogTime = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param maxSize the maximum number of cached responses.
+     */
+    public RoutingResponseCache(int maxSize) {
+        this(maxSize, RoutingWorker.iterationDepartureStepInSeconds());
+    }
+
+    RoutingResponseCache(int maxSize, int timeStepSeconds) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+        this.timeStepSeconds = timeStepSeconds;
+    }
+
+    /**
+     * Return the cached response for the request, or route and cache the response if it is not
+     * found. The request should not have a routing context: it is only created, and cleaned up,
+     * if the request is routed.
+     */
+    public RoutingResponse route(RoutingRequest request, Router router) {
+        return route(request, router.graph, () -> {
+            request.setRoutingContext(router.graph);
+            return new RoutingWorker(request).route(router);
+        });
+    }
+
+    /**
+     * Return the cached response for the request, or the response of the given worker if it is
+     * not found.
+     */
+    RoutingResponse route(RoutingRequest request, Graph graph, Supplier<RoutingResponse> worker) {
+        String key = cacheKey(request);
+        if (key == null) {
+            return worker.get();
+        }
+
+        long startGeneration = transitDataUpdated(graph);
+        List<LocalDate> serviceDates = RoutingWorker.realtimeSearchDates(
+                graph.getRealtimeTransitLayer(),
+                request
+        );
+
+        CachedValue<RoutingResponse> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            RoutingResponse response = filterOnRequestTime(cached.value, request);
+            if (response != null) {
+                hits.increment();
+                logMetrics();
+                if (request.rctx != null) {
+                    request.cleanup();
+                }
+                return response;
+            }
+        }
+        misses.increment();
+        logMetrics();
+
+        RoutingResponse response = worker.get();
+
+        // Do not cache a response computed from data that was replaced during the search
+        synchronized (this) {
+            if (transitDataUpdated(graph) == startGeneration) {
+                cache.put(key, new CachedValue<>(response, serviceDates));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Invalidate the responses computed from data changed since the last call. This is called
+     * before each lookup, and should be called each time a new realtime transit layer is
+     * published, so the changes between each published transit layer are known.
+     *
+     * @return the generation of the data, incremented on each change.
+     */
+    public synchronized long transitDataUpdated(Graph graph) {
+        DataVersion current = new DataVersion(graph);
+        if (current.equals(version)) { return generation; }
+
+        Set<LocalDate> changedDates = version == null ? null : current.changedDatesSince(version);
+        if (changedDates == null) {
+            if (version != null) {
+                ++invalidations;
+                LOG.info(
+                        "Routing response cache invalidated by new transit data. "
+                                + "Invalidations: {}, partial: {}, {}",
+                        invalidations,
+                        partialInvalidations,
+                        cache.stats()
+                );
+            }
+            cache.invalidateAll();
+        }
+        else {
+            ++partialInvalidations;
+            cache.asMap().values().removeIf(it -> it.isComputedFrom(changedDates));
+        }
+        version = current;
+        return ++generation;
+    }
+
+    /**
+     * The statistics of the underlying cache. A cached response found, but not usable for the
+     * requested time, is a hit here, see {@link #getHits()}.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /** The number of requests answered with a cached response. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** The number of cacheable requests that are routed. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Create the canonical key for the given request, or return {@code null} if the request should
+     * not be cached.
+     */
+    String cacheKey(RoutingRequest request) {
+        StringBuilder key = new StringBuilder();
+        appendPlace(key.append("from="), request.from);
+        appendPlace(key.append(";to="), request.to);
+        key.append(";intermediatePlaces=");
+        if (request.intermediatePlaces != null) {
+            for (GenericLocation place : request.intermediatePlaces) {
+                appendPlace(key, place);
+                key.append(',');
+            }
+        }
+        key.append(";dateTime=").append(request.dateTime - Math.floorMod(request.dateTime, timeStepSeconds));
+        return appendRequestFields(key, request) ? key.toString() : null;
+    }
+
+    /**
+     * Append the fields of the request in a canonical form, except the places and the date-time.
+     * Return {@code false} if a field value can not be compared, the request should not be cached.
+     */
+    static boolean appendRequestFields(StringBuilder key, RoutingRequest request) {
+        try {
+            for (Field field : KEY_FIELDS) {
+                Object value = field.get(request);
+                key.append(';').append(field.getName()).append('=');
+                if (STRATEGY_FIELDS.contains(field.getName())) {
+                    key.append(value == null ? null : value.getClass().getName());
+                }
+                else if (!appendValue(key, value)) {
+                    return false;
+                }
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Return the cached response without the itineraries departing before the requested time, or
+     * arriving after it for an arrive-by request. The cached response may be computed for another
+     * time in the same step, the date of the trip plan is the time it is computed for.
+     * <p>
+     * Return {@code null} if the response can not be used:
+     * <ul>
+     *     <li>if it is computed for a later time, or an earlier time for an arrive-by request.
+     *     The trips in between are not searched.</li>
+     *     <li>if an itinerary without transit is removed. Itineraries without transit depart, or
+     *     arrive, exactly at the requested time, so they are routed again rather than dropped.</li>
+     *     <li>if all itineraries are removed.</li>
+     * </ul>
+     */
+    static RoutingResponse filterOnRequestTime(RoutingResponse response, RoutingRequest request) {
+        long requestedMillis = request.dateTime * 1000;
+        TripPlan plan = response.getTripPlan();
+
+        long shiftSeconds = (requestedMillis - plan.date.getTime()) / 1000;
+        if (request.arriveBy ? shiftSeconds > 0 : shiftSeconds < 0) { return null; }
+
+        List<Itinerary> itineraries = new ArrayList<>(plan.itineraries.size());
+        for (Itinerary it : plan.itineraries) {
+            boolean valid = request.arriveBy
+                    ? it.endTime().getTimeInMillis() <= requestedMillis
+                    : it.startTime().getTimeInMillis() >= requestedMillis;
+            if (valid) {
+                itineraries.add(it);
+            }
+            else if (!it.hasTransit()) {
+                return null;
+            }
+        }
+        if (itineraries.isEmpty() && !plan.itineraries.isEmpty()) { return null; }
+
+        return new RoutingResponse(
+                new TripPlan(plan.from, plan.to, request.getDateTime(), itineraries),
+                moveMetadata(response.getMetadata(), request.arriveBy, shiftSeconds)
+        );
+    }
+
+    /* private methods */
+
+    /**
+     * Move the search metadata of a response to a request the given number of seconds later, or
+     * earlier for an arrive-by request. The part of the search window before the requested time,
+     * or after it for arrive-by, is not used. The previous page, or the next page for arrive-by,
+     * starts at the requested time.
+     */
+    private static TripSearchMetadata moveMetadata(
+            TripSearchMetadata metadata,
+            boolean arriveBy,
+            long shiftSeconds
+    ) {
+        if (metadata == null || shiftSeconds == 0) { return metadata; }
+        return new TripSearchMetadata(
+                metadata.searchWindowUsed.minusSeconds(Math.abs(shiftSeconds)),
+                arriveBy ? metadata.prevDateTime : metadata.prevDateTime.plusSeconds(shiftSeconds),
+                arriveBy ? metadata.nextDateTime.plusSeconds(shiftSeconds) : metadata.nextDateTime
+        );
+    }
+
+    private void logMetrics() {
+        long now = System.nanoTime();
+        long last = lastLogTime.get();
+        if (now - last < LOG_INTERVAL_NANOS || !lastLogTime.compareAndSet(last, now)) {
+            return;
+        }
+        long h = hits.sum();
+        long n = h + misses.sum();
+        LOG.info(
+                "Routing response cache: hits {}, misses {}, hit rate {}%, size {}, "
+                        + "invalidations {}, partial {}",
+                h,
+                n - h,
+                n == 0 ? 0 : 100 * h / n,
+                cache.size(),
+                invalidations,
+                partialInvalidations
+        );
+    }
+
+    private static void appendPlace(StringBuilder key, GenericLocation place) {
+        if (place == null) {
+            key.append("null");
+            return;
+        }
+        key.append(place.label).append('|').append(place.stopId);
+        if (place.lat != null && place.lng != null) {
+            key.append('|').append(Math.round(place.lat * COORDINATE_PRECISION))
+               .append('|').append(Math.round(place.lng * COORDINATE_PRECISION));
+        }
+    }
+
+    /**
+     * Append the value in a canonical form. Return {@code false} if the value can not be compared.
+     */
+    private static boolean appendValue(StringBuilder key, Object value) {
+        if (value == null || isSimpleValue(value)) {
+            key.append(value);
+            return true;
+        }
+        if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            if (!values.stream().allMatch(RoutingResponseCache::isSimpleValue)) { return false; }
+            if (value instanceof Set) {
+                values = new TreeSet<>(toStrings(values));
+            }
+            key.append(values);
+            return true;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            TreeMap<String, String> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!isSimpleValue(e.getKey()) || !isSimpleValue(e.getValue())) { return false; }
+                sorted.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+            }
+            key.append(sorted);
+            return true;
+        }
+        return false;
+    }
+
+    /** Values with a {@code toString()} that identifies the value. */
+    private static boolean isSimpleValue(Object value) {
+        return value instanceof Number
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof String
+                || value instanceof Enum
+                || value instanceof Locale
+                || value instanceof Duration
+                || value instanceof FeedScopedId
+                || value instanceof TraverseModeSet
+                || value instanceof RouteMatcher;
+    }
+
+    private static List<String> toStrings(Collection<?> values) {
+        List<String> result = new ArrayList<>(values.size());
+        for (Object it : values) {
+            result.add(String.valueOf(it));
+        }
+        return result;
+    }
+
+    private static List<Field> keyFields() {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : RoutingRequest.class.getFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || EXCLUDED_FIELDS.contains(field.getName())) {
+                continue;
+            }
+            fields.add(field);
+        }
+        // The order of getFields() is not specified, sort to get the same key on every JVM
+        fields.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return fields;
+    }
+
+    /**
+     * The transit data a response is computed from. A new realtime transit layer is published for
+     * each realtime update, so the instances are compared by identity. The timetable snapshot is
+     * not part of the version, each snapshot update publishes a new realtime transit layer.
+     */
+    static class DataVersion {
+        private final TransitLayer transitLayer;
+        private final TransitLayer realtimeTransitLayer;
+
+        DataVersion(Graph graph) {
+            this.transitLayer = graph.getTransitLayer();
+            this.realtimeTransitLayer = graph.getRealtimeTransitLayer();
+        }
+
+        /**
+         * Return the service dates with realtime changes since the given version, following the
+         * change logs of the realtime transit layers back to it. Return {@code null} if the
+         * changes are not known: if the scheduled transit layer is replaced, or if a realtime
+         * transit layer without change log is published.
+         */
+        Set<LocalDate> changedDatesSince(DataVersion previous) {
+            if (transitLayer != previous.transitLayer) { return null; }
+
+            Set<LocalDate> dates = new HashSet<>();
+            TransitLayer it = realtimeTransitLayer;
+            while (it != previous.realtimeTransitLayer) {
+                if (it == null || it.getChangeLog() == null) { return null; }
+                dates.addAll(it.getChangeLog().getChangedDates());
+                it = it.getChangeLog().getPreviousTransitLayer();
+            }
+            return dates;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (o == null || getClass() != o.getClass()) { return false; }
+            DataVersion that = (DataVersion) o;
+            return transitLayer == that.transitLayer
+                    && realtimeTransitLayer == that.realtimeTransitLayer;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(transitLayer) * 31
+                    + System.identityHashCode(realtimeTransitLayer);
+        }
+    }
+
+    /**
+     * A cached value and the realtime service dates it is computed from.
+     */
+    static class CachedValue<T> {
+        final T value;
+        private final Collection<LocalDate> serviceDates;
+
+        CachedValue(T value, Collection<LocalDate> serviceDates) {
+            this.value = value;
+            this.serviceDates = serviceDates;
+        }
+
+        boolean isComputedFrom(Set<LocalDate> dates) {
+            for (LocalDate it : serviceDates) {
+                if (dates.contains(it)) { return true; }
+            }
+            return false;
+        }
+    }
+}
@@ -55,7 +55,15 @@ public class RoutingService {
   }
 
   // TODO We should probably not have the Router as a parameter here
+  /**
+   * Route the request. The routing context of the request is created if it is not set, except if
+   * the response is found in the {@link RoutingResponseCache}.
+   */
   public RoutingResponse route(RoutingRequest request, Router router) {
+    if (router.routingResponseCache != null) {
+      return router.routingResponseCache.route(request, router);
+    }
+    request.setRoutingContext(router.graph);
     RoutingWorker worker = new RoutingWorker(request);
     return worker.route(router);
   }
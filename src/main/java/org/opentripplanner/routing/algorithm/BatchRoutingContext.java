@@ -0,0 +1,131 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.request.RaptorRoutingRequestTransitData;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.standalone.server.Router;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The transit data shared by a batch of routing requests with the same parameters and departure
+ * time, but different origins and destinations. The Raptor transit data is created once for the
+ * whole batch, and the access and egress street searches are done once for each place.
+ * <p>
+ * The transfers of a place are found from the temporary vertices of the first request from, or
+ * to, that place. These vertices are disconnected from the graph when that request is cleaned up,
+ * but the transfers only use the edges to map the access and egress legs, so they can still be
+ * used by the other requests. A search in progress is memoized as a future, so the requests from
+ * the same place wait for the first search without blocking the requests from other places.
+ * Places without coordinates or a stop id are searched for each request.
+ * <p>
+ * This class is thread safe.
+ */
+public class BatchRoutingContext {
+
+    /** Round coordinates to 5 decimals, about a meter. */
+    private static final double COORDINATE_PRECISION = 1e5;
+
+    private final TransitLayer transitLayer;
+
+    private final RaptorRoutingRequestTransitData transitData;
+
+    private final Map<String, CompletableFuture<Map<Stop, Transfer>>> accessTransfers =
+            new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<Map<Stop, Transfer>>> egressTransfers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param request the parameters shared by all requests in the batch, the origin and
+     *                destination are not used.
+     */
+    public BatchRoutingContext(Router router, RoutingRequest request) {
+        this.transitLayer = RoutingWorker.transitLayer(router, request);
+        this.transitData = request.modes.isTransit()
+                ? RoutingWorker.createTransitData(transitLayer, request)
+                : null;
+    }
+
+    TransitLayer getTransitLayer() {
+        return transitLayer;
+    }
+
+    RaptorRoutingRequestTransitData getTransitData() {
+        return transitData;
+    }
+
+    Map<Stop, Transfer> getAccessTransfers(RoutingRequest request) {
+        return transfers(
+                accessTransfers,
+                placeKey(request.from),
+                () -> RoutingWorker.accessEgressSearch(request, false)
+        );
+    }
+
+    Map<Stop, Transfer> getEgressTransfers(RoutingRequest request) {
+        return transfers(
+                egressTransfers,
+                placeKey(request.to),
+                () -> RoutingWorker.accessEgressSearch(request, true)
+        );
+    }
+
+    /**
+     * Return the transfers of the place, running the search if no other request has started it.
+     * A failed search is removed, so it is retried by the next request.
+     *
+     * @param key the place key, or {@code null} if the transfers should not be shared.
+     */
+    static <T> T transfers(
+            Map<String, CompletableFuture<T>> cache,
+            String key,
+            Supplier<T> search
+    ) {
+        if (key == null) {
+            return search.get();
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = cache.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            T result = search.get();
+            future.complete(result);
+            return result;
+        }
+        catch (RuntimeException e) {
+            cache.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * The place rounded to about a meter, or the stop id. Return {@code null} if the place has
+     * neither.
+     */
+    static String placeKey(GenericLocation place) {
+        if (place.lat == null || place.lng == null) {
+            return place.stopId == null ? null : place.stopId.toString();
+        }
+        return Math.round(place.lat * COORDINATE_PRECISION)
+                + "|" + Math.round(place.lng * COORDINATE_PRECISION);
+    }
+}
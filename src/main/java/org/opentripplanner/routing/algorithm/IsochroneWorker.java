@@ -0,0 +1,192 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.geometry.RecursiveGridIsolineBuilder;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.algorithm.astar.AStar;
+import org.opentripplanner.routing.algorithm.astar.strategies.TrivialRemainingWeightHeuristic;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.standalone.server.Router;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compute isochrones, the areas reachable from an origin within each of a list of cutoff travel
+ * times.
+ * <p>
+ * A street search finds the walking time to each street vertex within the largest cutoff. If the
+ * request includes transit, a {@link TravelTimeWorker} finds the travel time to each stop, the
+ * given percentile over the departures in the search window. The travel times are sampled onto a
+ * regular grid with a {@link TravelTimeSurface}, and one {@link RecursiveGridIsolineBuilder} per
+ * cutoff builds the isochrone polygons. The builders run in parallel and share the samples.
+ */
+public class IsochroneWorker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IsochroneWorker.class);
+
+    /** The maximum straight line distance walked from a transit stop to a grid point. */
+    private static final double MAX_EGRESS_DISTANCE_METERS = 500;
+
+    private final RoutingRequest request;
+    private final List<Integer> cutoffSeconds;
+    private final double gridResolutionMeters;
+    private final double offRoadDistanceMeters;
+    private final int percentile;
+
+    /**
+     * @param cutoffSeconds the cutoff travel times, one isochrone is computed for each.
+     * @param gridResolutionMeters the distance between the grid points the travel times are
+     *                             sampled at.
+     * @param offRoadDistanceMeters the maximum distance walked from a street to a grid point.
+     * @param percentile the percentile of the transit travel times over the search window.
+     */
+    public IsochroneWorker(
+            RoutingRequest request,
+            List<Integer> cutoffSeconds,
+            double gridResolutionMeters,
+            double offRoadDistanceMeters,
+            int percentile
+    ) {
+        this.request = request;
+        this.cutoffSeconds = cutoffSeconds;
+        this.gridResolutionMeters = gridResolutionMeters;
+        this.offRoadDistanceMeters = offRoadDistanceMeters;
+        this.percentile = percentile;
+    }
+
+    /**
+     * Compute the isochrones from the origin of the request, in the order of the cutoffs. The
+     * routing context of the request must be set, see
+     * {@link RoutingRequest#setOriginRoutingContext}, and is cleaned up.
+     */
+    public List<Geometry> route(Router router) {
+        long startTime = System.currentTimeMillis();
+        Graph graph = router.graph;
+        int maxCutoff = Collections.max(cutoffSeconds);
+        // The origin may be a stop id, use the origin vertex as the reference point of the grid
+        Coordinate center = request.rctx.fromVertices.iterator().next().getCoordinate();
+
+        Map<Vertex, Long> streetTimes;
+        try {
+            streetTimes = streetSearch(graph, maxCutoff);
+        }
+        catch (RuntimeException e) {
+            request.cleanup();
+            throw e;
+        }
+
+        TransitLayer transitLayer = null;
+        int[] stopTimes = null;
+        if (request.modes.isTransit()) {
+            // The transit search cleans up the routing context
+            TravelTimeWorker worker = new TravelTimeWorker(request, Duration.ofSeconds(maxCutoff));
+            StopTravelTimes travelTimes = worker.route(router);
+            transitLayer = worker.getTransitLayer();
+            stopTimes = travelTimes.travelDurationPercentiles(percentile)[0];
+        }
+        else {
+            request.cleanup();
+        }
+
+        TravelTimeSurface surface = new TravelTimeSurface(
+                graph.streetIndex,
+                streetTimes,
+                transitLayer,
+                stopTimes,
+                request.walkSpeed,
+                offRoadDistanceMeters,
+                MAX_EGRESS_DISTANCE_METERS
+        );
+        List<Coordinate> seeds = seedPoints(streetTimes, transitLayer, stopTimes, maxCutoff);
+        double dY = SphericalDistanceLibrary.metersToDegrees(gridResolutionMeters);
+        double dX = SphericalDistanceLibrary.metersToLonDegrees(gridResolutionMeters, center.y);
+
+        // The builders are not thread safe, use one for each cutoff
+        List<Geometry> isochrones = cutoffSeconds.parallelStream()
+                .map(cutoff -> new RecursiveGridIsolineBuilder(dX, dY, center, surface, seeds)
+                        .computeIsoline(cutoff))
+                .collect(Collectors.toList());
+
+        LOG.debug(
+                "{} isochrones from {} street vertices, {} seed points and {} samples took {} ms",
+                isochrones.size(),
+                streetTimes.size(),
+                seeds.size(),
+                surface.numberOfSamples(),
+                System.currentTimeMillis() - startTime
+        );
+        return isochrones;
+    }
+
+    /* private methods */
+
+    /**
+     * Find the walking time in seconds to each street vertex reached within the time limit.
+     */
+    private Map<Vertex, Long> streetSearch(Graph graph, int maxCutoff) {
+        RoutingRequest streetRequest = request.clone();
+        streetRequest.setMode(TraverseMode.WALK);
+        // This is a sub-request, the temporary edges of the origin are cleaned up with the request
+        streetRequest.setRoutingContext(graph, request.rctx.fromVertices, null);
+        streetRequest.worstTime = streetRequest.dateTime + maxCutoff;
+        streetRequest.disableRemainingWeightHeuristic = true;
+        streetRequest.rctx.remainingWeightHeuristic = new TrivialRemainingWeightHeuristic();
+
+        ShortestPathTree spt = new AStar().getShortestPathTree(streetRequest);
+
+        Map<Vertex, Long> result = new HashMap<>();
+        for (Vertex v : request.rctx.fromVertices) {
+            result.put(v, 0L);
+        }
+        if (spt != null) {
+            for (State state : spt.getAllStates()) {
+                result.merge(state.getVertex(), state.getElapsedTimeSeconds(), Math::min);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The coordinates of the street vertices and stops reached within the largest cutoff. The
+     * isoline builders only find the isolines touched by the seed points.
+     */
+    private static List<Coordinate> seedPoints(
+            Map<Vertex, Long> streetTimes,
+            TransitLayer transitLayer,
+            int[] stopTimes,
+            int maxCutoff
+    ) {
+        List<Coordinate> seeds = new ArrayList<>();
+        for (Map.Entry<Vertex, Long> it : streetTimes.entrySet()) {
+            if (it.getValue() <= maxCutoff) {
+                seeds.add(it.getKey().getCoordinate());
+            }
+        }
+        if (stopTimes != null) {
+            for (int i = 0; i < stopTimes.length; ++i) {
+                if (stopTimes[i] != StopTravelTimes.UNREACHED && stopTimes[i] <= maxCutoff) {
+                    Stop stop = transitLayer.getStopByIndex(i);
+                    seeds.add(new Coordinate(stop.getLon(), stop.getLat()));
+                }
+            }
+        }
+        return seeds;
+    }
+}
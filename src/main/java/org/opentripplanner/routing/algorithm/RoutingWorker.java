@@ -35,10 +35,12 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -48,10 +50,13 @@ import java.util.Map;
 public class RoutingWorker {
 
     private static final int TRANSIT_SEARCH_RANGE_IN_DAYS = 2;
+    private static final int MAX_ACCESS_EGRESS_DISTANCE_METERS = 2000;
     private static final Logger LOG = LoggerFactory.getLogger(RoutingWorker.class);
+    // TODO OTP2 - Load turning parameters from config file
+    private static final RaptorTuningParameters tuningParameters = new RaptorTuningParameters() {};
     private static final RaptorService<TripSchedule> raptorService = new RaptorService<>(
-            // TODO OTP2 - Load turning parameters from config file
-            new RaptorTuningParameters() {});
+            tuningParameters
+    );
 
     /**
      * To avoid long searches witch might degrade the performance we use an upper limit
@@ -68,11 +73,53 @@ public class RoutingWorker {
     private static final int MAX_NUMBER_OF_ITINERARIES = 200;
 
     private final RoutingRequest request;
+    private final BatchRoutingContext batchContext;
     private TripSearchMetadata responseMetadata = null;
     private Instant filterOnLatestDepartureTime = null;
 
+    /**
+     * The transit itineraries are mapped after filtering, only the summaries are created for the
+     * filters. These are the paths of the summaries.
+     */
+    private final Map<Itinerary, Path<TripSchedule>> transitPathsBySummary = new HashMap<>();
+    private RaptorPathToItineraryMapper itineraryMapper = null;
+    private FareService fareService = null;
+    private TransitLayer transitLayer = null;
+
     public RoutingWorker(RoutingRequest request) {
+        this(request, null);
+    }
+
+    /**
+     * @param batchContext the transit data shared by a batch of requests, or {@code null} if the
+     *                     request is not part of a batch.
+     */
+    public RoutingWorker(RoutingRequest request, BatchRoutingContext batchContext) {
         this.request = request;
+        this.batchContext = batchContext;
+    }
+
+    /**
+     * The step between the departure times of the Raptor range search iterations. Departure times
+     * within the same step give the same transit results.
+     */
+    public static int iterationDepartureStepInSeconds() {
+        return tuningParameters.iterationDepartureStepInSeconds();
+    }
+
+    /**
+     * The dates of the realtime TripPatternForDates a search for the request uses, or an empty
+     * list if the search ignores the realtime updates.
+     */
+    public static List<LocalDate> realtimeSearchDates(TransitLayer realtimeTransitLayer, RoutingRequest request) {
+        if (request.ignoreRealtimeUpdates || realtimeTransitLayer == null) {
+            return List.of();
+        }
+        return RaptorRoutingRequestTransitData.searchDates(
+                realtimeTransitLayer,
+                request.getDateTime().toInstant(),
+                TRANSIT_SEARCH_RANGE_IN_DAYS
+        );
     }
 
     public RoutingResponse route(Router router) {
@@ -90,6 +137,8 @@ public class RoutingWorker {
             itineraries = filterChain().filter(itineraries);
             LOG.debug("Filtering took {} ms", System.currentTimeMillis() - startTimeFiltering);
 
+            itineraries = mapTransitItinerarySummaries(itineraries);
+
             LOG.debug("Return TripPlan with {} itineraries", itineraries.size());
             return new RoutingResponse(
                     TripPlanMapper.mapTripPlan(request, itineraries),
@@ -130,26 +179,31 @@ public class RoutingWorker {
 
         long startTime = System.currentTimeMillis();
 
-        TransitLayer transitLayer = request.ignoreRealtimeUpdates
-            ? router.graph.getTransitLayer()
-            : router.graph.getRealtimeTransitLayer();
-
         RaptorRoutingRequestTransitData requestTransitDataProvider;
-        requestTransitDataProvider = new RaptorRoutingRequestTransitData(
-                transitLayer,
-                request.getDateTime().toInstant(),
-                TRANSIT_SEARCH_RANGE_IN_DAYS,
-                request.modes,
-                request.walkSpeed
-        );
+        if (batchContext == null) {
+            transitLayer = transitLayer(router, request);
+            requestTransitDataProvider = createTransitData(transitLayer, request);
+        }
+        else {
+            transitLayer = batchContext.getTransitLayer();
+            requestTransitDataProvider = batchContext.getTransitData();
+        }
         LOG.debug("Filtering tripPatterns took {} ms", System.currentTimeMillis() - startTime);
 
         /* Prepare access/egress transfers */
 
         double startTimeAccessEgress = System.currentTimeMillis();
 
-        Map<Stop, Transfer> accessTransfers = AccessEgressRouter.streetSearch(request, false, 2000);
-        Map<Stop, Transfer> egressTransfers = AccessEgressRouter.streetSearch(request, true, 2000);
+        Map<Stop, Transfer> accessTransfers;
+        Map<Stop, Transfer> egressTransfers;
+        if (batchContext == null) {
+            accessTransfers = accessEgressSearch(request, false);
+            egressTransfers = accessEgressSearch(request, true);
+        }
+        else {
+            accessTransfers = batchContext.getAccessTransfers(request);
+            egressTransfers = batchContext.getEgressTransfers(request);
+        }
 
         LOG.debug("Access/egress routing took {} ms",
                 System.currentTimeMillis() - startTimeAccessEgress
@@ -179,28 +233,28 @@ public class RoutingWorker {
 
         /* Create itineraries */
 
-        double startItineraries = System.currentTimeMillis();
+        long startItineraries = System.currentTimeMillis();
 
-        RaptorPathToItineraryMapper itineraryMapper = new RaptorPathToItineraryMapper(
+        itineraryMapper = new RaptorPathToItineraryMapper(
                 transitLayer,
                 requestTransitDataProvider.getStartOfTime(),
                 request,
                 accessTransfers,
                 egressTransfers
         );
-        FareService fareService = request.getRoutingContext().graph.getService(FareService.class);
+        fareService = request.getRoutingContext().graph.getService(FareService.class);
 
         List<Itinerary> itineraries = new ArrayList<>();
         for (Path<TripSchedule> path : transitResponse.paths()) {
-            // Convert the Raptor/Astar paths to OTP API Itineraries
-            Itinerary itinerary = itineraryMapper.createItinerary(path);
-            // Decorate the Itineraries with fare information.
-            // Itinerary and Leg are API model classes, lacking internal object references needed for effective
-            // fare calculation. We derive the fares from the internal Path objects and add them to the itinerary.
-            if (fareService != null) {
-                itinerary.fare = fareService.getCost(path, transitLayer);
+            if (request.debugItineraryFilter) {
+                // The debug filter chain returns all itineraries, so there is nothing to save
+                itineraries.add(createItinerary(path, null));
+            }
+            else {
+                Itinerary summary = itineraryMapper.createItinerarySummary(path);
+                transitPathsBySummary.put(summary, path);
+                itineraries.add(summary);
             }
-            itineraries.add(itinerary);
         }
 
         setResponseMetadata(requestTransitDataProvider, transitResponse);
@@ -214,14 +268,78 @@ public class RoutingWorker {
             filterOnLatestDepartureTime = Instant.ofEpochSecond(request.dateTime + win);
         }
 
-        LOG.debug("Creating {} itineraries took {} ms",
-                itineraries.size(),
-                System.currentTimeMillis() - startItineraries
-        );
+        long itinerariesTime = System.currentTimeMillis() - startItineraries;
+        LOG.debug("Creating {} itineraries took {} ms", itineraries.size(), itinerariesTime);
+        request.rctx.debugOutput.transitItinerarySummaryTime = itinerariesTime;
 
         return itineraries;
     }
 
+    static RaptorService<TripSchedule> raptorService() {
+        return raptorService;
+    }
+
+    static TransitLayer transitLayer(Router router, RoutingRequest request) {
+        return request.ignoreRealtimeUpdates
+            ? router.graph.getTransitLayer()
+            : router.graph.getRealtimeTransitLayer();
+    }
+
+    static RaptorRoutingRequestTransitData createTransitData(
+            TransitLayer transitLayer,
+            RoutingRequest request
+    ) {
+        return new RaptorRoutingRequestTransitData(
+                transitLayer,
+                request.getDateTime().toInstant(),
+                TRANSIT_SEARCH_RANGE_IN_DAYS,
+                request.modes,
+                request.walkSpeed
+        );
+    }
+
+    static Map<Stop, Transfer> accessEgressSearch(RoutingRequest request, boolean egress) {
+        return AccessEgressRouter.streetSearch(request, egress, MAX_ACCESS_EGRESS_DISTANCE_METERS);
+    }
+
+    /**
+     * Replace the transit itinerary summaries kept by the filter chain with complete itineraries.
+     */
+    private List<Itinerary> mapTransitItinerarySummaries(List<Itinerary> itineraries) {
+        if (transitPathsBySummary.isEmpty()) { return itineraries; }
+
+        long startTime = System.currentTimeMillis();
+
+        List<Itinerary> result = new ArrayList<>(itineraries.size());
+        for (Itinerary it : itineraries) {
+            Path<TripSchedule> path = transitPathsBySummary.get(it);
+            result.add(path == null ? it : createItinerary(path, it));
+        }
+
+        long mappingTime = System.currentTimeMillis() - startTime;
+        LOG.debug("Mapping {} transit itineraries took {} ms", result.size(), mappingTime);
+        request.rctx.debugOutput.transitItineraryMappingTime = mappingTime;
+
+        return result;
+    }
+
+    /**
+     * Create the complete itinerary of the path, from its summary if it is not {@code null}.
+     */
+    private Itinerary createItinerary(Path<TripSchedule> path, Itinerary summary) {
+        // Convert the Raptor/Astar paths to OTP API Itineraries
+        Itinerary itinerary = summary == null
+                ? itineraryMapper.createItinerary(path)
+                : itineraryMapper.createItinerary(path, summary);
+        // Decorate the Itineraries with fare information.
+        // Itinerary and Leg are API model classes, lacking internal object references needed for effective
+        // fare calculation. We derive the fares from the internal Path objects and add them to the itinerary.
+        if (fareService != null) {
+            itinerary.fare = fareService.getCost(path, transitLayer);
+        }
+        return itinerary;
+    }
+
     private ItineraryFilter filterChain() {
         ItineraryFilterChainBuilder builder = new ItineraryFilterChainBuilder();
         builder.setApproximateMinLimit(Math.min(request.numItineraries, MIN_NUMBER_OF_ITINERARIES));
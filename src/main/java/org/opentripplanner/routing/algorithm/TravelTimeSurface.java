@@ -0,0 +1,110 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.common.geometry.RecursiveGridIsolineBuilder;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.impl.StreetVertexIndex;
+import org.opentripplanner.routing.vertextype.TransitStopVertex;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+import org.opentripplanner.util.SearchInterruptedException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The travel time from an origin to any point, found from the travel times to the street vertices
+ * and transit stops. The travel time to a point is the shortest travel time to a street vertex or
+ * transit stop near the point, plus the time to walk the straight line distance from it.
+ * <p>
+ * The samples are memoized, so the isoline builders of several cutoffs, using the same grid, share
+ * them. This class is thread safe.
+ */
+class TravelTimeSurface implements RecursiveGridIsolineBuilder.ZFunc {
+
+    /** Returned for points that are not reached. */
+    static final long UNREACHED = Long.MAX_VALUE;
+
+    private final StreetVertexIndex streetIndex;
+    private final Map<Vertex, Long> streetTimes;
+    private final TransitLayer transitLayer;
+    private final int[] stopTimes;
+    private final double walkSpeed;
+    private final double offRoadDistanceMeters;
+    private final double egressDistanceMeters;
+    private final Thread caller;
+    private final Map<Coordinate, Long> samples = new ConcurrentHashMap<>();
+
+    /**
+     * @param stopTimes the travel time to each stop, indexed by the stop index of the transit
+     *                  layer, {@link StopTravelTimes#UNREACHED} if not reached. {@code null} if
+     *                  transit is not used.
+     * @param offRoadDistanceMeters the maximum distance walked from a street vertex to a point.
+     * @param egressDistanceMeters the maximum distance walked from a transit stop to a point.
+     */
+    TravelTimeSurface(
+            StreetVertexIndex streetIndex,
+            Map<Vertex, Long> streetTimes,
+            TransitLayer transitLayer,
+            int[] stopTimes,
+            double walkSpeed,
+            double offRoadDistanceMeters,
+            double egressDistanceMeters
+    ) {
+        this.streetIndex = streetIndex;
+        this.streetTimes = streetTimes;
+        this.transitLayer = transitLayer;
+        this.stopTimes = stopTimes;
+        this.walkSpeed = walkSpeed;
+        this.offRoadDistanceMeters = offRoadDistanceMeters;
+        this.egressDistanceMeters = egressDistanceMeters;
+        this.caller = Thread.currentThread();
+    }
+
+    @Override
+    public long z(Coordinate c) {
+        return samples.computeIfAbsent(c, this::sample);
+    }
+
+    int numberOfSamples() {
+        return samples.size();
+    }
+
+    /* private methods */
+
+    private long sample(Coordinate c) {
+        // The builders run on other threads, give up if the request is cancelled
+        if (caller.isInterrupted()) {
+            throw new SearchInterruptedException("Isochrone computation interrupted.");
+        }
+        long best = UNREACHED;
+
+        Envelope envelope = new Envelope(c);
+        envelope.expandBy(
+                SphericalDistanceLibrary.metersToLonDegrees(offRoadDistanceMeters, c.y),
+                SphericalDistanceLibrary.metersToDegrees(offRoadDistanceMeters)
+        );
+        for (Vertex v : streetIndex.getVerticesForEnvelope(envelope)) {
+            Long t = streetTimes.get(v);
+            if (t == null) { continue; }
+            double distance = SphericalDistanceLibrary.fastDistance(v.getCoordinate(), c);
+            if (distance <= offRoadDistanceMeters) {
+                best = Math.min(best, t + Math.round(distance / walkSpeed));
+            }
+        }
+
+        if (stopTimes != null) {
+            for (TransitStopVertex v : streetIndex.getNearbyTransitStops(c, egressDistanceMeters)) {
+                Integer stopIndex = transitLayer.getStopIndex().indexByStop.get(v.getStop());
+                if (stopIndex == null || stopTimes[stopIndex] == StopTravelTimes.UNREACHED) {
+                    continue;
+                }
+                double distance = SphericalDistanceLibrary.fastDistance(v.getCoordinate(), c);
+                best = Math.min(best, stopTimes[stopIndex] + Math.round(distance / walkSpeed));
+            }
+        }
+        return best;
+    }
+}
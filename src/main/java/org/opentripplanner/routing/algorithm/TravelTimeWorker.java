@@ -0,0 +1,133 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.algorithm.raptor.router.street.TransferToAccessEgressLegMapper;
+import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripSchedule;
+import org.opentripplanner.routing.algorithm.raptor.transit.mappers.DateMapper;
+import org.opentripplanner.routing.algorithm.raptor.transit.request.RaptorRoutingRequestTransitData;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.standalone.server.Router;
+import org.opentripplanner.transit.raptor.api.request.RaptorProfile;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequest;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequestBuilder;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+import org.opentripplanner.transit.raptor.api.transit.TransferLeg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Find the transit travel times from one origin to all stops, for each departure time in the
+ * search window. This is used for accessibility analysis and isochrones, where one request per
+ * destination would be far too slow.
+ * <p>
+ * The origin of the request is used, the destination is not. The search window defaults to
+ * {@link #DEFAULT_SEARCH_WINDOW}.
+ */
+public class TravelTimeWorker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TravelTimeWorker.class);
+
+    public static final Duration DEFAULT_SEARCH_WINDOW = Duration.ofHours(1);
+
+    private final RoutingRequest request;
+    private final Duration maxTravelTime;
+    private TransitLayer transitLayer = null;
+    private ZonedDateTime startOfTime = null;
+
+    /**
+     * @param maxTravelTime the maximum travel duration, longer travel durations are unreached, or
+     *                      {@code null} if there is no limit. Stop arrivals later than this after
+     *                      the end of the search window are not explored.
+     */
+    public TravelTimeWorker(RoutingRequest request, Duration maxTravelTime) {
+        this.request = request;
+        this.maxTravelTime = maxTravelTime;
+    }
+
+    /**
+     * Route from the origin of the request, the routing context of the request must be set, see
+     * {@link RoutingRequest#setOriginRoutingContext}, and is cleaned up.
+     */
+    public StopTravelTimes route(Router router) {
+        try {
+            long startTime = System.currentTimeMillis();
+
+            transitLayer = RoutingWorker.transitLayer(router, request);
+            RaptorRoutingRequestTransitData transitData = RoutingWorker.createTransitData(
+                    transitLayer,
+                    request
+            );
+            startOfTime = transitData.getStartOfTime();
+
+            Map<Stop, Transfer> accessTransfers = RoutingWorker.accessEgressSearch(request, false);
+
+            RaptorRequest<TripSchedule> raptorRequest = mapRequest(
+                    new TransferToAccessEgressLegMapper(transitLayer, request.walkSpeed)
+                            .map(accessTransfers)
+            );
+            StopTravelTimes travelTimes = RoutingWorker.raptorService()
+                    .travelTimes(raptorRequest, transitData);
+            if (maxTravelTime != null) {
+                travelTimes = travelTimes.withMaxTravelDuration((int) maxTravelTime.getSeconds());
+            }
+
+            LOG.debug(
+                    "Travel times to {} stops in {} iterations took {} ms",
+                    travelTimes.numberOfStops(),
+                    travelTimes.numberOfIterations(),
+                    System.currentTimeMillis() - startTime
+            );
+            return travelTimes;
+        }
+        finally {
+            request.cleanup();
+        }
+    }
+
+    /** The transit layer used in the search, to map stop indexes to stops. */
+    public TransitLayer getTransitLayer() {
+        return transitLayer;
+    }
+
+    /** The time the departure times in the result are relative to. */
+    public ZonedDateTime getStartOfTime() {
+        return startOfTime;
+    }
+
+    private RaptorRequest<TripSchedule> mapRequest(Collection<TransferLeg> accessLegs) {
+        RaptorRequestBuilder<TripSchedule> builder = new RaptorRequestBuilder<>();
+
+        int departureTime = DateMapper.secondsSinceStartOfTime(
+                startOfTime,
+                request.getDateTime().toInstant()
+        );
+        int searchWindow = (int) (request.searchWindow == null
+                ? DEFAULT_SEARCH_WINDOW
+                : request.searchWindow).getSeconds();
+
+        builder.profile(RaptorProfile.TRAVEL_TIMES);
+        builder.searchParams()
+                .earliestDepartureTime(departureTime)
+                .searchWindowInSeconds(searchWindow)
+                .addAccessStops(accessLegs)
+                .boardSlackInSeconds(request.boardSlack)
+                .timetableEnabled(false);
+
+        if (maxTravelTime != null) {
+            builder.searchParams().latestArrivalTime(
+                    departureTime + searchWindow + (int) maxTravelTime.getSeconds()
+            );
+        }
+        if (request.maxTransfers != null) {
+            builder.searchParams().maxNumberOfTransfers(request.maxTransfers);
+        }
+        return builder.build();
+    }
+}
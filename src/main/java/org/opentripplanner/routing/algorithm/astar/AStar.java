@@ -164,7 +164,10 @@ public class AStar {
 
         runState.nVisited += 1;
         
-        Collection<Edge> edges = runState.options.arriveBy ? runState.u_vertex.getIncoming() : runState.u_vertex.getOutgoing();
+        // The temporary edges of the request are not in the graph, the routing context has them
+        Collection<Edge> edges = runState.options.arriveBy
+                ? runState.rctx.getIncoming(runState.u_vertex)
+                : runState.rctx.getOutgoing(runState.u_vertex);
         for (Edge edge : edges) {
 
             if (skipEdgeStrategy != null &&
@@ -241,6 +244,13 @@ public class AStar {
 
                 break;
             }
+
+            /* Terminate if the request is cancelled */
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.debug("Search interrupted. origin={} target={}", runState.rctx.fromVertices, runState.rctx.toVertices);
+                runState.options.rctx.aborted = true;
+                break;
+            }
             
             /*
              * Get next best state and, if it hasn't already been dominated, add adjacent states to queue.
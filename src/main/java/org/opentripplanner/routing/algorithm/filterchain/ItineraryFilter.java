@@ -17,6 +17,12 @@ import java.util.List;
  * {@link org.opentripplanner.routing.algorithm.filterchain.filters.DebugFilterChain}, and the
  * logic can be reused in several places. So, because of this, most filters can ignore the
  * debug-mode.
+ * <p>
+ * The transit itineraries are filtered as summaries, and completed after the filter chain. The
+ * street legs of a summary are complete, a filter should only use the times, mode, trip, route,
+ * distance and from/to places of the transit legs, see
+ * {@link org.opentripplanner.routing.algorithm.mapping.RaptorPathToItineraryMapper#createItinerarySummary}.
+ * The debug filter chain gets the complete itineraries.
  */
 public interface ItineraryFilter {
 
@@ -1,7 +1,5 @@
 package org.opentripplanner.routing.algorithm.mapping;
 
-import org.locationtech.jts.geom.Coordinate;
-import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.model.Route;
 import org.opentripplanner.model.Stop;
@@ -33,10 +31,10 @@ import org.opentripplanner.transit.raptor.api.path.PathLeg;
 import org.opentripplanner.transit.raptor.api.path.TransferPathLeg;
 import org.opentripplanner.transit.raptor.api.path.TransitPathLeg;
 import org.opentripplanner.util.PolylineEncoder;
+import org.opentripplanner.util.SegmentedPolyline;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
@@ -57,6 +55,10 @@ public class RaptorPathToItineraryMapper {
 
     private final ZonedDateTime startOfTime;
 
+    private final long startOfTimeMillis;
+
+    private final TimeZone timeZone;
+
     private final Map<Stop, Transfer> accessTransfers;
 
     private final Map<Stop, Transfer> egressTransfers;
@@ -80,6 +82,8 @@ public class RaptorPathToItineraryMapper {
 
         this.transitLayer = transitLayer;
         this.startOfTime = startOfTime;
+        this.startOfTimeMillis = startOfTime.toInstant().toEpochMilli();
+        this.timeZone = TimeZone.getTimeZone(startOfTime.getZone());
         this.request = request;
         this.accessTransfers = accessTransfers;
         this.egressTransfers = egressTransfers;
@@ -118,6 +122,68 @@ public class RaptorPathToItineraryMapper {
         mapEgressLeg(legs, egressPathLeg, egressTransfers);
         propagateStopPlaceNamesToWalkingLegs(legs);
 
+        return createItinerary(path, legs);
+    }
+
+    /**
+     * Create an itinerary with only the information used by the itinerary filter chain. The
+     * access, egress and transfer legs are mapped like in {@link #createItinerary(Path)}, so the
+     * filters see the same modes, distances and times. The transit legs only have the times, mode,
+     * trip, route, from/to places and distance: geometries, intermediate stops, trip details and
+     * alerts are not mapped. Use {@link #createItinerary(Path, Itinerary)} to complete the
+     * summaries kept by the filters.
+     */
+    public Itinerary createItinerarySummary(Path<TripSchedule> path) {
+        List<Leg> legs = new ArrayList<>();
+
+        mapAccessLeg(legs, path.accessLeg(), accessTransfers);
+
+        PathLeg<TripSchedule> pathLeg = path.accessLeg().nextLeg();
+
+        while (!pathLeg.isEgressLeg()) {
+            if (pathLeg.isTransitLeg()) {
+                legs.add(mapTransitLegSummary(pathLeg.asTransitLeg()));
+            }
+            if (pathLeg.isTransferLeg()) {
+                mapTransferLeg(legs, pathLeg.asTransferLeg());
+            }
+            pathLeg = pathLeg.nextLeg();
+        }
+
+        mapEgressLeg(legs, pathLeg.asEgressLeg(), egressTransfers);
+        propagateStopPlaceNamesToWalkingLegs(legs);
+
+        return createItinerary(path, legs);
+    }
+
+    /**
+     * Create the complete itinerary of a path from its summary, see {@link
+     * #createItinerarySummary(Path)}. The access, egress and transfer legs of the summary are
+     * reused, only the transit legs are mapped again.
+     */
+    public Itinerary createItinerary(Path<TripSchedule> path, Itinerary summary) {
+        List<Leg> legs = new ArrayList<>(summary.legs.size());
+        PathLeg<TripSchedule> pathLeg = path.accessLeg().nextLeg();
+        boolean firstLeg = true;
+
+        for (Leg leg : summary.legs) {
+            if (!leg.isTransitLeg()) {
+                legs.add(leg);
+                continue;
+            }
+            while (!pathLeg.isTransitLeg()) {
+                pathLeg = pathLeg.nextLeg();
+            }
+            legs.add(mapTransitLeg(request, pathLeg.asTransitLeg(), firstLeg));
+            firstLeg = false;
+            pathLeg = pathLeg.nextLeg();
+        }
+        propagateStopPlaceNamesToWalkingLegs(legs);
+
+        return createItinerary(path, legs);
+    }
+
+    private Itinerary createItinerary(Path<TripSchedule> path, List<Leg> legs) {
         Itinerary itinerary = new Itinerary(legs);
 
         // Map general itinerary fields
@@ -127,6 +193,23 @@ public class RaptorPathToItineraryMapper {
         return itinerary;
     }
 
+    private Leg mapTransitLegSummary(TransitPathLeg<TripSchedule> pathLeg) {
+        TripSchedule tripSchedule = pathLeg.trip();
+        TripPattern tripPattern = tripSchedule.getOriginalTripPattern();
+
+        Leg leg = new Leg();
+        leg.startTime = createCalendar(pathLeg.fromTime());
+        leg.endTime = createCalendar(pathLeg.toTime());
+        leg.mode = tripPattern.mode;
+        leg.tripId = tripSchedule.getOriginalTripTimes().trip.getId();
+        leg.routeId = tripPattern.route.getId();
+        leg.from = mapStopToPlace(transitLayer.getStopByIndex(pathLeg.fromStop()));
+        leg.to = mapStopToPlace(transitLayer.getStopByIndex(pathLeg.toStop()));
+        int[] hops = findHops(pathLeg);
+        leg.distanceMeters = tripPattern.getHopPolylines().distance(hops[0], hops[1]);
+        return leg;
+    }
+
     private void mapAccessLeg(
             List<Leg> legs,
             AccessPathLeg<TripSchedule> accessPathLeg,
@@ -187,9 +270,10 @@ public class RaptorPathToItineraryMapper {
         leg.tripId = trip.getId();
         leg.from = mapStopToPlace(boardStop);
         leg.to = mapStopToPlace(alightStop);
-        List<Coordinate> transitLegCoordinates = extractTransitLegCoordinates(pathLeg);
-        leg.legGeometry = PolylineEncoder.createEncodings(transitLegCoordinates);
-        leg.distanceMeters = getDistanceFromCoordinates(transitLegCoordinates);
+        int[] hops = findHops(pathLeg);
+        SegmentedPolyline hopPolylines = tripPattern.getHopPolylines();
+        leg.legGeometry = hopPolylines.encode(hops[0], hops[1]);
+        leg.distanceMeters = hopPolylines.distance(hops[0], hops[1]);
 
         if (request.showIntermediateStops) {
             leg.intermediateStops = extractIntermediateStops(pathLeg);
@@ -232,13 +316,17 @@ public class RaptorPathToItineraryMapper {
     private void mapTransferLeg(List<Leg> legs, TransferPathLeg<TripSchedule> pathLeg) {
         Stop transferFromStop = transitLayer.getStopByIndex(pathLeg.fromStop());
         Stop transferToStop = transitLayer.getStopByIndex(pathLeg.toStop());
-        Transfer transfer = transitLayer.getTransferByStopIndex().get(pathLeg.fromStop()).stream().filter(t -> t.getToStop() == pathLeg.toStop()).findFirst().get();
+        Transfer transfer = findTransfer(pathLeg);
 
         Place from = mapStopToPlace(transferFromStop);
         Place to = mapStopToPlace(transferToStop);
         mapNonTransitLeg(legs, pathLeg, transfer, from, to, false);
     }
 
+    private Transfer findTransfer(TransferPathLeg<TripSchedule> pathLeg) {
+        return transitLayer.getTransferByStopIndex().get(pathLeg.fromStop()).stream().filter(t -> t.getToStop() == pathLeg.toStop()).findFirst().get();
+    }
+
     private void mapEgressLeg(
             List<Leg> legs,
             EgressPathLeg<TripSchedule> egressPathLeg,
@@ -351,9 +439,8 @@ public class RaptorPathToItineraryMapper {
     }
 
     private Calendar createCalendar(int timeInSeconds) {
-        ZonedDateTime zdt = startOfTime.plusSeconds(timeInSeconds);
-        Calendar c = Calendar.getInstance(TimeZone.getTimeZone(zdt.getZone()));
-        c.setTimeInMillis(zdt.toInstant().toEpochMilli());
+        Calendar c = Calendar.getInstance(timeZone);
+        c.setTimeInMillis(startOfTimeMillis + timeInSeconds * 1000L);
         return c;
     }
 
@@ -386,30 +473,25 @@ public class RaptorPathToItineraryMapper {
         return visits;
     }
 
-    private List<Coordinate> extractTransitLegCoordinates(TransitPathLeg<TripSchedule> pathLeg) {
-        List<Coordinate> transitLegCoordinates = new ArrayList<>();
-        TripPattern tripPattern = pathLeg.trip().getOriginalTripPattern();
+    /**
+     * Find the hops of the trip pattern traveled on the transit leg.
+     *
+     * @return the index of the first hop and the index after the last hop.
+     */
+    private int[] findHops(TransitPathLeg<TripSchedule> pathLeg) {
         TripSchedule tripSchedule = pathLeg.trip();
-        boolean boarded = false;
-        for (int j = 0; j < tripPattern.stopPattern.stops.length; j++) {
-            if (boarded) {
-                transitLegCoordinates.addAll(Arrays.asList(tripPattern.getHopGeometry(j - 1).getCoordinates()));
-            }
-            if (!boarded && tripSchedule.departure(j) == pathLeg.fromTime()) {
-                boarded = true;
-            }
-            if (boarded && tripSchedule.arrival(j) == pathLeg.toTime()) {
-                break;
-            }
+        int numStops = tripSchedule.getOriginalTripPattern().stopPattern.size;
+
+        int boardStop = 0;
+        while (boardStop < numStops && tripSchedule.departure(boardStop) != pathLeg.fromTime()) {
+            ++boardStop;
         }
-        return transitLegCoordinates;
-    }
+        if (boardStop == numStops) { return new int[] { 0, 0 }; }
 
-    private double getDistanceFromCoordinates(List<Coordinate> coordinates) {
-        double distance = 0;
-        for (int i = 1; i < coordinates.size(); i++) {
-            distance += SphericalDistanceLibrary.distance(coordinates.get(i), coordinates.get(i - 1));
+        int alightStop = boardStop;
+        while (alightStop < numStops - 1 && tripSchedule.arrival(alightStop) != pathLeg.toTime()) {
+            ++alightStop;
         }
-        return distance;
+        return new int[] { boardStop, alightStop };
     }
 }
@@ -4,7 +4,6 @@ import org.opentripplanner.model.Stop;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,9 +13,10 @@ import java.util.Map;
 public class TransitLayer {
 
   /**
-   * Transit data required for routing
+   * Transit data required for routing. The collections are never modified, the
+   * TransitLayerUpdater replace the collection for a date in a copy of the TransitLayer.
    */
-  private final HashMap<LocalDate, List<TripPatternForDate>> tripPatternsForDate;
+  private final HashMap<LocalDate, Collection<TripPatternForDate>> tripPatternsForDate;
 
   /**
    * Index of outer list is from stop index, inner list index has no specific meaning. To stop index
@@ -31,10 +31,15 @@ public class TransitLayer {
 
   private final ZoneId transitDataZoneId;
 
+  /**
+   * The changes compared with the realtime TransitLayer this is a copy of, {@code null} if unknown.
+   */
+  private TransitLayerChangeLog changeLog = null;
+
   /**
    * Makes a shallow copy of the TransitLayer, except for the tripPatternsForDate, where a shallow
    * copy of the HashMap is made. This is sufficient, as the TransitLayerUpdater will replace
-   * entire keys and their values in the map.
+   * entire keys and their values in the map. The change log is not copied.
    */
   public TransitLayer(TransitLayer transitLayer) {
     this(
@@ -46,8 +51,7 @@ public class TransitLayer {
   }
 
   public TransitLayer(
-      Map<LocalDate,
-      List<TripPatternForDate>> tripPatternsForDate,
+      Map<LocalDate, ? extends Collection<TripPatternForDate>> tripPatternsForDate,
       List<List<Transfer>> transferByStopIndex,
       StopIndexForRaptor stopIndex,
       ZoneId transitDataZoneId
@@ -89,9 +93,23 @@ public class TransitLayer {
     return stopIndex.stopsByIndex.size();
   }
 
-  public List<TripPatternForDate> getTripPatternsForDateCopy(LocalDate date) {
-    List<TripPatternForDate> tripPatternForDate = tripPatternsForDate.get(date);
-    return tripPatternForDate != null ? new ArrayList<>(tripPatternsForDate.get(date)) : null;
+  public boolean hasTripPatternsForDate(LocalDate date) {
+    return tripPatternsForDate.containsKey(date);
+  }
+
+  /**
+   * The changes made to the realtime TransitLayer this replaced, or {@code null} if they are not
+   * known - then everything should be considered changed.
+   */
+  public TransitLayerChangeLog getChangeLog() {
+    return changeLog;
+  }
+
+  /**
+   * Set by the TransitLayerUpdater, before this TransitLayer is published.
+   */
+  public void setChangeLog(TransitLayerChangeLog changeLog) {
+    this.changeLog = changeLog;
   }
 
   public List<List<Transfer>> getTransferByStopIndex() {
@@ -104,7 +122,7 @@ public class TransitLayer {
    */
   public void replaceTripPatternsForDate(
       LocalDate date,
-      List<TripPatternForDate> tripPatternForDates
+      Collection<TripPatternForDate> tripPatternForDates
   ) {
     this.tripPatternsForDate.replace(date, tripPatternForDates);
   }
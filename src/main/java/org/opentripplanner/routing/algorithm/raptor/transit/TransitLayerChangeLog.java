@@ -0,0 +1,108 @@
+package org.opentripplanner.routing.algorithm.raptor.transit;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes made to the TripPatternForDates of a realtime {@link TransitLayer}, compared with the
+ * realtime TransitLayer it replaced. Caches derived from the TransitLayer use this to invalidate
+ * only what is computed from the changed dates.
+ * <p>
+ * The change log is filled in by the TransitLayerUpdater before the TransitLayer is published,
+ * and is never changed after that.
+ */
+public class TransitLayerChangeLog {
+
+  /**
+   * The replaced TransitLayer. This is a weak reference, so a chain of TransitLayers and change
+   * logs does not keep old transit data alive.
+   */
+  private final WeakReference<TransitLayer> previousTransitLayer;
+
+  private final Map<LocalDate, List<TripPatternForDate>> added = new HashMap<>();
+
+  private final Map<LocalDate, List<TripPatternForDate>> updated = new HashMap<>();
+
+  private final Map<LocalDate, List<TripPatternForDate>> removed = new HashMap<>();
+
+  public TransitLayerChangeLog(TransitLayer previousTransitLayer) {
+    this.previousTransitLayer = new WeakReference<>(previousTransitLayer);
+  }
+
+  /**
+   * The TransitLayer these changes are made to, or {@code null} if it is garbage collected.
+   */
+  public TransitLayer getPreviousTransitLayer() {
+    return previousTransitLayer.get();
+  }
+
+  public void added(TripPatternForDate tripPatternForDate) {
+    add(added, tripPatternForDate);
+  }
+
+  /**
+   * @param tripPatternForDate the new TripPatternForDate, replacing one for the same pattern.
+   */
+  public void updated(TripPatternForDate tripPatternForDate) {
+    add(updated, tripPatternForDate);
+  }
+
+  public void removed(TripPatternForDate tripPatternForDate) {
+    add(removed, tripPatternForDate);
+  }
+
+  public Collection<TripPatternForDate> getAdded(LocalDate date) {
+    return added.getOrDefault(date, Collections.emptyList());
+  }
+
+  public Collection<TripPatternForDate> getUpdated(LocalDate date) {
+    return updated.getOrDefault(date, Collections.emptyList());
+  }
+
+  public Collection<TripPatternForDate> getRemoved(LocalDate date) {
+    return removed.getOrDefault(date, Collections.emptyList());
+  }
+
+  /** The dates with added, updated or removed TripPatternForDates. */
+  public Set<LocalDate> getChangedDates() {
+    Set<LocalDate> dates = new HashSet<>(added.keySet());
+    dates.addAll(updated.keySet());
+    dates.addAll(removed.keySet());
+    return dates;
+  }
+
+  public boolean isEmpty() {
+    return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "TransitLayerChangeLog{dates=" + getChangedDates()
+        + ", added=" + count(added)
+        + ", updated=" + count(updated)
+        + ", removed=" + count(removed)
+        + '}';
+  }
+
+  /* private methods */
+
+  private static void add(
+      Map<LocalDate, List<TripPatternForDate>> changes,
+      TripPatternForDate tripPatternForDate
+  ) {
+    changes.computeIfAbsent(tripPatternForDate.getLocalDate(), d -> new ArrayList<>())
+        .add(tripPatternForDate);
+  }
+
+  private static int count(Map<LocalDate, List<TripPatternForDate>> changes) {
+    return changes.values().stream().mapToInt(List::size).sum();
+  }
+}
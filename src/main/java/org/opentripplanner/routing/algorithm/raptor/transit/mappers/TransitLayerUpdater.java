@@ -6,19 +6,23 @@ import gnu.trove.set.TIntSet;
 import org.opentripplanner.model.Timetable;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayerChangeLog;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPattern;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.util.CopyOnWriteChunkedMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 import static org.opentripplanner.routing.algorithm.raptor.transit.mappers.TripPatternMapper.mapOldTripPatternToRaptorTripPattern;
@@ -27,8 +31,17 @@ import static org.opentripplanner.routing.algorithm.raptor.transit.mappers.TripP
  * Update the TransitLayer from a set of TimeTables. A shallow copy is made of the TransitLayer
  * (this also includes a shallow copy of the TripPatternsForDate map). TripPatterns are matched on
  * id and replaced by their updated versions. The realtime TransitLayer is then switched out
- * with the updated copy in an atomic operation. This ensures that any TransitLayer that is
- * referenced from the Graph is never changed.
+ * with the updated copy in an atomic operation, once all dates are updated. This ensures that
+ * any TransitLayer that is referenced from the Graph is never changed.
+ * <p>
+ * The TripPatternForDates of each date are kept in a {@link CopyOnWriteChunkedMap}, so an update
+ * only copies the map chunks containing updated patterns; the unchanged TripPatternForDates are
+ * shared with the previous TransitLayer. The TransitLayer gets a plain list of the
+ * TripPatternForDates of each updated date, created once per update, so the routing requests do
+ * not walk the chunks.
+ * <p>
+ * Each published TransitLayer has a {@link TransitLayerChangeLog} with the added, updated and
+ * removed TripPatternForDates, and the {@link ChangeListener}s are notified after it is published.
  */
 public class TransitLayerUpdater {
 
@@ -40,11 +53,14 @@ public class TransitLayerUpdater {
 
   /**
    * Cache the TripPatternForDates indexed on the original TripPatterns in order to avoid
-   * this expensive operation being done each time the update method is called.
+   * this expensive operation being done each time the update method is called. This is the
+   * working copy, the TransitLayer only reference read-only copies of these maps.
    */
-  private final Map<LocalDate, Map<org.opentripplanner.model.TripPattern, TripPatternForDate>>
+  private final Map<LocalDate, CopyOnWriteChunkedMap<org.opentripplanner.model.TripPattern, TripPatternForDate>>
                 tripPatternForDateMapCache = new HashMap<>();
 
+  private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
   public TransitLayerUpdater(
       Graph graph,
       Map<ServiceDate, TIntSet> serviceCodesRunningForDate
@@ -53,14 +69,23 @@ public class TransitLayerUpdater {
     this.serviceCodesRunningForDate = serviceCodesRunningForDate;
   }
 
+  /**
+   * Register a listener notified each time a new realtime TransitLayer is published.
+   */
+  public void addChangeListener(ChangeListener listener) {
+    listeners.add(listener);
+  }
+
   public void update(Set<Timetable> updatedTimetables) {
     if (!graph.hasRealtimeTransitLayer()) { return; }
 
+    long startTime = System.currentTimeMillis();
+
     // Make a shallow copy of the realtime transit layer. Only the objects that are copied will be
     // changed during this update process.
-    TransitLayer realtimeTransitLayer = new TransitLayer(graph.getRealtimeTransitLayer());
-
-    double startTime = System.currentTimeMillis();
+    TransitLayer previousTransitLayer = graph.getRealtimeTransitLayer();
+    TransitLayer realtimeTransitLayer = new TransitLayer(previousTransitLayer);
+    TransitLayerChangeLog changeLog = new TransitLayerChangeLog(previousTransitLayer);
 
     // Map TripPatterns for this update to Raptor TripPatterns
     final Map<org.opentripplanner.model.TripPattern, TripPattern>
@@ -83,44 +108,160 @@ public class TransitLayerUpdater {
     );
 
     for (LocalDate date : timetablesByDate.keySet()) {
-      Collection<Timetable> timetablesForDate = timetablesByDate.get(date);
-
-      List<TripPatternForDate> patternsForDate =
-          realtimeTransitLayer.getTripPatternsForDateCopy(date);
-
-      if (patternsForDate == null) {
+      if (!realtimeTransitLayer.hasTripPatternsForDate(date)) {
         continue;
       }
 
-      Map<org.opentripplanner.model.TripPattern, TripPatternForDate> patternsForDateMap =
-          tripPatternForDateMapCache.computeIfAbsent(date, p -> patternsForDate
-          .stream()
-          .collect(Collectors.toMap(t -> t.getTripPattern().getOriginalTripPattern(), t -> t)));
+      CopyOnWriteChunkedMap<org.opentripplanner.model.TripPattern, TripPatternForDate> patternsForDateMap =
+          tripPatternForDateMapCache.computeIfAbsent(
+              date,
+              d -> indexByOriginalTripPattern(realtimeTransitLayer.getTripPatternsForDate(d))
+          );
+
+      boolean changed = false;
 
-      for (Timetable timetable : timetablesForDate) {
+      for (Timetable timetable : timetablesByDate.get(date)) {
         TripPatternForDate tripPatternForDate = tripPatternForDateMapper.map(
             timetable,
             timetable.serviceDate
         );
         if (tripPatternForDate != null) {
-          patternsForDateMap.put(timetable.pattern, tripPatternForDate);
+          TripPatternForDate old = patternsForDateMap.put(timetable.pattern, tripPatternForDate);
+          if (old == null) {
+            changeLog.added(tripPatternForDate);
+          }
+          else {
+            changeLog.updated(tripPatternForDate);
+          }
+          changed = true;
+        }
+        else {
+          // No trips are running, or all are cancelled
+          TripPatternForDate old = patternsForDateMap.remove(timetable.pattern);
+          if (old != null) {
+            changeLog.removed(old);
+            changed = true;
+          }
         }
       }
 
-      realtimeTransitLayer.replaceTripPatternsForDate(
-          date,
-          new ArrayList<>(patternsForDateMap.values())
-      );
+      if (changed) {
+        realtimeTransitLayer.replaceTripPatternsForDate(date, listOf(patternsForDateMap));
+      }
+    }
 
-      // Switch out the reference with the updated realtimeTransitLayer. This is synchronized to
-      // guarantee that the reference is set after all the fields have been updated.
-      graph.setRealtimeTransitLayer(realtimeTransitLayer);
+    // Switch out the reference with the updated realtimeTransitLayer, after all dates are
+    // updated. This is synchronized to guarantee that the reference is set after all the fields
+    // have been updated.
+    publish(realtimeTransitLayer, changeLog);
+
+    LOG.debug(
+        "UPDATING {} tripPatterns took {} ms, {}",
+        updatedTimetables.size(),
+        System.currentTimeMillis() - startTime,
+        changeLog
+    );
+  }
+
+  /**
+   * Revert all dates before the given date to the scheduled TripPatternForDates, and drop the
+   * cached TripPatternForDates of these dates. This releases the realtime data of dates no longer
+   * updated, the timetables of these dates are purged from the timetable snapshot as well.
+   *
+   * @return the number of dates reverted.
+   */
+  public int revertExpiredDates(ServiceDate firstServiceDateToKeep) {
+    LocalDate firstDateToKeep = ServiceCalendarMapper.localDateFromServiceDate(firstServiceDateToKeep);
+    List<LocalDate> expiredDates = tripPatternForDateMapCache
+        .keySet()
+        .stream()
+        .filter(date -> date.isBefore(firstDateToKeep))
+        .collect(Collectors.toList());
+
+    if (expiredDates.isEmpty()) { return 0; }
+
+    expiredDates.forEach(tripPatternForDateMapCache::remove);
+
+    if (!graph.hasRealtimeTransitLayer()) { return expiredDates.size(); }
+
+    TransitLayer scheduledTransitLayer = graph.getTransitLayer();
+    TransitLayer previousTransitLayer = graph.getRealtimeTransitLayer();
+    TransitLayer realtimeTransitLayer = new TransitLayer(previousTransitLayer);
+    TransitLayerChangeLog changeLog = new TransitLayerChangeLog(previousTransitLayer);
+    for (LocalDate date : expiredDates) {
+      Collection<TripPatternForDate> scheduled = scheduledTransitLayer.getTripPatternsForDate(date);
+      logChanges(changeLog, previousTransitLayer.getTripPatternsForDate(date), scheduled);
+      realtimeTransitLayer.replaceTripPatternsForDate(date, scheduled);
+    }
+    publish(realtimeTransitLayer, changeLog);
+    return expiredDates.size();
+  }
+
+  /**
+   * Notified after a new realtime TransitLayer is published, see
+   * {@link TransitLayer#getChangeLog()} for the changes.
+   */
+  public interface ChangeListener {
+
+    /**
+     * Called on the thread publishing the timetable snapshot, this should return quickly.
+     */
+    void transitLayerUpdated(TransitLayer transitLayer);
+  }
+
+
+  /* private methods */
+
+  private void publish(TransitLayer realtimeTransitLayer, TransitLayerChangeLog changeLog) {
+    realtimeTransitLayer.setChangeLog(changeLog);
+    graph.setRealtimeTransitLayer(realtimeTransitLayer);
+    for (ChangeListener listener : listeners) {
+      listener.transitLayerUpdated(realtimeTransitLayer);
+    }
+  }
+
+  /**
+   * Copy the values once per update: the map values are a view over the map chunks, walking
+   * them for every routing request is slower than walking a list.
+   */
+  private static List<TripPatternForDate> listOf(
+      CopyOnWriteChunkedMap<org.opentripplanner.model.TripPattern, TripPatternForDate> map
+  ) {
+    return Collections.unmodifiableList(new ArrayList<>(map.values()));
+  }
+
+  /**
+   * Log the changes between two collections of TripPatternForDates for the same date, the
+   * TripPatternForDates are matched on their original TripPattern.
+   */
+  private static void logChanges(
+      TransitLayerChangeLog changeLog,
+      Collection<TripPatternForDate> before,
+      Collection<TripPatternForDate> after
+  ) {
+    Map<org.opentripplanner.model.TripPattern, TripPatternForDate> removed = new HashMap<>();
+    for (TripPatternForDate it : before) {
+      removed.put(it.getTripPattern().getOriginalTripPattern(), it);
+    }
+    for (TripPatternForDate it : after) {
+      TripPatternForDate old = removed.remove(it.getTripPattern().getOriginalTripPattern());
+      if (old == null) {
+        changeLog.added(it);
+      }
+      else if (old != it) {
+        changeLog.updated(it);
+      }
+    }
+    removed.values().forEach(changeLog::removed);
+  }
 
-      LOG.debug(
-          "UPDATING {} tripPatterns took {} ms",
-          updatedTimetables.size(),
-          System.currentTimeMillis() - startTime
-      );
+  private static CopyOnWriteChunkedMap<org.opentripplanner.model.TripPattern, TripPatternForDate>
+  indexByOriginalTripPattern(Collection<TripPatternForDate> patternsForDate) {
+    CopyOnWriteChunkedMap<org.opentripplanner.model.TripPattern, TripPatternForDate> map =
+        new CopyOnWriteChunkedMap<>();
+    for (TripPatternForDate it : patternsForDate) {
+      map.put(it.getTripPattern().getOriginalTripPattern(), it);
     }
+    return map;
   }
 }
@@ -9,6 +9,7 @@ import org.opentripplanner.transit.raptor.api.transit.TransitDataProvider;
 import org.opentripplanner.transit.raptor.api.transit.TripPatternInfo;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -59,6 +60,20 @@ public class RaptorRoutingRequestTransitData implements TransitDataProvider<Trip
     this.transfers = creator.calculateTransferDuration(walkSpeed);
   }
 
+  /**
+   * The dates of the TripPatternForDates in the transit data of a search.
+   */
+  public static List<LocalDate> searchDates(
+      TransitLayer transitLayer,
+      Instant departureTime,
+      int dayRange
+  ) {
+    return RaptorRoutingRequestTransitDataCreator.searchDates(
+        LocalDate.ofInstant(departureTime, transitLayer.getTransitDataZoneId()),
+        dayRange
+    );
+  }
+
   /**
    * Gets all the transfers starting at a given stop
    */
@@ -66,21 +66,25 @@ class RaptorRoutingRequestTransitDataCreator {
   ) {
     List<Map<FeedScopedId, TripPatternForDate>> tripPatternForDates = new ArrayList<>();
 
-    // Start at yesterdays date to account for trips that cross midnight. This is also
-    // accounted for in TripPatternForDates.
-    for (int d = -1; d < dayRange - 1; ++d) {
-      tripPatternForDates.add(
-        listActiveTripPatterns(
-          transitLayer,
-          departureDate.plusDays(d),
-          transitModes
-        )
-      );
+    for (LocalDate date : searchDates(departureDate, dayRange)) {
+      tripPatternForDates.add(listActiveTripPatterns(transitLayer, date, transitModes));
     }
 
     return tripPatternForDates;
   }
 
+  /**
+   * The dates of the TripPatternForDates used in a search, starting at yesterdays date to account
+   * for trips that cross midnight. This is also accounted for in TripPatternForDates.
+   */
+  static List<LocalDate> searchDates(LocalDate departureDate, int dayRange) {
+    List<LocalDate> dates = new ArrayList<>(dayRange);
+    for (int d = -1; d < dayRange - 1; ++d) {
+      dates.add(departureDate.plusDays(d));
+    }
+    return dates;
+  }
+
   /**
    * This method merges several list of TripPatterns for several consecutive dates into a single
    * list of TripPatternsForDates. The purpose of doing this is so that TripSchedules for several
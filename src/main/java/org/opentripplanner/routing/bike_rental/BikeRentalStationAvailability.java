@@ -0,0 +1,85 @@
+package org.opentripplanner.routing.bike_rental;
+
+import java.io.Serializable;
+
+/**
+ * The number of bikes and spaces available at the stations of one bike rental updater, indexed
+ * by a station index assigned by the updater. The updater builds a new table for each poll and
+ * publishes it with one volatile write, so the routing threads read the availability without
+ * locking, and never see a partially applied update.
+ * <p>
+ * A station with an index outside the published table, or not in service, has no bikes and no
+ * spaces available.
+ */
+public class BikeRentalStationAvailability implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile Table table = new Table(new int[0], new int[0], new boolean[0]);
+
+    public int getBikesAvailable(int stationIndex) {
+        Table t = table;
+        return t.isInService(stationIndex) ? t.bikesAvailable[stationIndex] : 0;
+    }
+
+    public int getSpacesAvailable(int stationIndex) {
+        Table t = table;
+        return t.isInService(stationIndex) ? t.spacesAvailable[stationIndex] : 0;
+    }
+
+    public boolean isInService(int stationIndex) {
+        return table.isInService(stationIndex);
+    }
+
+    /** The number of station indexes in the published table. */
+    public int size() {
+        return table.inService.length;
+    }
+
+    /** Start building a new table, the published table is not changed until the builder is published. */
+    public Builder newTable(int size) {
+        return new Builder(size);
+    }
+
+    public class Builder {
+        private final int[] bikesAvailable;
+        private final int[] spacesAvailable;
+        private final boolean[] inService;
+
+        private Builder(int size) {
+            this.bikesAvailable = new int[size];
+            this.spacesAvailable = new int[size];
+            this.inService = new boolean[size];
+        }
+
+        public Builder set(int stationIndex, int bikesAvailable, int spacesAvailable) {
+            this.bikesAvailable[stationIndex] = bikesAvailable;
+            this.spacesAvailable[stationIndex] = spacesAvailable;
+            this.inService[stationIndex] = true;
+            return this;
+        }
+
+        /** Replace the published table. The builder must not be used after this. */
+        public void publish() {
+            table = new Table(bikesAvailable, spacesAvailable, inService);
+        }
+    }
+
+    private static final class Table implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] bikesAvailable;
+        private final int[] spacesAvailable;
+        private final boolean[] inService;
+
+        private Table(int[] bikesAvailable, int[] spacesAvailable, boolean[] inService) {
+            this.bikesAvailable = bikesAvailable;
+            this.spacesAvailable = spacesAvailable;
+            this.inService = inService;
+        }
+
+        private boolean isInService(int stationIndex) {
+            return stationIndex >= 0 && stationIndex < inService.length && inService[stationIndex];
+        }
+    }
+}
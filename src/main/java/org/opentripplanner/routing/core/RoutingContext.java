@@ -7,6 +7,7 @@ import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.routing.algorithm.astar.strategies.EuclideanRemainingWeightHeuristic;
 import org.opentripplanner.routing.algorithm.astar.strategies.RemainingWeightHeuristic;
 import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
 import org.opentripplanner.routing.edgetype.TemporaryPartialStreetEdge;
 import org.opentripplanner.routing.error.GraphNotFoundException;
 import org.opentripplanner.routing.error.VertexNotFoundException;
@@ -20,7 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,6 +49,14 @@ public class RoutingContext implements Cloneable {
     public final Set<Vertex> fromVertices;
 
     public final Set<Vertex> toVertices;
+
+    /**
+     * The temporary edges of this request connected to the permanent vertices of the graph,
+     * indexed on the permanent vertex. Temporary edges are not added to the permanent vertices, so
+     * the search must look them up here, see {@link #getOutgoing(Vertex)} and
+     * {@link #getIncoming(Vertex)}.
+     */
+    public final OverlayGraph temporaryEdges;
     
     // The back edge associated with the origin - i.e. continuing a previous search.
     // NOTE: not final so that it can be modified post-construction for testing.
@@ -169,6 +181,8 @@ public class RoutingContext implements Cloneable {
 
         adjustForSameFromToEdge();
 
+        this.temporaryEdges = findTemporaryEdges();
+
         remainingWeightHeuristic = new EuclideanRemainingWeightHeuristic();
     }
 
@@ -208,8 +222,68 @@ public class RoutingContext implements Cloneable {
         }
     }
 
+    /**
+     * Traverse the temporary subgraph of the origin and destination vertices, and collect the
+     * temporary edges connecting it to the permanent vertices.
+     */
+    private OverlayGraph findTemporaryEdges() {
+        OverlayGraph overlay = new OverlayGraph();
+        List<Vertex> todo = new ArrayList<>();
+        if (fromVertices != null) { todo.addAll(fromVertices); }
+        if (toVertices != null) { todo.addAll(toVertices); }
+
+        Set<Vertex> done = new HashSet<>();
+        while (!todo.isEmpty()) {
+            Vertex v = todo.remove(todo.size() - 1);
+            if (!(v instanceof TemporaryVertex) || !done.add(v)) {
+                continue;
+            }
+            for (Edge e : v.getOutgoing()) {
+                if (e.getToVertex() instanceof TemporaryVertex) {
+                    todo.add(e.getToVertex());
+                } else if (e instanceof TemporaryEdge) {
+                    overlay.addIncoming(e.getToVertex(), e);
+                }
+            }
+            for (Edge e : v.getIncoming()) {
+                if (e.getFromVertex() instanceof TemporaryVertex) {
+                    todo.add(e.getFromVertex());
+                } else if (e instanceof TemporaryEdge) {
+                    overlay.addOutgoing(e.getFromVertex(), e);
+                }
+            }
+        }
+        return overlay;
+    }
+
     /* INSTANCE METHODS */
 
+    /**
+     * Get the edges leading from the vertex to other vertices, including the temporary edges of
+     * this request.
+     */
+    public Collection<Edge> getOutgoing(Vertex v) {
+        return withTemporaryEdges(v.getOutgoing(), temporaryEdges.getOutgoing(v));
+    }
+
+    /**
+     * Get the edges leading from other vertices to the vertex, including the temporary edges of
+     * this request.
+     */
+    public Collection<Edge> getIncoming(Vertex v) {
+        return withTemporaryEdges(v.getIncoming(), temporaryEdges.getIncoming(v));
+    }
+
+    private static Collection<Edge> withTemporaryEdges(Collection<Edge> edges, List<Edge> temporaryEdges) {
+        if (temporaryEdges.isEmpty()) {
+            return edges;
+        }
+        List<Edge> result = new ArrayList<>(edges.size() + temporaryEdges.size());
+        result.addAll(edges);
+        result.addAll(temporaryEdges);
+        return result;
+    }
+
     void checkIfVerticesFound() {
         ArrayList<String> notFound = new ArrayList<>();
 
@@ -230,7 +304,8 @@ public class RoutingContext implements Cloneable {
     /**
      * Tear down this routing context, removing any temporary edges from
      * the "permanent" graph objects. This enables all temporary objects
-     * for garbage collection.
+     * for garbage collection. Edges implementing {@link TemporaryEdge} are only kept in
+     * {@link #temporaryEdges}, so there is nothing to remove for them.
      */
     public void destroy() {
         if (fromVertices != null) {
@@ -11,6 +11,7 @@ import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.Route;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.error.TrivialPathException;
+import org.opentripplanner.routing.error.VertexNotFoundException;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
@@ -635,6 +636,13 @@ public class RoutingRequest implements Cloneable, Serializable {
      */
     private StreetEdge splitEdge = null;
 
+    /**
+     * The time the search should be completed by, in epoch milliseconds. The street searches are
+     * cut short at this time, even if the router timeouts allow more time. The default is no
+     * deadline.
+     */
+    private long searchDeadline = Long.MAX_VALUE;
+
     /* CONSTRUCTORS */
 
     /** Constructor for options; modes defaults to walk and transit */
@@ -890,6 +898,14 @@ public class RoutingRequest implements Cloneable, Serializable {
         return new Date(dateTime * 1000);
     }
 
+    public long getSearchDeadline() {
+        return searchDeadline;
+    }
+
+    public void setSearchDeadline(long searchDeadline) {
+        this.searchDeadline = searchDeadline;
+    }
+
     public void setDateTime(Date dateTime) {
         this.dateTime = dateTime.getTime() / 1000;
     }
@@ -1065,6 +1081,24 @@ public class RoutingRequest implements Cloneable, Serializable {
         this.rctx.originBackEdge = fromBackEdge;
     }
 
+    /**
+     * Create a routing context from the origin only, for one-to-many searches without a
+     * destination. The origin is linked to the street graph like in {@link #setRoutingContext(Graph)}.
+     */
+    public void setOriginRoutingContext(Graph graph) {
+        Set<Vertex> fromVertices = graph.streetIndex.getVerticesForLocation(from, this, false);
+        if (fromVertices == null) {
+            throw new VertexNotFoundException(List.of("from"));
+        }
+        // The routing context swaps the origin and destination of arrive-by requests
+        if (arriveBy) {
+            setRoutingContext(graph, null, fromVertices);
+        }
+        else {
+            setRoutingContext(graph, fromVertices, null);
+        }
+    }
+
     /** For use in tests. Force RoutingContext to specific vertices rather than making temp edges. */
     public void setRoutingContext(Graph graph, String from, String to) {
         this.setRoutingContext(graph, graph.getVertex(from), graph.getVertex(to));
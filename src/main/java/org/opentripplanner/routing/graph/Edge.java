@@ -5,8 +5,10 @@ import org.opentripplanner.model.Trip;
 import org.opentripplanner.common.MavenVersion;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
 import org.opentripplanner.routing.util.IncrementingIdGenerator;
 import org.opentripplanner.routing.util.UniqueIdGenerator;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
 
 import javax.xml.bind.annotation.XmlTransient;
 import java.io.IOException;
@@ -35,8 +37,16 @@ public abstract class Edge implements Serializable {
         }
         this.fromv = v1;
         this.tov = v2;
-        fromv.addOutgoing(this);
-        tov.addIncoming(this);
+        // A temporary edge is only added to its temporary vertices. The permanent vertices of the
+        // graph are shared by all requests, the search finds the temporary edges connected to them
+        // in the routing context, see RoutingContext#temporaryEdges.
+        boolean temporary = this instanceof TemporaryEdge;
+        if (!temporary || fromv instanceof TemporaryVertex) {
+            fromv.addOutgoing(this);
+        }
+        if (!temporary || tov instanceof TemporaryVertex) {
+            tov.addIncoming(this);
+        }
     }
 
     public Vertex getFromVertex() {
@@ -58,10 +58,12 @@ import org.opentripplanner.routing.impl.StreetVertexIndex;
 import org.opentripplanner.routing.services.AlertPatchService;
 import org.opentripplanner.routing.services.notes.StreetNotesService;
 import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.TripTimes;
 import org.opentripplanner.routing.util.ConcurrentPublished;
 import org.opentripplanner.routing.vertextype.TransitStopVertex;
 import org.opentripplanner.updater.GraphUpdaterConfigurator;
 import org.opentripplanner.updater.GraphUpdaterManager;
+import org.opentripplanner.updater.TripMatchingIndex;
 import org.opentripplanner.util.OtpAppException;
 import org.opentripplanner.util.WorldEnvelope;
 import org.slf4j.Logger;
@@ -150,6 +152,17 @@ public class Graph implements Serializable {
 
     private transient TimetableSnapshotProvider timetableSnapshotProvider = null;
 
+    /** Used to add realtime-added trips to the trip matching index, guarded by this. */
+    private transient TripMatchingIndex.Builder tripMatchingIndexBuilder = null;
+
+    private transient volatile TripMatchingIndex tripMatchingIndex = null;
+
+    /** The trips added to the trip matching index by realtime updates, guarded by this. */
+    private transient Set<Trip> realtimeTripsInTripMatchingIndex = null;
+
+    /** Services created by the updaters and shared by them, not serialized, guarded by this. */
+    private transient Map<Class<?>, Object> realtimeServices = null;
+
     private Map<String, Collection<Agency>> agenciesForFeedId = new HashMap<>();
 
     private Collection<Operator> operators = new ArrayList<>();
@@ -299,6 +312,45 @@ public class Graph implements Serializable {
         return timetableSnapshotProvider == null ? null : timetableSnapshotProvider.getTimetableSnapshot();
     }
 
+    /**
+     * Publish pending realtime changes, if any. This is a no-op if there are no realtime
+     * updaters. See {@link TimetableSnapshotProvider#publishTimetableSnapshot()}.
+     */
+    public void publishTimetableSnapshot() {
+        if (timetableSnapshotProvider != null) {
+            timetableSnapshotProvider.publishTimetableSnapshot();
+        }
+    }
+
+    /**
+     * Remove expired realtime data. This is a no-op if there are no realtime updaters. See
+     * {@link TimetableSnapshotProvider#compactRealtimeData(Graph)}.
+     */
+    public void compactRealtimeData() {
+        if (timetableSnapshotProvider != null) {
+            timetableSnapshotProvider.compactRealtimeData(this);
+        }
+    }
+
+    /**
+     * Return the service of the given type shared by the realtime updaters of this graph, or
+     * create it if it does not exist. Unlike {@link #getService(Class)}, these services are not
+     * serialized with the graph.
+     *
+     * TODO OTP2 - This should be replaced by proper dependency injection
+     */
+    public synchronized <T> T getOrSetupRealtimeService(Class<T> type, Function<Graph, T> creator) {
+        if (realtimeServices == null) {
+            realtimeServices = new HashMap<>();
+        }
+        Object service = realtimeServices.get(type);
+        if (service == null) {
+            service = creator.apply(this);
+            realtimeServices.put(type, service);
+        }
+        return type.cast(service);
+    }
+
     /**
      * TODO OTP2 - This should be replaced by proper dependency injection
      */
@@ -1076,6 +1128,64 @@ public class Graph implements Serializable {
         return tripPatternForId.values();
     }
 
+    /**
+     * The index used to match realtime updates without trip ids to trips. It is built the first
+     * time it is used, and includes the trips added with {@link #addToTripMatchingIndex}.
+     */
+    public TripMatchingIndex getTripMatchingIndex() {
+        TripMatchingIndex index = tripMatchingIndex;
+        if (index != null) { return index; }
+        synchronized (this) {
+            initTripMatchingIndex();
+            return tripMatchingIndex;
+        }
+    }
+
+    /**
+     * Add a trip created by a realtime update to the trip matching index. The index used by the
+     * matchers is replaced, not modified, so this is safe while other updaters are matching trips.
+     */
+    public synchronized void addToTripMatchingIndex(TripPattern pattern, TripTimes tripTimes) {
+        initTripMatchingIndex();
+        if (!tripMatchingIndexBuilder.contains(tripTimes.trip)) {
+            realtimeTripsInTripMatchingIndex.add(tripTimes.trip);
+        }
+        tripMatchingIndex = tripMatchingIndexBuilder.addTripTimes(pattern, tripTimes).build();
+    }
+
+    /**
+     * Remove the trips added with {@link #addToTripMatchingIndex} that are not in the given set,
+     * typically the trips no longer in any realtime timetable. Scheduled trips are never removed.
+     *
+     * @return the number of trips removed.
+     */
+    public synchronized int retainRealtimeTripsInTripMatchingIndex(Set<Trip> tripsToKeep) {
+        if (tripMatchingIndexBuilder == null) { return 0; }
+        List<Trip> expired = realtimeTripsInTripMatchingIndex
+                .stream()
+                .filter(it -> !tripsToKeep.contains(it))
+                .collect(Collectors.toList());
+        if (expired.isEmpty()) { return 0; }
+        for (Trip trip : expired) {
+            tripMatchingIndexBuilder.removeTrip(trip);
+            realtimeTripsInTripMatchingIndex.remove(trip);
+        }
+        tripMatchingIndex = tripMatchingIndexBuilder.build();
+        return expired.size();
+    }
+
+    private void initTripMatchingIndex() {
+        if (tripMatchingIndexBuilder != null) { return; }
+        TripMatchingIndex.Builder builder = TripMatchingIndex.builder();
+        for (TripPattern pattern : getTripPatterns()) {
+            builder.addPattern(pattern);
+        }
+        tripMatchingIndex = builder.build();
+        tripMatchingIndexBuilder = builder;
+        realtimeTripsInTripMatchingIndex = new HashSet<>();
+        LOG.info("Trip matching index built, {} trips.", tripMatchingIndex.size());
+    }
+
     public Collection<Notice> getNotices() {
         return getNoticesByElement().values();
     }
@@ -114,6 +114,7 @@ public class GraphPathFinder {
             timeoutIndex = router.timeouts.length - 1;
         }
         double timeout = searchBeginTime + (router.timeouts[timeoutIndex] * 1000);
+        timeout = Math.min(timeout, options.getSearchDeadline());
         timeout -= System.currentTimeMillis(); // Convert from absolute to relative time
         timeout /= 1000; // Convert milliseconds to seconds
         if (timeout <= 0) {
@@ -6,6 +6,7 @@ import com.google.common.hash.Hasher;
 import org.opentripplanner.common.MavenVersion;
 import org.opentripplanner.model.BikeAccess;
 import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.StopTimeColumns;
 import org.opentripplanner.model.Trip;
 import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.routing.algorithm.raptor.transit.TripScheduleImpl;
@@ -186,6 +187,42 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
         LOG.trace("trip {} has timepoint at indexes {}", trip, timepoints);
     }
 
+    /**
+     * The same as {@link #TripTimes(Trip, Collection, Deduplicator)}, for stop times imported in
+     * columns, without creating StopTime objects.
+     */
+    public TripTimes(final Trip trip, final StopTimeColumns stopTimes, final Deduplicator deduplicator) {
+        this.trip = trip;
+        final int nStops = stopTimes.size();
+        final int[] departures = new int[nStops];
+        final int[] arrivals   = new int[nStops];
+        final int[] sequences  = new int[nStops];
+        final BitSet timepoints = new BitSet(nStops);
+        final int[] pickups   = new int[nStops];
+        final int[] dropoffs   = new int[nStops];
+        // Times are always shifted to zero. This is essential for frequencies and deduplication.
+        timeShift = stopTimes.getArrivalTime(0);
+        for (int s = 0; s < nStops; ++s) {
+            departures[s] = stopTimes.getDepartureTime(s) - timeShift;
+            arrivals[s] = stopTimes.getArrivalTime(s) - timeShift;
+            sequences[s] = stopTimes.getStopSequence(s);
+            timepoints.set(s, stopTimes.getTimepoint(s) == 1);
+            pickups[s] = stopTimes.getPickupType(s);
+            dropoffs[s] = stopTimes.getDropOffType(s);
+        }
+        this.scheduledDepartureTimes = deduplicator.deduplicateIntArray(departures);
+        this.scheduledArrivalTimes = deduplicator.deduplicateIntArray(arrivals);
+        this.stopSequences = deduplicator.deduplicateIntArray(sequences);
+        this.headsigns = deduplicator.deduplicateStringArray(makeHeadsignsArray(stopTimes));
+        this.pickups = deduplicator.deduplicateIntArray(pickups);
+        this.dropoffs = deduplicator.deduplicateIntArray(dropoffs);
+        this.arrivalTimes = null;
+        this.departureTimes = null;
+        this.isRecordedStop = null;
+        this.timepoints = deduplicator.deduplicateBitSet(timepoints);
+        LOG.trace("trip {} has timepoint at indexes {}", trip, timepoints);
+    }
+
     /** This copy constructor does not copy the actual times, only the scheduled times. */
     // It might be more maintainable to clone the triptimes then null out the scheduled times.
     // However, we then lose the "final" modifiers on the fields, and the immutability.
@@ -237,6 +274,26 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
         }
     }
 
+    /** The same as {@link #makeHeadsignsArray(Collection)}, for stop times in columns. */
+    private String[] makeHeadsignsArray(final StopTimeColumns stopTimes) {
+        final String tripHeadsign = trip.getTripHeadsign();
+        final int nStops = stopTimes.size();
+        boolean useStopHeadsigns = tripHeadsign == null;
+        for (int i = 0; i < nStops && !useStopHeadsigns; ++i) {
+            useStopHeadsigns = !tripHeadsign.equals(stopTimes.getStopHeadsign(i));
+        }
+        if (!useStopHeadsigns) {
+            return null; //defer to trip_headsign
+        }
+        boolean allNull = true;
+        final String[] hs = new String[nStops];
+        for (int i = 0; i < nStops; ++i) {
+            hs[i] = stopTimes.getStopHeadsign(i);
+            if (hs[i] != null) allNull = false;
+        }
+        return allNull ? null : hs;
+    }
+
     /**
      * Trips may also have null headsigns, in which case we should fall back on a Timetable or
      * Pattern-level headsign. Such a string will be available when we give TripPatterns or
@@ -372,6 +429,72 @@ public class TripTimes implements Serializable, Comparable<TripTimes>, Cloneable
         return departureTimes == null && arrivalTimes == null;
     }
 
+    /**
+     * Share the realtime arrival and departure times with other trip times having the same times,
+     * using the arrays in the given deduplicator. The realtime times are absolute while the
+     * scheduled times are relative to the time shift, so they are never shared with the scheduled
+     * arrays. This TripTimes is not changed, it may be referenced by published timetable
+     * snapshots.
+     *
+     * @return a copy using the shared arrays, or this if the arrays are already shared.
+     */
+    public TripTimes deduplicateRealtimeTimes(Deduplicator deduplicator) {
+        if (isScheduled()) { return this; }
+
+        int[] arrivals = deduplicator.deduplicateIntArray(arrivalTimes);
+        int[] departures = deduplicator.deduplicateIntArray(departureTimes);
+
+        if (arrivals == arrivalTimes && departures == departureTimes) { return this; }
+
+        TripTimes copy = new TripTimes(this);
+        copy.arrivalTimes = arrivals;
+        copy.departureTimes = departures;
+        copy.isRecordedStop = isRecordedStop;
+        copy.isCancelledStop = isCancelledStop;
+        copy.isPredictionInaccurate = isPredictionInaccurate;
+        copy.pickups = pickups;
+        copy.dropoffs = dropoffs;
+        copy.realTimeState = realTimeState;
+        return copy;
+    }
+
+    /**
+     * The estimated heap size in bytes of the realtime arrival and departure time arrays, counting
+     * an array shared by the arrival and departure times once.
+     */
+    public int getRealtimeTimesSizeEstimate() {
+        int size = intArraySizeEstimate(arrivalTimes);
+        if (departureTimes != arrivalTimes) {
+            size += intArraySizeEstimate(departureTimes);
+        }
+        return size;
+    }
+
+    /**
+     * The estimated heap size in bytes of the realtime arrival and departure time arrays of this
+     * TripTimes that are not referenced by the given replacement, see
+     * {@link #deduplicateRealtimeTimes(Deduplicator)}.
+     */
+    public int getRealtimeTimesSizeEstimateReleasedBy(TripTimes replacement) {
+        int size = 0;
+        if (!referencesRealtimeArray(replacement, arrivalTimes)) {
+            size += intArraySizeEstimate(arrivalTimes);
+        }
+        if (departureTimes != arrivalTimes && !referencesRealtimeArray(replacement, departureTimes)) {
+            size += intArraySizeEstimate(departureTimes);
+        }
+        return size;
+    }
+
+    private static boolean referencesRealtimeArray(TripTimes tripTimes, int[] array) {
+        return tripTimes.arrivalTimes == array || tripTimes.departureTimes == array;
+    }
+
+    private static int intArraySizeEstimate(int[] array) {
+        // Object header and length, plus the elements
+        return array == null ? 0 : 16 + 4 * array.length;
+    }
+
     /**
      * @return true if this TripTimes is canceled
      */
@@ -2,6 +2,7 @@ package org.opentripplanner.routing.vertextype;
 
 import org.opentripplanner.common.MavenVersion;
 import org.opentripplanner.routing.bike_rental.BikeRentalStation;
+import org.opentripplanner.routing.bike_rental.BikeRentalStationAvailability;
 import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
@@ -28,6 +29,14 @@ public class BikeRentalStationVertex extends Vertex {
     /** Some car rental systems and flex transit systems work exactly like bike rental, but with cars. */
     private boolean isCarStation;
 
+    /**
+     * The availability table of the updater owning this station, null for stations without
+     * realtime updates. If set, the bikes and spaces available fields are not used.
+     */
+    private BikeRentalStationAvailability availability = null;
+
+    private int availabilityIndex = -1;
+
     public BikeRentalStationVertex(Graph g, BikeRentalStation station) {
         //FIXME: raw_name can be null if bike station is made from graph updater
         super(g, "bike rental station " + station.id, station.x, station.y, station.name);
@@ -38,11 +47,31 @@ public class BikeRentalStationVertex extends Vertex {
     }
 
     public int getBikesAvailable() {
-        return bikesAvailable;
+        return availability == null ? bikesAvailable : availability.getBikesAvailable(availabilityIndex);
     }
 
     public int getSpacesAvailable() {
-        return spacesAvailable;
+        return availability == null ? spacesAvailable : availability.getSpacesAvailable(availabilityIndex);
+    }
+
+    /**
+     * A station updated in realtime is out of service while it is missing from the feed, and
+     * until the first update including it is published.
+     */
+    public boolean isInService() {
+        return availability == null || availability.isInService(availabilityIndex);
+    }
+
+    /**
+     * Read the availability of this station from the given table, at the given station index.
+     */
+    public void setAvailability(BikeRentalStationAvailability availability, int availabilityIndex) {
+        this.availability = availability;
+        this.availabilityIndex = availabilityIndex;
+    }
+
+    public int getAvailabilityIndex() {
+        return availabilityIndex;
     }
 
     public void setBikesAvailable(int bikes) {
@@ -17,6 +17,9 @@ public interface TemporaryVertex {
      * main graph at each point it encounters a non-temporary vertexes. OTP then holds no
      * references to the temporary subgraph and it is garbage collected.
      * <p>
+     * Edges implementing {@link org.opentripplanner.routing.edgetype.TemporaryEdge} are never
+     * added to the non-temporary vertices, so only other edges are removed from the main graph.
+     * <p>
      * Note! If the {@code vertex} is NOT a TemporaryVertex the method returns. No action taken.
      * </p>
      *
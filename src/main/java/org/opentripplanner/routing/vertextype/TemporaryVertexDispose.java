@@ -1,5 +1,6 @@
 package org.opentripplanner.routing.vertextype;
 
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
 
@@ -79,7 +80,8 @@ class TemporaryVertexDispose {
         if(v instanceof TemporaryVertex) {
             addVertexToProcessTodoList(v);
         }
-        else {
+        // Temporary edges are never added to the main graph vertices
+        else if (!(connectedEdge instanceof TemporaryEdge)) {
             removeEdgeFromMainGraphVertex(v, connectedEdge, incoming);
         }
     }
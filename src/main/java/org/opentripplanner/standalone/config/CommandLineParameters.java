@@ -108,6 +108,31 @@ public class CommandLineParameters implements Cloneable {
     @Parameter(names = {"--maxThreads"}, description = "The maximum number of HTTP handler threads.")
     public Integer maxThreads;
 
+    @Parameter(names = {"--routingThreads"}, validateWith = PositiveInteger.class,
+            description = "The number of threads running trip planning requests. The default is "
+                    + "the number of available processors.")
+    public Integer routingThreads;
+
+    @Parameter(names = {"--batchRoutingThreads"}, validateWith = PositiveInteger.class,
+            description = "The number of threads running the searches of batch trip planning "
+                    + "requests. The default is half the number of routing threads.")
+    public Integer batchRoutingThreads;
+
+    @Parameter(names = {"--admissionControl"},
+            description = "Limit the number of concurrent trip planning and GraphQL requests, "
+                    + "and reject requests with 503 Service Unavailable when saturated.")
+    public boolean admissionControl = false;
+
+    @Parameter(names = {"--admissionLatencyThreshold"},
+            description = "Requests served slower than this number of seconds reduce the "
+                    + "admission control concurrency limit.")
+    public double admissionLatencyThreshold = 2.0;
+
+    @Parameter(names = {"--admissionTrustPriorityHeader"},
+            description = "Trust the HIGH priority given in the OTPPriority header. Only enable "
+                    + "this if an API gateway sets or removes the header of all requests.")
+    public boolean admissionTrustPriorityHeader = false;
+
     @Parameter(names = {"--port"}, validateWith = PositiveInteger.class,
             description = "Server port for plain HTTP.")
     public Integer port = DEFAULT_PORT;
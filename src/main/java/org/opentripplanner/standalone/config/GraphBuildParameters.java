@@ -164,6 +164,12 @@ public class GraphBuildParameters {
      */
     public int maxInterlineDistance;
 
+    /**
+     * The maximum number of GTFS feeds read at the same time. Each feed read holds the whole feed
+     * in memory, so a larger value needs more memory.
+     */
+    public final int gtfsImportThreads;
+
     /**
      * This field indicates the pruning threshold for islands without stops.
      * Any such island under this size will be pruned.
@@ -290,6 +296,7 @@ public class GraphBuildParameters {
         staticBikeParkAndRide = config.path("staticBikeParkAndRide").asBoolean(false);
         maxDataImportIssuesPerFile = config.path("maxDataImportIssuesPerFile").asInt(1000);
         maxInterlineDistance = config.path("maxInterlineDistance").asInt(200);
+        gtfsImportThreads = config.path("gtfsImportThreads").asInt(2);
         pruningThresholdIslandWithoutStops = config.path("islandWithoutStopsMaxSize").asInt(40);
         pruningThresholdIslandWithStops = config.path("islandWithStopsMaxSize").asInt(5);
         banDiscouragedWalking = config.path("banDiscouragedWalking").asBoolean(false);
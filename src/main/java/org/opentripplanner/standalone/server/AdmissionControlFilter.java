@@ -0,0 +1,185 @@
+package org.opentripplanner.standalone.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for the expensive web resources, marked with {@link AdmissionControlled}.
+ * Without a limit a traffic spike makes the queue of the handler threads and the
+ * {@link RoutingExecutor} grow without bound, and all requests time out together.
+ * <p>
+ * The number of concurrent requests is limited by an {@link AimdConcurrencyLimit} adjusted to the
+ * measured service time. A request over the limit of its {@link RequestPriority} waits at most
+ * half the latency threshold for a permit, and is then rejected with a fast 503 Service
+ * Unavailable response with a {@code Retry-After} header. The HIGH priority is only used if the
+ * priority header is trusted, set by an API gateway.
+ * <p>
+ * The time spent waiting for a permit (queue time) and the time spent serving the request
+ * (service time) are logged once a minute, together with the number of admitted and rejected
+ * requests per priority.
+ */
+@AdmissionControlled
+@Priority(Priorities.USER)
+class AdmissionControlFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    /** Request property holding the time the request was admitted, in nanoseconds. */
+    private static final String ADMITTED_AT = AdmissionControlFilter.class.getName() + ".admittedAt";
+
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final AimdConcurrencyLimit limit;
+
+    private final long maxQueueTimeNanos;
+
+    private final boolean trustPriorityHeader;
+
+    private final Map<RequestPriority, LongAdder> admitted = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, LongAdder> rejected = new EnumMap<>(RequestPriority.class);
+    private final LongAdder queueTimeNanos = new LongAdder();
+    private final LongAdder serviceTimeNanos = new LongAdder();
+    private final LongAdder served = new LongAdder();
+    private final AtomicLong lastLogTime = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param maxConcurrentRequests the initial and maximum concurrency limit.
+     * @param latencyThresholdSeconds requests served slower than this reduce the limit.
+     * @param trustPriorityHeader use the HIGH priority given in the priority header.
+     */
+    AdmissionControlFilter(
+            int maxConcurrentRequests,
+            double latencyThresholdSeconds,
+            boolean trustPriorityHeader
+    ) {
+        long latencyThresholdNanos = (long) (latencyThresholdSeconds * 1e9);
+        this.limit = new AimdConcurrencyLimit(maxConcurrentRequests, latencyThresholdNanos);
+        this.maxQueueTimeNanos = latencyThresholdNanos / 2;
+        this.trustPriorityHeader = trustPriorityHeader;
+        for (RequestPriority it : RequestPriority.values()) {
+            admitted.put(it, new LongAdder());
+            rejected.put(it, new LongAdder());
+        }
+        LOG.info(
+                "Admission control enabled with at most {} concurrent requests and a latency "
+                        + "threshold of {} seconds, priority header trusted: {}.",
+                maxConcurrentRequests,
+                latencyThresholdSeconds,
+                trustPriorityHeader
+        );
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        RequestPriority priority = RequestPriority.of(
+                request.getHeaderString(RequestPriority.HEADER),
+                trustPriorityHeader
+        );
+        long startTime = System.nanoTime();
+        boolean admit;
+        try {
+            admit = limit.acquire(priority, maxQueueTimeNanos);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admit = false;
+        }
+        long admitTime = System.nanoTime();
+        queueTimeNanos.add(admitTime - startTime);
+        logMetrics(admitTime);
+
+        if (!admit) {
+            rejected.get(priority).increment();
+            request.abortWith(serviceUnavailable());
+            return;
+        }
+        admitted.get(priority).increment();
+        request.setProperty(ADMITTED_AT, admitTime);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        // Rejected requests have no permit to release
+        Object admitTime = request.getProperty(ADMITTED_AT);
+        if (admitTime == null) { return; }
+        request.removeProperty(ADMITTED_AT);
+
+        // A streamed response, like a batch, is computed while it is written
+        if (response.getEntity() instanceof StreamingOutput) {
+            StreamingOutput output = (StreamingOutput) response.getEntity();
+            response.setEntity((StreamingOutput) out -> {
+                try {
+                    output.write(out);
+                }
+                finally {
+                    release((Long) admitTime);
+                }
+            });
+            return;
+        }
+        release((Long) admitTime);
+    }
+
+    /* private methods */
+
+    private void release(long admitTime) {
+        long serviceTime = System.nanoTime() - admitTime;
+        limit.release(serviceTime);
+        serviceTimeNanos.add(serviceTime);
+        served.increment();
+    }
+
+    private Response serviceUnavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds())
+                .entity("The server is busy, please retry later.")
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+
+    /** The mean service time rounded up to whole seconds, at least one second. */
+    private long retryAfterSeconds() {
+        long n = served.sum();
+        if (n == 0) { return 1; }
+        long meanNanos = serviceTimeNanos.sum() / n;
+        return Math.max(1, (meanNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private void logMetrics(long now) {
+        long last = lastLogTime.get();
+        if (now - last < LOG_INTERVAL_NANOS || !lastLogTime.compareAndSet(last, now)) {
+            return;
+        }
+        long admittedTotal = admitted.values().stream().mapToLong(LongAdder::sum).sum();
+        long rejectedTotal = rejected.values().stream().mapToLong(LongAdder::sum).sum();
+        long n = served.sum();
+        long requests = admittedTotal + rejectedTotal;
+
+        LOG.info(
+                "Admission control: limit {}, in flight {}, admitted {}, rejected {}, "
+                        + "mean queue time {} ms, mean service time {} ms",
+                String.format("%.1f", limit.getLimit()),
+                limit.getInFlight(),
+                admitted,
+                rejected,
+                requests == 0 ? 0 : queueTimeNanos.sum() / requests / 1_000_000,
+                n == 0 ? 0 : serviceTimeNanos.sum() / n / 1_000_000
+        );
+    }
+}
@@ -0,0 +1,17 @@
+package org.opentripplanner.standalone.server;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark an expensive web resource method, like trip planning, to be guarded by the
+ * {@link AdmissionControlFilter}. Cheap requests like index lookups are not limited.
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface AdmissionControlled {
+}
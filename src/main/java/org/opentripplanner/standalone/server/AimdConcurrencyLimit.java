@@ -0,0 +1,98 @@
+package org.opentripplanner.standalone.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A concurrency limit adjusted to the measured latency with additive increase, multiplicative
+ * decrease (AIMD): a request served faster than the latency threshold increases the limit by
+ * {@code 1/limit}, so the limit grows by about one for each round of requests, while a slower
+ * request decreases it by 10%. The limit only grows while it is in use, so an idle server does not
+ * build up a limit it has never been tested with.
+ * <p>
+ * Requests over the limit may wait for a permit, but no more requests than the limit itself are
+ * allowed to wait.
+ * <p>
+ * This class is thread safe.
+ */
+class AimdConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private double limit;
+
+    private int inFlight = 0;
+
+    private int waiting = 0;
+
+    /**
+     * @param maxLimit the initial and maximum limit, normally the number of HTTP handler threads.
+     * @param latencyThresholdNanos requests served slower than this decrease the limit.
+     */
+    AimdConcurrencyLimit(int maxLimit, long latencyThresholdNanos) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Get a permit for a request with the given priority, waiting at most {@code maxWaitNanos}.
+     * A permit must be released with {@link #release(long)} when the request is served.
+     *
+     * @return {@code false} if the request is rejected.
+     */
+    synchronized boolean acquire(RequestPriority priority, long maxWaitNanos)
+            throws InterruptedException {
+        if (inFlight < priority.limit(limit)) {
+            ++inFlight;
+            return true;
+        }
+        if (maxWaitNanos <= 0 || waiting >= (int) limit) {
+            return false;
+        }
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+        ++waiting;
+        try {
+            while (inFlight >= priority.limit(limit)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) { return false; }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            ++inFlight;
+            return true;
+        }
+        finally {
+            --waiting;
+        }
+    }
+
+    /**
+     * Release the permit of a served request and adjust the limit to its service time.
+     */
+    synchronized void release(long serviceTimeNanos) {
+        boolean limitInUse = inFlight >= limit / 2;
+        --inFlight;
+
+        if (serviceTimeNanos > latencyThresholdNanos) {
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+        }
+        else if (limitInUse) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    synchronized double getLimit() {
+        return limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -11,6 +11,8 @@ import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.opentripplanner.api.common.OTPExceptionMapper;
 import org.opentripplanner.api.configuration.APIEndpoints;
 import org.opentripplanner.api.model.JSONObjectMapperProvider;
+import org.opentripplanner.api.resource.PlanResponseJsonWriter;
+import org.opentripplanner.api.resource.Response;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
 import javax.ws.rs.core.Application;
@@ -90,7 +92,8 @@ public class OTPApplication extends Application {
      */
     @Override
     public Set<Object> getSingletons() {
-        return Sets.newHashSet (
+        JSONObjectMapperProvider objectMapperProvider = new JSONObjectMapperProvider();
+        Set<Object> singletons = Sets.newHashSet (
             // Show exception messages in responses
             new OTPExceptionMapper(),
             // Enable Jackson JSON response serialization
@@ -98,10 +101,21 @@ public class OTPApplication extends Application {
             // Enable Jackson XML response serialization
             new JacksonXMLProvider(),
             // Serialize POJOs (unannotated) JSON using Jackson
-            new JSONObjectMapperProvider(),
+            objectMapperProvider,
+            // Stream plan responses as JSON without reflection, same output as the object mapper
+            new PlanResponseJsonWriter(objectMapperProvider.getContext(Response.class)),
             // Allow injecting the OTP server object into Jersey resource classes
             server.makeBinder()
         );
+        if (server.params.admissionControl) {
+            // Limit concurrent requests to the expensive resources marked @AdmissionControlled
+            singletons.add(new AdmissionControlFilter(
+                    server.routingExecutor.getNumberOfThreads(),
+                    server.params.admissionLatencyThreshold,
+                    server.params.admissionTrustPriorityHeader
+            ));
+        }
+        return singletons;
     }
 
     /**
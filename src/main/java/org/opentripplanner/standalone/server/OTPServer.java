@@ -21,10 +21,22 @@ public class OTPServer {
 
     private final Router router;
 
+    /** Runs the routing work of the asynchronous web resources. */
+    public final RoutingExecutor routingExecutor;
+
     public OTPServer (CommandLineParameters params, Router router) {
         LOG.info("Wiring up and configuring server.");
         this.params = params;
         this.router = router;
+        int routingThreads = params.routingThreads != null
+                ? params.routingThreads
+                : Runtime.getRuntime().availableProcessors();
+        this.routingExecutor = new RoutingExecutor(
+                routingThreads,
+                params.batchRoutingThreads != null
+                        ? params.batchRoutingThreads
+                        : RoutingExecutor.defaultBatchThreads(routingThreads)
+        );
     }
 
     /**
@@ -0,0 +1,48 @@
+package org.opentripplanner.standalone.server;
+
+/**
+ * The priority class of a request guarded by the {@link AdmissionControlFilter}. The priority is
+ * given in the {@link #HEADER} HTTP header. An API gateway in front of OTP can set it based on the
+ * API key of the client. Any client can set the header, so the HIGH priority is only used if the
+ * header is trusted, otherwise a client may only lower its priority.
+ * <p>
+ * Each priority may use a share of the concurrency limit, so when the server is saturated the low
+ * priority requests are rejected first.
+ */
+public enum RequestPriority {
+    HIGH(1.0),
+    NORMAL(0.8),
+    LOW(0.5);
+
+    public static final String HEADER = "OTPPriority";
+
+    private final double limitShare;
+
+    RequestPriority(double limitShare) {
+        this.limitShare = limitShare;
+    }
+
+    /** The number of concurrent requests of this priority allowed, at least one. */
+    int limit(double concurrencyLimit) {
+        return Math.max(1, (int) (concurrencyLimit * limitShare));
+    }
+
+    /** Parse the header value, case insensitive. Missing or unknown values are NORMAL. */
+    public static RequestPriority of(String headerValue) {
+        if (headerValue != null) {
+            for (RequestPriority it : values()) {
+                if (it.name().equalsIgnoreCase(headerValue.trim())) { return it; }
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Parse the header value like {@link #of(String)}, HIGH is NORMAL if the header is not
+     * trusted.
+     */
+    public static RequestPriority of(String headerValue, boolean trusted) {
+        RequestPriority priority = of(headerValue);
+        return priority == HIGH && !trusted ? NORMAL : priority;
+    }
+}
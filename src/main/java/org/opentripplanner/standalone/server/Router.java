@@ -9,6 +9,8 @@ import ch.qos.logback.core.FileAppender;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.opentripplanner.inspector.TileRendererManager;
 import org.opentripplanner.reflect.ReflectiveInitializer;
+import org.opentripplanner.routing.IsochroneCache;
+import org.opentripplanner.routing.RoutingResponseCache;
 import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerMapper;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
@@ -30,6 +32,9 @@ import java.util.EnumMap;
 public class Router {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(Router.class);
+
+    private static final int DEFAULT_ISOCHRONE_CACHE_SIZE = 0;
+
     public Graph graph;
     public double[] timeouts = {5, 4, 2};
 
@@ -39,6 +44,12 @@ public class Router {
      */
     public Logger requestLogger = null;
 
+    /** Optional cache of routing responses for identical requests, see {@link RoutingResponseCache}. */
+    public RoutingResponseCache routingResponseCache = null;
+
+    /** Cache of computed isochrones, see {@link IsochroneCache}. {@code null} if disabled. */
+    public IsochroneCache isochroneCache = null;
+
     /* TODO The fields for "components" are slowly disappearing... maybe at some point a router
         will be nothing but configuration values tied to a Graph. */
 
@@ -113,6 +124,17 @@ public class Router {
             LOG.info("Incoming requests will not be logged.");
         }
 
+        JsonNode routingResponseCacheSize = config.get("routingResponseCacheSize");
+        if (routingResponseCacheSize != null && routingResponseCacheSize.asInt(0) > 0) {
+            this.routingResponseCache = new RoutingResponseCache(routingResponseCacheSize.asInt());
+            LOG.info("Caching up to {} routing responses.", routingResponseCacheSize.asInt());
+        }
+
+        int isochroneCacheSize = config.path("isochroneCacheSize").asInt(DEFAULT_ISOCHRONE_CACHE_SIZE);
+        if (isochroneCacheSize > 0) {
+            this.isochroneCache = new IsochroneCache(isochroneCacheSize);
+        }
+
         JsonNode boardTimes = config.get("boardTimes");
         if (boardTimes != null && boardTimes.isObject()) {
             graph.boardTimes = new EnumMap<>(TraverseMode.class);
@@ -143,6 +165,17 @@ public class Router {
                 graph,
                 graph.index.getServiceCodesRunningForDate()
             );
+            // Invalidate the changed dates of each published realtime transit layer
+            if (routingResponseCache != null) {
+                graph.transitLayerUpdater.addChangeListener(
+                    transitLayer -> routingResponseCache.transitDataUpdated(graph)
+                );
+            }
+            if (isochroneCache != null) {
+                graph.transitLayerUpdater.addChangeListener(
+                    transitLayer -> isochroneCache.transitDataUpdated(graph)
+                );
+            }
         } else {
             LOG.warn("Cannot create Raptor data, that requires the graph to have transit data and be indexed.");
         }
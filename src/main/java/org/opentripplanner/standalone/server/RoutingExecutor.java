@@ -0,0 +1,156 @@
+package org.opentripplanner.standalone.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.opentripplanner.util.SearchInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A dedicated, fixed size thread pool for routing work, so long running searches do not block the
+ * HTTP handler threads. Web resources suspend the request with an {@link AsyncResponse} and hand
+ * the work to this executor.
+ * <p>
+ * The work is cancelled, by interrupting the routing thread, when the deadline of the request has
+ * passed, or when the client disconnects if the container reports it. The street and transit
+ * searches check the interrupted flag and give up.
+ * <p>
+ * The searches of batch requests run on a separate, smaller pool with a bounded queue, so a large
+ * batch can not delay the interactive requests.
+ */
+public class RoutingExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoutingExecutor.class);
+
+    /**
+     * The time after the deadline before the work is cancelled. The street searches stop at the
+     * deadline, so this is the time left for the transit search and mapping the response.
+     */
+    private static final long CANCEL_GRACE_MILLIS = 5000;
+
+    /** The number of queued batch searches for each batch thread. */
+    private static final int BATCH_QUEUE_SIZE_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+
+    private final ExecutorService batchExecutor;
+
+    private final int nThreads;
+
+    private final int nBatchThreads;
+
+    public RoutingExecutor(int nThreads) {
+        this(nThreads, defaultBatchThreads(nThreads));
+    }
+
+    public RoutingExecutor(int nThreads, int nBatchThreads) {
+        this.nThreads = nThreads;
+        this.nBatchThreads = nBatchThreads;
+        this.executor = Executors.newFixedThreadPool(
+                nThreads,
+                new ThreadFactoryBuilder().setNameFormat("Routing-%d").setDaemon(true).build()
+        );
+        // When the queue is full the submitting thread runs the search, slowing down the batch
+        this.batchExecutor = new ThreadPoolExecutor(
+                nBatchThreads,
+                nBatchThreads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(nBatchThreads * BATCH_QUEUE_SIZE_PER_THREAD),
+                new ThreadFactoryBuilder().setNameFormat("BatchRouting-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        LOG.info(
+                "Routing executor thread pool size will be {} threads, and {} threads for batches.",
+                nThreads,
+                nBatchThreads
+        );
+    }
+
+    /** Half the routing threads, at least one. */
+    public static int defaultBatchThreads(int nThreads) {
+        return Math.max(1, nThreads / 2);
+    }
+
+    public int getNumberOfThreads() {
+        return nThreads;
+    }
+
+    public int getNumberOfBatchThreads() {
+        return nBatchThreads;
+    }
+
+    /**
+     * Create a completion service running its tasks on the batch routing threads. Used to fan out
+     * the searches of a batch request, the caller is responsible for bounding the number of tasks
+     * submitted.
+     */
+    public <T> CompletionService<T> newBatchCompletionService() {
+        return new ExecutorCompletionService<>(batchExecutor);
+    }
+
+    /**
+     * Run the task on a routing thread and resume the suspended response with the result.
+     * <p>
+     * If the task is cancelled the response is cancelled, with a 503 Service Unavailable status,
+     * so the response filters run even if the task never started. A task interrupted by the
+     * cancellation is a normal outcome, it is not logged as an error.
+     *
+     * @param deadline the time the task should be completed by, in epoch milliseconds, or
+     *                 {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    public void execute(AsyncResponse asyncResponse, long deadline, Supplier<?> task) {
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            try {
+                asyncResponse.resume(task.get());
+            }
+            catch (Throwable e) {
+                if (e instanceof SearchInterruptedException || Thread.currentThread().isInterrupted()) {
+                    LOG.debug("Routing task cancelled: {}", e.getMessage());
+                    asyncResponse.cancel();
+                }
+                else {
+                    asyncResponse.resume(e);
+                }
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // Does nothing if the response is already resumed
+                if (isCancelled()) {
+                    asyncResponse.cancel();
+                }
+            }
+        };
+        executor.execute(future);
+
+        asyncResponse.register((ConnectionCallback) disconnected -> future.cancel(true));
+
+        if (deadline != Long.MAX_VALUE) {
+            asyncResponse.setTimeoutHandler(timedOut -> {
+                timedOut.resume(
+                        Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                                .entity("The request did not complete before its deadline.")
+                                .type(MediaType.TEXT_PLAIN)
+                                .build()
+                );
+                future.cancel(true);
+            });
+            long timeout = deadline + CANCEL_GRACE_MILLIS - System.currentTimeMillis();
+            asyncResponse.setTimeout(Math.max(1, timeout), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package org.opentripplanner.transit.raptor;
 
 import org.opentripplanner.transit.raptor.api.path.Path;
+import org.opentripplanner.transit.raptor.api.request.RaptorProfile;
 import org.opentripplanner.transit.raptor.api.request.RaptorRequest;
 import org.opentripplanner.transit.raptor.api.request.RaptorTuningParameters;
 import org.opentripplanner.transit.raptor.api.response.RaptorResponse;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
 import org.opentripplanner.transit.raptor.api.transit.RaptorTripSchedule;
 import org.opentripplanner.transit.raptor.api.transit.TransitDataProvider;
 import org.opentripplanner.transit.raptor.rangeraptor.configure.RaptorConfig;
+import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.TravelTimesSearch;
 import org.opentripplanner.transit.raptor.service.HeuristicSearchTask;
 import org.opentripplanner.transit.raptor.service.RangRaptorDynamicSearch;
 
@@ -32,6 +35,22 @@ public class RaptorService<T extends RaptorTripSchedule> {
         return routeUsingStdWorker(transitData, request);
     }
 
+    /**
+     * Find the travel times from the access legs to all stops, for each iteration in the search
+     * window. The request profile must be {@link RaptorProfile#TRAVEL_TIMES}.
+     */
+    public StopTravelTimes travelTimes(RaptorRequest<T> request, TransitDataProvider<T> transitData) {
+        if(!request.profile().is(RaptorProfile.TRAVEL_TIMES)) {
+            throw new IllegalArgumentException(
+                    "The travel times search require the profile " + RaptorProfile.TRAVEL_TIMES
+                            + ", not: " + request.profile()
+            );
+        }
+        TravelTimesSearch<T> search = config.createTravelTimesSearch(transitData, request);
+        search.route();
+        return search.travelTimes();
+    }
+
     public void compareHeuristics(
             RaptorRequest<T> r1,
             RaptorRequest<T> r2,
@@ -41,7 +41,16 @@ public enum RaptorProfile {
      * <p/>
      * Computes best/min travel duration(without wait-time) and number of transfers.
      */
-    NO_WAIT_BEST_TIME("NoWaitBT");
+    NO_WAIT_BEST_TIME("NoWaitBT"),
+
+    /**
+     * Range Raptor finding the earliest arrival time at every stop, for each iteration in the
+     * search window. No paths are returned and no egress legs are needed, use
+     * {@link org.opentripplanner.transit.raptor.RaptorService#travelTimes} to get the result.
+     * <p/>
+     * Computes the travel duration and number of transfers to all stops.
+     */
+    TRAVEL_TIMES("StdTravelTimes");
 
 
     private final String abbreviation;
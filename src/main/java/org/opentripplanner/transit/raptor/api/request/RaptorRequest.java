@@ -175,7 +175,17 @@ public class RaptorRequest<T extends RaptorTripSchedule> {
     /* private methods */
 
     private void verify() {
-        searchParams.verify();
+        searchParams.verify(!profile.is(RaptorProfile.TRAVEL_TIMES));
+        if(profile.is(RaptorProfile.TRAVEL_TIMES)) {
+            assertProperty(
+                    searchDirection.isForward(),
+                    "The travel times profile is only defined for forward search."
+            );
+            assertProperty(
+                    searchParams.isEarliestDepartureTimeSet() && searchParams.isSearchWindowSet(),
+                    "'earliestDepartureTime' and 'searchWindow' is required for the travel times profile."
+            );
+        }
         if(!profile.is(RaptorProfile.MULTI_CRITERIA)) {
             if(useTransfersStopFilter()) {
                 Log.warn("Stop filtering is only supported using McRangeRaptor");
@@ -307,12 +307,14 @@ public class SearchParams {
 
     /* private methods */
 
-    void verify() {
+    void verify(boolean egressLegsRequired) {
         assertProperty(
                 earliestDepartureTime != TIME_NOT_SET || latestArrivalTime != TIME_NOT_SET,
                 "'earliestDepartureTime' or 'latestArrivalTime' is required."
         );
         assertProperty(!accessLegs.isEmpty(), "At least one 'accessLegs' is required.");
-        assertProperty(!egressLegs.isEmpty(), "At least one 'egressLegs' is required.");
+        if(egressLegsRequired) {
+            assertProperty(!egressLegs.isEmpty(), "At least one 'egressLegs' is required.");
+        }
     }
 }
@@ -0,0 +1,123 @@
+package org.opentripplanner.transit.raptor.api.response;
+
+import java.util.Arrays;
+
+
+/**
+ * The result of a one-to-many travel times search, see
+ * {@link org.opentripplanner.transit.raptor.api.request.RaptorProfile#TRAVEL_TIMES}. For each
+ * iteration (departure time) in the search window this holds the travel duration and the number
+ * of transfers to every stop, indexed by the Raptor stop index.
+ * <p/>
+ * The iterations are ordered by departure time, earliest first.
+ */
+public class StopTravelTimes {
+
+    /** The travel duration and number of transfers of a stop not reached. */
+    public static final int UNREACHED = -1;
+
+    private final int[] departureTimes;
+    private final int[][] travelDurations;
+    private final int[][] numberOfTransfers;
+
+    /**
+     * @param departureTimes the departure time of each iteration.
+     * @param travelDurations the travel duration in seconds to each stop, by iteration.
+     * @param numberOfTransfers the number of transfers to each stop, by iteration.
+     */
+    public StopTravelTimes(int[] departureTimes, int[][] travelDurations, int[][] numberOfTransfers) {
+        this.departureTimes = departureTimes;
+        this.travelDurations = travelDurations;
+        this.numberOfTransfers = numberOfTransfers;
+    }
+
+    public int numberOfIterations() {
+        return departureTimes.length;
+    }
+
+    public int numberOfStops() {
+        return departureTimes.length == 0 ? 0 : travelDurations[0].length;
+    }
+
+    /** The departure time of the given iteration, in seconds since the start of the search. */
+    public int departureTime(int iteration) {
+        return departureTimes[iteration];
+    }
+
+    /**
+     * The travel durations in seconds to all stops for the given iteration, or {@link #UNREACHED}.
+     * The returned array must not be modified.
+     */
+    public int[] travelDurations(int iteration) {
+        return travelDurations[iteration];
+    }
+
+    /**
+     * The number of transfers to all stops for the given iteration, or {@link #UNREACHED}. The
+     * returned array must not be modified.
+     */
+    public int[] numberOfTransfers(int iteration) {
+        return numberOfTransfers[iteration];
+    }
+
+    /**
+     * Return a copy where the travel durations longer than the given maximum, and their number of
+     * transfers, are {@link #UNREACHED}. The search may reach stops later than the maximum travel
+     * time, when the departure is early in the search window.
+     */
+    public StopTravelTimes withMaxTravelDuration(int maxTravelDuration) {
+        int nIterations = numberOfIterations();
+        int[][] durations = new int[nIterations][];
+        int[][] transfers = new int[nIterations][];
+
+        for (int it = 0; it < nIterations; ++it) {
+            durations[it] = travelDurations[it].clone();
+            transfers[it] = numberOfTransfers[it].clone();
+            for (int stop = 0; stop < durations[it].length; ++stop) {
+                if (durations[it][stop] > maxTravelDuration) {
+                    durations[it][stop] = UNREACHED;
+                    transfers[it][stop] = UNREACHED;
+                }
+            }
+        }
+        return new StopTravelTimes(departureTimes, durations, transfers);
+    }
+
+    /**
+     * Aggregate the travel durations to each stop over all iterations. A percentile of 50 gives
+     * the median travel duration, if a stop is not reached in the iterations needed for the given
+     * percentile the result is {@link #UNREACHED}. The nearest-rank method is used.
+     *
+     * @param percentiles the percentiles to compute, in the range [1, 100].
+     * @return the travel durations to all stops for each percentile, indexed by percentile first.
+     */
+    public int[][] travelDurationPercentiles(int... percentiles) {
+        int nIterations = numberOfIterations();
+        int nStops = numberOfStops();
+        int[][] result = new int[percentiles.length][nStops];
+        int[] ranks = new int[percentiles.length];
+
+        for (int i = 0; i < percentiles.length; ++i) {
+            int p = percentiles[i];
+            if (p < 1 || p > 100) {
+                throw new IllegalArgumentException("Percentile out of range [1, 100]: " + p);
+            }
+            // Nearest-rank, zero based
+            ranks[i] = (int) Math.ceil(p / 100.0 * nIterations) - 1;
+        }
+
+        int[] durations = new int[nIterations];
+        for (int stop = 0; stop < nStops; ++stop) {
+            for (int it = 0; it < nIterations; ++it) {
+                int d = travelDurations[it][stop];
+                durations[it] = d == UNREACHED ? Integer.MAX_VALUE : d;
+            }
+            Arrays.sort(durations);
+            for (int i = 0; i < ranks.length; ++i) {
+                int d = durations[ranks[i]];
+                result[i][stop] = d == Integer.MAX_VALUE ? UNREACHED : d;
+            }
+        }
+        return result;
+    }
+}
@@ -14,6 +14,7 @@ import org.opentripplanner.transit.raptor.rangeraptor.transit.TripScheduleBoardS
 import org.opentripplanner.transit.raptor.rangeraptor.transit.TripScheduleSearch;
 import org.opentripplanner.transit.raptor.rangeraptor.workerlifecycle.LifeCycleEventPublisher;
 import org.opentripplanner.transit.raptor.util.AvgTimer;
+import org.opentripplanner.util.SearchInterruptedException;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -131,6 +132,10 @@ public final class RangeRaptorWorker<T extends RaptorTripSchedule, S extends Wor
             // the arrival time given departure at minute t + 1.
             final IntIterator it = calculator.rangeRaptorMinutes();
             while (it.hasNext()) {
+                // Give up if the request is cancelled
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new SearchInterruptedException("Raptor search interrupted.");
+                }
                 // Run the raptor search for this particular iteration departure time
                 timerRouteByMinute(() -> runRaptorForMinute(it.next()));
             }
@@ -10,6 +10,7 @@ import org.opentripplanner.transit.raptor.rangeraptor.RangeRaptorWorker;
 import org.opentripplanner.transit.raptor.rangeraptor.TransitRoutingStrategy;
 import org.opentripplanner.transit.raptor.rangeraptor.WorkerState;
 import org.opentripplanner.transit.raptor.rangeraptor.multicriteria.configure.McRangeRaptorConfig;
+import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.TravelTimesSearch;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.configure.StdRangeRaptorConfig;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.heuristics.HeuristicSearch;
 import org.opentripplanner.transit.raptor.service.RaptorSearchWindowCalculator;
@@ -64,6 +65,15 @@ public class RaptorConfig<T extends RaptorTripSchedule> {
                 .createHeuristicSearch((s, w) -> createWorker(context, s, w));
     }
 
+    public TravelTimesSearch<T> createTravelTimesSearch(
+            TransitDataProvider<T> transitData,
+            RaptorRequest<T> request
+    ) {
+        SearchContext<T> context = context(transitData, request);
+        return new StdRangeRaptorConfig<>(context)
+                .createTravelTimesSearch((s, w) -> createWorker(context, s, w));
+    }
+
     public boolean isMultiThreaded() {
         return threadPool != null;
     }
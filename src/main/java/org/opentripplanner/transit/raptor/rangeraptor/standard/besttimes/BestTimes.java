@@ -101,6 +101,13 @@ public final class BestTimes {
         return new BitSetIterator(reachedLastRound);
     }
 
+    /**
+     * @return an iterator for all stops reached (overall best) in the current round.
+     */
+    public final BitSetIterator stopsReachedCurrentRound() {
+        return new BitSetIterator(reachedCurrentRound);
+    }
+
     /**
      * @return an iterator of all stops reached by transit in the current round.
      */
@@ -0,0 +1,111 @@
+package org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes;
+
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+import org.opentripplanner.transit.raptor.rangeraptor.RoundProvider;
+import org.opentripplanner.transit.raptor.rangeraptor.WorkerLifeCycle;
+import org.opentripplanner.transit.raptor.util.BitSetIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.opentripplanner.transit.raptor.util.IntUtils.intArray;
+
+
+/**
+ * The responsibility of this class is to copy the best times to all stops at the end of each
+ * iteration, and to keep track of the number of transfers of each best time.
+ * <p/>
+ * The best times are kept across iterations, and an arrival found when departing later is also
+ * valid for an earlier departure. So the best times at the end of an iteration are the earliest
+ * arrival times for the iteration departure time. The number of transfers is recorded together
+ * with the time it belongs to, for the same reason. A time improved in round 0 (access) is not
+ * recorded in a round complete event, so if the best time at a stop is not the recorded time the
+ * stop is reached by the access leg only, without any transfers.
+ */
+public final class TravelTimesCollector {
+
+    private static final int NOT_SET = Integer.MIN_VALUE;
+
+    private final BestTimes bestTimes;
+    private final RoundProvider roundProvider;
+
+    /** The best time the number of transfers below is recorded for, by stop. */
+    private final int[] recordedTimes;
+    private final int[] recordedTransfers;
+
+    private final List<Integer> departureTimes = new ArrayList<>();
+    private final List<int[]> travelDurations = new ArrayList<>();
+    private final List<int[]> numberOfTransfers = new ArrayList<>();
+
+    private int iterationDepartureTime;
+
+    public TravelTimesCollector(
+            BestTimes bestTimes,
+            RoundProvider roundProvider,
+            WorkerLifeCycle lifeCycle
+    ) {
+        this.bestTimes = bestTimes;
+        this.roundProvider = roundProvider;
+        this.recordedTimes = intArray(bestTimes.size(), NOT_SET);
+        this.recordedTransfers = intArray(bestTimes.size(), 0);
+
+        lifeCycle.onSetupIteration(this::setupIteration);
+        lifeCycle.onRoundComplete(ignore -> roundComplete());
+        lifeCycle.onIterationComplete(this::iterationComplete);
+    }
+
+    /**
+     * Return the travel times collected, call this after the search is complete.
+     */
+    public StopTravelTimes travelTimes() {
+        // The iterations are run backwards in time, return them in departure order
+        int n = departureTimes.size();
+        int[] depTimes = new int[n];
+        int[][] durations = new int[n][];
+        int[][] transfers = new int[n][];
+        for (int i = 0; i < n; ++i) {
+            depTimes[i] = departureTimes.get(n - 1 - i);
+            durations[i] = travelDurations.get(n - 1 - i);
+            transfers[i] = numberOfTransfers.get(n - 1 - i);
+        }
+        return new StopTravelTimes(depTimes, durations, transfers);
+    }
+
+
+    /* private methods */
+
+    private void setupIteration(int iterationDepartureTime) {
+        this.iterationDepartureTime = iterationDepartureTime;
+    }
+
+    private void roundComplete() {
+        final int nTransfers = roundProvider.round() - 1;
+        BitSetIterator it = bestTimes.stopsReachedCurrentRound();
+        while (it.hasNext()) {
+            int stop = it.next();
+            recordedTimes[stop] = bestTimes.time(stop);
+            recordedTransfers[stop] = nTransfers;
+        }
+    }
+
+    private void iterationComplete() {
+        int nStops = bestTimes.size();
+        int[] durations = new int[nStops];
+        int[] transfers = new int[nStops];
+
+        for (int stop = 0; stop < nStops; ++stop) {
+            if (!bestTimes.isStopReached(stop)) {
+                durations[stop] = StopTravelTimes.UNREACHED;
+                transfers[stop] = StopTravelTimes.UNREACHED;
+            }
+            else {
+                int time = bestTimes.time(stop);
+                durations[stop] = time - iterationDepartureTime;
+                transfers[stop] = time == recordedTimes[stop] ? recordedTransfers[stop] : 0;
+            }
+        }
+        departureTimes.add(iterationDepartureTime);
+        travelDurations.add(durations);
+        numberOfTransfers.add(transfers);
+    }
+}
@@ -0,0 +1,37 @@
+package org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes;
+
+import org.opentripplanner.transit.raptor.api.path.Path;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+import org.opentripplanner.transit.raptor.api.transit.RaptorTripSchedule;
+import org.opentripplanner.transit.raptor.api.view.Worker;
+
+import java.util.Collection;
+
+
+/**
+ * Combine the worker and the travel times collector into one class to be able to retrieve the
+ * travel times after the worker is invoked.
+ *
+ * @param <T> The TripSchedule type defined by the user of the raptor API.
+ */
+public class TravelTimesSearch<T extends RaptorTripSchedule> implements Worker<T> {
+    private final Worker<T> worker;
+    private final TravelTimesCollector travelTimes;
+
+    public TravelTimesSearch(Worker<T> worker, TravelTimesCollector travelTimes) {
+        this.worker = worker;
+        this.travelTimes = travelTimes;
+    }
+
+    /**
+     * The travel times to all stops, call this after the search is complete.
+     */
+    public StopTravelTimes travelTimes() {
+        return travelTimes.travelTimes();
+    }
+
+    @Override
+    public Collection<Path<T>> route() {
+        return worker.route();
+    }
+}
@@ -18,6 +18,8 @@ import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.BestTim
 import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.BestTimesOnlyStopArrivalsState;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.SimpleArrivedAtDestinationCheck;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.SimpleBestNumberOfTransfers;
+import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.TravelTimesCollector;
+import org.opentripplanner.transit.raptor.rangeraptor.standard.besttimes.TravelTimesSearch;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.debug.DebugStopArrivalsState;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.heuristics.HeuristicSearch;
 import org.opentripplanner.transit.raptor.rangeraptor.standard.heuristics.HeuristicsAdapter;
@@ -67,6 +69,22 @@ public class StdRangeRaptorConfig<T extends RaptorTripSchedule> {
         return new HeuristicSearch<>(createWorker.apply(state, createWorkerStrategy(state)), heuristics);
     }
 
+    /**
+     * Create a one-to-many travel times search using the provided callback to create the worker.
+     * Like the heuristics, the travel times collector MUST be created before the worker.
+     */
+    public TravelTimesSearch<T> createTravelTimesSearch(
+            BiFunction<WorkerState<T>, TransitRoutingStrategy<T>, Worker<T>> createWorker
+    ) {
+        StdRangeRaptorWorkerState<T> state = createState();
+        TravelTimesCollector travelTimes = new TravelTimesCollector(
+                bestTimes(),
+                ctx.roundProvider(),
+                ctx.lifeCycle()
+        );
+        return new TravelTimesSearch<>(createWorker.apply(state, createWorkerStrategy(state)), travelTimes);
+    }
+
     public Worker<T> createSearch(
             BiFunction<WorkerState<T>, TransitRoutingStrategy<T>, Worker<T>> createWorker
     ) {
@@ -85,6 +103,7 @@ public class StdRangeRaptorConfig<T extends RaptorTripSchedule> {
                 return workerState(stdStopArrivalsState());
             case BEST_TIME:
             case NO_WAIT_BEST_TIME:
+            case TRAVEL_TIMES:
                 return workerState(bestTimeStopArrivalsState());
         }
         throw new IllegalArgumentException(ctx.profile().toString());
@@ -95,6 +114,7 @@ public class StdRangeRaptorConfig<T extends RaptorTripSchedule> {
         switch (ctx.profile()) {
             case STANDARD:
             case BEST_TIME:
+            case TRAVEL_TIMES:
                 return new StdTransitWorker<>(state, ctx.calculator());
             case NO_WAIT_STD:
             case NO_WAIT_BEST_TIME:
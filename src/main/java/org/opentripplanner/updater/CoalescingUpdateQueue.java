@@ -0,0 +1,229 @@
+package org.opentripplanner.updater;
+
+import org.opentripplanner.routing.graph.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded queue of realtime updates from a streaming source, like a websocket or a paged SIRI
+ * feed, applied to the graph in batches.
+ * <p>
+ * Updates are keyed, typically on the trip they update. An update replaces a pending update with
+ * the same key, so a burst of messages for the same trip is applied once. All pending updates are
+ * applied by one {@link GraphWriterRunnable}, and at most one batch is waiting for the graph
+ * writer thread at any time. A batch is applied {@code batchIntervalMs} after the first update
+ * added to it, so updates received within the interval are coalesced, also after an idle period,
+ * and batches are at least the interval apart. While the writer thread is busy, updates accumulate
+ * and coalesce here instead of in the queue of the writer thread.
+ * <p>
+ * The number of pending updates is bounded by the capacity. When the queue is full, {@link
+ * #offer(Object, Object)} drops the update and {@link #put(Object, Object)} blocks the producer
+ * until the next batch is taken.
+ */
+public class CoalescingUpdateQueue<K, T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingUpdateQueue.class);
+
+    public static final int DEFAULT_CAPACITY = 50_000;
+
+    public static final long DEFAULT_BATCH_INTERVAL_MS = 1000;
+
+    private final String name;
+
+    private final int capacity;
+
+    private final long batchIntervalMs;
+
+    private final GraphUpdaterManager updaterManager;
+
+    private final BatchHandler<T> handler;
+
+    /* The fields below are guarded by this */
+
+    private final LinkedHashMap<K, T> pending = new LinkedHashMap<>();
+
+    private boolean fullDataset = false;
+
+    private boolean batchScheduled = false;
+
+    /** Run after the next batch is applied, see {@link #whenPendingApplied(Runnable)} */
+    private final List<Runnable> afterNextBatch = new ArrayList<>();
+
+    private volatile long acceptedCount = 0;
+
+    private volatile long coalescedCount = 0;
+
+    private volatile long droppedCount = 0;
+
+    private volatile long batchCount = 0;
+
+    /**
+     * @param name used in the logs, typically the feed id.
+     */
+    public CoalescingUpdateQueue(
+            String name,
+            int capacity,
+            long batchIntervalMs,
+            GraphUpdaterManager updaterManager,
+            BatchHandler<T> handler
+    ) {
+        this.name = name;
+        this.capacity = capacity;
+        this.batchIntervalMs = batchIntervalMs;
+        this.updaterManager = updaterManager;
+        this.handler = handler;
+    }
+
+    /**
+     * Add an update, replacing any pending update with the same key. Never blocks.
+     *
+     * @return false if the queue is full, and the update is dropped.
+     */
+    public synchronized boolean offer(K key, T update) {
+        if (!add(key, update)) {
+            ++droppedCount;
+            return false;
+        }
+        scheduleBatch();
+        return true;
+    }
+
+    /**
+     * Add an update, replacing any pending update with the same key. If the queue is full, wait
+     * until the pending updates are taken by the graph writer thread.
+     */
+    public synchronized void put(K key, T update) throws InterruptedException {
+        while (!add(key, update)) {
+            wait();
+        }
+        scheduleBatch();
+    }
+
+    /**
+     * Replace all pending updates with a full dataset. The next batch is applied as a full
+     * dataset. The full dataset is never dropped, even if it is larger than the capacity.
+     */
+    public synchronized void offerFullDataset(Map<K, T> updates) {
+        pending.clear();
+        pending.putAll(updates);
+        fullDataset = true;
+        acceptedCount += updates.size();
+        scheduleBatch();
+    }
+
+    /**
+     * Run the action on the graph writer thread when all updates added so far are applied to the
+     * graph. The action runs after the next batch, or right away on the writer thread if nothing
+     * is pending.
+     */
+    public synchronized void whenPendingApplied(Runnable action) {
+        if (batchScheduled) {
+            afterNextBatch.add(action);
+        }
+        else {
+            // A batch taken before may still be applied, this runs after it
+            updaterManager.execute(graph -> action.run());
+        }
+    }
+
+    /** The number of updates accepted, including the updates replacing a pending update. */
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /** The number of updates replacing a pending update with the same key. */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** The number of updates dropped because the queue was full. */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** The number of batches applied. */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingUpdateQueue{"
+                + "name=" + name
+                + ", accepted=" + acceptedCount
+                + ", coalesced=" + coalescedCount
+                + ", dropped=" + droppedCount
+                + ", batches=" + batchCount
+                + "}";
+    }
+
+    /* private methods */
+
+    private boolean add(K key, T update) {
+        if (pending.containsKey(key)) {
+            ++coalescedCount;
+        }
+        else if (pending.size() >= capacity) {
+            return false;
+        }
+        pending.put(key, update);
+        ++acceptedCount;
+        return true;
+    }
+
+    /**
+     * Schedule a batch when the first pending update is added. The batch is taken after the
+     * previous batch, so the interval also separates the batches.
+     */
+    private void scheduleBatch() {
+        if (batchScheduled) { return; }
+        batchScheduled = true;
+        updaterManager.execute(this::applyBatch, batchIntervalMs);
+    }
+
+    private void applyBatch(Graph graph) {
+        final List<T> updates;
+        final boolean full;
+        final List<Runnable> actions;
+        synchronized (this) {
+            updates = new ArrayList<>(pending.values());
+            actions = new ArrayList<>(afterNextBatch);
+            afterNextBatch.clear();
+            full = fullDataset;
+            pending.clear();
+            fullDataset = false;
+            batchScheduled = false;
+            ++batchCount;
+            // Wake up producers waiting for free capacity
+            notifyAll();
+        }
+        LOG.debug("Applying batch of {} updates from {}: {}", updates.size(), name, this);
+        try {
+            handler.applyBatch(graph, full, updates);
+        }
+        finally {
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Apply a batch of updates to the graph. This is called on the graph writer thread.
+     */
+    @FunctionalInterface
+    public interface BatchHandler<T> {
+        /**
+         * @param fullDataset true if the updates replace all previous updates of the source.
+         * @param updates the updates in the order they are first received.
+         */
+        void applyBatch(Graph graph, boolean fullDataset, List<T> updates);
+    }
+}
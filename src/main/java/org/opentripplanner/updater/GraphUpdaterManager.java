@@ -36,6 +36,17 @@ public class GraphUpdaterManager {
      * Text used for naming threads when the graph lacks a routerId.
      */
     private static String DEFAULT_ROUTER_ID = "(default)";
+
+    /**
+     * How often pending realtime changes are published as a new timetable snapshot. The snapshot
+     * provider throttles the commits further, see the maxSnapshotFrequency of the provider.
+     */
+    private static final long TIMETABLE_SNAPSHOT_PUBLISH_INTERVAL_MS = 200;
+
+    /**
+     * How often expired realtime data is removed, see {@link Graph#compactRealtimeData()}.
+     */
+    private static final long REALTIME_DATA_COMPACTION_INTERVAL_MS = 10 * 60 * 1000;
     
     /**
      * Thread factory used to create new threads, giving them more human-readable names including the routerId.
@@ -138,13 +149,27 @@ public class GraphUpdaterManager {
      * @param runnable is a graph writer runnable
      */
     public void execute(GraphWriterRunnable runnable) {
-        scheduler.submit(() -> {
-            try {
-                runnable.run(graph);
-            } catch (Exception e) {
-                LOG.error("Error while running graph writer {}:", runnable.getClass().getName(), e);
-            }
-        });
+        scheduler.submit(() -> runGraphWriter(runnable));
+    }
+
+    /**
+     * Like {@link #execute(GraphWriterRunnable)}, but the runnable is run on the graph writer
+     * thread after the given delay. The runnable is not ordered with respect to runnables
+     * submitted without a delay.
+     *
+     * @param runnable is a graph writer runnable
+     * @param delayMs the delay in milliseconds
+     */
+    public void execute(GraphWriterRunnable runnable, long delayMs) {
+        scheduler.schedule(() -> runGraphWriter(runnable), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runGraphWriter(GraphWriterRunnable runnable) {
+        try {
+            runnable.run(graph);
+        } catch (Exception e) {
+            LOG.error("Error while running graph writer {}:", runnable.getClass().getName(), e);
+        }
     }
 
     public int size() {
@@ -166,6 +191,50 @@ public class GraphUpdaterManager {
                 }
             });
         }
+        scheduleTimetableSnapshotPublisher();
+        scheduleRealtimeDataCompaction();
+    }
+
+    /**
+     * Publish pending realtime changes at a fixed cadence, so the routing threads never have to
+     * commit the timetable snapshot buffer. The task runs on the single graph writer thread, and
+     * is therefore never run concurrently with the graph writer runnables applying the updates.
+     */
+    private void scheduleTimetableSnapshotPublisher() {
+        scheduler.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        graph.publishTimetableSnapshot();
+                    } catch (Exception e) {
+                        // Do not let the exception cancel the scheduled task
+                        LOG.error("Error while publishing timetable snapshot:", e);
+                    }
+                },
+                TIMETABLE_SNAPSHOT_PUBLISH_INTERVAL_MS,
+                TIMETABLE_SNAPSHOT_PUBLISH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Remove expired realtime data in the background, so the realtime data does not keep growing
+     * when no updates arrive, and not only when an update is applied. Like the snapshot publisher
+     * this runs on the graph writer thread.
+     */
+    private void scheduleRealtimeDataCompaction() {
+        scheduler.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        graph.compactRealtimeData();
+                    } catch (Exception e) {
+                        // Do not let the exception cancel the scheduled task
+                        LOG.error("Error while compacting realtime data:", e);
+                    }
+                },
+                REALTIME_DATA_COMPACTION_INTERVAL_MS,
+                REALTIME_DATA_COMPACTION_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
     }
 
     /**
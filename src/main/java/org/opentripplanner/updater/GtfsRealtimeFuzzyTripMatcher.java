@@ -4,7 +4,6 @@ import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.Route;
 import org.opentripplanner.model.Trip;
-import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.RoutingService;
 import org.opentripplanner.routing.trippattern.TripTimes;
@@ -12,6 +11,7 @@ import org.opentripplanner.util.TimeToStringConverter;
 
 import java.text.ParseException;
 import java.util.BitSet;
+import java.util.List;
 
 /**
  * This class is used for matching TripDescriptors without trip_ids to scheduled GTFS data and to
@@ -19,6 +19,9 @@ import java.util.BitSet;
  *
  * The class should only be used if we know that the feed producer is unable to produce trip_ids
  * in the GTFS-RT feed.
+ *
+ * Trips are looked up in the {@link TripMatchingIndex} of the graph, which is shared by all
+ * updaters, so creating a matcher is cheap and matching is a hash lookup.
  */
 public class GtfsRealtimeFuzzyTripMatcher {
 
@@ -73,13 +76,12 @@ public class GtfsRealtimeFuzzyTripMatcher {
 
     public Trip getTrip (Route route, int direction, int startTime, ServiceDate date) {
         BitSet services = routingService.getServicesRunningForDate(date);
-        for (TripPattern pattern : routingService.getPatternsForRoute().get(route)) {
-            if (pattern.directionId != direction) continue;
-            for (TripTimes times : pattern.scheduledTimetable.tripTimes) {
-                if (times.getScheduledDepartureTime(0) == startTime &&
-                        services.get(times.serviceCode)) {
-                    return times.trip;
-                }
+        List<TripTimes> candidates = routingService
+                .getTripMatchingIndex()
+                .getTripTimesByFirstDeparture(route.getId(), direction, startTime);
+        for (TripTimes times : candidates) {
+            if (services.get(times.serviceCode)) {
+                return times.trip;
             }
         }
         return null;
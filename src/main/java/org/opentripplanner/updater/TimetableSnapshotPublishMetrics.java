@@ -0,0 +1,81 @@
+package org.opentripplanner.updater;
+
+/**
+ * Keep track of the time it takes to commit the timetable snapshot buffer and the publish lag. The
+ * publish lag is the time from the first unpublished change is applied to the buffer until a
+ * snapshot containing the change is visible to the routing threads.
+ * <p>
+ * The metrics are updated by the thread holding the buffer lock, and read by any thread. All
+ * durations are in milliseconds, {@code -1} is used until the first snapshot is published.
+ */
+public class TimetableSnapshotPublishMetrics {
+
+    /** Epoch time of the first change not yet published, {@code -1} if there is none. */
+    private long firstUnpublishedChangeTime = -1;
+
+    private volatile int publishCount = 0;
+    private volatile long lastCommitDuration = -1;
+    private volatile long maxCommitDuration = -1;
+    private volatile long lastPublishLag = -1;
+    private volatile long maxPublishLag = -1;
+
+    /**
+     * Call this after a batch of updates is applied to the buffer. The publish lag is measured
+     * from the first batch that made the buffer dirty.
+     */
+    public void bufferUpdated(boolean dirty) {
+        if (dirty && firstUnpublishedChangeTime < 0) {
+            firstUnpublishedChangeTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Call this after a new snapshot is published.
+     *
+     * @param commitStartTime the epoch time in milliseconds when the commit started.
+     */
+    public void snapshotPublished(long commitStartTime) {
+        long now = System.currentTimeMillis();
+
+        lastCommitDuration = now - commitStartTime;
+        maxCommitDuration = Math.max(maxCommitDuration, lastCommitDuration);
+
+        if (firstUnpublishedChangeTime >= 0) {
+            lastPublishLag = now - firstUnpublishedChangeTime;
+            maxPublishLag = Math.max(maxPublishLag, lastPublishLag);
+            firstUnpublishedChangeTime = -1;
+        }
+        ++publishCount;
+    }
+
+    public int getPublishCount() {
+        return publishCount;
+    }
+
+    public long getLastCommitDuration() {
+        return lastCommitDuration;
+    }
+
+    public long getMaxCommitDuration() {
+        return maxCommitDuration;
+    }
+
+    public long getLastPublishLag() {
+        return lastPublishLag;
+    }
+
+    public long getMaxPublishLag() {
+        return maxPublishLag;
+    }
+
+    @Override
+    public String toString() {
+        return "TimetableSnapshotPublishMetrics{"
+                + "publishCount=" + publishCount
+                + ", lastCommitDuration=" + lastCommitDuration + "ms"
+                + ", maxCommitDuration=" + maxCommitDuration + "ms"
+                + ", lastPublishLag=" + lastPublishLag + "ms"
+                + ", maxPublishLag=" + maxPublishLag + "ms"
+                + "}";
+    }
+}
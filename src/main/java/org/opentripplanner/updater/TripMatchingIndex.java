@@ -0,0 +1,246 @@
+package org.opentripplanner.updater;
+
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.util.CopyOnWriteChunkedMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable index used by the fuzzy trip matchers to find trips in realtime feeds without
+ * trip ids. Trips are indexed on:
+ * <ul>
+ *     <li>route, direction and scheduled departure time at the first stop - used by GTFS-RT</li>
+ *     <li>last stop id (without feed id) and scheduled arrival time at the last stop - used by
+ *     SIRI</li>
+ * </ul>
+ * Both lookups are a single hash lookup. The service date is not part of the keys, the trips
+ * returned must be filtered on the services running on the date, see
+ * {@link org.opentripplanner.routing.graph.Graph#getServicesRunningForDate}.
+ * <p>
+ * The index is never modified, so it can be used by many updaters at the same time. New trips,
+ * like trips added by realtime updates, are added and removed with a {@link Builder} which
+ * publishes a new index. The builder shares the unchanged parts of the index with the published copies, so adding
+ * a trip costs in proportion to the number of trips added, not the size of the index.
+ */
+public class TripMatchingIndex {
+
+    private final CopyOnWriteChunkedMap<StartKey, List<TripTimes>> tripTimesByStart;
+
+    private final CopyOnWriteChunkedMap<ArrivalKey, Set<Trip>> tripsByLastStopArrival;
+
+    private TripMatchingIndex(
+            CopyOnWriteChunkedMap<StartKey, List<TripTimes>> tripTimesByStart,
+            CopyOnWriteChunkedMap<ArrivalKey, Set<Trip>> tripsByLastStopArrival
+    ) {
+        this.tripTimesByStart = tripTimesByStart;
+        this.tripsByLastStopArrival = tripsByLastStopArrival;
+    }
+
+    /**
+     * Find the scheduled trip times of the trips on the given route and direction departing from
+     * the first stop at the given time.
+     *
+     * @param departureTime seconds since midnight of the service date.
+     * @return an unmodifiable list, empty if no trips are found.
+     */
+    public List<TripTimes> getTripTimesByFirstDeparture(
+            FeedScopedId routeId,
+            int direction,
+            int departureTime
+    ) {
+        List<TripTimes> tripTimes = tripTimesByStart.get(new StartKey(routeId, direction, departureTime));
+        return tripTimes == null ? Collections.emptyList() : tripTimes;
+    }
+
+    /**
+     * Find the trips arriving at the given last stop at the given time.
+     *
+     * @param lastStopId the stop id, without the feed id.
+     * @param arrivalTime seconds since midnight of the service date.
+     * @return an unmodifiable set, empty if no trips are found.
+     */
+    public Set<Trip> getTripsByLastStopArrival(String lastStopId, int arrivalTime) {
+        Set<Trip> trips = tripsByLastStopArrival.get(new ArrivalKey(lastStopId, arrivalTime));
+        return trips == null ? Collections.emptySet() : trips;
+    }
+
+    public int size() {
+        return tripTimesByStart.values().stream().mapToInt(List::size).sum();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects the trips to index and publishes immutable indexes. Trips can be added after an index
+     * is built, the next index built includes them. A trip added again replaces the previous
+     * entry of the trip.
+     * <p>
+     * This class is not thread-safe.
+     */
+    public static class Builder {
+
+        private final CopyOnWriteChunkedMap<StartKey, List<TripTimes>> tripTimesByStart =
+                new CopyOnWriteChunkedMap<>();
+
+        private final CopyOnWriteChunkedMap<ArrivalKey, Set<Trip>> tripsByLastStopArrival =
+                new CopyOnWriteChunkedMap<>();
+
+        /** The keys of each trip, needed to remove the previous entry of a trip added again. */
+        private final Map<Trip, Keys> keysByTrip = new HashMap<>();
+
+        private Builder() {}
+
+        /** Add all scheduled trips of the given pattern. */
+        public Builder addPattern(TripPattern pattern) {
+            for (TripTimes tripTimes : pattern.scheduledTimetable.tripTimes) {
+                addTripTimes(pattern, tripTimes);
+            }
+            return this;
+        }
+
+        public Builder addTripTimes(TripPattern pattern, TripTimes tripTimes) {
+            Trip trip = tripTimes.trip;
+            removeTrip(trip);
+
+            int lastStop = tripTimes.getNumStops() - 1;
+            Keys keys = new Keys(
+                    new StartKey(
+                            pattern.route.getId(),
+                            pattern.directionId,
+                            tripTimes.getScheduledDepartureTime(0)
+                    ),
+                    new ArrivalKey(
+                            pattern.getStop(lastStop).getId().getId(),
+                            tripTimes.getScheduledArrivalTime(lastStop)
+                    )
+            );
+
+            // The values are shared with the published indexes, so they are copied, not modified
+            List<TripTimes> byStart = new ArrayList<>();
+            List<TripTimes> oldByStart = tripTimesByStart.get(keys.start);
+            if (oldByStart != null) { byStart.addAll(oldByStart); }
+            byStart.add(tripTimes);
+            tripTimesByStart.put(keys.start, Collections.unmodifiableList(byStart));
+
+            Set<Trip> byArrival = new HashSet<>();
+            Set<Trip> oldByArrival = tripsByLastStopArrival.get(keys.arrival);
+            if (oldByArrival != null) { byArrival.addAll(oldByArrival); }
+            byArrival.add(trip);
+            tripsByLastStopArrival.put(keys.arrival, Collections.unmodifiableSet(byArrival));
+
+            keysByTrip.put(trip, keys);
+            return this;
+        }
+
+        /** Return true if the trip is added to this builder. */
+        public boolean contains(Trip trip) {
+            return keysByTrip.containsKey(trip);
+        }
+
+        /**
+         * Remove a trip, like a trip added by a realtime update that expired. Removing a trip not
+         * added does nothing.
+         */
+        public Builder removeTrip(Trip trip) {
+            Keys keys = keysByTrip.remove(trip);
+            if (keys == null) { return this; }
+
+            List<TripTimes> byStart = new ArrayList<>(tripTimesByStart.get(keys.start));
+            byStart.removeIf(it -> it.trip.equals(trip));
+            if (byStart.isEmpty()) {
+                tripTimesByStart.remove(keys.start);
+            } else {
+                tripTimesByStart.put(keys.start, Collections.unmodifiableList(byStart));
+            }
+
+            Set<Trip> byArrival = new HashSet<>(tripsByLastStopArrival.get(keys.arrival));
+            byArrival.remove(trip);
+            if (byArrival.isEmpty()) {
+                tripsByLastStopArrival.remove(keys.arrival);
+            } else {
+                tripsByLastStopArrival.put(keys.arrival, Collections.unmodifiableSet(byArrival));
+            }
+            return this;
+        }
+
+        /** Publish an immutable index with all trips added so far. */
+        public TripMatchingIndex build() {
+            return new TripMatchingIndex(
+                    tripTimesByStart.readOnlyCopy(),
+                    tripsByLastStopArrival.readOnlyCopy()
+            );
+        }
+    }
+
+    private static final class Keys {
+        private final StartKey start;
+        private final ArrivalKey arrival;
+
+        private Keys(StartKey start, ArrivalKey arrival) {
+            this.start = start;
+            this.arrival = arrival;
+        }
+    }
+
+    private static final class StartKey {
+        private final FeedScopedId routeId;
+        private final int direction;
+        private final int departureTime;
+
+        private StartKey(FeedScopedId routeId, int direction, int departureTime) {
+            this.routeId = routeId;
+            this.direction = direction;
+            this.departureTime = departureTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (o == null || getClass() != o.getClass()) { return false; }
+            StartKey other = (StartKey) o;
+            return direction == other.direction
+                    && departureTime == other.departureTime
+                    && routeId.equals(other.routeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(routeId, direction, departureTime);
+        }
+    }
+
+    private static final class ArrivalKey {
+        private final String lastStopId;
+        private final int arrivalTime;
+
+        private ArrivalKey(String lastStopId, int arrivalTime) {
+            this.lastStopId = lastStopId;
+            this.arrivalTime = arrivalTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (o == null || getClass() != o.getClass()) { return false; }
+            ArrivalKey other = (ArrivalKey) o;
+            return arrivalTime == other.arrivalTime && lastStopId.equals(other.lastStopId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * lastStopId.hashCode() + arrivalTime;
+        }
+    }
+}
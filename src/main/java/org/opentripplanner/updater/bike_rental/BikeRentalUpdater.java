@@ -1,7 +1,9 @@
 package org.opentripplanner.updater.bike_rental;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,6 +15,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.opentripplanner.graph_builder.DataImportIssueStore;
 import org.opentripplanner.graph_builder.linking.SimpleStreetSplitter;
 import org.opentripplanner.routing.bike_rental.BikeRentalStation;
+import org.opentripplanner.routing.bike_rental.BikeRentalStationAvailability;
 import org.opentripplanner.routing.bike_rental.BikeRentalStationService;
 import org.opentripplanner.routing.edgetype.RentABikeOffEdge;
 import org.opentripplanner.routing.edgetype.RentABikeOnEdge;
@@ -36,8 +39,27 @@ public class BikeRentalUpdater extends PollingGraphUpdater {
 
     private static final String DEFAULT_NETWORK_LIST = "default";
 
+    /**
+     * Stations missing from the feed for a shorter time than this are kept in the graph, out of
+     * service, so a station reappearing does not have to be linked to the streets again.
+     */
+    private static final int DEFAULT_STATION_REMOVAL_DELAY_SECONDS = 15 * 60;
+
     Map<BikeRentalStation, BikeRentalStationVertex> verticesByStation = new HashMap<BikeRentalStation, BikeRentalStationVertex>();
 
+    /** The epoch time in milliseconds when a station kept in the graph went missing from the feed */
+    private final Map<BikeRentalStation, Long> missingSince = new HashMap<>();
+
+    /** The bikes and spaces available, read by the routing threads */
+    private final BikeRentalStationAvailability availability = new BikeRentalStationAvailability();
+
+    /** The availability indexes of removed stations, reused for new stations */
+    private final Deque<Integer> freeAvailabilityIndexes = new ArrayDeque<>();
+
+    private int availabilityTableSize = 0;
+
+    private long stationRemovalDelayMs = DEFAULT_STATION_REMOVAL_DELAY_SECONDS * 1000L;
+
     private BikeRentalDataSource source;
 
     private SimpleStreetSplitter linker;
@@ -107,6 +129,9 @@ public class BikeRentalUpdater extends PollingGraphUpdater {
         LOG.info("Setting up bike rental updater.");
         this.source = source;
         this.network = config.path("networks").asText(DEFAULT_NETWORK_LIST);
+        this.stationRemovalDelayMs = 1000L * config
+                .path("stationRemovalDelaySeconds")
+                .asInt(DEFAULT_STATION_REMOVAL_DELAY_SECONDS);
         if (pollingPeriodSeconds <= 0) {
             LOG.info("Creating bike-rental updater running once only (non-polling): {}", source);
         } else {
@@ -141,6 +166,86 @@ public class BikeRentalUpdater extends PollingGraphUpdater {
     public void teardown() {
     }
 
+    /**
+     * Apply the stations of one update to the graph. Must be called from the graph writer thread.
+     *
+     * @param now the epoch time in milliseconds, stations missing from the update for longer than
+     *            the removal delay are removed from the graph.
+     */
+    void updateStations(Graph graph, List<BikeRentalStation> stations, long now) {
+        // Apply stations to graph
+        Set<BikeRentalStation> stationSet = new HashSet<>();
+        Set<String> defaultNetworks = new HashSet<>(Arrays.asList(network));
+        /* add any new stations, existing stations are only updated in the availability table */
+        for (BikeRentalStation station : stations) {
+            if (station.networks == null) {
+                /* API did not provide a network list, use default */
+                station.networks = defaultNetworks;
+            }
+            service.addBikeRentalStation(station);
+            stationSet.add(station);
+            missingSince.remove(station);
+            BikeRentalStationVertex vertex = verticesByStation.get(station);
+            if (vertex == null) {
+                vertex = new BikeRentalStationVertex(graph, station);
+                // The station is out of service until the availability table below is published
+                vertex.setAvailability(availability, allocateAvailabilityIndex());
+                if (!linker.link(vertex)) {
+                    // the toString includes the text "Bike rental station"
+                    LOG.info("BikeRentalStation {} is unlinked", vertex);
+                }
+                verticesByStation.put(station, vertex);
+                new RentABikeOnEdge(vertex, vertex, station.networks);
+                if (station.allowDropoff)
+                    new RentABikeOffEdge(vertex, vertex, station.networks);
+            }
+        }
+        /*
+         * Existing stations not present in the update are out of service. Feeds often drop
+         * stations for a few polls, so the vertices are only removed when the station is
+         * missing for longer than the removal delay, to avoid linking the station again.
+         */
+        List<BikeRentalStation> toRemove = new ArrayList<BikeRentalStation>();
+        for (Entry<BikeRentalStation, BikeRentalStationVertex> entry : verticesByStation.entrySet()) {
+            BikeRentalStation station = entry.getKey();
+            if (stationSet.contains(station))
+                continue;
+            service.removeBikeRentalStation(station);
+            long missingSinceTime = missingSince.computeIfAbsent(station, it -> now);
+            if (now - missingSinceTime < stationRemovalDelayMs)
+                continue;
+            BikeRentalStationVertex vertex = entry.getValue();
+            if (graph.containsVertex(vertex)) {
+                graph.removeVertexAndEdges(vertex);
+            }
+            toRemove.add(station);
+            // TODO: need to unsplit any streets that were split
+        }
+        for (BikeRentalStation station : toRemove) {
+            // post-iteration removal to avoid concurrent modification
+            BikeRentalStationVertex vertex = verticesByStation.remove(station);
+            missingSince.remove(station);
+            freeAvailabilityIndexes.add(vertex.getAvailabilityIndex());
+        }
+        /* publish the availability of all stations at once */
+        BikeRentalStationAvailability.Builder table = availability.newTable(availabilityTableSize);
+        for (BikeRentalStation station : stations) {
+            BikeRentalStationVertex vertex = verticesByStation.get(station);
+            table.set(vertex.getAvailabilityIndex(), station.bikesAvailable, station.spacesAvailable);
+        }
+        table.publish();
+        if (!toRemove.isEmpty()) {
+            LOG.info("Removed {} bike rental stations missing from {}", toRemove.size(), source);
+        }
+    }
+
+    /* private methods */
+
+    private int allocateAvailabilityIndex() {
+        Integer index = freeAvailabilityIndexes.poll();
+        return index != null ? index : availabilityTableSize++;
+    }
+
     private class BikeRentalGraphWriterRunnable implements GraphWriterRunnable {
 
         private List<BikeRentalStation> stations;
@@ -149,53 +254,9 @@ public class BikeRentalUpdater extends PollingGraphUpdater {
             this.stations = stations;
         }
 
-		@Override
+        @Override
         public void run(Graph graph) {
-            // Apply stations to graph
-            Set<BikeRentalStation> stationSet = new HashSet<>();
-            Set<String> defaultNetworks = new HashSet<>(Arrays.asList(network));
-            /* add any new stations and update bike counts for existing stations */
-            for (BikeRentalStation station : stations) {
-                if (station.networks == null) {
-                    /* API did not provide a network list, use default */
-                    station.networks = defaultNetworks;
-                }
-                service.addBikeRentalStation(station);
-                stationSet.add(station);
-                BikeRentalStationVertex vertex = verticesByStation.get(station);
-                if (vertex == null) {
-                    vertex = new BikeRentalStationVertex(graph, station);
-                    if (!linker.link(vertex)) {
-                        // the toString includes the text "Bike rental station"
-                        LOG.info("BikeRentalStation {} is unlinked", vertex);
-                    }
-                    verticesByStation.put(station, vertex);
-                    new RentABikeOnEdge(vertex, vertex, station.networks);
-                    if (station.allowDropoff)
-                        new RentABikeOffEdge(vertex, vertex, station.networks);
-                } else {
-                    vertex.setBikesAvailable(station.bikesAvailable);
-                    vertex.setSpacesAvailable(station.spacesAvailable);
-                }
-            }
-            /* remove existing stations that were not present in the update */
-            List<BikeRentalStation> toRemove = new ArrayList<BikeRentalStation>();
-            for (Entry<BikeRentalStation, BikeRentalStationVertex> entry : verticesByStation.entrySet()) {
-                BikeRentalStation station = entry.getKey();
-                if (stationSet.contains(station))
-                    continue;
-                BikeRentalStationVertex vertex = entry.getValue();
-                if (graph.containsVertex(vertex)) {
-                    graph.removeVertexAndEdges(vertex);
-                }
-                toRemove.add(station);
-                service.removeBikeRentalStation(station);
-                // TODO: need to unsplit any streets that were split
-            }
-            for (BikeRentalStation station : toRemove) {
-                // post-iteration removal to avoid concurrent modification
-                verticesByStation.remove(station);
-            }
+            updateStations(graph, stations, System.currentTimeMillis());
         }
     }
 }
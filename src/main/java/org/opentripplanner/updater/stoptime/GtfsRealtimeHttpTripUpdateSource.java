@@ -1,19 +1,25 @@
 package org.opentripplanner.updater.stoptime;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 import org.opentripplanner.updater.JsonConfigurable;
 import org.opentripplanner.routing.graph.Graph;
-import org.opentripplanner.util.HttpUtils;
+import org.opentripplanner.util.ConditionalHttpDownloader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.transit.realtime.GtfsRealtime;
 import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
 import com.google.transit.realtime.GtfsRealtime.FeedMessage;
 import com.google.transit.realtime.GtfsRealtime.TripUpdate;
 
@@ -21,6 +27,13 @@ public class GtfsRealtimeHttpTripUpdateSource implements TripUpdateSource, JsonC
     private static final Logger LOG =
             LoggerFactory.getLogger(GtfsRealtimeHttpTripUpdateSource.class);
 
+    /**
+     * The feed header is read from a buffered stream marked before the header, so the stream can
+     * be reset and the whole feed parsed. The CodedInputStream reads 4K ahead, so the header and
+     * the read-ahead must fit within this limit.
+     */
+    private static final int HEADER_READ_LIMIT = 64 * 1024;
+
     /**
      * True iff the last list with updates represent all updates that are active right now, i.e. all
      * previous updates should be disregarded
@@ -34,6 +47,18 @@ public class GtfsRealtimeHttpTripUpdateSource implements TripUpdateSource, JsonC
 
     private String url;
 
+    /** Send conditional requests, and keep track of the bytes fetched. */
+    private ConditionalHttpDownloader downloader;
+
+    /** The timestamp in the header of the last feed message applied, 0 if unknown. */
+    private long lastFeedTimestamp = 0;
+
+    /**
+     * The number of polls where the feed is not parsed and applied, because the server
+     * responded not modified or the feed header timestamp is unchanged.
+     */
+    private int skippedPolls = 0;
+
     @Override
     public void configure(Graph graph, JsonNode config) throws Exception {
         String url = config.path("url").asText();
@@ -42,24 +67,21 @@ public class GtfsRealtimeHttpTripUpdateSource implements TripUpdateSource, JsonC
         }
         this.url = url;
         this.feedId = config.path("feedId").asText();
+        this.downloader = new ConditionalHttpDownloader(url).withHeader(
+                "Accept",
+                "application/x-google-protobuf, application/x-protobuf, application/protobuf, application/octet-stream, */*"
+        );
     }
 
     @Override
     public List<TripUpdate> getUpdates() {
-        FeedMessage feedMessage = null;
-        List<FeedEntity> feedEntityList = null;
         List<TripUpdate> updates = null;
         fullDataset = true;
         try {
-            InputStream is = HttpUtils.getData(
-                    url,
-                    "Accept",
-                    "application/x-google-protobuf, application/x-protobuf, application/protobuf, application/octet-stream, */*");
-            if (is != null) {
-                // Decode message
-                feedMessage = FeedMessage.PARSER.parseFrom(is);
-                feedEntityList = feedMessage.getEntityList();
-                
+            FeedMessage feedMessage = downloader.download(this::parseIfChanged);
+            if (feedMessage != null) {
+                List<FeedEntity> feedEntityList = feedMessage.getEntityList();
+
                 // Change fullDataset value if this is an incremental update
                 if (feedMessage.hasHeader()
                         && feedMessage.getHeader().hasIncrementality()
@@ -67,26 +89,64 @@ public class GtfsRealtimeHttpTripUpdateSource implements TripUpdateSource, JsonC
                                 .equals(GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL)) {
                     fullDataset = false;
                 }
-                
+
                 // Create List of TripUpdates
                 updates = new ArrayList<>(feedEntityList.size());
                 for (FeedEntity feedEntity : feedEntityList) {
                     if (feedEntity.hasTripUpdate()) updates.add(feedEntity.getTripUpdate());
                 }
+            } else {
+                ++skippedPolls;
             }
         } catch (Exception e) {
             LOG.warn("Failed to parse gtfs-rt feed from " + url + ":", e);
         }
+        LOG.debug("Polled {}, {} bytes fetched, {} polls skipped.", url, downloader.getBytesFetched(), skippedPolls);
         return updates;
     }
 
+    /**
+     * Parse the feed header first, and skip the rest of the feed if the header timestamp is
+     * the same as the timestamp of the last feed message. The header is the first field of the
+     * message when it is serialized by any protobuf library, if it is not, the feed is always
+     * parsed.
+     */
+    private FeedMessage parseIfChanged(InputStream in) throws IOException {
+        InputStream is = new BufferedInputStream(in, HEADER_READ_LIMIT);
+        is.mark(HEADER_READ_LIMIT);
+
+        CodedInputStream codedInput = CodedInputStream.newInstance(is);
+        int tag = codedInput.readTag();
+        if (WireFormat.getTagFieldNumber(tag) == FeedMessage.HEADER_FIELD_NUMBER) {
+            FeedHeader header = codedInput.readMessage(
+                    FeedHeader.PARSER,
+                    ExtensionRegistryLite.getEmptyRegistry()
+            );
+            if (header.hasTimestamp() && header.getTimestamp() > 0
+                    && header.getTimestamp() == lastFeedTimestamp) {
+                LOG.debug("Feed timestamp unchanged, skip feed from {}", url);
+                return null;
+            }
+        }
+        is.reset();
+
+        FeedMessage feedMessage = FeedMessage.PARSER.parseFrom(is);
+        lastFeedTimestamp = feedMessage.getHeader().getTimestamp();
+        return feedMessage;
+    }
+
     @Override
     public boolean getFullDatasetValueOfLastUpdates() {
         return fullDataset;
     }
     
     public String toString() {
-        return "GtfsRealtimeHttpUpdateStreamer(" + url + ")";
+        if (downloader == null) {
+            return "GtfsRealtimeHttpUpdateStreamer(" + url + ")";
+        }
+        return "GtfsRealtimeHttpUpdateStreamer(" + url
+                + ", bytesFetched=" + downloader.getBytesFetched()
+                + ", skippedPolls=" + skippedPolls + ")";
     }
 
     @Override
@@ -65,6 +65,11 @@ public class PollingStoptimeUpdater extends PollingGraphUpdater {
      */
     private GtfsRealtimeFuzzyTripMatcher fuzzyTripMatcher;
 
+    /**
+     * The realtime data snapshot source the updates are applied to, set in setup
+     */
+    private TimetableSnapshotSource snapshotSource;
+
     @Override
     public void setGraphUpdaterManager(GraphUpdaterManager updaterManager) {
         this.updaterManager = updaterManager;
@@ -110,7 +115,7 @@ public class PollingStoptimeUpdater extends PollingGraphUpdater {
     @Override
     public void setup(Graph graph) {
         // Only create a realtime data snapshot source if none exists already
-        TimetableSnapshotSource snapshotSource = graph.getOrSetupTimetableSnapshotProvider(TimetableSnapshotSource::new);
+        snapshotSource = graph.getOrSetupTimetableSnapshotProvider(TimetableSnapshotSource::new);
 
         // Set properties of realtime data snapshot source
         if (logFrequency != null) {
@@ -138,9 +143,11 @@ public class PollingStoptimeUpdater extends PollingGraphUpdater {
         boolean fullDataset = updateSource.getFullDatasetValueOfLastUpdates();
 
         if (updates != null) {
-            // Handle trip updates via graph writer runnable
-            TripUpdateGraphWriterRunnable runnable =
-                    new TripUpdateGraphWriterRunnable(fullDataset, updates, feedId);
+            // Prepare the trip updates on this thread, the graph writer runnable only merges
+            // them into the realtime buffer
+            TripUpdateGraphWriterRunnable runnable = new TripUpdateGraphWriterRunnable(
+                    snapshotSource.prepareTripUpdates(fullDataset, updates, feedId)
+            );
             updaterManager.execute(runnable);
         }
     }
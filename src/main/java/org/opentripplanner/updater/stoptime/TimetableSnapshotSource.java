@@ -1,6 +1,7 @@
 package org.opentripplanner.updater.stoptime;
 
 import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
 import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
 import com.google.transit.realtime.GtfsRealtime.TripUpdate;
 import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
@@ -20,9 +21,11 @@ import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
 import org.opentripplanner.routing.algorithm.raptor.transit.mappers.TransitLayerUpdater;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.RoutingService;
+import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.trippattern.RealTimeState;
 import org.opentripplanner.routing.trippattern.TripTimes;
 import org.opentripplanner.updater.GtfsRealtimeFuzzyTripMatcher;
+import org.opentripplanner.updater.TimetableSnapshotPublishMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,10 +33,18 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 /**
  * This class should be used to create snapshots of lookup tables of realtime data. This is
@@ -57,9 +68,21 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
 
     private int appliedBlockCount = 0;
 
+    private long skippedTripUpdateCount = 0;
+
+    private long removedTripUpdateCount = 0;
+
+    /**
+     * The trip updates from the last full dataset of each feed, indexed by the serialized trip
+     * descriptor. Used to skip the unchanged trip updates when the next full dataset is applied.
+     * Modified while holding the buffer lock, and read without it when trip updates are prepared.
+     */
+    private final Map<String, Map<ByteString, AppliedTripUpdate>> appliedTripUpdatesByFeed = new ConcurrentHashMap<>();
+
     /**
-     * If a timetable snapshot is requested less than this number of milliseconds after the previous
-     * snapshot, just return the same one. Throttles the potentially resource-consuming task of
+     * If a batch of updates is applied less than this number of milliseconds after the previous
+     * snapshot was published, the changes are not published until the next periodic
+     * {@link #publishTimetableSnapshot()}. Throttles the potentially resource-consuming task of
      * duplicating a TripPattern → Timetable map and indexing the new Timetables.
      */
     public int maxSnapshotFrequency = 1000; // msec
@@ -82,6 +105,9 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
      */
     private final ReentrantLock bufferLock = new ReentrantLock(true);
 
+    /** Commit duration and publish lag of the snapshots published by this source. */
+    private final TimetableSnapshotPublishMetrics publishMetrics = new TimetableSnapshotPublishMetrics();
+
     /**
      * A synchronized cache of trip patterns that are added to the graph due to GTFS-realtime messages.
      */
@@ -92,6 +118,8 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
 
     protected ServiceDate lastPurgeDate = null;
 
+    private volatile long compactedBytesEstimate = 0;
+
     /** Epoch time in milliseconds at which the last snapshot was generated. */
     protected long lastSnapshotTime = -1;
 
@@ -120,45 +148,137 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
     }
 
     /**
-     * @return an up-to-date snapshot mapping TripPatterns to Timetables. This snapshot and the
-     *         timetable objects it references are guaranteed to never change, so the requesting
+     * @return the latest published snapshot mapping TripPatterns to Timetables. This snapshot and
+     *         the timetable objects it references are guaranteed to never change, so the requesting
      *         thread is provided a consistent view of all TripTimes. The routing thread need only
      *         release its reference to the snapshot to release resources.
+     *         <p>
+     *         This never commits the buffer, so routing threads do not pay for creating a new
+     *         snapshot. Snapshots are published after each applied batch of updates and by
+     *         {@link #publishTimetableSnapshot()}.
      */
+    @Override
     public TimetableSnapshot getTimetableSnapshot() {
-        TimetableSnapshot snapshotToReturn;
+        return snapshot;
+    }
 
-        // Try to get a lock on the buffer
-        if (bufferLock.tryLock()) {
-            // Make a new snapshot if necessary
-            try {
-                snapshotToReturn = getTimetableSnapshot(false);
-            } finally {
-                bufferLock.unlock();
+    /**
+     * Commit the buffer and publish a new snapshot if the buffer is dirty and the last snapshot
+     * is older than {@link #maxSnapshotFrequency}. This publishes changes held back by the
+     * snapshot throttling, and is called periodically from the graph updater thread.
+     */
+    @Override
+    public void publishTimetableSnapshot() {
+        bufferLock.lock();
+        try {
+            commitTimetableSnapshot(false);
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the realtime data no longer needed, without waiting for the next update:
+     * <ul>
+     *     <li>timetables of expired service dates, if {@link #purgeExpiredData} is set</li>
+     *     <li>trip patterns added by realtime updates and no longer used by any timetable</li>
+     *     <li>trips added by realtime updates and no longer in any timetable, from the trip
+     *     matching index of the graph</li>
+     *     <li>the realtime TransitLayer entries of the expired service dates</li>
+     * </ul>
+     * Realtime trip times with the same arrival and departure times share their arrays. This is
+     * called periodically on the graph updater thread.
+     */
+    @Override
+    public void compactRealtimeData(final Graph graph) {
+        bufferLock.lock();
+        try {
+            final long startTime = System.currentTimeMillis();
+            final int[] purgedTimetables = { 0 };
+            final long[] purgedBytes = { 0 };
+            boolean modified = false;
+            ServiceDate firstDateToKeep = null;
+
+            if (purgeExpiredData) {
+                final ServiceDate previously = new ServiceDate().previous().previous();
+                modified = buffer.purgeExpiredData(previously, timetable -> {
+                    ++purgedTimetables[0];
+                    for (TripTimes tripTimes : timetable.tripTimes) {
+                        purgedBytes[0] += tripTimes.getRealtimeTimesSizeEstimate();
+                    }
+                });
+                lastPurgeDate = previously;
+                firstDateToKeep = previously.next();
             }
-        } else {
-            // No lock could be obtained because there is either a snapshot commit busy or updates
-            // are applied at this moment, just return the current snapshot
-            snapshotToReturn = snapshot;
+
+            final int removedPatterns = tripPatternCache.retainAll(
+                    new HashSet<>(buffer.getAllRealtimeTripPatterns())
+            );
+            final int removedTrips = graph.retainRealtimeTripsInTripMatchingIndex(
+                    buffer.getAllRealtimeTrips()
+            );
+
+            // Deduplicate within the current realtime data only, a long lived deduplicator would
+            // keep every realtime array ever seen.
+            final long deduplicatedBytes = buffer.deduplicateTripTimes(new Deduplicator());
+
+            commitTimetableSnapshot(modified || deduplicatedBytes > 0);
+
+            int revertedDates = 0;
+            if (firstDateToKeep != null && transitLayerUpdater != null) {
+                revertedDates = transitLayerUpdater.revertExpiredDates(firstDateToKeep);
+            }
+
+            compactedBytesEstimate += purgedBytes[0] + deduplicatedBytes;
+            LOG.info(
+                    "Compacted realtime data in {} ms: {} timetables purged, {} trip patterns "
+                            + "and {} matching index trips removed, {} transit layer dates "
+                            + "reverted, about {} KB reclaimed.",
+                    System.currentTimeMillis() - startTime,
+                    purgedTimetables[0],
+                    removedPatterns,
+                    removedTrips,
+                    revertedDates,
+                    (purgedBytes[0] + deduplicatedBytes) / 1024
+            );
+        } finally {
+            bufferLock.unlock();
         }
+    }
+
+    /**
+     * The estimated number of bytes of realtime times released by {@link #compactRealtimeData(Graph)}
+     * since this source was created.
+     */
+    public long getCompactedBytesEstimate() {
+        return compactedBytesEstimate;
+    }
 
-        return snapshotToReturn;
+    public TimetableSnapshotPublishMetrics getPublishMetrics() {
+        return publishMetrics;
     }
 
-    private TimetableSnapshot getTimetableSnapshot(final boolean force) {
+    private void commitTimetableSnapshot(final boolean force) {
         final long now = System.currentTimeMillis();
         if (force || now - lastSnapshotTime > maxSnapshotFrequency) {
             if (force || buffer.isDirty()) {
                 LOG.debug("Committing {}", buffer.toString());
                 snapshot = buffer.commit(transitLayerUpdater, force);
+                publishMetrics.snapshotPublished(now);
+                LOG.debug(
+                        "Snapshot published in {} ms, publish lag {} ms.",
+                        publishMetrics.getLastCommitDuration(),
+                        publishMetrics.getLastPublishLag()
+                );
+                // Only a published snapshot starts a new throttling period, so changes made
+                // after an idle tick are published on the next tick.
+                lastSnapshotTime = System.currentTimeMillis();
             } else {
                 LOG.debug("Buffer was unchanged, keeping old snapshot.");
             }
-            lastSnapshotTime = System.currentTimeMillis();
         } else {
             LOG.debug("Snapshot frequency exceeded. Reusing snapshot {}", snapshot);
         }
-        return snapshot;
     }
 
     /**
@@ -179,43 +299,112 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
             LOG.warn("updates is null");
             return;
         }
+        applyTripUpdates(graph, prepareTripUpdates(fullDataset, updates, feedId));
+    }
+
+    /**
+     * Do the work needed to apply a trip update list that does not depend on the buffer: decode
+     * the service dates, match the trips and compute the updated trip times of the SCHEDULED trip
+     * updates against the immutable scheduled timetables. The trip updates are prepared in
+     * parallel, and the buffer lock is not taken, so this should be called from the thread
+     * receiving the updates, not the graph writer thread. The batches of one feed must be applied
+     * in the same order as they are prepared.
+     *
+     * @param fullDataset true iff the list with updates represent all updates that are active right
+     *        now, i.e. all previous updates should be disregarded
+     * @param updates GTFS-RT TripUpdate's that should be applied atomically
+     * @param feedId
+     */
+    public PreparedTripUpdates prepareTripUpdates(final boolean fullDataset, final List<TripUpdate> updates, final String feedId) {
+        final List<AppliedTripUpdate> incomingInOrder = updates
+                .parallelStream()
+                .map(this::decodeTripUpdate)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        final Map<ByteString, AppliedTripUpdate> incoming = new HashMap<>();
+        boolean duplicateTrips = false;
+        for (AppliedTripUpdate it : incomingInOrder) {
+            duplicateTrips |= incoming.put(it.key, it) != null;
+        }
+
+        // Trip updates unchanged since the last full dataset are likely to be skipped, so these
+        // are not prepared. If they are needed after all, they are prepared when applied.
+        final Map<ByteString, AppliedTripUpdate> lastApplied = fullDataset
+                ? appliedTripUpdatesByFeed.get(feedId)
+                : null;
+
+        incomingInOrder
+                .parallelStream()
+                .filter(it -> lastApplied == null || !it.isSameAs(lastApplied.get(it.key)))
+                .forEach(it -> prepareTripUpdate(feedId, it));
+
+        return new PreparedTripUpdates(feedId, fullDataset, incomingInOrder, incoming, duplicateTrips);
+    }
+
+    /**
+     * Apply a prepared trip update list to the most recent version of the timetable snapshot. The
+     * buffer lock is held while the updates are merged into the buffer and a new snapshot is
+     * committed.
+     *
+     * @param graph graph to update (needed for adding/changing stop patterns)
+     * @param prepared the trip updates returned by {@link #prepareTripUpdates(boolean, List, String)}
+     */
+    public void applyTripUpdates(final Graph graph, final PreparedTripUpdates prepared) {
+        final String feedId = prepared.feedId;
+        final boolean fullDataset = prepared.fullDataset;
+        final List<AppliedTripUpdate> incomingInOrder = prepared.incomingInOrder;
+        final Map<ByteString, AppliedTripUpdate> incoming = prepared.incoming;
+        final boolean duplicateTrips = prepared.duplicateTrips;
 
         // Acquire lock on buffer
         bufferLock.lock();
 
         try {
-            if (fullDataset) {
-                // Remove all updates from the buffer
-                buffer.clear(feedId);
-            }
+            // The last full dataset is only a valid base for a diff if no other messages are
+            // applied in between, so the state is always removed here
+            final Map<ByteString, AppliedTripUpdate> lastApplied = appliedTripUpdatesByFeed.remove(feedId);
 
-            LOG.debug("message contains {} trip updates", updates.size());
-            int uIndex = 0;
-            for (TripUpdate tripUpdate : updates) {
-                if (fuzzyTripMatcher != null && tripUpdate.hasTrip()) {
-                    final TripDescriptor trip = fuzzyTripMatcher.match(feedId, tripUpdate.getTrip());
-                    tripUpdate = tripUpdate.toBuilder().setTrip(trip).build();
-                }
+            LOG.debug("message contains {} trip updates", incomingInOrder.size());
 
-                if (!tripUpdate.hasTrip()) {
-                    LOG.warn("Missing TripDescriptor in gtfs-rt trip update: \n{}", tripUpdate);
-                    continue;
-                }
+            List<AppliedTripUpdate> toApply = incomingInOrder;
+            int skipped = 0;
+            int removed = 0;
 
-                ServiceDate serviceDate = new ServiceDate();
-                final TripDescriptor tripDescriptor = tripUpdate.getTrip();
-
-                if (tripDescriptor.hasStartDate()) {
-                    try {
-                        serviceDate = ServiceDate.parseString(tripDescriptor.getStartDate());
-                    } catch (final ParseException e) {
-                        LOG.warn("Failed to parse start date in gtfs-rt trip update: \n{}", tripUpdate);
-                        continue;
+            if (fullDataset) {
+                if (lastApplied != null && !duplicateTrips && canApplyAsDiff(feedId, lastApplied, incoming)) {
+                    toApply = new ArrayList<>();
+                    for (AppliedTripUpdate it : incomingInOrder) {
+                        AppliedTripUpdate last = lastApplied.get(it.key);
+                        if (it.isSameAs(last)) {
+                            it.tripId = last.tripId;
+                            ++skipped;
+                        } else {
+                            if (last != null) {
+                                revertToScheduledTrip(last);
+                            }
+                            toApply.add(it);
+                        }
+                    }
+                    for (AppliedTripUpdate last : lastApplied.values()) {
+                        if (!incoming.containsKey(last.key)) {
+                            revertToScheduledTrip(last);
+                            ++removed;
+                        }
                     }
                 } else {
-                    // TODO: figure out the correct service date. For the special case that a trip
-                    // starts for example at 40:00, yesterday would probably be a better guess.
+                    // Remove all updates from the buffer
+                    buffer.clear(feedId);
                 }
+            }
+
+            int uIndex = 0;
+            for (AppliedTripUpdate it : toApply) {
+                if (!it.prepared) {
+                    prepareTripUpdate(feedId, it);
+                }
+                final TripUpdate tripUpdate = it.matchedTripUpdate;
+                final ServiceDate serviceDate = it.serviceDate;
 
                 uIndex += 1;
                 LOG.debug("trip update #{} ({} updates) :",
@@ -224,11 +413,9 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
 
                 // Determine what kind of trip update this is
                 boolean applied = false;
-                final TripDescriptor.ScheduleRelationship tripScheduleRelationship = determineTripScheduleRelationship(
-                        tripUpdate);
-                switch (tripScheduleRelationship) {
+                switch (it.scheduleRelationship) {
                     case SCHEDULED:
-                        applied = handleScheduledTrip(tripUpdate, feedId, serviceDate);
+                        applied = handleScheduledTrip(it, feedId);
                         break;
                     case ADDED:
                         applied = validateAndHandleAddedTrip(graph, tripUpdate, feedId, serviceDate);
@@ -246,6 +433,9 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
 
                 if (applied) {
                     appliedBlockCount++;
+                    if (tripUpdate.getTrip().hasTripId()) {
+                        it.tripId = new FeedScopedId(feedId, tripUpdate.getTrip().getTripId());
+                    }
                 } else {
                     LOG.warn("Failed to apply TripUpdate.");
                     LOG.trace(" Contents: {}", tripUpdate);
@@ -255,16 +445,26 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
                     LOG.info("Applied {} trip updates.", appliedBlockCount);
                 }
             }
+
+            if (fullDataset && !duplicateTrips) {
+                appliedTripUpdatesByFeed.put(feedId, incoming);
+            }
+            skippedTripUpdateCount += skipped;
+            removedTripUpdateCount += removed;
+            LOG.debug(
+                    "Feed {}: {} trip updates applied, {} unchanged skipped, {} removed.",
+                    feedId, toApply.size(), skipped, removed
+            );
             LOG.debug("end of update message");
 
             // Make a snapshot after each message in anticipation of incoming requests
             // Purge data if necessary (and force new snapshot if anything was purged)
-            // Make sure that the public (locking) getTimetableSnapshot function is not called.
+            publishMetrics.bufferUpdated(buffer.isDirty());
             if (purgeExpiredData) {
                 final boolean modified = purgeExpiredData();
-                getTimetableSnapshot(modified);
+                commitTimetableSnapshot(modified);
             } else {
-                getTimetableSnapshot(false);
+                commitTimetableSnapshot(false);
             }
         } finally {
             // Always release lock
@@ -272,6 +472,145 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
         }
     }
 
+    /**
+     * Decode the service date and schedule relationship of a trip update.
+     *
+     * @return the decoded trip update, or null if the trip update is invalid
+     */
+    private AppliedTripUpdate decodeTripUpdate(final TripUpdate tripUpdate) {
+        if (!tripUpdate.hasTrip()) {
+            LOG.warn("Missing TripDescriptor in gtfs-rt trip update: \n{}", tripUpdate);
+            return null;
+        }
+
+        ServiceDate serviceDate = new ServiceDate();
+        final TripDescriptor tripDescriptor = tripUpdate.getTrip();
+
+        if (tripDescriptor.hasStartDate()) {
+            try {
+                serviceDate = ServiceDate.parseString(tripDescriptor.getStartDate());
+            } catch (final ParseException e) {
+                LOG.warn("Failed to parse start date in gtfs-rt trip update: \n{}", tripUpdate);
+                return null;
+            }
+        } else {
+            // TODO: figure out the correct service date. For the special case that a trip
+            // starts for example at 40:00, yesterday would probably be a better guess.
+        }
+
+        return new AppliedTripUpdate(
+                tripUpdate,
+                serviceDate,
+                determineTripScheduleRelationship(tripUpdate)
+        );
+    }
+
+    /**
+     * Match the trip and, for a SCHEDULED trip update, create the updated trip times from the
+     * scheduled timetable. This only reads data that is not changed by realtime updates, so it is
+     * safe to call without holding the buffer lock.
+     */
+    private void prepareTripUpdate(final String feedId, final AppliedTripUpdate it) {
+        TripUpdate tripUpdate = it.tripUpdate;
+        if (fuzzyTripMatcher != null) {
+            final TripDescriptor trip = fuzzyTripMatcher.match(feedId, tripUpdate.getTrip());
+            tripUpdate = tripUpdate.toBuilder().setTrip(trip).build();
+        }
+        it.matchedTripUpdate = tripUpdate;
+
+        if (it.scheduleRelationship == TripDescriptor.ScheduleRelationship.SCHEDULED) {
+            // This does not include Agency ID or feed ID, trips are feed-unique and we currently assume a single static feed.
+            it.pattern = getPatternForTripId(feedId, tripUpdate.getTrip().getTripId());
+
+            if (it.pattern != null && tripUpdate.getStopTimeUpdateCount() > 0) {
+                // Apply update on the *scheduled* time table
+                it.updatedTripTimes = it.pattern.scheduledTimetable.createUpdatedTripTimes(
+                        tripUpdate, timeZone, it.serviceDate
+                );
+            }
+        }
+        it.prepared = true;
+    }
+
+    /**
+     * A full dataset can be applied as a diff against the last full dataset if all changed and
+     * removed trip updates are SCHEDULED or CANCELED updates of scheduled trips. Trips added or
+     * modified by realtime updates can not be reverted one by one, so if any of these are
+     * involved the buffer must be cleared and the full dataset applied.
+     */
+    private boolean canApplyAsDiff(
+            String feedId,
+            Map<ByteString, AppliedTripUpdate> lastApplied,
+            Map<ByteString, AppliedTripUpdate> incoming
+    ) {
+        for (AppliedTripUpdate it : incoming.values()) {
+            AppliedTripUpdate last = lastApplied.get(it.key);
+            if (!it.isSameAs(last) && !(isRevertible(feedId, it) && (last == null || isRevertible(feedId, last)))) {
+                return false;
+            }
+        }
+        for (AppliedTripUpdate last : lastApplied.values()) {
+            if (!incoming.containsKey(last.key) && !isRevertible(feedId, last)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A SCHEDULED or CANCELED update of a trip, not previously added or modified by a realtime
+     * update, can be reverted by setting the scheduled trip times.
+     */
+    private boolean isRevertible(String feedId, AppliedTripUpdate tripUpdate) {
+        if (tripUpdate.scheduleRelationship != TripDescriptor.ScheduleRelationship.SCHEDULED
+                && tripUpdate.scheduleRelationship != TripDescriptor.ScheduleRelationship.CANCELED) {
+            return false;
+        }
+        final TripDescriptor trip = tripUpdate.tripUpdate.getTrip();
+        return !trip.hasTripId() || buffer.getLastAddedTripPattern(
+                new FeedScopedId(feedId, trip.getTripId()),
+                tripUpdate.serviceDate
+        ) == null;
+    }
+
+    /**
+     * Set the trip times of a trip back to the scheduled trip times, on the service date of the
+     * given trip update. This is used to remove a SCHEDULED or CANCELED trip update from the
+     * buffer without clearing the buffer.
+     */
+    private void revertToScheduledTrip(AppliedTripUpdate tripUpdate) {
+        // The trip update was not applied, nothing to revert
+        if (tripUpdate.tripId == null) { return; }
+
+        final TripPattern pattern = getPatternForTripId(
+                tripUpdate.tripId.getFeedId(),
+                tripUpdate.tripId.getId()
+        );
+        if (pattern == null) { return; }
+
+        final Timetable timetable = buffer.resolve(pattern, tripUpdate.serviceDate);
+        if (timetable == pattern.scheduledTimetable) { return; }
+
+        final int tripIndex = pattern.scheduledTimetable.getTripIndex(tripUpdate.tripId);
+        if (tripIndex == -1) { return; }
+
+        buffer.update(
+                pattern,
+                new TripTimes(pattern.scheduledTimetable.getTripTimes(tripIndex)),
+                tripUpdate.serviceDate
+        );
+    }
+
+    /** The total number of unchanged trip updates skipped. */
+    public long getSkippedTripUpdateCount() {
+        return skippedTripUpdateCount;
+    }
+
+    /** The total number of trip updates removed from full datasets, and reverted. */
+    public long getRemovedTripUpdateCount() {
+        return removedTripUpdateCount;
+    }
+
     /**
      * Determine how the trip update should be handled.
      *
@@ -313,11 +652,13 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
         return tripScheduleRelationship;
     }
 
-    private boolean handleScheduledTrip(final TripUpdate tripUpdate, final String feedId, final ServiceDate serviceDate) {
+    private boolean handleScheduledTrip(final AppliedTripUpdate prepared, final String feedId) {
+        final TripUpdate tripUpdate = prepared.matchedTripUpdate;
+        final ServiceDate serviceDate = prepared.serviceDate;
         final TripDescriptor tripDescriptor = tripUpdate.getTrip();
         // This does not include Agency ID or feed ID, trips are feed-unique and we currently assume a single static feed.
         final String tripId = tripDescriptor.getTripId();
-        final TripPattern pattern = getPatternForTripId(feedId, tripId);
+        final TripPattern pattern = prepared.pattern;
 
         if (pattern == null) {
             LOG.warn("No pattern found for tripId {}, skipping TripUpdate.", tripId);
@@ -333,9 +674,9 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
         // changed, and is now changing back to the originally scheduled one) cancel that previously created trip.
         cancelPreviouslyAddedTrip(new FeedScopedId(feedId, tripId), serviceDate);
 
-        // Apply update on the *scheduled* time table and set the updated trip times in the buffer
-        final TripTimes updatedTripTimes = pattern.scheduledTimetable.createUpdatedTripTimes(tripUpdate,
-                timeZone, serviceDate);
+        // The update is applied on the *scheduled* time table when the trip update is prepared,
+        // set the updated trip times in the buffer
+        final TripTimes updatedTripTimes = prepared.updatedTripTimes;
 
         if (updatedTripTimes == null) {
             return false;
@@ -720,6 +1061,12 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
         // Make sure that updated trip times have the correct real time state
         newTripTimes.setRealTimeState(realTimeState);
 
+        // Make added trips visible to the fuzzy trip matchers. Modified trips keep their
+        // scheduled entry, the index is used to match the scheduled times.
+        if (realTimeState == RealTimeState.ADDED) {
+            graph.addToTripMatchingIndex(pattern, newTripTimes);
+        }
+
         // Add new trip times to the buffer
         final boolean success = buffer.update(pattern, newTripTimes, serviceDate);
         return success;
@@ -981,4 +1328,134 @@ public class TimetableSnapshotSource implements TimetableSnapshotProvider {
         Stop stop = routingService.getStopForId().get(new FeedScopedId(feedId, stopId));
         return stop;
     }
+
+    /**
+     * A decoded trip update, with the information needed to decide if the next full dataset
+     * changes it, and to revert it. The fields set when the trip update is prepared are written by
+     * one thread before the batch is handed over to the graph writer thread.
+     */
+    private static final class AppliedTripUpdate {
+        private final TripUpdate tripUpdate;
+        private final ByteString key;
+        private final ByteString fingerprint;
+        private final ServiceDate serviceDate;
+        private final TripDescriptor.ScheduleRelationship scheduleRelationship;
+
+        /** The id of the trip updated, set when the update is successfully applied. */
+        private FeedScopedId tripId = null;
+
+        /* Set when the trip update is prepared, see prepareTripUpdate() */
+        private boolean prepared = false;
+        private TripUpdate matchedTripUpdate = null;
+        private TripPattern pattern = null;
+        private TripTimes updatedTripTimes = null;
+
+        private AppliedTripUpdate(
+                TripUpdate tripUpdate,
+                ServiceDate serviceDate,
+                TripDescriptor.ScheduleRelationship scheduleRelationship
+        ) {
+            this.tripUpdate = tripUpdate;
+            this.key = tripUpdate.getTrip().toByteString();
+            // Producers often set the timestamp of all trip updates to the time of the feed,
+            // this should not make an otherwise unchanged trip update count as changed.
+            this.fingerprint = tripUpdate.hasTimestamp()
+                    ? tripUpdate.toBuilder().clearTimestamp().build().toByteString()
+                    : tripUpdate.toByteString();
+            this.serviceDate = serviceDate;
+            this.scheduleRelationship = scheduleRelationship;
+        }
+
+        private boolean isSameAs(AppliedTripUpdate other) {
+            return other != null
+                    && fingerprint.equals(other.fingerprint)
+                    && serviceDate.equals(other.serviceDate);
+        }
+    }
+
+    /**
+     * A batch of trip updates prepared for one feed, see {@link #prepareTripUpdates(boolean, List,
+     * String)}.
+     */
+    public static final class PreparedTripUpdates {
+        private final String feedId;
+        private final boolean fullDataset;
+        private final List<AppliedTripUpdate> incomingInOrder;
+        private final Map<ByteString, AppliedTripUpdate> incoming;
+        private final boolean duplicateTrips;
+
+        private PreparedTripUpdates(
+                String feedId,
+                boolean fullDataset,
+                List<AppliedTripUpdate> incomingInOrder,
+                Map<ByteString, AppliedTripUpdate> incoming,
+                boolean duplicateTrips
+        ) {
+            this.feedId = feedId;
+            this.fullDataset = fullDataset;
+            this.incomingInOrder = incomingInOrder;
+            this.incoming = incoming;
+            this.duplicateTrips = duplicateTrips;
+        }
+
+        public String getFeedId() {
+            return feedId;
+        }
+
+        public int size() {
+            return incomingInOrder.size();
+        }
+
+        /**
+         * Split the trip updates into one prepared batch per trip, keyed on the serialized trip
+         * descriptor, in the order the trips are first received. If a trip is updated more than
+         * once, the last update is kept. The parts can be coalesced with the parts of other
+         * batches, and merged again with {@link #merge(String, boolean, List)}.
+         */
+        public Map<ByteString, PreparedTripUpdates> splitByTrip() {
+            final Map<ByteString, PreparedTripUpdates> result = new LinkedHashMap<>();
+            for (AppliedTripUpdate it : incomingInOrder) {
+                result.put(
+                        it.key,
+                        new PreparedTripUpdates(
+                                feedId,
+                                fullDataset,
+                                Collections.singletonList(it),
+                                Collections.singletonMap(it.key, it),
+                                false
+                        )
+                );
+            }
+            return result;
+        }
+
+        /**
+         * Merge prepared batches of the same feed into one batch, applied in the given order.
+         *
+         * @param fullDataset true iff the merged updates represent all updates that are active
+         *        right now.
+         */
+        public static PreparedTripUpdates merge(
+                String feedId,
+                boolean fullDataset,
+                List<PreparedTripUpdates> parts
+        ) {
+            final List<AppliedTripUpdate> incomingInOrder = new ArrayList<>();
+            final Map<ByteString, AppliedTripUpdate> incoming = new HashMap<>();
+            boolean duplicateTrips = false;
+            for (PreparedTripUpdates part : parts) {
+                for (AppliedTripUpdate it : part.incomingInOrder) {
+                    incomingInOrder.add(it);
+                    duplicateTrips |= incoming.put(it.key, it) != null;
+                }
+            }
+            return new PreparedTripUpdates(
+                    feedId,
+                    fullDataset,
+                    incomingInOrder,
+                    incoming,
+                    duplicateTrips
+            );
+        }
+    }
 }
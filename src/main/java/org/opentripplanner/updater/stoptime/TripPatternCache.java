@@ -8,6 +8,7 @@ import org.opentripplanner.routing.graph.Graph;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A synchronized cache of trip patterns that are added to the graph due to GTFS-realtime messages.
@@ -57,6 +58,19 @@ public class TripPatternCache {
         return tripPattern;
     }
 
+    /**
+     * Remove the trip patterns not in the given set, typically the patterns without any realtime
+     * timetables left after expired data is purged. A pattern removed is created again if it is
+     * needed by a later update.
+     *
+     * @return the number of trip patterns removed.
+     */
+    public synchronized int retainAll(Set<TripPattern> patternsInUse) {
+        int sizeBefore = cache.size();
+        cache.values().retainAll(patternsInUse);
+        return sizeBefore - cache.size();
+    }
+
     /**
      * Generate unique trip pattern code for real-time added trip pattern. This function roughly
      * follows the format of {@link TripPattern#generateUniqueIds(java.util.Collection)}.
@@ -1,39 +1,25 @@
 package org.opentripplanner.updater.stoptime;
 
 import com.google.common.base.Preconditions;
-import com.google.transit.realtime.GtfsRealtime.TripUpdate;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.updater.GraphWriterRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-
 class TripUpdateGraphWriterRunnable implements GraphWriterRunnable {
     private static Logger LOG = LoggerFactory.getLogger(TripUpdateGraphWriterRunnable.class);
 
     /**
-     * True iff the list with updates represent all updates that are active right now, i.e. all
-     * previous updates should be disregarded
-     */
-    private final boolean fullDataset;
-    
-    /**
-     * The list with updates to apply to the graph
+     * The trip updates to apply to the graph, prepared by the updater thread
      */
-    private final List<TripUpdate> updates;
+    private final TimetableSnapshotSource.PreparedTripUpdates updates;
 
-    private final String feedId;
-
-    TripUpdateGraphWriterRunnable(final boolean fullDataset, final List<TripUpdate> updates, final String feedId) {
+    TripUpdateGraphWriterRunnable(final TimetableSnapshotSource.PreparedTripUpdates updates) {
         // Preconditions
         Preconditions.checkNotNull(updates);
-        Preconditions.checkNotNull(feedId);
-        
+
         // Set fields
-        this.fullDataset = fullDataset;
         this.updates = updates;
-        this.feedId = feedId;
     }
 
     @Override
@@ -43,10 +29,10 @@ class TripUpdateGraphWriterRunnable implements GraphWriterRunnable {
         // TimetableSnapshotSource should already be set up
         TimetableSnapshotSource snapshotSource = graph.getOrSetupTimetableSnapshotProvider(null);
         if (snapshotSource != null) {
-            snapshotSource.applyTripUpdates(graph, fullDataset, updates, feedId);
+            snapshotSource.applyTripUpdates(graph, updates);
         } else {
             LOG.error("Could not find realtime data snapshot source in graph."
-                    + " The following updates are not applied: {}", updates);
+                    + " The {} updates of feed {} are not applied.", updates.size(), updates.getFeedId());
         }
     }
 }
@@ -1,6 +1,7 @@
 package org.opentripplanner.updater.stoptime;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.transit.realtime.GtfsRealtime;
 import com.google.transit.realtime.GtfsRealtime.FeedEntity;
@@ -12,19 +13,24 @@ import com.ning.http.client.websocket.WebSocket;
 import com.ning.http.client.websocket.WebSocketListener;
 import com.ning.http.client.websocket.WebSocketUpgradeHandler;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.updater.CoalescingUpdateQueue;
 import org.opentripplanner.updater.GraphUpdater;
 import org.opentripplanner.updater.GraphUpdaterManager;
+import org.opentripplanner.updater.stoptime.TimetableSnapshotSource.PreparedTripUpdates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 /**
  * This class starts an HTTP client which opens a websocket connection to a GTFS-RT data source. A
- * callback is registered which handles incoming GTFS-RT messages as they stream in by placing a
- * GTFS-RT decoder Runnable task in the single-threaded executor for handling.
+ * callback is registered which decodes incoming GTFS-RT messages as they stream in, prepares the
+ * trip updates on the websocket thread, and places them in a {@link CoalescingUpdateQueue}. The
+ * queue applies the prepared updates in batches, a newer trip update replaces a pending update of
+ * the same trip. Updates are dropped if the queue is full.
  *
  * Usage example ('websocket' name is an example) in the file 'Graph.properties':
  *
@@ -32,6 +38,8 @@ import java.util.concurrent.ExecutionException;
  * websocket.type = websocket-gtfs-rt-updater
  * websocket.defaultAgencyId = agency
  * websocket.url = ws://localhost:8088/tripUpdates
+ * websocket.queueCapacity = 50000
+ * websocket.batchIntervalMs = 1000
  * </pre>
  *
  */
@@ -65,6 +73,26 @@ public class WebsocketGtfsRealtimeUpdater implements GraphUpdater {
      */
     private int reconnectPeriodSec;
 
+    /**
+     * The realtime data snapshot source the updates are applied to, set in setup
+     */
+    private TimetableSnapshotSource snapshotSource;
+
+    /**
+     * The maximum number of trips with pending updates
+     */
+    private int queueCapacity;
+
+    /**
+     * The minimum time between two batches of updates applied to the graph
+     */
+    private long batchIntervalMs;
+
+    /**
+     * The prepared trip updates not yet applied, keyed on the serialized trip descriptor
+     */
+    private CoalescingUpdateQueue<ByteString, PreparedTripUpdates> queue;
+
     @Override
     public void setGraphUpdaterManager(GraphUpdaterManager updaterManager) {
         this.updaterManager = updaterManager;
@@ -75,12 +103,24 @@ public class WebsocketGtfsRealtimeUpdater implements GraphUpdater {
         url = config.path("url").asText();
         feedId = config.path("feedId").asText("");
         reconnectPeriodSec = config.path("reconnectPeriodSec").asInt(DEFAULT_RECONNECT_PERIOD_SEC);
+        queueCapacity = config.path("queueCapacity").asInt(CoalescingUpdateQueue.DEFAULT_CAPACITY);
+        batchIntervalMs = config.path("batchIntervalMs").asLong(CoalescingUpdateQueue.DEFAULT_BATCH_INTERVAL_MS);
     }
 
     @Override
     public void setup(Graph graph) throws InterruptedException, ExecutionException {
         // Only create a realtime data snapshot source if none exists already
-        graph.getOrSetupTimetableSnapshotProvider(TimetableSnapshotSource::new);
+        snapshotSource = graph.getOrSetupTimetableSnapshotProvider(TimetableSnapshotSource::new);
+        queue = new CoalescingUpdateQueue<>(
+                feedId,
+                queueCapacity,
+                batchIntervalMs,
+                updaterManager,
+                (g, fullDataset, updates) -> snapshotSource.applyTripUpdates(
+                        g,
+                        PreparedTripUpdates.merge(feedId, fullDataset, updates)
+                )
+        );
     }
 
     @Override
@@ -144,40 +184,46 @@ public class WebsocketGtfsRealtimeUpdater implements GraphUpdater {
     private class Listener extends DefaultWebSocketListener {
         @Override
         public void onMessage(byte[] message) {
-            FeedMessage feedMessage = null;
-            List<FeedEntity> feedEntityList = null;
-            List<TripUpdate> updates = null;
-            boolean fullDataset = true;
+            FeedMessage feedMessage;
             try {
                 // Decode message
                 feedMessage = FeedMessage.PARSER.parseFrom(message);
-                feedEntityList = feedMessage.getEntityList();
-                
-                // Change fullDataset value if this is an incremental update
-                if (feedMessage.hasHeader()
-                        && feedMessage.getHeader().hasIncrementality()
-                        && feedMessage.getHeader().getIncrementality()
-                                .equals(GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL)) {
-                    fullDataset = false;
-                }
-                
-                // Create List of TripUpdates
-                updates = new ArrayList<TripUpdate>(feedEntityList.size());
-                for (FeedEntity feedEntity : feedEntityList) {
-                    if (feedEntity.hasTripUpdate()) {
-                        updates.add(feedEntity.getTripUpdate());
-                    }
-                }
             } catch (InvalidProtocolBufferException e) {
                 LOG.error("Could not decode gtfs-rt message:", e);
+                return;
             }
 
-            if (updates != null) {
-                // Handle trip updates via graph writer runnable
-                TripUpdateGraphWriterRunnable runnable = new TripUpdateGraphWriterRunnable(
-                        fullDataset, updates, feedId
-                );
-                updaterManager.execute(runnable);
+            // Change fullDataset value if this is an incremental update
+            boolean fullDataset = !(feedMessage.hasHeader()
+                    && feedMessage.getHeader().hasIncrementality()
+                    && feedMessage.getHeader().getIncrementality()
+                            .equals(GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL));
+
+            List<TripUpdate> tripUpdates = new ArrayList<>();
+            for (FeedEntity feedEntity : feedMessage.getEntityList()) {
+                if (feedEntity.hasTripUpdate()) {
+                    tripUpdates.add(feedEntity.getTripUpdate());
+                }
+            }
+
+            // Prepare the updates here, not on the graph writer thread, and key them on the trip
+            // so a newer update replaces a pending one
+            Map<ByteString, PreparedTripUpdates> updates = snapshotSource
+                    .prepareTripUpdates(fullDataset, tripUpdates, feedId)
+                    .splitByTrip();
+
+            if (fullDataset) {
+                queue.offerFullDataset(updates);
+            } else {
+                int dropped = 0;
+                for (Map.Entry<ByteString, PreparedTripUpdates> it : updates.entrySet()) {
+                    if (!queue.offer(it.getKey(), it.getValue())) {
+                        ++dropped;
+                    }
+                }
+                if (dropped > 0) {
+                    LOG.warn("Update queue is full, {} trip updates dropped: {}", dropped, queue);
+                }
             }
         }
     }
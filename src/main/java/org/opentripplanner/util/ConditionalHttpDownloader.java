@@ -0,0 +1,133 @@
+package org.opentripplanner.util;
+
+import com.google.common.io.CountingInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Download the same URL over and over again, typically from a polling updater. The {@code ETag}
+ * and {@code Last-Modified} response headers are sent back to the server with the next request
+ * ({@code If-None-Match} and {@code If-Modified-Since}), so the server can answer {@code 304 Not
+ * Modified} instead of sending the same content again.
+ * <p>
+ * The response is streamed into the given parser; it is not read into memory first. The shared
+ * pooled client in {@link HttpUtils} is used, so compressed content is requested and decoded.
+ * <p>
+ * This class is not thread-safe, use one instance per polled URL.
+ */
+public class ConditionalHttpDownloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConditionalHttpDownloader.class);
+
+    private final String url;
+
+    private final Map<String, String> requestHeaders = new LinkedHashMap<>();
+
+    private String eTag = null;
+
+    private String lastModified = null;
+
+    private long bytesFetched = 0;
+
+    private int downloadCount = 0;
+
+    private int notModifiedCount = 0;
+
+    public ConditionalHttpDownloader(String url) {
+        this.url = url;
+    }
+
+    /** Add a header sent with every request. */
+    public ConditionalHttpDownloader withHeader(String name, String value) {
+        requestHeaders.put(name, value);
+        return this;
+    }
+
+    /**
+     * Download the content and parse it with the given parser.
+     *
+     * @return the parsed content or {@code null} if the content is not modified since the last
+     *         download, or if the server does not respond with 200 OK.
+     */
+    public <T> T download(StreamParser<T> parser) throws IOException {
+        HttpGet httpGet = new HttpGet(url);
+        requestHeaders.forEach(httpGet::addHeader);
+        if (eTag != null) {
+            httpGet.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        }
+        if (lastModified != null) {
+            httpGet.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+
+        try (CloseableHttpResponse response = HttpUtils.getClient().execute(httpGet)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                ++notModifiedCount;
+                LOG.debug("Not modified: {}", url);
+                return null;
+            }
+            if (status != HttpStatus.SC_OK || entity == null) {
+                LOG.warn("Unexpected response from {}: {}", url, response.getStatusLine());
+                EntityUtils.consumeQuietly(entity);
+                return null;
+            }
+
+            CountingInputStream in = new CountingInputStream(entity.getContent());
+            try {
+                T result = parser.parse(in);
+                // Remember the validators only after the content is successfully parsed
+                eTag = headerValue(response.getFirstHeader(HttpHeaders.ETAG));
+                lastModified = headerValue(response.getFirstHeader(HttpHeaders.LAST_MODIFIED));
+                ++downloadCount;
+                return result;
+            } finally {
+                bytesFetched += in.getCount();
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * The number of content bytes fetched, after the content is decompressed.
+     */
+    public long getBytesFetched() {
+        return bytesFetched;
+    }
+
+    /** The number of downloads returning new content. */
+    public int getDownloadCount() {
+        return downloadCount;
+    }
+
+    /** The number of requests answered with {@code 304 Not Modified}. */
+    public int getNotModifiedCount() {
+        return notModifiedCount;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    private static String headerValue(Header header) {
+        return header == null ? null : header.getValue();
+    }
+
+    @FunctionalInterface
+    public interface StreamParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+}
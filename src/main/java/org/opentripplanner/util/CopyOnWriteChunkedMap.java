@@ -0,0 +1,193 @@
+package org.opentripplanner.util;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * A hash map split into a fixed number of chunks, where each chunk is a plain {@link HashMap}.
+ * <p>
+ * A read-only copy of the map is made by sharing all chunks with the copy, this costs
+ * O(number of chunks), not O(size). After a copy is made, a chunk is copied the first time it is
+ * modified. Hence, keeping a working copy and making a read-only copy now and then - like the
+ * {@code TimetableSnapshot} does - costs in proportion to the number of entries changed between
+ * two copies, not the size of the map.
+ * <p>
+ * This class is not thread-safe. The read-only copies are never modified, so they can be read by
+ * many threads, as long as they are safely published.
+ * <p>
+ * {@code null} keys and values are not allowed.
+ */
+public class CopyOnWriteChunkedMap<K, V> {
+
+    /** Must be a power of 2 */
+    private static final int NUMBER_OF_CHUNKS = 1024;
+
+    private static final int CHUNK_INDEX_SHIFT = 32 - Integer.numberOfTrailingZeros(NUMBER_OF_CHUNKS);
+
+    /** A chunk is {@code null} until the first entry is added to it. */
+    private final HashMap<K, V>[] chunks;
+
+    /**
+     * The chunks NOT shared with any copy of this map, these can be modified in place. This is
+     * {@code null} if this map is a read-only copy.
+     */
+    private final BitSet ownedChunks;
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public CopyOnWriteChunkedMap() {
+        this(new HashMap[NUMBER_OF_CHUNKS], new BitSet(NUMBER_OF_CHUNKS), 0);
+    }
+
+    private CopyOnWriteChunkedMap(HashMap<K, V>[] chunks, BitSet ownedChunks, int size) {
+        this.chunks = chunks;
+        this.ownedChunks = ownedChunks;
+        this.size = size;
+    }
+
+    public V get(Object key) {
+        HashMap<K, V> chunk = chunks[chunkIndex(key)];
+        return chunk == null ? null : chunk.get(key);
+    }
+
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        V old = writableChunk(chunkIndex(key)).put(key, value);
+        if (old == null) { ++size; }
+        return old;
+    }
+
+    public V remove(Object key) {
+        int index = chunkIndex(key);
+        HashMap<K, V> chunk = chunks[index];
+
+        // Avoid copying the chunk if the key does not exist
+        if (chunk == null || !chunk.containsKey(key)) { return null; }
+
+        V removed = writableChunk(index).remove(key);
+        --size;
+        return removed;
+    }
+
+    /**
+     * Remove all entries matching the given predicate. Only the chunks containing matching
+     * entries are copied.
+     *
+     * @return {@code true} if any entries were removed.
+     */
+    public boolean removeIf(BiPredicate<? super K, ? super V> predicate) {
+        boolean modified = false;
+        for (int i = 0; i < chunks.length; ++i) {
+            if (chunks[i] == null || !anyMatch(chunks[i], predicate)) { continue; }
+
+            Iterator<Map.Entry<K, V>> it = writableChunk(i).entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, V> e = it.next();
+                if (predicate.test(e.getKey(), e.getValue())) {
+                    it.remove();
+                    --size;
+                }
+            }
+            modified = true;
+        }
+        return modified;
+    }
+
+    /** The map must not be modified by the given action. */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (HashMap<K, V> chunk : chunks) {
+            if (chunk != null) {
+                chunk.forEach(action);
+            }
+        }
+    }
+
+    /**
+     * A read-only view of the values in this map. The view of a read-only copy never changes,
+     * the view of a writable map reflects the changes made to the map.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return Arrays
+                        .stream(chunks)
+                        .filter(Objects::nonNull)
+                        .flatMap(chunk -> chunk.values().stream())
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** Return a new list with all keys in this map. */
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(size);
+        forEach((k, v) -> keys.add(k));
+        return keys;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Create a read-only copy of this map. All chunks are shared with the copy, so any chunk
+     * modified after this is copied first.
+     */
+    public CopyOnWriteChunkedMap<K, V> readOnlyCopy() {
+        if (ownedChunks != null) {
+            ownedChunks.clear();
+        }
+        return new CopyOnWriteChunkedMap<>(chunks.clone(), null, size);
+    }
+
+
+    /* private methods */
+
+    private HashMap<K, V> writableChunk(int index) {
+        if (ownedChunks == null) {
+            throw new ConcurrentModificationException("This map is read-only.");
+        }
+        if (!ownedChunks.get(index)) {
+            HashMap<K, V> chunk = chunks[index];
+            chunks[index] = chunk == null ? new HashMap<>() : new HashMap<>(chunk);
+            ownedChunks.set(index);
+        }
+        return chunks[index];
+    }
+
+    /**
+     * Use the high bits of the spread hash code to find the chunk; the {@link HashMap} of each
+     * chunk use the low bits.
+     */
+    private static int chunkIndex(Object key) {
+        return (key.hashCode() * 0x9E3779B9) >>> CHUNK_INDEX_SHIFT;
+    }
+
+    private static <K, V> boolean anyMatch(
+            Map<K, V> chunk,
+            BiPredicate<? super K, ? super V> predicate
+    ) {
+        for (Map.Entry<K, V> e : chunk.entrySet()) {
+            if (predicate.test(e.getKey(), e.getValue())) { return true; }
+        }
+        return false;
+    }
+}
@@ -1,68 +1,89 @@
 package org.opentripplanner.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
-import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 
 public class HttpUtils {
-    
-    private static final long TIMEOUT_CONNECTION = 5000;
+
+    private static final int TIMEOUT_CONNECTION = 5000;
     private static final int TIMEOUT_SOCKET = 5000;
+    private static final int MAX_CONNECTIONS = 100;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 10;
+
+    /**
+     * All requests share one client with a connection pool, so connections to the same host are
+     * reused from one poll to the next. The client request gzip/deflate compressed content, and
+     * decompress the response content transparently.
+     */
+    private static final CloseableHttpClient HTTP_CLIENT = createClient();
 
     public static InputStream getData(String url) throws IOException {
         return getData(url, null, null);
     }
 
+    /**
+     * The content is read into memory before it is returned. This make sure the connection is
+     * returned to the pool, even if the caller does not close the returned stream.
+     */
     public static InputStream getData(String url, String requestHeaderName, String requestHeaderValue) throws ClientProtocolException, IOException {
         HttpGet httpget = new HttpGet(url);
         if (requestHeaderValue != null) {
             httpget.addHeader(requestHeaderName, requestHeaderValue);
         }
-        HttpClient httpclient = getClient();
-        HttpResponse response = httpclient.execute(httpget);
-        if(response.getStatusLine().getStatusCode() != 200)
-            return null;
-
-        HttpEntity entity = response.getEntity();
-        if (entity == null) {
-            return null;
+        try (CloseableHttpResponse response = HTTP_CLIENT.execute(httpget)) {
+            HttpEntity entity = response.getEntity();
+            if (response.getStatusLine().getStatusCode() != 200 || entity == null) {
+                EntityUtils.consumeQuietly(entity);
+                return null;
+            }
+            return new ByteArrayInputStream(EntityUtils.toByteArray(entity));
         }
-        return entity.getContent();
     }
 
     public static void testUrl(String url) throws IOException {
         HttpHead head = new HttpHead(url);
-        HttpClient httpclient = getClient();
-        HttpResponse response = httpclient.execute(head);
+        try (CloseableHttpResponse response = HTTP_CLIENT.execute(head)) {
+            StatusLine status = response.getStatusLine();
+            if (status.getStatusCode() == 404) {
+                throw new FileNotFoundException();
+            }
 
-        StatusLine status = response.getStatusLine();
-        if (status.getStatusCode() == 404) {
-            throw new FileNotFoundException();
+            if (status.getStatusCode() != 200) {
+                throw new RuntimeException("Could not get URL: " + status.getStatusCode() + ": "
+                        + status.getReasonPhrase());
+            }
         }
+    }
 
-        if (status.getStatusCode() != 200) {
-            throw new RuntimeException("Could not get URL: " + status.getStatusCode() + ": "
-                    + status.getReasonPhrase());
-        }
+    /** The shared, pooled client. The caller must close the responses. */
+    static CloseableHttpClient getClient() {
+        return HTTP_CLIENT;
     }
-    
-    private static HttpClient getClient() {
-        HttpClient httpClient = HttpClientBuilder.create()
-                .setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(TIMEOUT_SOCKET).build())
-                .setConnectionTimeToLive(TIMEOUT_CONNECTION, TimeUnit.MILLISECONDS)
+
+    private static CloseableHttpClient createClient() {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(TIMEOUT_CONNECTION)
+                .setConnectionRequestTimeout(TIMEOUT_CONNECTION)
+                .setSocketTimeout(TIMEOUT_SOCKET)
                 .build();
 
-        return httpClient;
+        return HttpClientBuilder.create()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_ROUTE)
+                .build();
     }
 }
@@ -112,7 +112,7 @@ public class PolylineEncoder {
      * Private Methods
      ****************************************************************************/
 
-    private static final int floor1e5(double coordinate) {
+    static int floor1e5(double coordinate) {
         return (int) Math.floor(coordinate * 1e5);
     }
 
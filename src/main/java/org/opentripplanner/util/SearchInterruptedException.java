@@ -0,0 +1,13 @@
+package org.opentripplanner.util;
+
+/**
+ * Thrown by a search when its thread is interrupted, because the request is cancelled by the
+ * client or has passed its deadline. This is a normal outcome, not an error: the response is
+ * already sent or abandoned, so it should not be logged with a stacktrace.
+ */
+public class SearchInterruptedException extends OtpAppException {
+
+    public SearchInterruptedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,125 @@
+package org.opentripplanner.util;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.util.model.EncodedPolylineBean;
+
+/**
+ * A polyline made of consecutive segments, like the hops of a trip pattern, where each segment is
+ * encoded and measured once. The polyline and distance of a range of segments are then created
+ * without decoding, re-encoding or measuring any coordinates: the encoded segments are
+ * concatenated, fixing up the delta of the first point of each segment, and the distance is the
+ * difference of two cumulative distances.
+ * <p>
+ * The result is the same as using {@link PolylineEncoder#createEncodings(Iterable)} on all the
+ * coordinates of the segments in the range, including the point shared by two consecutive
+ * segments twice.
+ * <p>
+ * This class is immutable.
+ */
+public class SegmentedPolyline {
+
+    /** The encoded points of each segment, except the first point. */
+    private final String[] encodedTails;
+
+    /** The number of points in each segment. */
+    private final int[] numPoints;
+
+    /** The first and last point of each segment, in 1e-5 degrees as encoded. */
+    private final int[] firstLat;
+    private final int[] firstLon;
+    private final int[] lastLat;
+    private final int[] lastLon;
+
+    /**
+     * The distance from the first point of the polyline to the last point of each segment,
+     * indexed on segment + 1.
+     */
+    private final double[] cumulativeDistances;
+
+    /** The distance from the last point of the previous segment to the first point of a segment. */
+    private final double[] joinDistances;
+
+    public SegmentedPolyline(Coordinate[][] segments) {
+        int n = segments.length;
+        this.encodedTails = new String[n];
+        this.numPoints = new int[n];
+        this.firstLat = new int[n];
+        this.firstLon = new int[n];
+        this.lastLat = new int[n];
+        this.lastLon = new int[n];
+        this.cumulativeDistances = new double[n + 1];
+        this.joinDistances = new double[n];
+
+        Coordinate previous = null;
+
+        for (int i = 0; i < n; i++) {
+            Coordinate[] points = segments[i];
+            double distance = 0;
+            numPoints[i] = points.length;
+
+            if (points.length > 0) {
+                StringBuilder tail = new StringBuilder();
+                int plat = PolylineEncoder.floor1e5(points[0].y);
+                int plng = PolylineEncoder.floor1e5(points[0].x);
+                firstLat[i] = plat;
+                firstLon[i] = plng;
+
+                for (int j = 1; j < points.length; j++) {
+                    int late5 = PolylineEncoder.floor1e5(points[j].y);
+                    int lnge5 = PolylineEncoder.floor1e5(points[j].x);
+                    tail.append(PolylineEncoder.encodeSignedNumber(late5 - plat))
+                        .append(PolylineEncoder.encodeSignedNumber(lnge5 - plng));
+                    plat = late5;
+                    plng = lnge5;
+                    distance += SphericalDistanceLibrary.distance(points[j], points[j - 1]);
+                }
+                encodedTails[i] = tail.toString();
+                lastLat[i] = plat;
+                lastLon[i] = plng;
+
+                if (previous != null) {
+                    joinDistances[i] = SphericalDistanceLibrary.distance(points[0], previous);
+                }
+                previous = points[points.length - 1];
+            }
+            cumulativeDistances[i + 1] = cumulativeDistances[i] + joinDistances[i] + distance;
+        }
+    }
+
+    public int numSegments() {
+        return numPoints.length;
+    }
+
+    /**
+     * Encode the segments from {@code fromSegment} (inclusive) to {@code toSegment} (exclusive).
+     */
+    public EncodedPolylineBean encode(int fromSegment, int toSegment) {
+        StringBuilder points = new StringBuilder();
+        int plat = 0;
+        int plng = 0;
+        int count = 0;
+
+        for (int i = fromSegment; i < toSegment; i++) {
+            if (numPoints[i] == 0) { continue; }
+            points.append(PolylineEncoder.encodeSignedNumber(firstLat[i] - plat))
+                  .append(PolylineEncoder.encodeSignedNumber(firstLon[i] - plng))
+                  .append(encodedTails[i]);
+            plat = lastLat[i];
+            plng = lastLon[i];
+            count += numPoints[i];
+        }
+        return new EncodedPolylineBean(points.toString(), null, count);
+    }
+
+    /**
+     * The distance in meters along the segments from {@code fromSegment} (inclusive) to
+     * {@code toSegment} (exclusive).
+     */
+    public double distance(int fromSegment, int toSegment) {
+        if (toSegment <= fromSegment) { return 0; }
+        return cumulativeDistances[toSegment]
+                - cumulativeDistances[fromSegment]
+                - joinDistances[fromSegment];
+    }
+}
@@ -0,0 +1,17 @@
+package org.opentripplanner.api.resource;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchPlannerResourceTest {
+
+    @Test
+    public void missingBodyIsABadRequest() throws Exception {
+        Response response = new BatchPlannerResource().plan(null, null, null);
+
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+}
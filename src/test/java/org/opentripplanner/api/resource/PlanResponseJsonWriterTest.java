@@ -0,0 +1,274 @@
+package org.opentripplanner.api.resource;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.junit.Test;
+import org.opentripplanner.api.model.ApiAbsoluteDirection;
+import org.opentripplanner.api.model.ApiItinerary;
+import org.opentripplanner.api.model.ApiLeg;
+import org.opentripplanner.api.model.ApiPlace;
+import org.opentripplanner.api.model.ApiRelativeDirection;
+import org.opentripplanner.api.model.ApiTripPlan;
+import org.opentripplanner.api.model.ApiTripSearchMetadata;
+import org.opentripplanner.api.model.ApiVertexType;
+import org.opentripplanner.api.model.ApiWalkStep;
+import org.opentripplanner.api.model.JSONObjectMapperProvider;
+import org.opentripplanner.api.model.alertpatch.ApiAlert;
+import org.opentripplanner.api.model.error.PlannerError;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.util.model.EncodedPolylineBean;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlanResponseJsonWriterTest {
+
+    private final ObjectMapper mapper = new JSONObjectMapperProvider().getContext(Response.class);
+
+    private final PlanResponseJsonWriter subject = new PlanResponseJsonWriter(mapper);
+
+    @Test
+    public void writeSameAsObjectMapper() throws Exception {
+        Response response = new Response(null);
+        response.requestParameters.put("fromPlace", "60.1,10.2");
+        response.requestParameters.put("toPlace", "60.3,10.4");
+        response.setPlan(plan());
+        response.setMetadata(metadata());
+        response.debugOutput = new DebugOutput();
+        response.elevationMetadata = new ElevationMetadata();
+        response.elevationMetadata.geoidElevation = false;
+
+        assertSameAsObjectMapper(response);
+    }
+
+    @Test
+    public void writeErrorSameAsObjectMapper() throws Exception {
+        Response response = new Response(null);
+        response.setError(new PlannerError(404, "No trip found"));
+
+        assertSameAsObjectMapper(response);
+    }
+
+    @Test
+    public void writeEmptyPlanSameAsObjectMapper() throws Exception {
+        Response response = new Response(null);
+        response.setPlan(new ApiTripPlan());
+
+        assertSameAsObjectMapper(response);
+    }
+
+    /**
+     * Every field of the API model classes written field by field is set, so a field missing in
+     * the writer makes the output differ from the object mapper output.
+     */
+    @Test
+    public void writeAllFieldsSameAsObjectMapper() throws Exception {
+        Response response = new Response(null);
+        response.setPlan(filled(new ApiTripPlan()));
+
+        String json = assertSameAsObjectMapper(response);
+
+        // Check that the fixture sets every property, including the ones added after this test
+        JsonNode plan = mapper.readTree(json).get("plan");
+        JsonNode itinerary = plan.get("itineraries").get(0);
+        JsonNode leg = itinerary.get("legs").get(0);
+        assertAllPropertiesWritten(ApiTripPlan.class, plan);
+        assertAllPropertiesWritten(ApiItinerary.class, itinerary);
+        assertAllPropertiesWritten(ApiLeg.class, leg);
+        assertAllPropertiesWritten(ApiPlace.class, leg.get("from"));
+        assertAllPropertiesWritten(ApiWalkStep.class, leg.get("steps").get(0));
+        assertAllPropertiesWritten(EncodedPolylineBean.class, leg.get("legGeometry"));
+    }
+
+    private String assertSameAsObjectMapper(Response response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        subject.write(response, out);
+
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(mapper.writeValueAsString(response), json);
+        return json;
+    }
+
+    private void assertAllPropertiesWritten(Class<?> type, JsonNode node) {
+        BeanDescription bean = mapper.getSerializationConfig().introspect(mapper.constructType(type));
+        for (BeanPropertyDefinition property : bean.findProperties()) {
+            if (property.couldSerialize()) {
+                assertTrue(
+                        type.getSimpleName() + "." + property.getName() + " is not written",
+                        node.has(property.getName())
+                );
+            }
+        }
+    }
+
+    /**
+     * Set every public field of the given API model object to a value which is not the default,
+     * the API model objects referred to are filled too. Lists get a single element.
+     */
+    private static <T> T filled(T object) throws Exception {
+        for (Field field : object.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                continue;
+            }
+            Object value = testValue(field.getName(), field.getType(), field.getGenericType());
+            if (value != null) {
+                field.set(object, value);
+            }
+        }
+        return object;
+    }
+
+    /** @return {@code null} if the field should keep its default value. */
+    private static Object testValue(String name, Class<?> type, Type genericType) throws Exception {
+        if (type == String.class) { return name + " \"x\""; }
+        if (type == boolean.class || type == Boolean.class) { return true; }
+        if (type == int.class || type == Integer.class) { return 7; }
+        if (type == long.class || type == Long.class) { return 11L; }
+        if (type == double.class || type == Double.class) { return 1.5; }
+        if (type == Calendar.class) { return calendar(60); }
+        if (type == Date.class) { return new Date(1500000060000L); }
+        if (type == FeedScopedId.class) { return new FeedScopedId("F", name); }
+        if (type == EncodedPolylineBean.class) { return new EncodedPolylineBean("_p~iF~ps|U", "BB", 2); }
+        if (type.isEnum()) { return type.getEnumConstants()[0]; }
+        if (type == List.class) {
+            Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            Object element = testValue(name, (Class<?>) elementType, elementType);
+            return element == null ? null : new ArrayList<>(Collections.singletonList(element));
+        }
+        if (type.getPackage().getName().startsWith("org.opentripplanner.api.model")) {
+            return filled(type.getConstructor().newInstance());
+        }
+        return null;
+    }
+
+    private static ApiTripSearchMetadata metadata() {
+        ApiTripSearchMetadata metadata = new ApiTripSearchMetadata();
+        metadata.searchWindowUsed = 3600;
+        metadata.nextDateTime = 1500000003600L;
+        return metadata;
+    }
+
+    private static ApiTripPlan plan() {
+        ApiTripPlan plan = new ApiTripPlan();
+        plan.date = new Date(1500000000000L);
+        plan.from = place("Origin", null);
+        plan.to = place("Destination \"Øst\"", null);
+
+        ApiItinerary itinerary = new ApiItinerary();
+        itinerary.duration = 1800L;
+        itinerary.startTime = calendar(0);
+        itinerary.endTime = calendar(1800);
+        itinerary.walkTime = 300;
+        itinerary.transitTime = 1200;
+        itinerary.waitingTime = 300;
+        itinerary.walkDistance = 412.5;
+        itinerary.transfers = 0;
+        itinerary.legs.add(walkLeg());
+        itinerary.legs.add(transitLeg());
+
+        plan.itinerary.add(itinerary);
+        plan.itinerary.add(new ApiItinerary());
+        return plan;
+    }
+
+    private static ApiLeg walkLeg() {
+        ApiLeg leg = new ApiLeg();
+        leg.startTime = calendar(0);
+        leg.endTime = calendar(300);
+        leg.distance = 412.5;
+        leg.from = place("Origin", null);
+        leg.to = place("Stop A", new FeedScopedId("F", "A"));
+        leg.legGeometry = new EncodedPolylineBean("_p~iF~ps|U_ulLnnqC", null, 2);
+
+        ApiWalkStep step = new ApiWalkStep();
+        step.distance = 412.5;
+        step.relativeDirection = ApiRelativeDirection.DEPART;
+        step.absoluteDirection = ApiAbsoluteDirection.NORTH;
+        step.streetName = "Main street";
+        step.lon = 10.2;
+        step.lat = 60.1;
+        step.elevation = "0,10.0";
+        leg.walkSteps = Collections.singletonList(step);
+        return leg;
+    }
+
+    private static ApiLeg transitLeg() {
+        ApiLeg leg = new ApiLeg();
+        leg.startTime = calendar(600);
+        leg.endTime = calendar(1800);
+        leg.departureDelay = 30;
+        leg.realTime = true;
+        leg.distance = 8000.0;
+        leg.mode = "BUS";
+        leg.route = "1";
+        leg.agencyName = "Agency";
+        leg.agencyUrl = "http://agency.example.com";
+        leg.agencyTimeZoneOffset = 7200000;
+        leg.routeColor = "FF0000";
+        leg.routeType = 3;
+        leg.routeId = new FeedScopedId("F", "R1");
+        leg.interlineWithPreviousLeg = false;
+        leg.headsign = "Downtown";
+        leg.agencyId = "AG";
+        leg.tripId = new FeedScopedId("F", "T1");
+        leg.serviceDate = "20170714";
+        leg.from = place("Stop A", new FeedScopedId("F", "A"));
+        leg.to = place("Stop C", new FeedScopedId("F", "C"));
+        leg.intermediateStops = new ArrayList<>(Arrays.asList(
+                place("Stop B", new FeedScopedId("F", "B")),
+                null
+        ));
+        leg.legGeometry = new EncodedPolylineBean("_p~iF~ps|U", null, 1);
+
+        ApiAlert alert = new ApiAlert();
+        alert.alertHeaderText = "Delays";
+        alert.effectiveStartDate = new Date(1500000000000L);
+        leg.alerts = Collections.singletonList(alert);
+        leg.routeShortName = "1";
+        leg.routeLongName = "Downtown express";
+        return leg;
+    }
+
+    private static ApiPlace place(String name, FeedScopedId stopId) {
+        ApiPlace place = new ApiPlace();
+        place.name = name;
+        place.lon = 10.25;
+        place.lat = 60.125;
+        if (stopId != null) {
+            place.stopId = stopId;
+            place.stopCode = "S" + stopId.getId();
+            place.arrival = calendar(600);
+            place.departure = calendar(660);
+            place.stopIndex = 1;
+            place.stopSequence = 2;
+            place.vertexType = ApiVertexType.TRANSIT;
+        }
+        else {
+            place.vertexType = ApiVertexType.NORMAL;
+        }
+        return place;
+    }
+
+    private static Calendar calendar(int secondsOffset) {
+        Calendar c = new GregorianCalendar(TimeZone.getTimeZone("Europe/Oslo"));
+        c.setTimeInMillis(1500000000000L + secondsOffset * 1000L);
+        return c;
+    }
+}
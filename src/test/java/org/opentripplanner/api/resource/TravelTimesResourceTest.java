@@ -0,0 +1,114 @@
+package org.opentripplanner.api.resource;
+
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opentripplanner.transit.raptor.api.response.StopTravelTimes.UNREACHED;
+
+public class TravelTimesResourceTest {
+
+    private static final ZonedDateTime START_OF_TIME =
+            ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneId.of("UTC"));
+
+    private final TransitLayer transitLayer = new TransitLayer(
+            Map.of(),
+            List.of(List.of(), List.of()),
+            new StopIndexForRaptor(List.of(
+                    new Stop(new FeedScopedId("F", "S1")),
+                    new Stop(new FeedScopedId("F", "S2"))
+            )),
+            ZoneId.of("UTC")
+    );
+
+    private final StopTravelTimes travelTimes = new StopTravelTimes(
+            new int[] { 100, 160 },
+            new int[][] { { 600, UNREACHED }, { 540, 1200 } },
+            new int[][] { { 0, UNREACHED }, { 0, 1 } }
+    );
+
+    @Test
+    public void invalidParametersAreABadRequest() {
+        TravelTimesResource resource = new TravelTimesResource();
+        resource.percentiles = "50,101";
+        assertBadRequest(resource.computeTravelTimes());
+
+        resource.percentiles = "fifty";
+        assertBadRequest(resource.computeTravelTimes());
+
+        resource.percentiles = null;
+        resource.maxTravelTime = 0;
+        assertBadRequest(resource.computeTravelTimes());
+    }
+
+    @Test
+    public void writeOneRowPerDepartureTime() throws IOException {
+        DataInputStream in = write(null);
+
+        assertHeader(in, 0);
+        assertEquals(2, in.readInt());
+        assertEquals(100, in.readInt());
+        assertEquals(160, in.readInt());
+        assertEquals(600, in.readInt());
+        assertEquals(UNREACHED, in.readInt());
+        assertEquals(540, in.readInt());
+        assertEquals(1200, in.readInt());
+        assertEquals(0, in.readByte());
+        assertEquals(UNREACHED, in.readByte());
+        assertEquals(0, in.readByte());
+        assertEquals(1, in.readByte());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void writeOneRowPerPercentile() throws IOException {
+        DataInputStream in = write(new int[] { 50, 100 });
+
+        assertHeader(in, 1);
+        assertEquals(2, in.readInt());
+        assertEquals(50, in.readInt());
+        assertEquals(100, in.readInt());
+        assertEquals(540, in.readInt());
+        assertEquals(1200, in.readInt());
+        assertEquals(600, in.readInt());
+        assertEquals(UNREACHED, in.readInt());
+        assertEquals(-1, in.read());
+    }
+
+    /* private methods */
+
+    private DataInputStream write(int[] percentiles) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TravelTimesResource.write(travelTimes, percentiles, transitLayer, START_OF_TIME, out);
+        return new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertHeader(DataInputStream in, int rowType) throws IOException {
+        assertEquals(TravelTimesResource.FORMAT_VERSION, in.readInt());
+        assertEquals(rowType, in.readByte());
+        assertEquals(START_OF_TIME.toEpochSecond(), in.readLong());
+        assertEquals(2, in.readInt());
+        assertEquals("F:S1", in.readUTF());
+        assertEquals("F:S2", in.readUTF());
+    }
+
+    private static void assertBadRequest(Object response) {
+        assertTrue(response instanceof Response);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), ((Response) response).getStatus());
+    }
+}
@@ -0,0 +1,57 @@
+package org.opentripplanner.graph_builder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphBuildProfilerTest {
+
+    @Test
+    public void profileEachPhaseInOrder() {
+        GraphBuildProfiler subject = new GraphBuildProfiler();
+        List<String> executed = new ArrayList<>();
+
+        subject.run("A", () -> executed.add("A"));
+        subject.run("B", () -> executed.add(new String(new char[1000])));
+
+        assertEquals(2, executed.size());
+        assertEquals(2, subject.phases().size());
+        assertEquals("A", subject.phases().get(0).phase);
+        assertEquals("B", subject.phases().get(1).phase);
+        assertTrue(subject.phases().get(1).wallTimeMs >= 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void exceptionsArePropagated() {
+        new GraphBuildProfiler().run("A", () -> { throw new IllegalStateException(); });
+    }
+
+    @Test
+    public void writeJson() throws Exception {
+        GraphBuildProfiler subject = new GraphBuildProfiler();
+        subject.run("OpenStreetMapModule", () -> {});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        subject.writeJson(out);
+
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+        JsonNode phase = json.get("phases").get(0);
+
+        assertTrue(json.has("buildStart"));
+        assertEquals("OpenStreetMapModule", phase.get("phase").asText());
+        assertTrue(phase.has("wallTimeMs"));
+        assertTrue(phase.has("cpuTimeMs"));
+        assertTrue(phase.has("allocatedBytes"));
+        assertTrue(phase.has("heapPeakBytes"));
+        assertTrue(phase.has("heapUsedAfterGcMaxBytes"));
+        assertTrue(phase.has("gcCount"));
+        assertTrue(phase.has("gcTimeMs"));
+    }
+}
@@ -2,8 +2,10 @@ package org.opentripplanner.graph_builder.module;
 
 import com.beust.jcommander.internal.Lists;
 import org.junit.Test;
+import org.opentripplanner.ConstantsForTests;
 import org.opentripplanner.graph_builder.model.GtfsBundle;
 import org.opentripplanner.gtfs.MockGtfs;
+import org.opentripplanner.model.Agency;
 import org.opentripplanner.model.BikeAccess;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.model.TransitEntity;
@@ -11,13 +13,18 @@ import org.opentripplanner.model.Trip;
 import org.opentripplanner.model.TripPattern;
 import org.opentripplanner.model.calendar.ServiceDateInterval;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.trippattern.TripTimes;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class GtfsGraphBuilderModuleTest {
 
@@ -83,6 +90,59 @@ public class GtfsGraphBuilderModuleTest {
                 BikeAccess.fromTrip(withId(trips, new FeedScopedId(feedId.getId(), "t1"))));
     }
 
+    @Test
+    public void parallelImportIsTheSameAsSequentialImport() {
+        List<String> sequential = describe(buildGraph(1));
+        List<String> parallel = describe(buildGraph(3));
+
+        assertTrue(sequential.size() > 100);
+        assertEquals(sequential, parallel);
+    }
+
+    /** Build a graph from three feeds, reading at most the given number of feeds at the same time. */
+    private static Graph buildGraph(int threadPoolSize) {
+        List<GtfsBundle> bundles = Lists.newArrayList();
+        for (String path : List.of(
+                ConstantsForTests.CALTRAIN_GTFS,
+                ConstantsForTests.FAKE_GTFS,
+                ConstantsForTests.FARE_COMPONENT_GTFS
+        )) {
+            bundles.add(new GtfsBundle(new File(path)));
+        }
+        GtfsModule module = new GtfsModule(bundles, ServiceDateInterval.unbounded());
+        module.setThreadPoolSize(threadPoolSize);
+
+        Graph graph = new Graph();
+        module.buildGraph(graph, _extra);
+        return graph;
+    }
+
+    /** List the feeds, agencies, service codes, trip patterns and trips of the graph. */
+    private static List<String> describe(Graph graph) {
+        List<String> result = new ArrayList<>();
+        for (String feedId : graph.getFeedIds()) {
+            for (Agency agency : graph.getAgencies(feedId)) {
+                result.add("agency " + feedId + " " + agency.getId());
+            }
+        }
+        graph.getServiceCodes().forEach(
+                (serviceId, code) -> result.add("service " + serviceId + " " + code)
+        );
+        for (TripPattern pattern : graph.tripPatternForId.values()) {
+            result.add("pattern " + pattern.getId() + " " + pattern.getStops());
+            for (TripTimes tripTimes : pattern.scheduledTimetable.tripTimes) {
+                result.add(
+                        "trip " + pattern.getId() + " " + tripTimes.trip.getId()
+                                + " " + tripTimes.serviceCode
+                                + " " + tripTimes.getScheduledDepartureTime(0)
+                                + " " + tripTimes.getScheduledArrivalTime(tripTimes.getNumStops() - 1)
+                );
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     private MockGtfs getSimpleGtfs() throws IOException {
         MockGtfs gtfs = MockGtfs.create();
         gtfs.putAgencies(1);
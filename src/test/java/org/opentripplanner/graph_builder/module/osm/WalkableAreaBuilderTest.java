@@ -0,0 +1,68 @@
+package org.opentripplanner.graph_builder.module.osm;
+
+import org.junit.Test;
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.openstreetmap.BinaryOpenStreetMapProvider;
+import org.opentripplanner.routing.edgetype.AreaEdge;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WalkableAreaBuilderTest {
+
+    /**
+     * The visibility polygons are computed in parallel, the edges created must be the same as
+     * when they are computed one by one. The USF area has several polygons, and one of the P+R
+     * areas is a multipolygon with a hole.
+     */
+    @Test
+    public void parallelVisibilityGivesTheSameEdgesAsSequential() throws Exception {
+        for (String osmFile : List.of("usf_area.osm.pbf", "P+R.osm.pbf")) {
+            List<String> sequential = areaEdges(osmFile, false);
+            List<String> parallel = areaEdges(osmFile, true);
+
+            assertFalse(osmFile, sequential.isEmpty());
+            assertEquals(osmFile, sequential, parallel);
+        }
+    }
+
+
+    /* private methods */
+
+    /** Build the graph of the given OSM file, and list the area edges. */
+    private List<String> areaEdges(String osmFile, boolean parallelVisibility) throws Exception {
+        Graph graph = new Graph();
+        OpenStreetMapModule loader = new OpenStreetMapModule();
+        loader.setDefaultWayPropertySetSource(new DefaultWayPropertySetSource());
+        loader.parallelAreaVisibility = parallelVisibility;
+
+        File file = new File(URLDecoder.decode(
+                getClass().getResource(osmFile).getFile(),
+                StandardCharsets.UTF_8.name()
+        ));
+        loader.setProvider(new BinaryOpenStreetMapProvider(file, false));
+        loader.buildGraph(graph, new HashMap<>(), new DataImportIssueStore(false));
+
+        List<String> edges = new ArrayList<>();
+        for (Edge edge : graph.getEdges()) {
+            if (edge instanceof AreaEdge) {
+                edges.add(
+                        edge.getFromVertex().getLabel() + " -> " + edge.getToVertex().getLabel()
+                                + " " + edge.getName()
+                );
+            }
+        }
+        Collections.sort(edges);
+        return edges;
+    }
+}
@@ -0,0 +1,151 @@
+package org.opentripplanner.gtfs;
+
+import org.junit.Test;
+import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.graph_builder.DataImportIssue;
+import org.opentripplanner.graph_builder.DataImportIssueStore;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.TripStopTimes;
+import org.opentripplanner.model.impl.OtpTransitServiceBuilder;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The trip patterns and trip times built from stop times read into columns must be the same as
+ * the ones built from the StopTime objects read by OBA.
+ */
+public class StopTimeColumnsReaderTest {
+
+    @Test
+    public void caltrainTripTimesAreTheSameAsWithStopTimeObjects() throws IOException {
+        assertSameTripTimes(ConstantsForTests.CALTRAIN_GTFS);
+    }
+
+    @Test
+    public void tripTimesNeedingRepairAreTheSameAsWithStopTimeObjects() throws IOException {
+        assertSameTripTimes(ConstantsForTests.FAKE_GTFS);
+    }
+
+    @Test
+    public void parseTime() {
+        assertEquals(-999, StopTimeColumnsReader.parseTime(""));
+        assertEquals(8 * 3600 + 5 * 60 + 9, StopTimeColumnsReader.parseTime("8:05:09"));
+        assertEquals(25 * 3600 + 30 * 60, StopTimeColumnsReader.parseTime("25:30:00"));
+    }
+
+
+    /* private methods */
+
+    private static void assertSameTripTimes(String path) throws IOException {
+        DataImportIssueStore expectedIssues = new DataImportIssueStore(true);
+        GtfsContextBuilder expectedContext = GtfsContextBuilder.contextBuilder(path)
+                .withDataImportIssueStore(expectedIssues);
+        expectedContext.build();
+
+        DataImportIssueStore issues = new DataImportIssueStore(true);
+        GtfsContextBuilder context = GtfsContextBuilder.contextBuilder(path)
+                .withDataImportIssueStore(issues);
+        OtpTransitServiceBuilder builder = context.getTransitBuilder();
+        TripStopTimes stopTimes = builder.getStopTimesSortedByTrip();
+        stopTimes.removeIf(trip -> true);
+        StopTimeColumnsReader reader = new StopTimeColumnsReader(builder);
+        try (ZipFile zip = new ZipFile(path);
+             InputStream in = zip.getInputStream(zip.getEntry("stop_times.txt"))) {
+            reader.read(in);
+        }
+        assertEquals(0, reader.getNumberOfSkippedStopTimes());
+        context.build();
+
+        // Most trips do not need repair, and are never turned into StopTime objects
+        long nColumnTrips = builder.getTripsById().values().stream()
+                .filter(trip -> stopTimes.getColumns(trip) != null)
+                .count();
+        assertTrue(nColumnTrips > builder.getTripsById().size() / 2);
+
+        Map<String, TripPattern> expectedPatterns = patternsByTripId(expectedContext);
+        Map<String, TripPattern> patterns = patternsByTripId(context);
+        assertEquals(expectedPatterns.keySet(), patterns.keySet());
+
+        for (String tripId : expectedPatterns.keySet()) {
+            assertSameStopPattern(
+                    tripId,
+                    expectedPatterns.get(tripId).stopPattern,
+                    patterns.get(tripId).stopPattern
+            );
+            assertSameTripTimes(
+                    tripId,
+                    tripTimes(expectedPatterns.get(tripId), tripId),
+                    tripTimes(patterns.get(tripId), tripId)
+            );
+        }
+        assertEquals(messages(expectedIssues), messages(issues));
+    }
+
+    private static void assertSameStopPattern(String tripId, StopPattern expected, StopPattern actual) {
+        assertEquals(tripId, expected.size, actual.size);
+        for (int i = 0; i < expected.size; ++i) {
+            assertEquals(tripId, expected.stops[i].getId(), actual.stops[i].getId());
+        }
+        assertArrayEquals(tripId, expected.pickups, actual.pickups);
+        assertArrayEquals(tripId, expected.dropoffs, actual.dropoffs);
+    }
+
+    private static void assertSameTripTimes(String tripId, TripTimes expected, TripTimes actual) {
+        assertEquals(tripId, expected.getNumStops(), actual.getNumStops());
+        for (int i = 0; i < expected.getNumStops(); ++i) {
+            String msg = tripId + " stop " + i;
+            assertEquals(msg, expected.getScheduledArrivalTime(i), actual.getScheduledArrivalTime(i));
+            assertEquals(msg, expected.getScheduledDepartureTime(i), actual.getScheduledDepartureTime(i));
+            assertEquals(msg, expected.getStopSequence(i), actual.getStopSequence(i));
+            assertEquals(msg, expected.isTimepoint(i), actual.isTimepoint(i));
+            assertEquals(msg, expected.getHeadsign(i), actual.getHeadsign(i));
+        }
+    }
+
+    private static Map<String, TripPattern> patternsByTripId(GtfsContextBuilder context) {
+        Map<String, TripPattern> patterns = new HashMap<>();
+        for (TripPattern pattern : context.getTransitBuilder().getTripPatterns().values()) {
+            for (Trip trip : pattern.getTrips()) {
+                patterns.put(trip.getId().getId(), pattern);
+            }
+        }
+        return patterns;
+    }
+
+    private static TripTimes tripTimes(TripPattern pattern, String tripId) {
+        TripTimes tripTimes = pattern.scheduledTimetable.tripTimes.stream()
+                .filter(it -> it.trip.getId().getId().equals(tripId))
+                .findFirst()
+                .orElse(null);
+        if (tripTimes == null) {
+            tripTimes = pattern.scheduledTimetable.frequencyEntries.stream()
+                    .map(it -> it.tripTimes)
+                    .filter(it -> it.trip.getId().getId().equals(tripId))
+                    .findFirst()
+                    .orElse(null);
+        }
+        assertNotNull(tripId, tripTimes);
+        return tripTimes;
+    }
+
+    private static List<String> messages(DataImportIssueStore issueStore) {
+        return issueStore.getIssues().stream()
+                .map(DataImportIssue::getMessage)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
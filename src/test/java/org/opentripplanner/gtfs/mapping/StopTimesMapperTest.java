@@ -6,8 +6,11 @@ import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
 import org.onebusaway.gtfs.model.Trip;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -76,9 +79,24 @@ public class StopTimesMapperTest {
         assertEquals(1, subject.map(Collections.singleton(STOP_TIME)).size());
     }
 
+    @Test
+    public void testMapCollectionKeepsOrderAndNulls() throws Exception {
+        StopTime other = new StopTime();
+        other.setStopSequence(STOP_SEQUENCE + 1);
+
+        List<org.opentripplanner.model.StopTime> result = new ArrayList<>(
+                subject.map(Arrays.asList(STOP_TIME, null, other))
+        );
+
+        assertEquals(3, result.size());
+        assertEquals(STOP_SEQUENCE, result.get(0).getStopSequence());
+        assertNull(result.get(1));
+        assertEquals(STOP_SEQUENCE + 1, result.get(2).getStopSequence());
+    }
+
     @Test
     public void testMap() throws Exception {
-        org.opentripplanner.model.StopTime result = subject.map(STOP_TIME);
+        org.opentripplanner.model.StopTime result = mapOne(STOP_TIME);
 
         assertEquals(ARRIVAL_TIME, result.getArrivalTime());
         assertEquals(DEPARTURE_TIME, result.getDepartureTime());
@@ -96,7 +114,7 @@ public class StopTimesMapperTest {
 
     @Test
     public void testMapWithNulls() throws Exception {
-        org.opentripplanner.model.StopTime result = subject.map(new StopTime());
+        org.opentripplanner.model.StopTime result = mapOne(new StopTime());
 
         assertFalse(result.isArrivalTimeSet());
         assertFalse(result.isDepartureTimeSet());
@@ -111,12 +129,7 @@ public class StopTimesMapperTest {
         assertFalse(result.isTimepointSet());
     }
 
-    /** Mapping the same object twice, should return the the same instance. */
-    @Test
-    public void testMapCache() throws Exception {
-        org.opentripplanner.model.StopTime result1 = subject.map(STOP_TIME);
-        org.opentripplanner.model.StopTime result2 = subject.map(STOP_TIME);
-
-        assertTrue(result1 == result2);
+    private org.opentripplanner.model.StopTime mapOne(StopTime stopTime) {
+        return subject.map(Collections.singletonList(stopTime)).iterator().next();
     }
-}
\ No newline at end of file
+}
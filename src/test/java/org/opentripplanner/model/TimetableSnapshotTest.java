@@ -12,6 +12,7 @@ import org.opentripplanner.gtfs.GtfsContextBuilder;
 import org.opentripplanner.model.calendar.CalendarServiceData;
 import org.opentripplanner.model.calendar.ServiceDate;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.trippattern.TripTimes;
 
 import java.util.ConcurrentModificationException;
@@ -226,4 +227,48 @@ public class TimetableSnapshotTest {
         assertNull(resolver.commit());
         assertFalse(resolver.isDirty());
     }
+
+    @Test
+    public void testPurgeRemovesPatternFromStopIndex() {
+        ServiceDate yesterday = new ServiceDate().previous();
+        TripPattern pattern = patternIndex.get(new FeedScopedId("agency", "1.1"));
+        Stop stop = pattern.getStop(0);
+
+        TimetableSnapshot resolver = new TimetableSnapshot();
+        updateResolver(resolver, pattern, cancel("1.1"), "agency", yesterday);
+        assertTrue(resolver.getPatternsForStop(stop).contains(pattern));
+
+        assertTrue(resolver.purgeExpiredData(yesterday));
+        assertFalse(resolver.getPatternsForStop(stop).contains(pattern));
+        assertTrue(resolver.getAllRealtimeTripPatterns().isEmpty());
+    }
+
+    @Test
+    public void testDeduplicateTripTimes() {
+        ServiceDate today = new ServiceDate();
+        ServiceDate tomorrow = today.next();
+        TripPattern pattern = patternIndex.get(new FeedScopedId("agency", "1.1"));
+
+        TimetableSnapshot resolver = new TimetableSnapshot();
+        updateResolver(resolver, pattern, cancel("1.1"), "agency", today);
+        updateResolver(resolver, pattern, cancel("1.1"), "agency", tomorrow);
+        assertNotNull(resolver.commit());
+
+        // The canceled trip times of both days have the same times, one of them is replaced
+        assertTrue(resolver.deduplicateTripTimes(new Deduplicator()) > 0);
+        assertTrue(resolver.isDirty());
+        assertNotNull(resolver.commit());
+        assertEquals(0, resolver.deduplicateTripTimes(new Deduplicator()));
+
+        int tripIndex = pattern.scheduledTimetable.getTripIndex("1.1");
+        assertTrue(resolver.resolve(pattern, today).getTripTimes(tripIndex).isCanceled());
+        assertTrue(resolver.resolve(pattern, tomorrow).getTripTimes(tripIndex).isCanceled());
+    }
+
+    private static TripUpdate cancel(String tripId) {
+        TripDescriptor.Builder tripDescriptorBuilder = TripDescriptor.newBuilder();
+        tripDescriptorBuilder.setTripId(tripId);
+        tripDescriptorBuilder.setScheduleRelationship(ScheduleRelationship.CANCELED);
+        return TripUpdate.newBuilder().setTrip(tripDescriptorBuilder).build();
+    }
 }
@@ -0,0 +1,173 @@
+package org.opentripplanner.netex.loader;
+
+import org.junit.Test;
+import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.netex.loader.parser.NetexDocumentParser;
+import org.opentripplanner.netex.loader.util.HierarchicalMapById;
+import org.opentripplanner.netex.loader.util.HierarchicalVersionMapById;
+import org.rutebanken.netex.model.Common_VersionFrameStructure;
+import org.rutebanken.netex.model.EntityInVersionStructure;
+import org.rutebanken.netex.model.EntityStructure;
+import org.rutebanken.netex.model.JourneyPattern;
+import org.rutebanken.netex.model.PointInLinkSequence_VersionedChildStructure;
+import org.rutebanken.netex.model.PublicationDeliveryStructure;
+import org.rutebanken.netex.model.ServiceJourney;
+import org.rutebanken.netex.model.StopPointInJourneyPattern;
+import org.rutebanken.netex.model.TimetabledPassingTime;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Unmarshaller;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The streaming parser must populate the index with the same entities as when the whole document
+ * is unmarshalled with JAXB, and each frame of the document tree is parsed.
+ */
+public class NetexXmlParserTest {
+
+    /** Shared files first, the line files refer to the entities in them. */
+    private static final List<String> FILES = List.of(
+            "_stops.xml",
+            "_RUT_shared_data.xml",
+            "RUT_RUT-Line-12_12_Majorstuen---Kjelsas.xml",
+            "RUT_RUT-Line-4_4_Vestli---Bergkrystallen.xml"
+    );
+
+    @Test
+    public void streamedIndexIsTheSameAsTheIndexOfTheDocumentTree() throws Exception {
+        NetexImportDataIndex expected = new NetexImportDataIndex();
+        NetexImportDataIndex streamed = new NetexImportDataIndex();
+        Unmarshaller unmarshaller = JAXBContext
+                .newInstance(PublicationDeliveryStructure.class)
+                .createUnmarshaller();
+        NetexXmlParser subject = new NetexXmlParser();
+
+        try (ZipFile zip = new ZipFile(ConstantsForTests.NETEX_MINIMAL)) {
+            for (String file : FILES) {
+                ZipEntry entry = zip.getEntry(file);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    parseDocumentTree(unmarshaller, in, NetexDocumentParser.create(expected));
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    subject.parseXmlDoc(in, NetexDocumentParser.create(streamed));
+                }
+            }
+        }
+
+        List<String> expectedEntities = describe(expected);
+        assertTrue(expectedEntities.stream().anyMatch(it -> it.startsWith("serviceJourney ")));
+        assertTrue(expectedEntities.stream().anyMatch(
+                it -> it.startsWith("quayIdByStopPointRef ") && !it.endsWith(" null")
+        ));
+        assertEquals(expectedEntities, describe(streamed));
+        assertEquals(expected.timeZone.get(), streamed.timeZone.get());
+        assertEquals(expected.dayTypeRefs.size(), streamed.dayTypeRefs.size());
+    }
+
+
+    /* private methods */
+
+    @SuppressWarnings("unchecked")
+    private static void parseDocumentTree(
+            Unmarshaller unmarshaller,
+            InputStream in,
+            NetexDocumentParser parser
+    ) throws Exception {
+        PublicationDeliveryStructure doc =
+                ((JAXBElement<PublicationDeliveryStructure>) unmarshaller.unmarshal(in)).getValue();
+        for (JAXBElement<? extends Common_VersionFrameStructure> frame
+                : doc.getDataObjects().getCompositeFrameOrCommonFrame()) {
+            parser.parseFrame(frame.getValue());
+        }
+    }
+
+    /**
+     * List the ids of all entities in the index, prefixed with the index field. Lookups that are
+     * not keyed by entity id are listed with the key and the value.
+     */
+    private static List<String> describe(NetexImportDataIndex index) {
+        List<String> result = new ArrayList<>();
+        add(result, "authority", index.authoritiesById);
+        add(result, "dayType", index.dayTypeById);
+        add(result, "destinationDisplay", index.destinationDisplayById);
+        add(result, "groupOfLines", index.groupOfLinesById);
+        add(result, "groupOfStopPlaces", index.groupOfStopPlacesById);
+        add(result, "journeyPattern", index.journeyPatternsById);
+        add(result, "line", index.lineById);
+        add(result, "multiModalStopPlace", index.multiModalStopPlaceById);
+        add(result, "network", index.networkById);
+        add(result, "notice", index.noticeById);
+        add(result, "noticeAssignment", index.noticeAssignmentById);
+        add(result, "operatingPeriod", index.operatingPeriodById);
+        add(result, "operator", index.operatorsById);
+        add(result, "route", index.routeById);
+        add(result, "serviceLink", index.serviceLinkById);
+        add(result, "quay", index.quayById);
+        add(result, "stopPlace", index.stopPlaceById);
+
+        for (EntityStructure dayType : index.dayTypeById.localValues()) {
+            index.dayTypeAssignmentByDayTypeId.lookup(dayType.getId()).forEach(
+                    it -> result.add("dayTypeAssignment " + dayType.getId() + " " + it.getId())
+            );
+        }
+        for (EntityStructure groupOfLines : index.groupOfLinesById.localValues()) {
+            result.add(
+                    "networkIdByGroupOfLineId " + groupOfLines.getId() + " "
+                            + index.networkIdByGroupOfLineId.lookup(groupOfLines.getId())
+            );
+        }
+        for (JourneyPattern pattern : index.journeyPatternsById.localValues()) {
+            for (ServiceJourney journey : index.serviceJourneyByPatternId.lookup(pattern.getId())) {
+                result.add("serviceJourney " + pattern.getId() + " " + journey.getId());
+            }
+            for (PointInLinkSequence_VersionedChildStructure point : pattern
+                    .getPointsInSequence()
+                    .getPointInJourneyPatternOrStopPointInJourneyPatternOrTimingPointInJourneyPattern()) {
+                if (!(point instanceof StopPointInJourneyPattern)) { continue; }
+                String stopPointRef = ((StopPointInJourneyPattern) point)
+                        .getScheduledStopPointRef().getValue().getRef();
+                result.add(
+                        "quayIdByStopPointRef " + stopPointRef + " "
+                                + index.quayIdByStopPointRef.lookup(stopPointRef)
+                );
+                Collection<TimetabledPassingTime> passingTimes =
+                        index.passingTimeByStopPointId.lookup(point.getId());
+                result.add("passingTimes " + point.getId() + " " + passingTimes.size());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void add(
+            List<String> result,
+            String name,
+            HierarchicalMapById<? extends EntityStructure> map
+    ) {
+        for (EntityStructure it : map.localValues()) {
+            result.add(name + " " + it.getId());
+        }
+    }
+
+    private static void add(
+            List<String> result,
+            String name,
+            HierarchicalVersionMapById<? extends EntityInVersionStructure> map
+    ) {
+        for (String id : map.localKeys()) {
+            for (EntityInVersionStructure it : map.lookup(id)) {
+                result.add(name + " " + id + " " + it.getVersion());
+            }
+        }
+    }
+}
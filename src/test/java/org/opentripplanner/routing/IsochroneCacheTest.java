@@ -0,0 +1,112 @@
+package org.opentripplanner.routing;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class IsochroneCacheTest {
+
+    /** The start of a time bucket. */
+    private static final long TIME = 1_500_000_000L - 1_500_000_000L % 300;
+
+    private static final List<Integer> CUTOFFS = List.of(900, 1800);
+
+    private static final List<LocalDate> DATES = List.of(LocalDate.of(2017, 7, 13));
+
+    @Test
+    public void sameKeyForOriginsInTheSameCellAndTimeBucket() {
+        // 200 m cells, the origins are about 10 m apart
+        String a = key(request(60.00001, 10.00001, TIME), CUTOFFS, 200);
+        String b = key(request(60.0001, 10.0001, TIME + 120), CUTOFFS, 200);
+
+        assertNotNull(a);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void differentKeyForDifferentCellsAndTimeBuckets() {
+        String key = key(request(60.00001, 10.00001, TIME), CUTOFFS, 200);
+
+        assertNotEquals(key, key(request(60.01, 10.00001, TIME), CUTOFFS, 200));
+        assertNotEquals(key, key(request(60.00001, 10.01, TIME), CUTOFFS, 200));
+        long nextBucket = TIME + IsochroneCache.TIME_BUCKET_SECONDS;
+        assertNotEquals(key, key(request(60.00001, 10.00001, nextBucket), CUTOFFS, 200));
+    }
+
+    @Test
+    public void differentKeyForDifferentParameters() {
+        RoutingRequest request = request(60.0, 10.0, TIME);
+        RoutingRequest slowWalk = request(60.0, 10.0, TIME);
+        slowWalk.walkSpeed = request.walkSpeed - 0.1;
+        String key = key(request, CUTOFFS, 200);
+
+        assertNotEquals(key, key(request, List.of(900), 200));
+        assertNotEquals(key, key(request, CUTOFFS, 100));
+        assertNotEquals(key, key(slowWalk, CUTOFFS, 200));
+    }
+
+    @Test
+    public void requestsFromStopsAreNotCached() {
+        RoutingRequest request = request(60.0, 10.0, TIME);
+        request.from = new GenericLocation(null, new FeedScopedId("F", "S1"), null, null);
+
+        assertNull(key(request, CUTOFFS, 200));
+    }
+
+    @Test
+    public void isochronesAreCachedUntilTheTransitDataChanges() {
+        IsochroneCache subject = new IsochroneCache(10);
+        Graph graph = new Graph();
+        AtomicInteger computed = new AtomicInteger();
+        Supplier<List<Geometry>> worker = () -> {
+            computed.incrementAndGet();
+            return List.of();
+        };
+        String key = key(request(60.0, 10.0, TIME), CUTOFFS, 200);
+
+        subject.route(key, DATES, graph, worker);
+        subject.route(key, DATES, graph, worker);
+        assertEquals(1, computed.get());
+
+        subject.route(null, DATES, graph, worker);
+        assertEquals(2, computed.get());
+
+        graph.setRealtimeTransitLayer(new TransitLayer(
+                Map.of(),
+                List.of(),
+                new StopIndexForRaptor(List.<Stop>of()),
+                ZoneId.of("UTC")
+        ));
+        subject.route(key, DATES, graph, worker);
+        assertEquals(3, computed.get());
+    }
+
+    private static String key(RoutingRequest request, List<Integer> cutoffs, double resolution) {
+        return IsochroneCache.cacheKey(request, cutoffs, resolution, 150, 50);
+    }
+
+    private static RoutingRequest request(double lat, double lon, long dateTime) {
+        RoutingRequest request = new RoutingRequest();
+        request.from = new GenericLocation(lat, lon);
+        request.dateTime = dateTime;
+        return request;
+    }
+}
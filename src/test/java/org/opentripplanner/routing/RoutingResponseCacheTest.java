@@ -0,0 +1,360 @@
+package org.opentripplanner.routing;
+
+import org.junit.Test;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.plan.Itinerary;
+import org.opentripplanner.model.plan.Leg;
+import org.opentripplanner.model.plan.Place;
+import org.opentripplanner.model.plan.TripPlan;
+import org.opentripplanner.model.routing.RoutingResponse;
+import org.opentripplanner.model.routing.TripSearchMetadata;
+import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayerChangeLog;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.request.BannedStopSet;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RoutingResponseCacheTest {
+
+    private static final long TIME = 1_500_000_000L;
+
+    /** The start of a 60 s step. */
+    private static final long STEP = TIME - TIME % 60;
+
+    private final RoutingResponseCache subject = new RoutingResponseCache(10, 60);
+
+    @Test
+    public void sameKeyForNearbyPlacesAndTimesInTheSameStep() {
+        RoutingRequest a = request(60.000001, 10.000001, TIME);
+        RoutingRequest b = request(60.000002, 10.000002, TIME + 40);
+
+        assertNotNull(subject.cacheKey(a));
+        assertEquals(subject.cacheKey(a), subject.cacheKey(b));
+    }
+
+    @Test
+    public void differentKeyForDifferentPlacesAndTimes() {
+        String key = subject.cacheKey(request(60.0, 10.0, TIME));
+
+        assertNotEquals(key, subject.cacheKey(request(60.0001, 10.0, TIME)));
+        assertNotEquals(key, subject.cacheKey(request(60.0, 10.0, TIME + 60)));
+    }
+
+    @Test
+    public void differentKeyForDifferentParameters() {
+        RoutingRequest a = request(60.0, 10.0, TIME);
+        RoutingRequest b = request(60.0, 10.0, TIME);
+        b.walkSpeed = a.walkSpeed + 0.1;
+        RoutingRequest c = request(60.0, 10.0, TIME);
+        c.bannedAgencies.add("F:A");
+
+        assertNotEquals(subject.cacheKey(a), subject.cacheKey(b));
+        assertNotEquals(subject.cacheKey(a), subject.cacheKey(c));
+    }
+
+    @Test
+    public void requestsWithBannedTripsAreNotCached() {
+        RoutingRequest request = request(60.0, 10.0, TIME);
+        request.bannedTrips.put(new FeedScopedId("F", "T1"), BannedStopSet.ALL);
+
+        assertNull(subject.cacheKey(request));
+    }
+
+    @Test
+    public void secondRequestInTheSameStepIsAHit() {
+        Graph graph = graphWithTransitLayer();
+        CountingWorker worker = new CountingWorker(response(transit(STEP + 600, STEP + 1200)));
+
+        RoutingResponse first = subject.route(request(60.0, 10.0, STEP), graph, worker);
+        RoutingResponse second = subject.route(request(60.0, 10.0, STEP + 30), graph, worker);
+
+        assertEquals(1, worker.calls.get());
+        assertEquals(1, first.getTripPlan().itineraries.size());
+        assertSame(first.getTripPlan().itineraries.get(0), second.getTripPlan().itineraries.get(0));
+        assertEquals(new Date((STEP + 30) * 1000), second.getTripPlan().date);
+    }
+
+    @Test
+    public void responseComputedForALaterTimeInTheStepIsAMiss() {
+        Graph graph = graphWithTransitLayer();
+        CountingWorker later = new CountingWorker(responseAt(STEP + 30, transit(STEP + 600, STEP + 1200)));
+        CountingWorker earlier = new CountingWorker(responseAt(STEP, transit(STEP + 600, STEP + 1200)));
+
+        subject.route(request(60.0, 10.0, STEP + 30), graph, later);
+        // The trips departing in the first 30 seconds of the step are not searched
+        subject.route(request(60.0, 10.0, STEP), graph, earlier);
+        assertEquals(1, earlier.calls.get());
+
+        // The response computed for the start of the step is used for the rest of the step
+        subject.route(request(60.0, 10.0, STEP + 20), graph, later);
+        assertEquals(1, later.calls.get());
+
+        assertEquals(1, subject.getHits());
+        assertEquals(2, subject.getMisses());
+    }
+
+    @Test
+    public void arriveByResponseComputedForAnEarlierTimeInTheStepIsAMiss() {
+        Graph graph = graphWithTransitLayer();
+        CountingWorker worker = new CountingWorker(responseAt(STEP, transit(STEP - 1200, STEP - 600)));
+
+        RoutingRequest first = request(60.0, 10.0, STEP);
+        first.arriveBy = true;
+        RoutingRequest second = request(60.0, 10.0, STEP + 30);
+        second.arriveBy = true;
+        subject.route(first, graph, worker);
+        subject.route(second, graph, worker);
+
+        assertEquals(2, worker.calls.get());
+        assertEquals(0, subject.getHits());
+    }
+
+    @Test
+    public void searchMetadataIsMovedToTheRequestedTime() {
+        RoutingResponse response = RoutingResponseCache.filterOnRequestTime(
+                responseAt(STEP, transit(STEP + 600, STEP + 1200)),
+                request(60.0, 10.0, STEP + 30)
+        );
+        TripSearchMetadata metadata = response.getMetadata();
+        assertEquals(Duration.ofSeconds(3600 - 30), metadata.searchWindowUsed);
+        assertEquals(Instant.ofEpochSecond(STEP + 30 - 3600), metadata.prevDateTime);
+        assertEquals(Instant.ofEpochSecond(STEP + 3600), metadata.nextDateTime);
+
+        RoutingRequest arriveBy = request(60.0, 10.0, STEP + 30);
+        arriveBy.arriveBy = true;
+        response = RoutingResponseCache.filterOnRequestTime(
+                responseAt(STEP + 50, transit(STEP - 1200, STEP - 600)),
+                arriveBy
+        );
+        metadata = response.getMetadata();
+        assertEquals(Duration.ofSeconds(3600 - 20), metadata.searchWindowUsed);
+        assertEquals(Instant.ofEpochSecond(STEP + 50 - 3600), metadata.prevDateTime);
+        assertEquals(Instant.ofEpochSecond(STEP + 30 + 3600), metadata.nextDateTime);
+    }
+
+    @Test
+    public void requestInAnotherStepOrWithoutKeyIsAMiss() {
+        Graph graph = graphWithTransitLayer();
+        CountingWorker worker = new CountingWorker(response(transit(STEP + 600, STEP + 1200)));
+
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        subject.route(request(60.0, 10.0, STEP + 60), graph, worker);
+        assertEquals(2, worker.calls.get());
+
+        RoutingRequest notCached = request(60.0, 10.0, STEP);
+        notCached.bannedTrips.put(new FeedScopedId("F", "T1"), BannedStopSet.ALL);
+        subject.route(notCached, graph, worker);
+        subject.route(notCached, graph, worker);
+        assertEquals(4, worker.calls.get());
+    }
+
+    @Test
+    public void cacheIsInvalidatedWhenTheTransitDataChanges() {
+        Graph graph = graphWithTransitLayer();
+        CountingWorker worker = new CountingWorker(response(transit(STEP + 600, STEP + 1200)));
+
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        graph.setRealtimeTransitLayer(new TransitLayer(graph.getTransitLayer()));
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        assertEquals(2, worker.calls.get());
+
+        // The response of the new data is cached
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        assertEquals(2, worker.calls.get());
+
+        graph.setTransitLayer(new TransitLayer(graph.getTransitLayer()));
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        assertEquals(3, worker.calls.get());
+    }
+
+    @Test
+    public void onlyResponsesSearchingTheChangedDatesAreInvalidated() {
+        Graph graph = graphWithTransitLayer();
+        CountingWorker worker = new CountingWorker(response(transit(STEP + 600, STEP + 1200)));
+        LocalDate date = LocalDate.ofEpochDay(STEP / (24 * 3600));
+
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        RoutingRequest scheduled = request(60.0, 10.0, STEP);
+        scheduled.ignoreRealtimeUpdates = true;
+        subject.route(scheduled, graph, worker);
+        assertEquals(2, worker.calls.get());
+
+        // The search uses the dates of yesterday and today
+        TransitLayer first = publishRealtimeChanges(graph, date.plusDays(1));
+        TransitLayer second = publishRealtimeChanges(graph, date.minusDays(2));
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        assertEquals(2, worker.calls.get());
+        // The change logs of both are used, the first is only weakly referenced by the second
+        assertSame(first, second.getChangeLog().getPreviousTransitLayer());
+
+        publishRealtimeChanges(graph, date.minusDays(1));
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        assertEquals(3, worker.calls.get());
+
+        // Responses ignoring the realtime updates are not invalidated
+        subject.route(scheduled, graph, worker);
+        assertEquals(3, worker.calls.get());
+    }
+
+    @Test
+    public void itinerariesDepartingBeforeTheRequestedTimeAreRemoved() {
+        Itinerary early = transit(STEP + 10, STEP + 600);
+        Itinerary late = transit(STEP + 50, STEP + 700);
+
+        RoutingResponse response = RoutingResponseCache.filterOnRequestTime(
+                response(early, late),
+                request(60.0, 10.0, STEP + 30)
+        );
+
+        assertEquals(List.of(late), response.getTripPlan().itineraries);
+    }
+
+    @Test
+    public void itinerariesArrivingAfterTheRequestedTimeAreRemoved() {
+        Itinerary early = transit(STEP - 600, STEP + 10);
+        Itinerary late = transit(STEP - 500, STEP + 50);
+        RoutingRequest request = request(60.0, 10.0, STEP + 30);
+        request.arriveBy = true;
+
+        RoutingResponse response = RoutingResponseCache.filterOnRequestTime(
+                responseAt(STEP + 50, early, late),
+                request
+        );
+
+        assertEquals(List.of(early), response.getTripPlan().itineraries);
+    }
+
+    @Test
+    public void responseIsNotUsedIfAStreetOnlyItineraryOrAllItinerariesAreRemoved() {
+        RoutingRequest request = request(60.0, 10.0, STEP + 30);
+
+        assertNull(RoutingResponseCache.filterOnRequestTime(
+                response(transit(STEP + 50, STEP + 700), walk(STEP, STEP + 1800)),
+                request
+        ));
+        assertNull(RoutingResponseCache.filterOnRequestTime(
+                response(transit(STEP + 10, STEP + 700)),
+                request
+        ));
+
+        // The walk is routed again, so the cached response is not used
+        Graph graph = graphWithTransitLayer();
+        CountingWorker worker = new CountingWorker(response(walk(STEP, STEP + 1800)));
+        subject.route(request(60.0, 10.0, STEP), graph, worker);
+        subject.route(request, graph, worker);
+        assertEquals(2, worker.calls.get());
+    }
+
+    /* private methods */
+
+    private static Graph graphWithTransitLayer() {
+        Graph graph = new Graph();
+        TransitLayer transitLayer = new TransitLayer(
+                Map.of(),
+                List.of(),
+                new StopIndexForRaptor(List.<Stop>of()),
+                ZoneId.of("UTC")
+        );
+        graph.setTransitLayer(transitLayer);
+        graph.setRealtimeTransitLayer(new TransitLayer(transitLayer));
+        return graph;
+    }
+
+    private static TransitLayer publishRealtimeChanges(Graph graph, LocalDate date) {
+        TransitLayer previous = graph.getRealtimeTransitLayer();
+        TransitLayerChangeLog changeLog = new TransitLayerChangeLog(previous);
+        changeLog.updated(new TripPatternForDate(null, List.of(), date));
+        TransitLayer transitLayer = new TransitLayer(previous);
+        transitLayer.setChangeLog(changeLog);
+        graph.setRealtimeTransitLayer(transitLayer);
+        return transitLayer;
+    }
+
+    private static RoutingResponse response(Itinerary... itineraries) {
+        return responseAt(STEP, itineraries);
+    }
+
+    /** A response computed for the given time, with a one hour search window. */
+    private static RoutingResponse responseAt(long dateTime, Itinerary... itineraries) {
+        TripPlan plan = new TripPlan(
+                new Place(10.0, 60.0, "From"),
+                new Place(10.7, 59.9, "To"),
+                new Date(dateTime * 1000),
+                Arrays.asList(itineraries)
+        );
+        TripSearchMetadata metadata = new TripSearchMetadata(
+                Duration.ofHours(1),
+                Instant.ofEpochSecond(dateTime - 3600),
+                Instant.ofEpochSecond(dateTime + 3600)
+        );
+        return new RoutingResponse(plan, metadata);
+    }
+
+    private static Itinerary transit(long departure, long arrival) {
+        return new Itinerary(List.of(leg(TraverseMode.BUS, departure, arrival)));
+    }
+
+    private static Itinerary walk(long departure, long arrival) {
+        return new Itinerary(List.of(leg(TraverseMode.WALK, departure, arrival)));
+    }
+
+    private static Leg leg(TraverseMode mode, long departure, long arrival) {
+        Leg leg = new Leg();
+        leg.mode = mode;
+        leg.startTime = calendar(departure);
+        leg.endTime = calendar(arrival);
+        return leg;
+    }
+
+    private static Calendar calendar(long epochSecond) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(epochSecond * 1000);
+        return calendar;
+    }
+
+    private static class CountingWorker implements Supplier<RoutingResponse> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final RoutingResponse response;
+
+        CountingWorker(RoutingResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public RoutingResponse get() {
+            calls.incrementAndGet();
+            return response;
+        }
+    }
+
+    private static RoutingRequest request(double lat, double lon, long dateTime) {
+        RoutingRequest request = new RoutingRequest();
+        request.from = new GenericLocation(lat, lon);
+        request.to = new GenericLocation(59.9, 10.7);
+        request.dateTime = dateTime;
+        return request;
+    }
+}
@@ -6,8 +6,10 @@ import org.locationtech.jts.geom.Coordinate;
 import org.opentripplanner.routing.algorithm.astar.AStar;
 import org.opentripplanner.routing.algorithm.astar.strategies.MultiTargetTerminationStrategy;
 import org.opentripplanner.routing.algorithm.astar.strategies.SearchTerminationStrategy;
+import org.opentripplanner.routing.core.RoutingContext;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.SimpleConcreteEdge;
 import org.opentripplanner.routing.graph.SimpleConcreteVertex;
@@ -23,6 +25,7 @@ import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -209,6 +212,36 @@ public class AStarTest {
         assertEquals("near_56th_20th", states.get(8).getVertex().getLabel());
     }
 
+    @Test
+    public void testExtraEdgesNotAddedToGraph() {
+        RoutingRequest options = new RoutingRequest();
+
+        TemporaryStreetLocation from = new TemporaryStreetLocation("near_shilshole_22nd",
+                new Coordinate(-122.385050, 47.666620), new NonLocalizedString("near_shilshole_22nd"), false);
+        Edge fromEdge = new TemporaryConcreteEdge(from, graph.getVertex("shilshole_22nd"));
+
+        TemporaryStreetLocation to = new TemporaryStreetLocation("near_56th_20th",
+                new Coordinate(-122.382347, 47.669518), new NonLocalizedString("near_56th_20th"), true);
+        Edge toEdge = new TemporaryConcreteEdge(graph.getVertex("56th_20th"), to);
+
+        // The temporary vertices have the edges, the vertices of the graph do not
+        assertTrue(from.getOutgoing().contains(fromEdge));
+        assertTrue(to.getIncoming().contains(toEdge));
+        assertFalse(graph.getVertex("shilshole_22nd").getIncoming().contains(fromEdge));
+        assertFalse(graph.getVertex("56th_20th").getOutgoing().contains(toEdge));
+
+        options.setRoutingContext(graph, from, to);
+        RoutingContext rctx = options.getRoutingContext();
+
+        assertTrue(rctx.getIncoming(graph.getVertex("shilshole_22nd")).contains(fromEdge));
+        assertTrue(rctx.getOutgoing(graph.getVertex("56th_20th")).contains(toEdge));
+        assertEquals(
+                graph.getVertex("56th_20th").getIncoming().size(),
+                rctx.getIncoming(graph.getVertex("56th_20th")).size()
+        );
+        options.cleanup();
+    }
+
     @Test
     public void testMultipleTargets() {
         RoutingRequest options = new RoutingRequest();
@@ -0,0 +1,112 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.Test;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.FeedScopedId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchRoutingContextTest {
+
+    private final Map<String, CompletableFuture<String>> cache = new ConcurrentHashMap<>();
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    public void placeKeyOfCoordinatesAndStops() {
+        String key = BatchRoutingContext.placeKey(new GenericLocation(60.000001, 10.000001));
+
+        assertEquals(key, BatchRoutingContext.placeKey(new GenericLocation(60.000002, 10.000002)));
+        assertNotEquals(key, BatchRoutingContext.placeKey(new GenericLocation(60.0001, 10.0)));
+        assertEquals(
+                "F:S1",
+                BatchRoutingContext.placeKey(
+                        new GenericLocation(null, new FeedScopedId("F", "S1"), null, null)
+                )
+        );
+        assertNull(BatchRoutingContext.placeKey(new GenericLocation(null, null, null, null)));
+    }
+
+    @Test
+    public void placesWithoutKeyAreSearchedEachTime() {
+        assertEquals("T1", BatchRoutingContext.transfers(cache, null, this::search));
+        assertEquals("T2", BatchRoutingContext.transfers(cache, null, this::search));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void concurrentRequestsFromTheSamePlaceShareOneSearch() throws Exception {
+        CountDownLatch searching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> BatchRoutingContext.transfers(cache, "A", () -> {
+                searching.countDown();
+                await(release);
+                return search();
+            }));
+            assertTrue(searching.await(10, TimeUnit.SECONDS));
+
+            List<Future<String>> waiting = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                waiting.add(executor.submit(() -> BatchRoutingContext.transfers(cache, "A", this::search)));
+            }
+            // Other places are not blocked by the search in progress
+            assertEquals("T1", BatchRoutingContext.transfers(cache, "B", this::search));
+
+            release.countDown();
+            assertEquals("T2", first.get(10, TimeUnit.SECONDS));
+            for (Future<String> it : waiting) {
+                assertEquals("T2", it.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, searches.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedSearchIsRetried() {
+        try {
+            BatchRoutingContext.transfers(cache, "A", () -> { throw new IllegalStateException(); });
+            fail();
+        }
+        catch (IllegalStateException expected) { }
+
+        assertEquals("T1", BatchRoutingContext.transfers(cache, "A", this::search));
+        assertEquals("T1", BatchRoutingContext.transfers(cache, "A", this::search));
+        assertEquals(1, searches.get());
+    }
+
+    /* private methods */
+
+    private String search() {
+        return "T" + searches.incrementAndGet();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.impl.StreetVertexIndex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.standalone.server.Router;
+import org.opentripplanner.util.SearchInterruptedException;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IsochroneWorkerTest {
+
+    private static final double LAT = 60.0;
+
+    /** About 110 m between the vertices. */
+    private static final double STEP = 0.002;
+
+    private static final int N_VERTICES = 11;
+
+    private final Graph graph = new Graph();
+
+    private IntersectionVertex origin;
+    private Router router;
+
+    @Before
+    public void setUp() {
+        // A street along the latitude, the origin is at the middle
+        IntersectionVertex previous = null;
+        for (int i = 0; i < N_VERTICES; ++i) {
+            double lon = 10.0 + i * STEP;
+            IntersectionVertex v = new IntersectionVertex(graph, "V" + i, lon, LAT);
+            if (previous != null) {
+                street(previous, v);
+                street(v, previous);
+            }
+            if (i == N_VERTICES / 2) { origin = v; }
+            previous = v;
+        }
+        graph.streetIndex = new StreetVertexIndex(graph);
+        router = new Router(graph);
+    }
+
+    @Test
+    public void isochronesAreReturnedInTheOrderOfTheCutoffs() {
+        List<Geometry> isochrones = worker(List.of(600, 120)).route(router);
+
+        assertEquals(2, isochrones.size());
+        Point center = new GeometryFactory().createPoint(origin.getCoordinate());
+        assertTrue(isochrones.get(0).contains(center));
+        assertTrue(isochrones.get(1).contains(center));
+        assertTrue(isochrones.get(0).getArea() > isochrones.get(1).getArea());
+
+        // The whole street is reached within 10 minutes, but not within 2 minutes
+        Point end = new GeometryFactory().createPoint(
+                graph.getVertex("V" + (N_VERTICES - 1)).getCoordinate()
+        );
+        assertTrue(isochrones.get(0).contains(end));
+        assertFalse(isochrones.get(1).contains(end));
+    }
+
+    @Test(expected = SearchInterruptedException.class)
+    public void computationStopsWhenTheRequestIsCancelled() {
+        IsochroneWorker worker = worker(List.of(600));
+        Thread.currentThread().interrupt();
+        try {
+            worker.route(router);
+        }
+        finally {
+            Thread.interrupted();
+        }
+    }
+
+    /* private methods */
+
+    /** A worker with a routing context from the origin vertex, 50 m grid, 100 m off road. */
+    private IsochroneWorker worker(List<Integer> cutoffs) {
+        RoutingRequest request = new RoutingRequest();
+        request.setMode(TraverseMode.WALK);
+        request.dateTime = 1_500_000_000L;
+        request.setRoutingContext(graph, Set.<Vertex>of(origin), null);
+        return new IsochroneWorker(request, cutoffs, 50, 100, 50);
+    }
+
+    private void street(IntersectionVertex from, IntersectionVertex to) {
+        LineString geometry = GeometryUtils.makeLineString(
+                from.getLon(), from.getLat(), to.getLon(), to.getLat()
+        );
+        new StreetEdge(
+                from,
+                to,
+                geometry,
+                from.getLabel() + "-" + to.getLabel(),
+                SphericalDistanceLibrary.fastLength(geometry),
+                StreetTraversalPermission.PEDESTRIAN,
+                false
+        );
+    }
+}
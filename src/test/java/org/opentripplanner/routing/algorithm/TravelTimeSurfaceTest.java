@@ -0,0 +1,88 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.impl.StreetVertexIndex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.util.SearchInterruptedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TravelTimeSurfaceTest {
+
+    private static final double WALK_SPEED = 1.0;
+    private static final double OFF_ROAD_DISTANCE = 100;
+
+    private final Graph graph = new Graph();
+    private final Map<Vertex, Long> streetTimes = new HashMap<>();
+
+    private IntersectionVertex a;
+    private IntersectionVertex b;
+    private TravelTimeSurface subject;
+
+    @Before
+    public void setUp() {
+        a = new IntersectionVertex(graph, "A", 10.0, 60.0);
+        b = new IntersectionVertex(graph, "B", 10.0, 60.01);
+        graph.streetIndex = new StreetVertexIndex(graph);
+        streetTimes.put(a, 0L);
+        streetTimes.put(b, 600L);
+
+        subject = new TravelTimeSurface(
+                graph.streetIndex,
+                streetTimes,
+                null,
+                null,
+                WALK_SPEED,
+                OFF_ROAD_DISTANCE,
+                500
+        );
+    }
+
+    @Test
+    public void travelTimeIsTheNearestVertexTimePlusTheWalk() {
+        assertEquals(0, subject.z(a.getCoordinate()));
+        assertEquals(600, subject.z(b.getCoordinate()));
+
+        // 50 m north of A and south of B
+        Coordinate nearA = new Coordinate(10.0, 60.0 + SphericalDistanceLibrary.metersToDegrees(50));
+        assertEquals(50, subject.z(nearA), 1);
+        Coordinate nearB = new Coordinate(10.0, 60.01 - SphericalDistanceLibrary.metersToDegrees(50));
+        assertEquals(650, subject.z(nearB), 1);
+
+        // Further than the off road distance from any vertex
+        Coordinate between = new Coordinate(10.0, 60.005);
+        assertEquals(TravelTimeSurface.UNREACHED, subject.z(between));
+    }
+
+    @Test
+    public void samplesAreMemoized() {
+        Coordinate c = new Coordinate(10.0, 60.0001);
+        long z = subject.z(c);
+        subject.z(a.getCoordinate());
+        assertEquals(2, subject.numberOfSamples());
+
+        // Changed times are not seen by an existing sample
+        streetTimes.put(a, 100L);
+        assertEquals(z, subject.z(c));
+        assertEquals(2, subject.numberOfSamples());
+    }
+
+    @Test(expected = SearchInterruptedException.class)
+    public void samplingStopsWhenTheCallerIsInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            subject.z(a.getCoordinate());
+        }
+        finally {
+            Thread.interrupted();
+        }
+    }
+}
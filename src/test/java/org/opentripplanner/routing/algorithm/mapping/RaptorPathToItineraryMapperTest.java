@@ -0,0 +1,271 @@
+package org.opentripplanner.routing.algorithm.mapping;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.LineString;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.model.Agency;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.plan.Itinerary;
+import org.opentripplanner.model.plan.Leg;
+import org.opentripplanner.routing.algorithm.filterchain.ItineraryFilter;
+import org.opentripplanner.routing.algorithm.filterchain.ItineraryFilterChainBuilder;
+import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
+import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripSchedule;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripScheduleImpl;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphIndex;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.transit.raptor.api.path.AccessPathLeg;
+import org.opentripplanner.transit.raptor.api.path.EgressPathLeg;
+import org.opentripplanner.transit.raptor.api.path.Path;
+import org.opentripplanner.transit.raptor.api.path.TransitPathLeg;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The itinerary filter chain runs on the summaries of the transit itineraries, it must make the
+ * same decisions as it would on the complete itineraries.
+ */
+public class RaptorPathToItineraryMapperTest {
+
+    private static final String FEED_ID = "F";
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+    private static final ZonedDateTime START_OF_TIME = ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZONE);
+
+    private static final int T0750 = 7 * 3600 + 50 * 60;
+    private static final int T0758 = 7 * 3600 + 58 * 60;
+    private static final int T0800 = 8 * 3600;
+    private static final int T0805 = T0800 + 300;
+    private static final int T0810 = T0800 + 600;
+    private static final int T0815 = T0800 + 900;
+
+    private final Graph graph = new Graph();
+    private final RoutingRequest request = new RoutingRequest();
+
+    private Stop stop1;
+    private Stop stop2;
+    private TripPattern pattern;
+    private RaptorPathToItineraryMapper subject;
+
+    @Before
+    public void setUp() {
+        stop1 = createStop("S1", 60.0, 10.0);
+        stop2 = createStop("S2", 60.01, 10.0);
+        pattern = createTripPattern();
+        graph.index = new GraphIndex(graph);
+
+        // The access walk is about 556 m along a street, it does not take the 8 minutes of the
+        // access leg found by Raptor
+        IntersectionVertex origin = new IntersectionVertex(graph, "origin", 10.0, 59.995);
+        IntersectionVertex atStop1 = new IntersectionVertex(graph, "atStop1", 10.0, 60.0);
+        IntersectionVertex destination = new IntersectionVertex(graph, "destination", 10.0, 60.01);
+        LineString geometry = GeometryUtils.makeLineString(10.0, 59.995, 10.0, 60.0);
+        StreetEdge street = new StreetEdge(
+                origin,
+                atStop1,
+                geometry,
+                "street",
+                SphericalDistanceLibrary.fastLength(geometry),
+                StreetTraversalPermission.ALL,
+                false
+        );
+
+        request.from = new GenericLocation(59.995, 10.0);
+        request.to = new GenericLocation(60.01, 10.0);
+        request.dateTime = START_OF_TIME.plusSeconds(T0750).toEpochSecond();
+        request.setRoutingContext(graph, origin, destination);
+
+        TransitLayer transitLayer = new TransitLayer(
+                Map.of(),
+                List.of(List.of(), List.of()),
+                new StopIndexForRaptor(List.of(stop1, stop2)),
+                ZONE
+        );
+        Map<Stop, Transfer> accessTransfers = new HashMap<>();
+        accessTransfers.put(stop1, new Transfer(0, (int) street.getDistanceMeters(), List.of(street)));
+        Map<Stop, Transfer> egressTransfers = new HashMap<>();
+        egressTransfers.put(stop2, new Transfer(1, 0, List.of()));
+
+        subject = new RaptorPathToItineraryMapper(
+                transitLayer,
+                START_OF_TIME,
+                request,
+                accessTransfers,
+                egressTransfers
+        );
+    }
+
+    @Test
+    public void summaryHasTheSameLegsAsTheCompleteItinerary() {
+        Path<TripSchedule> path = createPath(0, T0800, T0810);
+
+        Itinerary summary = subject.createItinerarySummary(path);
+        Itinerary itinerary = subject.createItinerary(path);
+
+        assertSameLegs(itinerary, summary);
+        assertSameLegs(itinerary, subject.createItinerary(path, summary));
+
+        // The street leg is mapped from the edges, not from the times of the Raptor path
+        Leg access = summary.legs.get(0);
+        assertTrue(access.isWalkingLeg());
+        assertNotEquals(T0758 - T0750, access.getDuration());
+        assertEquals(itinerary.nonTransitDistanceMeters, summary.nonTransitDistanceMeters, 0.001);
+        assertEquals(itinerary.nonTransitTimeSeconds, summary.nonTransitTimeSeconds);
+    }
+
+    @Test
+    public void filterChainKeepsTheSameItinerariesForSummaries() {
+        List<Path<TripSchedule>> paths = List.of(
+                createPath(0, T0800, T0810),
+                createPath(1, T0805, T0815)
+        );
+
+        ItineraryFilter filterChain = new ItineraryFilterChainBuilder().build();
+
+        List<Itinerary> summaries = new ArrayList<>();
+        List<Itinerary> itineraries = new ArrayList<>();
+        for (Path<TripSchedule> path : paths) {
+            summaries.add(subject.createItinerarySummary(path));
+            itineraries.add(subject.createItinerary(path));
+        }
+
+        assertEquals(
+                indexes(itineraries, filterChain.filter(itineraries)),
+                indexes(summaries, filterChain.filter(summaries))
+        );
+    }
+
+    /* private methods */
+
+    private static void assertSameLegs(Itinerary expected, Itinerary actual) {
+        assertEquals(expected.legs.size(), actual.legs.size());
+        for (int i = 0; i < expected.legs.size(); ++i) {
+            Leg a = expected.legs.get(i);
+            Leg b = actual.legs.get(i);
+            assertEquals(a.mode, b.mode);
+            assertEquals(a.distanceMeters, b.distanceMeters, 0.001);
+            assertEquals(a.startTime, b.startTime);
+            assertEquals(a.endTime, b.endTime);
+            assertTrue(a.from.sameLocation(b.from));
+            assertTrue(a.to.sameLocation(b.to));
+            assertEquals(a.tripId, b.tripId);
+        }
+        assertEquals(expected.durationSeconds, actual.durationSeconds);
+        assertEquals(expected.generalizedCost, actual.generalizedCost);
+        assertEquals(expected.nTransfers, actual.nTransfers);
+    }
+
+    private static List<Integer> indexes(List<Itinerary> all, List<Itinerary> kept) {
+        List<Integer> indexes = new ArrayList<>();
+        for (Itinerary it : kept) {
+            indexes.add(all.indexOf(it));
+        }
+        return indexes;
+    }
+
+    private Path<TripSchedule> createPath(int tripIndex, int departure, int arrival) {
+        TripTimes tripTimes = pattern.scheduledTimetable.getTripTimes(tripIndex);
+        TripSchedule trip = new TripScheduleImpl(
+                tripTimes,
+                pattern,
+                new int[] { departure, arrival },
+                new int[] { departure, arrival },
+                0
+        );
+        EgressPathLeg<TripSchedule> egress = new EgressPathLeg<>(1, arrival, arrival);
+        TransitPathLeg<TripSchedule> transit = new TransitPathLeg<>(0, departure, 1, arrival, trip, egress);
+        AccessPathLeg<TripSchedule> access = new AccessPathLeg<>(T0750, 0, T0758, transit);
+        return new Path<>(access, arrival, 0, 1000 + tripIndex);
+    }
+
+    private TripPattern createTripPattern() {
+        Agency agency = new Agency();
+        agency.setId("A1");
+        agency.setName("Agency");
+
+        Route route = new Route();
+        route.setId(new FeedScopedId(FEED_ID, "R1"));
+        route.setAgency(agency);
+        route.setShortName("1");
+        route.setType(3);
+
+        Deduplicator deduplicator = new Deduplicator();
+        List<TripTimes> tripTimes = List.of(
+                createTripTimes(route, "T1", T0800, T0810, deduplicator),
+                createTripTimes(route, "T2", T0805, T0815, deduplicator)
+        );
+        TripPattern pattern = new TripPattern(route, new StopPattern(createStopTimes(null, 0, 0)));
+        pattern.setId(new FeedScopedId(FEED_ID, "P1"));
+        pattern.setHopGeometries(new LineString[] {
+                GeometryUtils.makeLineString(stop1.getLon(), stop1.getLat(), stop2.getLon(), stop2.getLat())
+        });
+        tripTimes.forEach(pattern::add);
+        pattern.scheduledTimetable.finish();
+        return pattern;
+    }
+
+    private TripTimes createTripTimes(
+            Route route,
+            String id,
+            int departure,
+            int arrival,
+            Deduplicator deduplicator
+    ) {
+        Trip trip = new Trip();
+        trip.setId(new FeedScopedId(FEED_ID, id));
+        trip.setRoute(route);
+        TripTimes tripTimes = new TripTimes(trip, createStopTimes(trip, departure, arrival), deduplicator);
+        tripTimes.serviceCode = 0;
+        return tripTimes;
+    }
+
+    private List<StopTime> createStopTimes(Trip trip, int departure, int arrival) {
+        return List.of(
+                createStopTime(trip, stop1, 1, departure),
+                createStopTime(trip, stop2, 2, arrival)
+        );
+    }
+
+    private static StopTime createStopTime(Trip trip, Stop stop, int sequence, int time) {
+        StopTime st = new StopTime();
+        st.setTrip(trip);
+        st.setStop(stop);
+        st.setStopSequence(sequence);
+        st.setArrivalTime(time);
+        st.setDepartureTime(time);
+        return st;
+    }
+
+    private static Stop createStop(String id, double lat, double lon) {
+        Stop stop = new Stop(new FeedScopedId(FEED_ID, id));
+        stop.setName(id);
+        stop.setLat(lat);
+        stop.setLon(lon);
+        return stop;
+    }
+}
@@ -0,0 +1,270 @@
+package org.opentripplanner.routing.algorithm.raptor.transit.mappers;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.TimetableSnapshot;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.algorithm.raptor.transit.StopIndexForRaptor;
+import org.opentripplanner.routing.algorithm.raptor.transit.Transfer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayer;
+import org.opentripplanner.routing.algorithm.raptor.transit.TransitLayerChangeLog;
+import org.opentripplanner.routing.algorithm.raptor.transit.TripPatternForDate;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TransitLayerUpdaterTest {
+
+    private static final String FEED_ID = "F";
+    private static final ServiceDate D1 = new ServiceDate(2020, 1, 1);
+    private static final ServiceDate D2 = new ServiceDate(2020, 1, 2);
+    private static final int DEPARTURE_TIME = 8 * 3600;
+    private static final int DELAY = 60;
+
+    private static final Stop STOP_1 = new Stop(new FeedScopedId(FEED_ID, "S1"));
+    private static final Stop STOP_2 = new Stop(new FeedScopedId(FEED_ID, "S2"));
+
+    private final Route route = new Route();
+    private final Deduplicator deduplicator = new Deduplicator();
+
+    private Graph graph;
+    private TransitLayer scheduledTransitLayer;
+    private TransitLayerUpdater subject;
+    private TripPattern patternA;
+    private TripPattern patternB;
+
+    @Before
+    public void setUp() {
+        route.setId(new FeedScopedId(FEED_ID, "R1"));
+        route.setType(3);
+        patternA = createTripPattern("A");
+        patternB = createTripPattern("B");
+
+        Map<ServiceDate, TIntSet> serviceCodesRunningForDate = new HashMap<>();
+        serviceCodesRunningForDate.put(D1, new TIntHashSet(new int[] { 0 }));
+        serviceCodesRunningForDate.put(D2, new TIntHashSet(new int[] { 0 }));
+
+        StopIndexForRaptor stopIndex = new StopIndexForRaptor(List.of(STOP_1, STOP_2));
+        TripPatternForDateMapper mapper = new TripPatternForDateMapper(
+                serviceCodesRunningForDate,
+                TripPatternMapper.mapOldTripPatternToRaptorTripPattern(
+                        stopIndex,
+                        List.of(patternA, patternB)
+                )
+        );
+        Map<LocalDate, List<TripPatternForDate>> tripPatternsForDate = new HashMap<>();
+        for (ServiceDate date : List.of(D1, D2)) {
+            List<TripPatternForDate> patterns = new ArrayList<>();
+            patterns.add(mapper.map(patternA.scheduledTimetable, date));
+            patterns.add(mapper.map(patternB.scheduledTimetable, date));
+            tripPatternsForDate.put(ServiceCalendarMapper.localDateFromServiceDate(date), patterns);
+        }
+
+        List<List<Transfer>> transfers = List.of(List.of(), List.of());
+        scheduledTransitLayer = new TransitLayer(
+                tripPatternsForDate,
+                transfers,
+                stopIndex,
+                ZoneId.of("UTC")
+        );
+
+        graph = new Graph();
+        graph.setTransitLayer(scheduledTransitLayer);
+        graph.setRealtimeTransitLayer(new TransitLayer(scheduledTransitLayer));
+        subject = new TransitLayerUpdater(graph, serviceCodesRunningForDate);
+    }
+
+    @Test
+    public void updatesOfAllDatesArePublishedInOneTransitLayer() {
+        TransitLayer before = graph.getRealtimeTransitLayer();
+
+        TimetableSnapshot snapshot = new TimetableSnapshot();
+        snapshot.update(patternA, delayed(patternA), D1);
+        snapshot.update(patternA, delayed(patternA), D2);
+        snapshot.commit(subject, false);
+
+        TransitLayer after = graph.getRealtimeTransitLayer();
+        assertNotSame(before, after);
+        assertEquals(DEPARTURE_TIME + DELAY, departure(after, patternA, D1));
+        assertEquals(DEPARTURE_TIME + DELAY, departure(after, patternA, D2));
+
+        // The published layers are never changed
+        assertEquals(DEPARTURE_TIME, departure(before, patternA, D1));
+        assertEquals(DEPARTURE_TIME, departure(scheduledTransitLayer, patternA, D1));
+    }
+
+    @Test
+    public void unchangedPatternsAreSharedWithThePreviousTransitLayer() {
+        TransitLayer before = graph.getRealtimeTransitLayer();
+
+        TimetableSnapshot snapshot = new TimetableSnapshot();
+        snapshot.update(patternA, delayed(patternA), D1);
+        snapshot.commit(subject, false);
+
+        TransitLayer after = graph.getRealtimeTransitLayer();
+        assertSame(find(before, patternB, D1), find(after, patternB, D1));
+        assertNotSame(find(before, patternA, D1), find(after, patternA, D1));
+        // Dates without updates are not copied
+        assertSame(find(before, patternA, D2), find(after, patternA, D2));
+    }
+
+    @Test
+    public void expiredDatesAreRevertedToTheScheduledPatterns() {
+        TimetableSnapshot snapshot = new TimetableSnapshot();
+        snapshot.update(patternA, delayed(patternA), D1);
+        snapshot.update(patternA, delayed(patternA), D2);
+        snapshot.commit(subject, false);
+        TransitLayer updated = graph.getRealtimeTransitLayer();
+
+        assertEquals(1, subject.revertExpiredDates(D2));
+        assertEquals(0, subject.revertExpiredDates(D2));
+
+        TransitLayer reverted = graph.getRealtimeTransitLayer();
+        assertNotSame(updated, reverted);
+        assertSame(find(scheduledTransitLayer, patternA, D1), find(reverted, patternA, D1));
+        assertSame(find(scheduledTransitLayer, patternB, D1), find(reverted, patternB, D1));
+        assertSame(find(updated, patternA, D2), find(reverted, patternA, D2));
+        assertEquals(DEPARTURE_TIME + DELAY, departure(reverted, patternA, D2));
+
+        // The published layer is not changed
+        assertEquals(DEPARTURE_TIME + DELAY, departure(updated, patternA, D1));
+    }
+
+    @Test
+    public void changesArePublishedInTheChangeLogAndListenersAreNotified() {
+        TransitLayer before = graph.getRealtimeTransitLayer();
+        List<TransitLayer> published = new ArrayList<>();
+        subject.addChangeListener(published::add);
+
+        TimetableSnapshot snapshot = new TimetableSnapshot();
+        snapshot.update(patternA, delayed(patternA), D1);
+        TripTimes cancelled = new TripTimes(patternB.scheduledTimetable.tripTimes.get(0));
+        cancelled.cancel();
+        snapshot.update(patternB, cancelled, D2);
+        snapshot.commit(subject, false);
+
+        TransitLayer after = graph.getRealtimeTransitLayer();
+        assertEquals(List.of(after), published);
+
+        TransitLayerChangeLog changeLog = after.getChangeLog();
+        assertSame(before, changeLog.getPreviousTransitLayer());
+        assertEquals(Set.of(localDate(D1), localDate(D2)), changeLog.getChangedDates());
+        assertEquals(List.of(find(after, patternA, D1)), changeLog.getUpdated(localDate(D1)));
+        assertEquals(List.of(), changeLog.getAdded(localDate(D1)));
+
+        // A pattern without running trips is removed
+        assertEquals(List.of(find(before, patternB, D2)), changeLog.getRemoved(localDate(D2)));
+        assertFalse(contains(after, patternB, D2));
+        assertEquals(1, after.getTripPatternsForDate(localDate(D2)).size());
+    }
+
+    @Test
+    public void revertedDatesArePublishedInTheChangeLog() {
+        TimetableSnapshot snapshot = new TimetableSnapshot();
+        snapshot.update(patternA, delayed(patternA), D1);
+        snapshot.commit(subject, false);
+        TransitLayer updated = graph.getRealtimeTransitLayer();
+
+        subject.revertExpiredDates(D2);
+
+        TransitLayerChangeLog changeLog = graph.getRealtimeTransitLayer().getChangeLog();
+        assertSame(updated, changeLog.getPreviousTransitLayer());
+        assertEquals(Set.of(localDate(D1)), changeLog.getChangedDates());
+        assertEquals(
+                List.of(find(scheduledTransitLayer, patternA, D1)),
+                changeLog.getUpdated(localDate(D1))
+        );
+        assertEquals(List.of(), changeLog.getRemoved(localDate(D1)));
+    }
+
+    /* private methods */
+
+    private static LocalDate localDate(ServiceDate date) {
+        return ServiceCalendarMapper.localDateFromServiceDate(date);
+    }
+
+    private static boolean contains(TransitLayer layer, TripPattern pattern, ServiceDate date) {
+        return layer.getTripPatternsForDate(localDate(date))
+                .stream()
+                .anyMatch(it -> it.getTripPattern().getOriginalTripPattern() == pattern);
+    }
+
+    private TripTimes delayed(TripPattern pattern) {
+        TripTimes tripTimes = new TripTimes(pattern.scheduledTimetable.tripTimes.get(0));
+        for (int i = 0; i < tripTimes.getNumStops(); ++i) {
+            tripTimes.updateArrivalDelay(i, DELAY);
+            tripTimes.updateDepartureDelay(i, DELAY);
+        }
+        return tripTimes;
+    }
+
+    private static int departure(TransitLayer layer, TripPattern pattern, ServiceDate date) {
+        return find(layer, pattern, date).getTripSchedule(0).departure(0);
+    }
+
+    private static TripPatternForDate find(
+            TransitLayer layer,
+            TripPattern pattern,
+            ServiceDate date
+    ) {
+        LocalDate localDate = ServiceCalendarMapper.localDateFromServiceDate(date);
+        for (TripPatternForDate it : layer.getTripPatternsForDate(localDate)) {
+            if (it.getTripPattern().getOriginalTripPattern() == pattern) {
+                return it;
+            }
+        }
+        fail("Pattern " + pattern.getId() + " not found for " + date);
+        return null;
+    }
+
+    private TripPattern createTripPattern(String id) {
+        Trip trip = new Trip();
+        trip.setId(new FeedScopedId(FEED_ID, id));
+        trip.setServiceId(new FeedScopedId(FEED_ID, "SERVICE"));
+        trip.setRoute(route);
+
+        List<StopTime> stopTimes = List.of(
+                createStopTime(trip, STOP_1, DEPARTURE_TIME),
+                createStopTime(trip, STOP_2, DEPARTURE_TIME + 300)
+        );
+        TripPattern pattern = new TripPattern(route, new StopPattern(stopTimes));
+        pattern.setId(new FeedScopedId(FEED_ID, "P" + id));
+        TripTimes tripTimes = new TripTimes(trip, stopTimes, deduplicator);
+        tripTimes.serviceCode = 0;
+        pattern.add(tripTimes);
+        pattern.scheduledTimetable.finish();
+        return pattern;
+    }
+
+    private static StopTime createStopTime(Trip trip, Stop stop, int time) {
+        StopTime st = new StopTime();
+        st.setTrip(trip);
+        st.setStop(stop);
+        st.setArrivalTime(time);
+        st.setDepartureTime(time);
+        return st;
+    }
+}
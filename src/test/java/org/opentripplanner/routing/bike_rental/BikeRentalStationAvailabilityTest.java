@@ -0,0 +1,40 @@
+package org.opentripplanner.routing.bike_rental;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BikeRentalStationAvailabilityTest {
+
+    @Test
+    public void availabilityIsVisibleWhenPublished() {
+        BikeRentalStationAvailability subject = new BikeRentalStationAvailability();
+        assertFalse(subject.isInService(0));
+
+        BikeRentalStationAvailability.Builder table = subject.newTable(3).set(0, 4, 6).set(2, 0, 10);
+        assertFalse(subject.isInService(0));
+        assertEquals(0, subject.getBikesAvailable(0));
+
+        table.publish();
+        assertEquals(3, subject.size());
+        assertTrue(subject.isInService(0));
+        assertEquals(4, subject.getBikesAvailable(0));
+        assertEquals(6, subject.getSpacesAvailable(0));
+        assertEquals(10, subject.getSpacesAvailable(2));
+    }
+
+    @Test
+    public void stationsNotSetAreOutOfService() {
+        BikeRentalStationAvailability subject = new BikeRentalStationAvailability();
+        subject.newTable(2).set(0, 1, 1).publish();
+
+        assertFalse(subject.isInService(1));
+        assertEquals(0, subject.getBikesAvailable(1));
+        assertEquals(0, subject.getSpacesAvailable(1));
+        assertFalse(subject.isInService(2));
+        assertFalse(subject.isInService(-1));
+        assertEquals(0, subject.getBikesAvailable(7));
+    }
+}
@@ -2,6 +2,8 @@ package org.opentripplanner.routing.trippattern;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -229,4 +231,92 @@ public class TripTimesTest {
             assertEquals(i, updatedTripTimes.getDwellTime(i));
         }
     }
+
+    @Test
+    public void testDeduplicateRealtimeTimes() {
+        // Realtime times are absolute, scheduled times are relative to the first arrival
+        TripTimes scheduled = createTripTimes(8 * 3600);
+
+        TripTimes onTime = new TripTimes(scheduled);
+        TripTimes sameAsOnTime = new TripTimes(scheduled);
+        for (int i = 0; i < stops.length; i++) {
+            onTime.updateArrivalDelay(i, 0);
+            onTime.updateDepartureDelay(i, 0);
+            sameAsOnTime.updateArrivalDelay(i, 0);
+            sameAsOnTime.updateDepartureDelay(i, 0);
+        }
+
+        Deduplicator deduplicator = new Deduplicator();
+        TripTimes first = onTime.deduplicateRealtimeTimes(deduplicator);
+        TripTimes second = sameAsOnTime.deduplicateRealtimeTimes(deduplicator);
+
+        // The first times seen are kept, the second trip times share them
+        assertSame(onTime, first);
+        assertNotSame(sameAsOnTime, second);
+        assertSame(onTime.arrivalTimes, second.arrivalTimes);
+        assertSame(onTime.departureTimes, second.departureTimes);
+
+        for (int i = 0; i < stops.length; i++) {
+            assertEquals(scheduled.getArrivalTime(i), second.getArrivalTime(i));
+            assertEquals(scheduled.getDepartureTime(i), second.getDepartureTime(i));
+            assertEquals(0, second.getArrivalDelay(i));
+        }
+        assertFalse(second.isScheduled());
+        assertEquals(RealTimeState.UPDATED, second.getRealTimeState());
+
+        // Both arrays of the second trip times are released, once each
+        assertEquals(
+                sameAsOnTime.getRealtimeTimesSizeEstimate(),
+                sameAsOnTime.getRealtimeTimesSizeEstimateReleasedBy(second)
+        );
+        assertEquals(0, onTime.getRealtimeTimesSizeEstimateReleasedBy(first));
+        // The published trip times are not changed
+        assertNotSame(onTime.arrivalTimes, sameAsOnTime.arrivalTimes);
+    }
+
+    @Test
+    public void testDeduplicateRealtimeTimesReleasesOnlyReplacedArrays() {
+        TripTimes scheduled = createTripTimes(8 * 3600);
+
+        TripTimes delayed = new TripTimes(scheduled);
+        TripTimes sameArrivals = new TripTimes(scheduled);
+        for (int i = 0; i < stops.length; i++) {
+            delayed.updateArrivalDelay(i, 60);
+            delayed.updateDepartureDelay(i, 60);
+            sameArrivals.updateArrivalDelay(i, 60);
+            sameArrivals.updateDepartureDelay(i, 120);
+        }
+
+        Deduplicator deduplicator = new Deduplicator();
+        delayed.deduplicateRealtimeTimes(deduplicator);
+        TripTimes replacement = sameArrivals.deduplicateRealtimeTimes(deduplicator);
+
+        assertSame(delayed.arrivalTimes, replacement.arrivalTimes);
+        assertSame(sameArrivals.departureTimes, replacement.departureTimes);
+        assertEquals(
+                16 + 4 * stops.length,
+                sameArrivals.getRealtimeTimesSizeEstimateReleasedBy(replacement)
+        );
+    }
+
+    /** Keeps the arrival and departure times of {@link #createTripTimes(int)} apart. */
+    private static final int DWELL_TIME = 30;
+
+    private static TripTimes createTripTimes(int firstArrivalTime) {
+        Trip trip = new Trip();
+        trip.setId(tripId);
+
+        List<StopTime> stopTimes = new LinkedList<StopTime>();
+        for (int i = 0; i < stops.length; ++i) {
+            StopTime stopTime = new StopTime();
+            Stop stop = new Stop();
+            stop.setId(stops[i]);
+            stopTime.setStop(stop);
+            stopTime.setArrivalTime(firstArrivalTime + i * 60);
+            stopTime.setDepartureTime(firstArrivalTime + i * 60 + DWELL_TIME);
+            stopTime.setStopSequence(i);
+            stopTimes.add(stopTime);
+        }
+        return new TripTimes(trip, stopTimes, new Deduplicator());
+    }
 }
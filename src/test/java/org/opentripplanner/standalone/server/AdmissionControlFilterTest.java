@@ -0,0 +1,153 @@
+package org.opentripplanner.standalone.server;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AdmissionControlFilterTest {
+
+    /** Rejected requests wait half the threshold, 5 ms. */
+    private static final double LATENCY_THRESHOLD_SECONDS = 0.01;
+
+    private final ContainerResponseContext response = mock(ContainerResponseContext.class);
+
+    @Test
+    public void permitIsReleasedByTheResponseFilter() {
+        AdmissionControlFilter subject = new AdmissionControlFilter(1, LATENCY_THRESHOLD_SECONDS, false);
+
+        ContainerRequestContext first = request(null);
+        subject.filter(first);
+        assertAdmitted(first);
+
+        // The only permit is taken
+        ContainerRequestContext second = request(null);
+        subject.filter(second);
+        assertRejected(second);
+
+        // A rejected request has no permit to release
+        subject.filter(second, response);
+        ContainerRequestContext third = request(null);
+        subject.filter(third);
+        assertRejected(third);
+
+        subject.filter(first, response);
+        ContainerRequestContext fourth = request(null);
+        subject.filter(fourth);
+        assertAdmitted(fourth);
+
+        // The permit is released once, even if the response filter runs twice
+        subject.filter(first, response);
+        ContainerRequestContext fifth = request(null);
+        subject.filter(fifth);
+        assertRejected(fifth);
+    }
+
+    @Test
+    public void permitOfAStreamedResponseIsReleasedWhenItIsWritten() throws Exception {
+        AdmissionControlFilter subject = new AdmissionControlFilter(1, LATENCY_THRESHOLD_SECONDS, false);
+        ContainerRequestContext first = request(null);
+        subject.filter(first);
+
+        ContainerResponseContext streamed = mock(ContainerResponseContext.class);
+        StreamingOutput output = out -> out.write('x');
+        when(streamed.getEntity()).thenReturn(output);
+        subject.filter(first, streamed);
+
+        ContainerRequestContext second = request(null);
+        subject.filter(second);
+        assertRejected(second);
+
+        ArgumentCaptor<Object> entity = ArgumentCaptor.forClass(Object.class);
+        verify(streamed).setEntity(entity.capture());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) entity.getValue()).write(out);
+        assertEquals("x", out.toString());
+
+        ContainerRequestContext third = request(null);
+        subject.filter(third);
+        assertAdmitted(third);
+    }
+
+    @Test
+    public void highPriorityIsOnlyUsedIfTheHeaderIsTrusted() {
+        // NORMAL requests may use 8 of the 10 permits, HIGH requests all of them
+        assertEquals(8, admittedRequests(new AdmissionControlFilter(10, LATENCY_THRESHOLD_SECONDS, false), "HIGH"));
+        assertEquals(10, admittedRequests(new AdmissionControlFilter(10, LATENCY_THRESHOLD_SECONDS, true), "HIGH"));
+
+        // A client may always lower its priority
+        assertEquals(5, admittedRequests(new AdmissionControlFilter(10, LATENCY_THRESHOLD_SECONDS, false), "LOW"));
+    }
+
+    @Test
+    public void priorityHeaderIsParsed() {
+        assertEquals(RequestPriority.HIGH, RequestPriority.of(" high ", true));
+        assertEquals(RequestPriority.NORMAL, RequestPriority.of("HIGH", false));
+        assertEquals(RequestPriority.LOW, RequestPriority.of("low", false));
+        assertEquals(RequestPriority.NORMAL, RequestPriority.of("urgent", true));
+        assertEquals(RequestPriority.NORMAL, RequestPriority.of(null, true));
+    }
+
+    /* private methods */
+
+    private static int admittedRequests(AdmissionControlFilter subject, String priority) {
+        int n = 0;
+        while (n < 20) {
+            ContainerRequestContext request = request(priority);
+            subject.filter(request);
+            if (request.getProperty(admittedAt()) == null) { break; }
+            ++n;
+        }
+        return n;
+    }
+
+    private static void assertAdmitted(ContainerRequestContext request) {
+        assertTrue(request.getProperty(admittedAt()) instanceof Long);
+        verify(request, never()).abortWith(any(Response.class));
+    }
+
+    private static void assertRejected(ContainerRequestContext request) {
+        assertFalse(request.getProperty(admittedAt()) instanceof Long);
+        verify(request).abortWith(any(Response.class));
+    }
+
+    private static String admittedAt() {
+        return AdmissionControlFilter.class.getName() + ".admittedAt";
+    }
+
+    /** A request context with a priority header, keeping the request properties in a map. */
+    private static ContainerRequestContext request(String priority) {
+        Map<String, Object> properties = new HashMap<>();
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        when(request.getHeaderString(RequestPriority.HEADER)).thenReturn(priority);
+        when(request.getProperty(anyString())).thenAnswer(
+                invocation -> properties.get((String) invocation.getArguments()[0])
+        );
+        doAnswer(invocation -> {
+            properties.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+        }).when(request).setProperty(anyString(), any());
+        doAnswer(invocation -> {
+            properties.remove((String) invocation.getArguments()[0]);
+            return null;
+        }).when(request).removeProperty(anyString());
+        return request;
+    }
+}
@@ -0,0 +1,94 @@
+package org.opentripplanner.standalone.server;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opentripplanner.standalone.server.RequestPriority.HIGH;
+import static org.opentripplanner.standalone.server.RequestPriority.LOW;
+import static org.opentripplanner.standalone.server.RequestPriority.NORMAL;
+
+public class AimdConcurrencyLimitTest {
+
+    private static final long THRESHOLD = TimeUnit.SECONDS.toNanos(1);
+    private static final long FAST = THRESHOLD / 10;
+    private static final long SLOW = THRESHOLD * 2;
+
+    @Test
+    public void lowPriorityIsRejectedFirst() throws Exception {
+        AimdConcurrencyLimit subject = new AimdConcurrencyLimit(10, THRESHOLD);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(subject.acquire(LOW, 0));
+        }
+        assertFalse(subject.acquire(LOW, 0));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(subject.acquire(NORMAL, 0));
+        }
+        assertFalse(subject.acquire(NORMAL, 0));
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(subject.acquire(HIGH, 0));
+        }
+        assertFalse(subject.acquire(HIGH, 0));
+        assertEquals(10, subject.getInFlight());
+    }
+
+    @Test
+    public void slowRequestsDecreaseTheLimit() throws Exception {
+        AimdConcurrencyLimit subject = new AimdConcurrencyLimit(10, THRESHOLD);
+
+        assertTrue(subject.acquire(NORMAL, 0));
+        subject.release(SLOW);
+        assertEquals(9.0, subject.getLimit(), 1e-9);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(subject.acquire(HIGH, 0));
+            subject.release(SLOW);
+        }
+        assertEquals(1.0, subject.getLimit(), 1e-9);
+        assertEquals(0, subject.getInFlight());
+    }
+
+    @Test
+    public void fastRequestsIncreaseTheLimitWhenItIsUsed() throws Exception {
+        AimdConcurrencyLimit subject = new AimdConcurrencyLimit(10, THRESHOLD);
+        assertTrue(subject.acquire(NORMAL, 0));
+        subject.release(SLOW);
+        assertEquals(9.0, subject.getLimit(), 1e-9);
+
+        // A single request does not use the limit
+        assertTrue(subject.acquire(NORMAL, 0));
+        subject.release(FAST);
+        assertEquals(9.0, subject.getLimit(), 1e-9);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(subject.acquire(HIGH, 0));
+        }
+        subject.release(FAST);
+        assertEquals(9.0 + 1.0 / 9.0, subject.getLimit(), 1e-9);
+    }
+
+    @Test
+    public void waitForAPermit() throws Exception {
+        AimdConcurrencyLimit subject = new AimdConcurrencyLimit(1, THRESHOLD);
+        assertTrue(subject.acquire(NORMAL, 0));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ignore) { }
+            subject.release(FAST);
+        });
+        releaser.start();
+
+        assertTrue(subject.acquire(NORMAL, TimeUnit.SECONDS.toNanos(10)));
+        assertFalse(subject.acquire(NORMAL, TimeUnit.MILLISECONDS.toNanos(10)));
+        releaser.join();
+    }
+}
@@ -0,0 +1,185 @@
+package org.opentripplanner.standalone.server;
+
+import org.junit.Test;
+import org.opentripplanner.util.SearchInterruptedException;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RoutingExecutorTest {
+
+    private final RoutingExecutor subject = new RoutingExecutor(1);
+
+    @Test
+    public void resumeWithResult() throws Exception {
+        TestAsyncResponse response = new TestAsyncResponse();
+
+        subject.execute(response, Long.MAX_VALUE, () -> "OK");
+
+        assertEquals("OK", response.result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void interruptWorkWhenClientDisconnects() throws Exception {
+        TestAsyncResponse response = new TestAsyncResponse();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        subject.execute(response, Long.MAX_VALUE, () -> {
+            started.countDown();
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.onSpinWait();
+            }
+            interrupted.countDown();
+            return "Interrupted";
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        response.disconnect();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(TestAsyncResponse.CANCELLED, response.result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelResponseWhenTaskIsCancelledBeforeItStarts() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TestAsyncResponse blocking = new TestAsyncResponse();
+        subject.execute(blocking, Long.MAX_VALUE, () -> {
+            awaitUninterruptibly(release);
+            return "Done";
+        });
+
+        // The only routing thread is busy, the task is queued
+        TestAsyncResponse response = new TestAsyncResponse();
+        AtomicBoolean run = new AtomicBoolean();
+        subject.execute(response, Long.MAX_VALUE, () -> {
+            run.set(true);
+            return "Run";
+        });
+        response.disconnect();
+        assertEquals(TestAsyncResponse.CANCELLED, response.result.get(10, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals("Done", blocking.result.get(10, TimeUnit.SECONDS));
+        assertFalse(run.get());
+    }
+
+    @Test
+    public void resumeWithServiceUnavailableAndInterruptWorkAfterTheDeadline() throws Exception {
+        TestAsyncResponse response = new TestAsyncResponse();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long deadline = System.currentTimeMillis() + 1000;
+
+        subject.execute(response, deadline, () -> {
+            started.countDown();
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.onSpinWait();
+            }
+            interrupted.countDown();
+            throw new SearchInterruptedException("Interrupted");
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // The timeout includes a grace period after the deadline
+        assertTrue(response.timeoutMillis > 1000);
+        assertTrue(response.timeoutMillis <= 1000 + 5000);
+
+        response.timeoutHandler.handleTimeout(response);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        Object result = response.result.get(10, TimeUnit.SECONDS);
+        assertTrue(result instanceof Response);
+        assertEquals(503, ((Response) result).getStatus());
+    }
+
+    @Test
+    public void cancelResponseWhenTheSearchIsInterrupted() throws Exception {
+        TestAsyncResponse response = new TestAsyncResponse();
+
+        subject.execute(response, Long.MAX_VALUE, () -> {
+            throw new SearchInterruptedException("Interrupted");
+        });
+
+        assertEquals(TestAsyncResponse.CANCELLED, response.result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void resumeWithTheExceptionOfAFailedTask() throws Exception {
+        TestAsyncResponse response = new TestAsyncResponse();
+        IllegalStateException exception = new IllegalStateException();
+
+        subject.execute(response, Long.MAX_VALUE, () -> { throw exception; });
+
+        assertSame(exception, response.result.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            }
+            catch (InterruptedException ignore) { }
+        }
+    }
+
+    /** Just enough of an AsyncResponse to capture the result and callbacks. */
+    private static class TestAsyncResponse implements AsyncResponse {
+        static final Object CANCELLED = "Cancelled";
+
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final List<ConnectionCallback> connectionCallbacks = new ArrayList<>();
+        volatile TimeoutHandler timeoutHandler;
+        volatile long timeoutMillis = -1;
+
+        void disconnect() {
+            for (ConnectionCallback callback : connectionCallbacks) {
+                callback.onDisconnect(this);
+            }
+        }
+
+        @Override public boolean resume(Object response) { return result.complete(response); }
+        @Override public boolean resume(Throwable response) { return result.complete(response); }
+        @Override public boolean cancel() { return result.complete(CANCELLED); }
+        @Override public boolean cancel(int retryAfter) { return cancel(); }
+        @Override public boolean cancel(Date retryAfter) { return cancel(); }
+        @Override public boolean isSuspended() { return !result.isDone(); }
+        @Override public boolean isCancelled() { return result.getNow(null) == CANCELLED; }
+        @Override public boolean isDone() { return result.isDone(); }
+        @Override public boolean setTimeout(long time, TimeUnit unit) {
+            timeoutMillis = unit.toMillis(time);
+            return true;
+        }
+        @Override public void setTimeoutHandler(TimeoutHandler handler) { timeoutHandler = handler; }
+        @Override public Collection<Class<?>> register(Class<?> callback) { return Collections.emptyList(); }
+        @Override public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+            return Collections.emptyMap();
+        }
+        @Override public Collection<Class<?>> register(Object callback) {
+            if (callback instanceof ConnectionCallback) {
+                connectionCallbacks.add((ConnectionCallback) callback);
+            }
+            return Collections.singletonList(callback.getClass());
+        }
+        @Override public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+            return Collections.emptyMap();
+        }
+    }
+}
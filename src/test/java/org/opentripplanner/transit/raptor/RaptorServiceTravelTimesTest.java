@@ -0,0 +1,143 @@
+package org.opentripplanner.transit.raptor;
+
+import org.junit.Test;
+import org.opentripplanner.transit.raptor.api.TestLeg;
+import org.opentripplanner.transit.raptor.api.TestRaptorTripSchedule;
+import org.opentripplanner.transit.raptor.api.request.RaptorProfile;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequest;
+import org.opentripplanner.transit.raptor.api.request.RaptorRequestBuilder;
+import org.opentripplanner.transit.raptor.api.request.RaptorTuningParameters;
+import org.opentripplanner.transit.raptor.api.response.StopTravelTimes;
+import org.opentripplanner.transit.raptor.api.transit.IntIterator;
+import org.opentripplanner.transit.raptor.api.transit.TransferLeg;
+import org.opentripplanner.transit.raptor.api.transit.TransitDataProvider;
+import org.opentripplanner.transit.raptor.api.transit.TripPatternInfo;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.opentripplanner.transit.raptor.api.TestRaptorTripSchedule.createTripScheduleUseingArrivalTimes;
+import static org.opentripplanner.transit.raptor.api.response.StopTravelTimes.UNREACHED;
+
+public class RaptorServiceTravelTimesTest {
+
+    private static final int NA = UNREACHED;
+    private static final int N_STOPS = 5;
+    private static final int ACCESS_DURATION = 60;
+
+    // Stop 0 is never reached. The trips depart 10 seconds after arrival.
+    private static final List<TripPatternInfo<TestRaptorTripSchedule>> PATTERNS = List.of(
+            pattern(
+                    new int[] { 1, 2, 3 },
+                    createTripScheduleUseingArrivalTimes(1000, 1300, 1600),
+                    createTripScheduleUseingArrivalTimes(2000, 2300, 2600)
+            ),
+            pattern(
+                    new int[] { 3, 4 },
+                    createTripScheduleUseingArrivalTimes(2700, 2900)
+            )
+    );
+
+    private final RaptorService<TestRaptorTripSchedule> subject = new RaptorService<>(
+            new RaptorTuningParameters() {}
+    );
+
+    @Test
+    public void travelTimesToAllStops() {
+        // Iterations at 900, 960, ... 1740, the end of the search window is exclusive
+        StopTravelTimes result = subject.travelTimes(request(900, 900), new TestTransitData());
+
+        assertEquals(15, result.numberOfIterations());
+        assertEquals(900, result.departureTime(0));
+        assertEquals(1740, result.departureTime(14));
+
+        // Depart at 900 misses the first trip (access 60s + board slack 60s), take the second
+        // trip and transfer at stop 3
+        assertArrayEquals(
+                new int[] { NA, ACCESS_DURATION, 1400, 1700, 2000 },
+                result.travelDurations(0)
+        );
+        assertArrayEquals(new int[] { NA, 0, 0, 0, 1 }, result.numberOfTransfers(0));
+
+        // The arrival times are the same for the last departure
+        assertArrayEquals(
+                new int[] { NA, ACCESS_DURATION, 560, 860, 1160 },
+                result.travelDurations(14)
+        );
+        assertArrayEquals(new int[] { NA, 0, 0, 0, 1 }, result.numberOfTransfers(14));
+    }
+
+    @Test
+    public void stopsArrivedAfterTheTimeLimitAreNotReached() {
+        RaptorRequest<TestRaptorTripSchedule> request = new RaptorRequestBuilder<TestRaptorTripSchedule>()
+                .profile(RaptorProfile.TRAVEL_TIMES)
+                .searchParams()
+                .earliestDepartureTime(1800)
+                .searchWindowInSeconds(0)
+                .latestArrivalTime(2700)
+                .addAccessStops(List.of(new TestLeg(1, ACCESS_DURATION)))
+                .build();
+
+        StopTravelTimes result = subject.travelTimes(request, new TestTransitData());
+
+        assertEquals(1, result.numberOfIterations());
+        assertArrayEquals(
+                new int[] { NA, ACCESS_DURATION, 500, 800, NA },
+                result.travelDurations(0)
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void travelTimesRequireTheTravelTimesProfile() {
+        RaptorRequest<TestRaptorTripSchedule> request = request(900, 900)
+                .mutate()
+                .profile(RaptorProfile.STANDARD)
+                .searchParams()
+                .addEgressStops(List.of(new TestLeg(4, 0)))
+                .build();
+
+        subject.travelTimes(request, new TestTransitData());
+    }
+
+    private static RaptorRequest<TestRaptorTripSchedule> request(int edt, int searchWindow) {
+        return new RaptorRequestBuilder<TestRaptorTripSchedule>()
+                .profile(RaptorProfile.TRAVEL_TIMES)
+                .searchParams()
+                .earliestDepartureTime(edt)
+                .searchWindowInSeconds(searchWindow)
+                .addAccessStops(List.of(new TestLeg(1, ACCESS_DURATION)))
+                .build();
+    }
+
+    private static TripPatternInfo<TestRaptorTripSchedule> pattern(
+            int[] stops,
+            TestRaptorTripSchedule... trips
+    ) {
+        return new TripPatternInfo<>() {
+            @Override public int stopIndex(int stopPositionInPattern) { return stops[stopPositionInPattern]; }
+            @Override public int numberOfStopsInPattern() { return stops.length; }
+            @Override public TestRaptorTripSchedule getTripSchedule(int index) { return trips[index]; }
+            @Override public int numberOfTripSchedules() { return trips.length; }
+        };
+    }
+
+    private static class TestTransitData implements TransitDataProvider<TestRaptorTripSchedule> {
+        @Override
+        public Iterator<? extends TransferLeg> getTransfers(int fromStop) {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public Iterator<? extends TripPatternInfo<TestRaptorTripSchedule>> patternIterator(IntIterator stops) {
+            return PATTERNS.iterator();
+        }
+
+        @Override
+        public int numberOfStops() {
+            return N_STOPS;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.opentripplanner.transit.raptor.api.response;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.opentripplanner.transit.raptor.api.response.StopTravelTimes.UNREACHED;
+
+public class StopTravelTimesTest {
+
+    private static final int NA = UNREACHED;
+
+    // Four iterations and three stops, stop 2 is only reached in the first iteration
+    private final StopTravelTimes subject = new StopTravelTimes(
+            new int[] { 100, 160, 220, 280 },
+            new int[][] {
+                    { 600, 900, 1200 },
+                    { 540, 1000, NA },
+                    { 700, 800, NA },
+                    { 660, 1100, NA }
+            },
+            new int[][] {
+                    { 0, 1, 2 },
+                    { 0, 1, NA },
+                    { 0, 0, NA },
+                    { 0, 1, NA }
+            }
+    );
+
+    @Test
+    public void accessors() {
+        assertEquals(4, subject.numberOfIterations());
+        assertEquals(3, subject.numberOfStops());
+        assertEquals(220, subject.departureTime(2));
+        assertArrayEquals(new int[] { 540, 1000, NA }, subject.travelDurations(1));
+        assertArrayEquals(new int[] { 0, 0, NA }, subject.numberOfTransfers(2));
+    }
+
+    @Test
+    public void travelDurationsLongerThanTheMaximumAreUnreached() {
+        StopTravelTimes result = subject.withMaxTravelDuration(900);
+
+        assertArrayEquals(new int[] { 600, 900, NA }, result.travelDurations(0));
+        assertArrayEquals(new int[] { 0, 1, NA }, result.numberOfTransfers(0));
+        assertArrayEquals(new int[] { 540, NA, NA }, result.travelDurations(1));
+        assertArrayEquals(new int[] { 0, NA, NA }, result.numberOfTransfers(1));
+        assertEquals(280, result.departureTime(3));
+
+        // The original is not changed
+        assertArrayEquals(new int[] { 600, 900, 1200 }, subject.travelDurations(0));
+    }
+
+    @Test
+    public void travelDurationPercentiles() {
+        int[][] result = subject.travelDurationPercentiles(25, 50, 100);
+
+        assertArrayEquals(new int[] { 540, 800, 1200 }, result[0]);
+        assertArrayEquals(new int[] { 600, 900, NA }, result[1]);
+        assertArrayEquals(new int[] { 700, 1100, NA }, result[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRange() {
+        subject.travelDurationPercentiles(0);
+    }
+}
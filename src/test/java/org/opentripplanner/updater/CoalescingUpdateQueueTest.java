@@ -0,0 +1,162 @@
+package org.opentripplanner.updater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingUpdateQueueTest {
+
+    private GraphUpdaterManager updaterManager;
+
+    private final BlockingQueue<String> batches = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        updaterManager = new GraphUpdaterManager(new Graph());
+    }
+
+    @After
+    public void tearDown() {
+        updaterManager.stop();
+    }
+
+    @Test
+    public void updatesOfTheSameKeyAreCoalesced() throws InterruptedException {
+        CoalescingUpdateQueue<String, String> subject = createQueue(10, 0);
+        CountDownLatch writer = holdWriter();
+
+        assertTrue(subject.offer("A", "a1"));
+        assertTrue(subject.offer("B", "b1"));
+        assertTrue(subject.offer("A", "a2"));
+        writer.countDown();
+
+        assertEquals("diff [a2, b1]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(3, subject.getAcceptedCount());
+        assertEquals(1, subject.getCoalescedCount());
+        assertEquals(1, subject.getBatchCount());
+        assertEquals(0, subject.size());
+    }
+
+    @Test
+    public void updatesAreDroppedWhenFull() throws InterruptedException {
+        CoalescingUpdateQueue<String, String> subject = createQueue(2, 0);
+        CountDownLatch writer = holdWriter();
+
+        assertTrue(subject.offer("A", "a1"));
+        assertTrue(subject.offer("B", "b1"));
+        assertFalse(subject.offer("C", "c1"));
+        // Replacing a pending update is always possible
+        assertTrue(subject.offer("B", "b2"));
+        writer.countDown();
+
+        assertEquals("diff [a1, b2]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, subject.getDroppedCount());
+    }
+
+    @Test
+    public void fullDatasetReplacesPendingUpdates() throws InterruptedException {
+        CoalescingUpdateQueue<String, String> subject = createQueue(10, 0);
+        CountDownLatch writer = holdWriter();
+        Map<String, String> fullDataset = new TreeMap<>();
+        fullDataset.put("B", "b1");
+        fullDataset.put("C", "c1");
+
+        subject.offer("A", "a1");
+        subject.offerFullDataset(fullDataset);
+        subject.offer("C", "c2");
+        writer.countDown();
+
+        assertEquals("full [b1, c2]", batches.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void firstUpdateAfterIdleWaitsForTheBatchInterval() throws InterruptedException {
+        CoalescingUpdateQueue<String, String> subject = createQueue(10, 500);
+
+        subject.offer("A", "a1");
+        // The batch is not applied before the interval, measured from the first offer
+        assertNull(batches.poll(200, TimeUnit.MILLISECONDS));
+        subject.offer("A", "a2");
+
+        assertEquals("diff [a2]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, subject.getBatchCount());
+    }
+
+    @Test
+    public void putWaitsForTheNextBatch() throws InterruptedException {
+        CoalescingUpdateQueue<String, String> subject = createQueue(1, 0);
+
+        for (String it : Arrays.asList("a", "b", "c")) {
+            subject.put(it, it);
+        }
+
+        assertEquals("diff [a]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals("diff [b]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals("diff [c]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, subject.getDroppedCount());
+    }
+
+    @Test
+    public void actionsRunWhenThePendingUpdatesAreApplied() throws InterruptedException {
+        CoalescingUpdateQueue<String, String> subject = createQueue(10, 0);
+        CountDownLatch writer = holdWriter();
+
+        subject.offer("A", "a1");
+        subject.whenPendingApplied(() -> batches.add("applied"));
+        writer.countDown();
+
+        assertEquals("diff [a1]", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals("applied", batches.poll(5, TimeUnit.SECONDS));
+
+        // Nothing is pending, the action runs right away on the writer thread
+        subject.whenPendingApplied(() -> batches.add("idle"));
+        assertEquals("idle", batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, subject.getBatchCount());
+    }
+
+    /**
+     * Block the graph writer thread until the returned latch is counted down, so no batch is
+     * applied while the test adds updates.
+     */
+    private CountDownLatch holdWriter() {
+        CountDownLatch latch = new CountDownLatch(1);
+        updaterManager.execute(graph -> {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return latch;
+    }
+
+    private CoalescingUpdateQueue<String, String> createQueue(int capacity, long batchIntervalMs) {
+        return new CoalescingUpdateQueue<>(
+                "test",
+                capacity,
+                batchIntervalMs,
+                updaterManager,
+                (graph, fullDataset, updates) -> batches.add(toString(fullDataset, updates))
+        );
+    }
+
+    private static String toString(boolean fullDataset, List<String> updates) {
+        return (fullDataset ? "full " : "diff ") + updates;
+    }
+}
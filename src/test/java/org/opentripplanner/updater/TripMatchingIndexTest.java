@@ -0,0 +1,116 @@
+package org.opentripplanner.updater;
+
+import org.opentripplanner.GtfsTest;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class TripMatchingIndexTest extends GtfsTest {
+
+    public void testLookups() {
+        String feedId = graph.getFeedIds().iterator().next();
+        TripMatchingIndex index = graph.getTripMatchingIndex();
+
+        List<TripTimes> byStart = index.getTripTimesByFirstDeparture(
+                new FeedScopedId(feedId, "1"), 0, 6 * 3600 + 47 * 60
+        );
+        assertFalse(byStart.isEmpty());
+        assertTrue(byStart.stream().anyMatch(it -> it.trip.getId().getId().equals("10W1020")));
+
+        TripTimes tripTimes = byStart.get(0);
+        TripPattern pattern = graph.index.getPatternForTrip().get(tripTimes.trip);
+        int lastStop = tripTimes.getNumStops() - 1;
+        Set<Trip> byArrival = index.getTripsByLastStopArrival(
+                pattern.getStop(lastStop).getId().getId(),
+                tripTimes.getScheduledArrivalTime(lastStop)
+        );
+        assertTrue(byArrival.contains(tripTimes.trip));
+
+        assertTrue(index.getTripTimesByFirstDeparture(new FeedScopedId(feedId, "1"), 0, 1).isEmpty());
+        assertTrue(index.getTripsByLastStopArrival("unknown", 0).isEmpty());
+    }
+
+    public void testAddedTripReplacesPreviousEntry() {
+        TripMatchingIndex before = graph.getTripMatchingIndex();
+        List<TripPattern> patterns = new ArrayList<>(graph.getTripPatterns());
+        TripPattern pattern = patterns.get(0);
+        TripPattern otherPattern = patterns
+                .stream()
+                .filter(it -> !it.route.equals(pattern.route))
+                .findFirst()
+                .get();
+        TripTimes tripTimes = pattern.scheduledTimetable.tripTimes.get(0);
+        int departure = tripTimes.getScheduledDepartureTime(0);
+
+        // Add the trip again, as if it is moved to another route by a realtime update
+        graph.addToTripMatchingIndex(otherPattern, tripTimes);
+
+        TripMatchingIndex after = graph.getTripMatchingIndex();
+        assertNotSame(before, after);
+        assertEquals(before.size(), after.size());
+
+        // The published index is not modified
+        assertTrue(contains(before, pattern, departure, tripTimes.trip));
+        assertFalse(contains(before, otherPattern, departure, tripTimes.trip));
+
+        assertFalse(contains(after, pattern, departure, tripTimes.trip));
+        assertTrue(contains(after, otherPattern, departure, tripTimes.trip));
+    }
+
+    public void testExpiredRealtimeTripsAreRemoved() {
+        TripPattern pattern = graph.getTripPatterns().iterator().next();
+        TripTimes scheduled = pattern.scheduledTimetable.tripTimes.get(0);
+        TripTimes added = createAddedTrip(pattern, scheduled);
+        int departure = scheduled.getScheduledDepartureTime(0);
+
+        graph.addToTripMatchingIndex(pattern, added);
+        // A scheduled trip added again is not a realtime trip, it is never removed
+        graph.addToTripMatchingIndex(pattern, scheduled);
+        assertTrue(contains(graph.getTripMatchingIndex(), pattern, departure, added.trip));
+
+        assertEquals(0, graph.retainRealtimeTripsInTripMatchingIndex(Set.of(added.trip)));
+        assertEquals(1, graph.retainRealtimeTripsInTripMatchingIndex(Set.of()));
+
+        TripMatchingIndex after = graph.getTripMatchingIndex();
+        assertFalse(contains(after, pattern, departure, added.trip));
+        assertTrue(contains(after, pattern, departure, scheduled.trip));
+        assertEquals(0, graph.retainRealtimeTripsInTripMatchingIndex(Set.of()));
+    }
+
+    /** A new trip with the same stops and times as the given trip. */
+    private TripTimes createAddedTrip(TripPattern pattern, TripTimes scheduled) {
+        Trip trip = new Trip();
+        trip.setId(new FeedScopedId(scheduled.trip.getId().getFeedId(), "added"));
+        trip.setRoute(pattern.route);
+        trip.setServiceId(scheduled.trip.getServiceId());
+
+        List<StopTime> stopTimes = new ArrayList<>();
+        for (int i = 0; i < scheduled.getNumStops(); ++i) {
+            StopTime stopTime = new StopTime();
+            stopTime.setTrip(trip);
+            stopTime.setStop(pattern.getStop(i));
+            stopTime.setArrivalTime(scheduled.getScheduledArrivalTime(i));
+            stopTime.setDepartureTime(scheduled.getScheduledDepartureTime(i));
+            stopTimes.add(stopTime);
+        }
+        return new TripTimes(trip, stopTimes, graph.deduplicator);
+    }
+
+    private static boolean contains(TripMatchingIndex index, TripPattern pattern, int departure, Trip trip) {
+        return index
+                .getTripTimesByFirstDeparture(pattern.route.getId(), pattern.directionId, departure)
+                .stream()
+                .anyMatch(it -> it.trip.equals(trip));
+    }
+
+    @Override
+    public String getFeedName() {
+        return "google_transit.zip";
+    }
+}
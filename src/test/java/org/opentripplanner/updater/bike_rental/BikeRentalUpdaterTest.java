@@ -0,0 +1,104 @@
+package org.opentripplanner.updater.bike_rental;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.bike_rental.BikeRentalStation;
+import org.opentripplanner.routing.bike_rental.BikeRentalStationService;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.vertextype.BikeRentalStationVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BikeRentalUpdaterTest {
+
+    private static final long T0 = 1_500_000_000_000L;
+
+    /** The default station removal delay */
+    private static final long DELAY_MS = 15 * 60 * 1000L;
+
+    private Graph graph;
+    private BikeRentalUpdater subject;
+    private BikeRentalStationService service;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new Graph();
+        subject = new BikeRentalUpdater();
+        subject.setup(graph);
+        service = graph.getService(BikeRentalStationService.class);
+    }
+
+    @Test
+    public void stationReappearingWithinTheDelayKeepsItsVertex() {
+        subject.updateStations(graph, List.of(station("A", 3), station("B", 5)), T0);
+        BikeRentalStationVertex vertexB = vertex("B");
+        assertTrue(vertexB.isInService());
+        assertEquals(5, vertexB.getBikesAvailable());
+
+        // B is missing, it is out of service but kept in the graph
+        subject.updateStations(graph, List.of(station("A", 3)), T0 + 60_000);
+        assertFalse(vertexB.isInService());
+        assertTrue(graph.containsVertex(vertexB));
+        assertEquals(1, service.getBikeRentalStations().size());
+
+        // B is back before the delay, with the same vertex and availability index
+        subject.updateStations(graph, List.of(station("A", 3), station("B", 2)), T0 + DELAY_MS);
+        assertSame(vertexB, vertex("B"));
+        assertTrue(vertexB.isInService());
+        assertEquals(2, vertexB.getBikesAvailable());
+        assertEquals(2, service.getBikeRentalStations().size());
+
+        // The missing time starts again when B goes missing a second time
+        long missing = T0 + 2 * DELAY_MS;
+        subject.updateStations(graph, List.of(station("A", 3)), missing);
+        subject.updateStations(graph, List.of(station("A", 3)), missing + DELAY_MS - 1);
+        assertTrue(graph.containsVertex(vertexB));
+        assertSame(vertexB, vertex("B"));
+    }
+
+    @Test
+    public void stationMissingForTheDelayIsRemovedAndItsIndexReused() {
+        subject.updateStations(graph, List.of(station("A", 3), station("B", 5)), T0);
+        BikeRentalStationVertex vertexA = vertex("A");
+        BikeRentalStationVertex vertexB = vertex("B");
+        int indexB = vertexB.getAvailabilityIndex();
+
+        subject.updateStations(graph, List.of(station("A", 3)), T0 + 60_000);
+        subject.updateStations(graph, List.of(station("A", 3)), T0 + 60_000 + DELAY_MS);
+        assertFalse(graph.containsVertex(vertexB));
+        assertFalse(subject.verticesByStation.containsKey(station("B", 0)));
+
+        // A new station gets the index of the removed station
+        subject.updateStations(graph, List.of(station("A", 3), station("C", 7)), T0 + 2 * DELAY_MS);
+        BikeRentalStationVertex vertexC = vertex("C");
+        assertEquals(indexB, vertexC.getAvailabilityIndex());
+        assertEquals(7, vertexC.getBikesAvailable());
+        assertEquals(3, vertexA.getBikesAvailable());
+        assertTrue(vertexC.isInService());
+    }
+
+    /* private methods */
+
+    private BikeRentalStationVertex vertex(String id) {
+        BikeRentalStationVertex vertex = subject.verticesByStation.get(station(id, 0));
+        assertTrue("No vertex for station " + id, vertex != null);
+        return vertex;
+    }
+
+    private static BikeRentalStation station(String id, int bikes) {
+        BikeRentalStation station = new BikeRentalStation();
+        station.id = id;
+        station.name = new NonLocalizedString(id);
+        station.x = 10.0;
+        station.y = 60.0;
+        station.bikesAvailable = bikes;
+        station.spacesAvailable = 10 - bikes;
+        return station;
+    }
+}
@@ -0,0 +1,109 @@
+package org.opentripplanner.updater.stoptime;
+
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import org.opentripplanner.ConstantsForTests;
+import org.opentripplanner.datastore.OtpDataStore;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MANUAL benchmark of the realtime updates: a GTFS-RT full dataset with a delay for every
+ * scheduled trip is applied every 10 seconds, like a production updater polling a feed. The feed
+ * delays change between the rounds, so every timetable is updated and committed each time.
+ * <p>
+ * Run it with the directory of a serialized graph as the first argument, or without arguments to
+ * use the graph built from {@link ConstantsForTests#KCM_GTFS}. The second argument is the number
+ * of rounds, 30 by default.
+ */
+public class TimetableSnapshotSourceBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimetableSnapshotSourceBenchmark.class);
+
+    private static final long INTERVAL_MILLIS = 10_000;
+
+    private static final int DEFAULT_ROUNDS = 30;
+
+    public static void main(String[] args) throws InterruptedException {
+        Graph graph = args.length > 0
+                ? Graph.load(OtpDataStore.graphFile(new File(args[0])))
+                : ConstantsForTests.buildGraph(ConstantsForTests.KCM_GTFS);
+        graph.index();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        TimetableSnapshotSource source = new TimetableSnapshotSource(graph);
+        ServiceDate today = new ServiceDate();
+        String feedId = graph.getFeedIds().iterator().next();
+
+        long totalApplyNanos = 0;
+        long maxApplyNanos = 0;
+        for (int round = 0; round < rounds; ++round) {
+            long start = System.currentTimeMillis();
+
+            // Build the feed outside the measured time, like the updater does when polling
+            List<TripUpdate> feed = fullDataset(graph, today, 60 * (round % 5 + 1));
+
+            long t0 = System.nanoTime();
+            source.applyTripUpdates(graph, true, feed, feedId);
+            long applyNanos = System.nanoTime() - t0;
+
+            totalApplyNanos += applyNanos;
+            maxApplyNanos = Math.max(maxApplyNanos, applyNanos);
+            LOG.info(
+                    "Round {}: applied {} trip updates in {} ms, {}",
+                    round + 1,
+                    feed.size(),
+                    applyNanos / 1_000_000,
+                    source.getTimetableSnapshot()
+            );
+
+            long sleep = start + INTERVAL_MILLIS - System.currentTimeMillis();
+            if (sleep > 0 && round < rounds - 1) {
+                Thread.sleep(sleep);
+            }
+        }
+        LOG.info(
+                "Applied {} full datasets, average {} ms, max {} ms.",
+                rounds,
+                totalApplyNanos / rounds / 1_000_000,
+                maxApplyNanos / 1_000_000
+        );
+    }
+
+
+    /* private methods */
+
+    /** A delay for each stop of each scheduled trip of the graph. */
+    private static List<TripUpdate> fullDataset(Graph graph, ServiceDate date, int delay) {
+        List<TripUpdate> updates = new ArrayList<>();
+        for (TripPattern pattern : graph.tripPatternForId.values()) {
+            for (TripTimes tripTimes : pattern.scheduledTimetable.tripTimes) {
+                TripDescriptor.Builder trip = TripDescriptor.newBuilder()
+                        .setTripId(tripTimes.trip.getId().getId())
+                        .setStartDate(date.getAsString())
+                        .setScheduleRelationship(TripDescriptor.ScheduleRelationship.SCHEDULED);
+                TripUpdate.Builder update = TripUpdate.newBuilder().setTrip(trip);
+                for (int i = 0; i < tripTimes.getNumStops(); ++i) {
+                    update.addStopTimeUpdate(
+                            StopTimeUpdate.newBuilder()
+                                    .setStopSequence(tripTimes.getStopSequence(i))
+                                    .setArrival(StopTimeEvent.newBuilder().setDelay(delay))
+                                    .setDeparture(StopTimeEvent.newBuilder().setDelay(delay))
+                    );
+                }
+                updates.add(update.build());
+            }
+        }
+        return updates;
+    }
+}
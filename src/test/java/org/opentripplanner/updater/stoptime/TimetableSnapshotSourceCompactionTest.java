@@ -0,0 +1,179 @@
+package org.opentripplanner.updater.stoptime;
+
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.TimetableSnapshot;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.GraphIndex;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimetableSnapshotSourceCompactionTest {
+
+    private static final String FEED_ID = "F";
+    private static final String TRIP_ID = "T1";
+    private static final int DEPARTURE_TIME = 8 * 3600;
+    private static final int DELAY = 60;
+
+    private static final ServiceDate EXPIRED = new ServiceDate().shift(-10);
+    private static final ServiceDate TOMORROW = new ServiceDate().next();
+    private static final ServiceDate DAY_AFTER_TOMORROW = TOMORROW.next();
+
+    private final Graph graph = new Graph();
+
+    private TripPattern pattern;
+    private TimetableSnapshotSource subject;
+
+    @Before
+    public void setUp() {
+        Route route = new Route();
+        route.setId(new FeedScopedId(FEED_ID, "R1"));
+        route.setType(3);
+
+        Trip trip = new Trip();
+        trip.setId(new FeedScopedId(FEED_ID, TRIP_ID));
+        trip.setServiceId(new FeedScopedId(FEED_ID, "SERVICE"));
+        trip.setRoute(route);
+
+        List<StopTime> stopTimes = List.of(
+                createStopTime(trip, "S1", 1, DEPARTURE_TIME),
+                createStopTime(trip, "S2", 2, DEPARTURE_TIME + 300)
+        );
+        pattern = new TripPattern(route, new StopPattern(stopTimes));
+        pattern.setId(new FeedScopedId(FEED_ID, "P1"));
+        TripTimes tripTimes = new TripTimes(trip, stopTimes, new Deduplicator());
+        tripTimes.serviceCode = 0;
+        pattern.add(tripTimes);
+        pattern.scheduledTimetable.finish();
+
+        graph.tripPatternForId.put(pattern.getId().getId(), pattern);
+        graph.index = new GraphIndex(graph);
+
+        subject = new TimetableSnapshotSource(graph);
+        // Keep the expired date until the data is compacted
+        subject.purgeExpiredData = false;
+        for (ServiceDate date : List.of(EXPIRED, TOMORROW, DAY_AFTER_TOMORROW)) {
+            subject.applyTripUpdates(graph, false, List.of(delayed(date)), FEED_ID);
+        }
+    }
+
+    @Test
+    public void expiredDatesArePurgedAndEqualTimesShared() {
+        TimetableSnapshot before = subject.getTimetableSnapshot();
+        assertEquals(DEPARTURE_TIME + DELAY, departure(before, EXPIRED));
+
+        subject.purgeExpiredData = true;
+        subject.compactRealtimeData(graph);
+
+        TimetableSnapshot after = subject.getTimetableSnapshot();
+        assertNotSame(before, after);
+        assertSame(pattern.scheduledTimetable, after.resolve(pattern, EXPIRED));
+        assertEquals(DEPARTURE_TIME + DELAY, departure(after, TOMORROW));
+        assertEquals(DEPARTURE_TIME + DELAY, departure(after, DAY_AFTER_TOMORROW));
+
+        // The days with the same times share the arrays
+        TripTimes tomorrow = after.resolve(pattern, TOMORROW).getTripTimes(0);
+        TripTimes dayAfterTomorrow = after.resolve(pattern, DAY_AFTER_TOMORROW).getTripTimes(0);
+        assertEquals(
+                0,
+                dayAfterTomorrow.getRealtimeTimesSizeEstimateReleasedBy(tomorrow)
+        );
+        assertTrue(subject.getCompactedBytesEstimate() > 0);
+
+        // The published snapshot is not changed
+        assertEquals(DEPARTURE_TIME + DELAY, departure(before, EXPIRED));
+    }
+
+    @Test
+    public void expiredDatesAreKeptIfPurgingIsDisabled() {
+        subject.compactRealtimeData(graph);
+
+        TimetableSnapshot after = subject.getTimetableSnapshot();
+        assertEquals(DEPARTURE_TIME + DELAY, departure(after, EXPIRED));
+        assertEquals(DEPARTURE_TIME + DELAY, departure(after, TOMORROW));
+
+        // Only the shared arrays are counted, compacting again releases nothing
+        long compacted = subject.getCompactedBytesEstimate();
+        assertTrue(compacted > 0);
+        subject.compactRealtimeData(graph);
+        assertEquals(compacted, subject.getCompactedBytesEstimate());
+    }
+
+    @Test
+    public void dirtyBufferIsPublishedOnTheNextTickAfterAnIdleTick() {
+        subject.maxSnapshotFrequency = 10_000;
+
+        // Publish the updates held back by the throttling in setUp
+        subject.lastSnapshotTime -= 20_000;
+        subject.publishTimetableSnapshot();
+        int published = subject.getPublishMetrics().getPublishCount();
+
+        // An idle tick after the throttling period, there is nothing to publish
+        subject.lastSnapshotTime -= 20_000;
+        subject.publishTimetableSnapshot();
+        assertEquals(published, subject.getPublishMetrics().getPublishCount());
+
+        // The idle tick does not start a new throttling period
+        subject.applyTripUpdates(graph, false, List.of(delayed(TOMORROW, 2 * DELAY)), FEED_ID);
+        subject.publishTimetableSnapshot();
+        assertEquals(published + 1, subject.getPublishMetrics().getPublishCount());
+        assertEquals(
+                DEPARTURE_TIME + 2 * DELAY,
+                departure(subject.getTimetableSnapshot(), TOMORROW)
+        );
+    }
+
+    /* private methods */
+
+    private int departure(TimetableSnapshot snapshot, ServiceDate date) {
+        return snapshot.resolve(pattern, date).getTripTimes(0).getDepartureTime(0);
+    }
+
+    private static TripUpdate delayed(ServiceDate date) {
+        return delayed(date, DELAY);
+    }
+
+    private static TripUpdate delayed(ServiceDate date, int delay) {
+        TripDescriptor.Builder trip = TripDescriptor.newBuilder()
+                .setTripId(TRIP_ID)
+                .setStartDate(date.getAsString())
+                .setScheduleRelationship(TripDescriptor.ScheduleRelationship.SCHEDULED);
+        StopTimeUpdate.Builder stopTimeUpdate = StopTimeUpdate.newBuilder()
+                .setStopSequence(1)
+                .setArrival(StopTimeEvent.newBuilder().setDelay(delay))
+                .setDeparture(StopTimeEvent.newBuilder().setDelay(delay));
+        return TripUpdate.newBuilder()
+                .setTrip(trip)
+                .addStopTimeUpdate(stopTimeUpdate)
+                .build();
+    }
+
+    private static StopTime createStopTime(Trip trip, String stopId, int sequence, int time) {
+        StopTime st = new StopTime();
+        st.setTrip(trip);
+        st.setStop(new Stop(new FeedScopedId(FEED_ID, stopId)));
+        st.setStopSequence(sequence);
+        st.setArrivalTime(time);
+        st.setDepartureTime(time);
+        return st;
+    }
+}
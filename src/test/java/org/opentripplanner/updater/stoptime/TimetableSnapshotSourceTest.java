@@ -27,6 +27,8 @@ import org.opentripplanner.routing.trippattern.TripTimes;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -96,9 +98,16 @@ public class TimetableSnapshotSourceTest {
         assertSame(snapshot, updater.getTimetableSnapshot());
 
         updater.maxSnapshotFrequency = (-1);
+        // Reading the snapshot never commits the buffer, the pending changes are published
+        // by the background publisher
+        assertSame(snapshot, updater.getTimetableSnapshot());
+
+        updater.publishTimetableSnapshot();
         final TimetableSnapshot newSnapshot = updater.getTimetableSnapshot();
         assertNotNull(newSnapshot);
         assertNotSame(snapshot, newSnapshot);
+        assertEquals(2, updater.getPublishMetrics().getPublishCount());
+        assertTrue(updater.getPublishMetrics().getLastPublishLag() >= 0);
     }
 
     @Test
@@ -178,6 +187,72 @@ public class TimetableSnapshotSourceTest {
         assertEquals(RealTimeState.SCHEDULED, forToday.getTripTimes(tripIndex2).getRealTimeState());
     }
 
+    @Test
+    public void testFullDatasetIsAppliedAsDiff() throws InvalidProtocolBufferException {
+        final FeedScopedId tripId = new FeedScopedId(feedId, "1.1");
+        final Trip trip = graph.index.getTripForId().get(tripId);
+        final TripPattern pattern = graph.index.getPatternForTrip().get(trip);
+        final int tripIndex = pattern.scheduledTimetable.getTripIndex(tripId);
+        final List<TripUpdate> updates = Arrays.asList(TripUpdate.parseFrom(cancellation));
+
+        updater.maxSnapshotFrequency = -1;
+
+        updater.applyTripUpdates(graph, true, updates, feedId);
+        assertEquals(0, updater.getSkippedTripUpdateCount());
+
+        // The same dataset again, nothing is applied
+        updater.applyTripUpdates(graph, true, updates, feedId);
+        assertEquals(1, updater.getSkippedTripUpdateCount());
+        assertEquals(
+                RealTimeState.CANCELED,
+                updater.getTimetableSnapshot().resolve(pattern, serviceDate)
+                        .getTripTimes(tripIndex).getRealTimeState()
+        );
+
+        // The cancellation is removed from the dataset, the trip is reverted to the schedule
+        updater.applyTripUpdates(graph, true, Collections.emptyList(), feedId);
+        assertEquals(1, updater.getRemovedTripUpdateCount());
+        assertEquals(
+                RealTimeState.SCHEDULED,
+                updater.getTimetableSnapshot().resolve(pattern, serviceDate)
+                        .getTripTimes(tripIndex).getRealTimeState()
+        );
+    }
+
+    @Test
+    public void testPreparedTripUpdatesAreAppliedInOrder() throws InvalidProtocolBufferException {
+        final FeedScopedId tripId = new FeedScopedId(feedId, "1.1");
+        final Trip trip = graph.index.getTripForId().get(tripId);
+        final TripPattern pattern = graph.index.getPatternForTrip().get(trip);
+        final int tripIndex = pattern.scheduledTimetable.getTripIndex(tripId);
+
+        updater.maxSnapshotFrequency = -1;
+
+        // Both batches are prepared before the first one is applied
+        final TimetableSnapshotSource.PreparedTripUpdates first = updater.prepareTripUpdates(
+                true, Arrays.asList(TripUpdate.parseFrom(cancellation)), feedId
+        );
+        final TimetableSnapshotSource.PreparedTripUpdates second = updater.prepareTripUpdates(
+                true, Collections.emptyList(), feedId
+        );
+        assertEquals(1, first.size());
+        assertEquals(0, second.size());
+
+        updater.applyTripUpdates(graph, first);
+        assertEquals(
+                RealTimeState.CANCELED,
+                updater.getTimetableSnapshot().resolve(pattern, serviceDate)
+                        .getTripTimes(tripIndex).getRealTimeState()
+        );
+
+        updater.applyTripUpdates(graph, second);
+        assertEquals(
+                RealTimeState.SCHEDULED,
+                updater.getTimetableSnapshot().resolve(pattern, serviceDate)
+                        .getTripTimes(tripIndex).getRealTimeState()
+        );
+    }
+
     @Test
     public void testHandleAddedTrip() throws ParseException {
         // GIVEN
@@ -0,0 +1,60 @@
+package org.opentripplanner.updater.stoptime;
+
+import org.junit.Test;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.TripPattern;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TripPatternCacheTest {
+
+    private static final String FEED_ID = "F";
+
+    private final Graph graph = new Graph();
+    private final Route route = new Route();
+    private final TripPatternCache subject = new TripPatternCache();
+
+    public TripPatternCacheTest() {
+        route.setId(new FeedScopedId(FEED_ID, "R1"));
+    }
+
+    @Test
+    public void patternsNotInUseAreRemoved() {
+        StopPattern stopPatternA = stopPattern("S1", "S2");
+        StopPattern stopPatternB = stopPattern("S1", "S3");
+        TripPattern patternA = subject.getOrCreateTripPattern(stopPatternA, route, graph);
+        TripPattern patternB = subject.getOrCreateTripPattern(stopPatternB, route, graph);
+
+        assertEquals(1, subject.retainAll(Set.of(patternA)));
+        assertEquals(0, subject.retainAll(Set.of(patternA)));
+
+        // The pattern in use is kept, the removed one is created again when needed
+        assertSame(patternA, subject.getOrCreateTripPattern(stopPatternA, route, graph));
+        TripPattern newPatternB = subject.getOrCreateTripPattern(stopPatternB, route, graph);
+        assertNotSame(patternB, newPatternB);
+        assertNotEquals(patternB.getId(), newPatternB.getId());
+        assertEquals(2, subject.retainAll(Set.of()));
+    }
+
+    /* private methods */
+
+    private static StopPattern stopPattern(String... stopIds) {
+        StopTime[] stopTimes = new StopTime[stopIds.length];
+        for (int i = 0; i < stopIds.length; ++i) {
+            stopTimes[i] = new StopTime();
+            stopTimes[i].setStop(new Stop(new FeedScopedId(FEED_ID, stopIds[i])));
+        }
+        return new StopPattern(List.of(stopTimes));
+    }
+}
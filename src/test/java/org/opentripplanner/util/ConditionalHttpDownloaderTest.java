@@ -0,0 +1,66 @@
+package org.opentripplanner.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConditionalHttpDownloaderTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] CONTENT = "Hello".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/feed", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, CONTENT.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(CONTENT);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/feed";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadIsSkippedIfNotModified() throws IOException {
+        ConditionalHttpDownloader subject = new ConditionalHttpDownloader(url);
+
+        assertEquals("Hello", subject.download(this::readString));
+        assertNull(subject.download(this::readString));
+        assertNull(subject.download(this::readString));
+
+        assertEquals(1, subject.getDownloadCount());
+        assertEquals(2, subject.getNotModifiedCount());
+        assertEquals(CONTENT.length, subject.getBytesFetched());
+    }
+
+    private String readString(InputStream in) throws IOException {
+        return IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package org.opentripplanner.util;
+
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CopyOnWriteChunkedMapTest {
+
+    @Test
+    public void putGetAndRemove() {
+        CopyOnWriteChunkedMap<Integer, String> map = new CopyOnWriteChunkedMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            assertNull(map.put(i, "v" + i));
+        }
+        assertEquals(5000, map.size());
+        assertEquals("v17", map.get(17));
+        assertEquals("v17", map.put(17, "x"));
+        assertEquals(5000, map.size());
+
+        assertEquals("x", map.remove(17));
+        assertNull(map.remove(17));
+        assertNull(map.get(17));
+        assertEquals(4999, map.size());
+        assertEquals(4999, map.keys().size());
+        assertEquals(4999, map.values().size());
+        assertEquals(4999, map.values().stream().distinct().count());
+    }
+
+    @Test
+    public void readOnlyCopyIsNotChangedByLaterUpdates() {
+        CopyOnWriteChunkedMap<Integer, String> map = new CopyOnWriteChunkedMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "a" + i);
+        }
+
+        CopyOnWriteChunkedMap<Integer, String> copy = map.readOnlyCopy();
+
+        map.put(1, "b1");
+        map.put(1000, "b1000");
+        map.remove(2);
+        assertTrue(map.removeIf((k, v) -> k >= 90 && k < 100));
+
+        assertEquals(100, copy.size());
+        assertEquals("a1", copy.get(1));
+        assertEquals("a2", copy.get(2));
+        assertEquals("a95", copy.get(95));
+        assertNull(copy.get(1000));
+
+        assertEquals(90, map.size());
+        assertEquals("b1", map.get(1));
+        assertNull(map.get(95));
+
+        // A second copy must not be affected by updates made after it, nor affect the first copy
+        CopyOnWriteChunkedMap<Integer, String> copy2 = map.readOnlyCopy();
+        map.put(1, "c1");
+        assertEquals("b1", copy2.get(1));
+        assertEquals("a1", copy.get(1));
+    }
+
+    @Test
+    public void removeIfReturnsFalseIfNothingIsRemoved() {
+        CopyOnWriteChunkedMap<Integer, String> map = new CopyOnWriteChunkedMap<>();
+        map.put(1, "a");
+        assertFalse(map.removeIf((k, v) -> k > 1));
+        assertEquals(1, map.size());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void readOnlyCopyCanNotBeModified() {
+        CopyOnWriteChunkedMap<Integer, String> map = new CopyOnWriteChunkedMap<>();
+        map.readOnlyCopy().put(1, "a");
+    }
+
+    @Test
+    public void failedRemoveDoesNotChangeTheSize() {
+        CopyOnWriteChunkedMap<Integer, String> map = new CopyOnWriteChunkedMap<>();
+        map.put(1, "a");
+        CopyOnWriteChunkedMap<Integer, String> copy = map.readOnlyCopy();
+        try {
+            copy.remove(1);
+            fail("A read-only copy can not be modified");
+        }
+        catch (ConcurrentModificationException e) {
+            // expected
+        }
+        assertEquals(1, copy.size());
+        assertEquals("a", copy.get(1));
+    }
+}
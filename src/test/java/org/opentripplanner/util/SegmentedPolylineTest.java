@@ -0,0 +1,72 @@
+package org.opentripplanner.util;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.util.model.EncodedPolylineBean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SegmentedPolylineTest {
+
+    private static final Coordinate[][] SEGMENTS = {
+            {
+                    new Coordinate(-73.85062, 40.903125),
+                    new Coordinate(-73.85136, 40.902261),
+                    new Coordinate(-73.85151, 40.902066)
+            },
+            {
+                    new Coordinate(-73.85151, 40.902066),
+                    new Coordinate(-73.85201, 40.901234)
+            },
+            {
+                    new Coordinate(-73.85202, 40.901230),
+                    new Coordinate(-73.85301, 40.900011),
+                    new Coordinate(-73.85411, 40.899923),
+                    new Coordinate(-73.85499, 40.899001)
+            }
+    };
+
+    private final SegmentedPolyline subject = new SegmentedPolyline(SEGMENTS);
+
+    @Test
+    public void encodeSameAsPolylineEncoder() {
+        assertEquals(3, subject.numSegments());
+
+        for (int from = 0; from <= SEGMENTS.length; from++) {
+            for (int to = from; to <= SEGMENTS.length; to++) {
+                EncodedPolylineBean expected = PolylineEncoder.createEncodings(coordinates(from, to));
+                EncodedPolylineBean result = subject.encode(from, to);
+                String range = from + "-" + to;
+                assertEquals(range, expected.getPoints(), result.getPoints());
+                assertEquals(range, expected.getLength(), result.getLength());
+            }
+        }
+    }
+
+    @Test
+    public void distanceSameAsSumOfCoordinateDistances() {
+        for (int from = 0; from <= SEGMENTS.length; from++) {
+            for (int to = from; to <= SEGMENTS.length; to++) {
+                List<Coordinate> coordinates = coordinates(from, to);
+                double expected = 0;
+                for (int i = 1; i < coordinates.size(); i++) {
+                    expected += SphericalDistanceLibrary.distance(coordinates.get(i), coordinates.get(i - 1));
+                }
+                assertEquals(from + "-" + to, expected, subject.distance(from, to), 1e-6);
+            }
+        }
+    }
+
+    private static List<Coordinate> coordinates(int from, int to) {
+        List<Coordinate> coordinates = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            coordinates.addAll(Arrays.asList(SEGMENTS[i]));
+        }
+        return coordinates;
+    }
+}